@@ -0,0 +1,107 @@
+/**
+ * IOBenchmark Class
+ * Measures reading a fis file, the parsing behind File > Open, and writing
+ * one, the serialisation behind File > Save, for rule bases of increasing
+ * size, along with loading the same system from the binary format
+ * 
+ * @author Craig Knott
+ */
+
+package bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import data.Model;
+import data.PackedFIS;
+import io.BinaryFIS;
+import io.FISReader;
+import io.FISWriter;
+import io.InvalidFormatException;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IOBenchmark {
+
+	@Param({ "3" })
+	public int inputs;
+
+	@Param({ "5" })
+	public int mfs;
+
+	@Param({ "10", "100", "1000", "100000" })
+	public int rules;
+
+	private Model model;
+	private String text;
+	private File binary;
+
+	@Setup
+	public void setup() throws IOException {
+		model = SyntheticSystems.build("mamdani", inputs, mfs, rules, 42);
+		text = FISWriter.createSaveFile(model);
+		binary = File.createTempFile("bench", ".fisb");
+		binary.deleteOnExit();
+		BinaryFIS.write(model, binary);
+	}
+
+	@TearDown
+	public void tearDown() {
+		binary.delete();
+	}
+
+	@Benchmark
+	public Model parse() throws InvalidFormatException {
+		return FISReader.read(text);
+	}
+
+	@Benchmark
+	public PackedFIS loadBinary() throws IOException, InvalidFormatException {
+		return BinaryFIS.read(binary);
+	}
+
+	@Benchmark
+	public String save() {
+		return FISWriter.createSaveFile(model);
+	}
+
+	@Benchmark
+	public Writer saveStreaming() throws IOException {
+		FISWriter.write(model, DISCARD);
+		return DISCARD;
+	}
+
+	/*
+	 * Writer that throws away everything written, so that only the cost of
+	 * producing the file is measured
+	 */
+	private static final Writer DISCARD = new Writer() {
+		public void write(char[] cbuf, int off, int len) {
+		}
+
+		public void flush() {
+		}
+
+		public void close() {
+		}
+	};
+}
@@ -0,0 +1,105 @@
+/**
+ * InferenceBenchmark Class
+ * Measures end to end inference over systems of increasing size, one row at a
+ * time through the InferenceEngine and a whole batch at a time through the
+ * BatchEvaluator. Compilation is measured separately, as it happens once per
+ * system rather than once per row
+ * 
+ * @author Craig Knott
+ */
+
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import data.Model;
+import inference.BatchEvaluator;
+import inference.CompiledFIS;
+import inference.InferenceEngine;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InferenceBenchmark {
+
+	/*
+	 * Number of rows evaluated per invocation
+	 */
+	private static final int ROWS = 1024;
+
+	@Param({ "mamdani", "sugeno" })
+	public String type;
+
+	@Param({ "2", "4" })
+	public int inputs;
+
+	@Param({ "3", "7" })
+	public int mfs;
+
+	@Param({ "10", "100" })
+	public int rules;
+
+	private Model model;
+	private InferenceEngine engine;
+	private BatchEvaluator batch;
+	private double[][] rows;
+	private double[][] columns;
+	private double[] outputs;
+	private double[][] outColumns;
+
+	@Setup
+	public void setup() {
+		model = SyntheticSystems.build(type, inputs, mfs, rules, 42);
+		CompiledFIS fis = CompiledFIS.compile(model);
+		engine = new InferenceEngine(fis);
+		batch = new BatchEvaluator(fis);
+
+		rows = SyntheticSystems.inputs(model, ROWS, 7);
+		columns = new double[inputs][ROWS];
+		for (int j = 0; j < ROWS; j++) {
+			for (int i = 0; i < inputs; i++) {
+				columns[i][j] = rows[j][i];
+			}
+		}
+		outputs = new double[fis.getNumOutputs()];
+		outColumns = new double[fis.getNumOutputs()][ROWS];
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ROWS)
+	public void evaluateRows(Blackhole bh) {
+		for (double[] row : rows) {
+			engine.evaluate(row, outputs);
+			bh.consume(outputs[0]);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ROWS)
+	public double[][] evaluateBatch() {
+		batch.evaluate(columns, outColumns);
+		return outColumns;
+	}
+
+	@Benchmark
+	public CompiledFIS compile() {
+		return CompiledFIS.compile(model);
+	}
+}
@@ -0,0 +1,161 @@
+/**
+ * MembershipBenchmark Class
+ * Measures the evaluation of a membership function across its variable's
+ * range, for each type of function: as the Plotter's series for a graph, one
+ * value at a time as the sliders and inference do, and directly into a reused
+ * array. Plotter lives in the default package with the rest of the GUI, so it
+ * is reached through method handles
+ * 
+ * @author Craig Knott
+ */
+
+package bench;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import data.Constants;
+import data.MembershipFunction;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MembershipBenchmark {
+
+	@Param({ "gaussian", "gaussianb", "triangular", "trapezoidal", "bell",
+			"bellfractional", "sigmoid", "diffsigmoid", "prodsigmoid", "pi",
+			"s", "z", "singleton" })
+	public String type;
+
+	@Param({ "1000" })
+	public int interval;
+
+	private MembershipFunction mf;
+	private double[] xs;
+	private double[] out;
+
+	private Object plotter;
+	private MethodHandle getMFXYSeries;
+
+	@Setup
+	public void setup() throws Throwable {
+		switch (type) {
+		case "gaussian":
+			mf = new MembershipFunction("mf",
+					Constants.MEMBERSHIPFUNCTION_GAUSSIAN, new double[] { 1.5,
+							5, 1 });
+			break;
+		case "gaussianb":
+			mf = new MembershipFunction("mf",
+					Constants.MEMBERSHIPFUNCTION_GAUSSIAN_B, new double[] { 1,
+							4, 1.5, 6, 1 });
+			break;
+		case "triangular":
+			mf = new MembershipFunction("mf",
+					Constants.MEMBERSHIPFUNCTION_TRIANGULAR, new double[] { 2,
+							5, 8, 1 });
+			break;
+		case "trapezoidal":
+			mf = new MembershipFunction("mf",
+					Constants.MEMBERSHIPFUNCTION_TRAPEZOIDAL, new double[] {
+							1, 3, 7, 9, 1 });
+			break;
+		case "bell":
+			mf = new MembershipFunction("mf",
+					Constants.MEMBERSHIPFUNCTION_BELL, new double[] { 2, 4, 5,
+							1 });
+			break;
+		case "bellfractional":
+			mf = new MembershipFunction("mf",
+					Constants.MEMBERSHIPFUNCTION_BELL, new double[] { 2, 2.5,
+							5, 1 });
+			break;
+		case "sigmoid":
+			mf = new MembershipFunction("mf",
+					Constants.MEMBERSHIPFUNCTION_SIGMOID, new double[] { 2, 5,
+							1 });
+			break;
+		case "diffsigmoid":
+			mf = new MembershipFunction("mf",
+					Constants.MEMBERSHIPFUNCTION_DIFF_SIGMOID, new double[] {
+							5, 2, 5, 7, 1 });
+			break;
+		case "prodsigmoid":
+			mf = new MembershipFunction("mf",
+					Constants.MEMBERSHIPFUNCTION_PROD_SIGMOID, new double[] {
+							2, 3, -5, 8, 1 });
+			break;
+		case "pi":
+			mf = new MembershipFunction("mf", Constants.MEMBERSHIPFUNCTION_PI,
+					new double[] { 1, 4, 6, 9, 1 });
+			break;
+		case "s":
+			mf = new MembershipFunction("mf", Constants.MEMBERSHIPFUNCTION_S,
+					new double[] { 2, 8, 1 });
+			break;
+		case "z":
+			mf = new MembershipFunction("mf", Constants.MEMBERSHIPFUNCTION_Z,
+					new double[] { 2, 8, 1 });
+			break;
+		case "singleton":
+			mf = new MembershipFunction("mf",
+					Constants.MEMBERSHIPFUNCTION_SINGLETON, new double[] { 5,
+							1 });
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown type " + type);
+		}
+
+		xs = new double[interval + 1];
+		out = new double[interval + 1];
+		for (int j = 0; j < xs.length; j++) {
+			xs[j] = 10.0 * j / interval;
+		}
+
+		Class<?> plotterClass = Class.forName("Plotter");
+		MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+		MethodHandle constructor = lookup.findConstructor(plotterClass,
+				MethodType.methodType(void.class, MembershipFunction.class,
+						double.class, double.class));
+		plotter = constructor.invoke(mf, 0.0, 10.0);
+		getMFXYSeries = lookup.findVirtual(plotterClass, "getMFXYSeries",
+				MethodType.methodType(Class.forName("org.jfree.data.xy.XYSeries")));
+	}
+
+	@Benchmark
+	public Object plot() throws Throwable {
+		return getMFXYSeries.invoke(plotter);
+	}
+
+	@Benchmark
+	public double degree() {
+		double sum = 0;
+		for (int j = 0; j < xs.length; j++) {
+			sum += mf.degree(xs[j]);
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public double[] degrees() {
+		mf.degrees(xs, out, 0, xs.length);
+		return out;
+	}
+}
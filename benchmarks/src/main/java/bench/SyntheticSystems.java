@@ -0,0 +1,140 @@
+/**
+ * SyntheticSystems Class
+ * Builds randomly generated Fuzzy Inference Systems of a given size for the
+ * benchmarks. Every input ranges over [0, 10] with evenly spaced triangular
+ * and gaussian sets, and the output over [0, 100] with trapezoidal sets, or
+ * constant and linear levels for a Sugeno system
+ * 
+ * @author Craig Knott
+ */
+
+package bench;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import data.Constants;
+import data.MembershipFunction;
+import data.Model;
+import data.Rule;
+import data.SubRule;
+import data.Variable;
+
+public class SyntheticSystems {
+
+	public static Model build(String type, int inputs, int mfs, int rules,
+			long seed) {
+		/**
+		 * Builds a system
+		 * 
+		 * @param type
+		 *            String, either mamdani or sugeno
+		 * @param inputs
+		 *            integer number of input variables
+		 * @param mfs
+		 *            integer number of membership functions per variable, at
+		 *            least 2
+		 * @param rules
+		 *            integer number of rules
+		 * @param seed
+		 *            long seed for the rule base
+		 * 
+		 * @return Model holding the system
+		 */
+
+		Random rnd = new Random(seed);
+		Model model = new Model();
+		model.setName("synthetic");
+		model.setType(type);
+		if (model.isSugeno()) {
+			model.setAndMethod("prod");
+			model.setOrMethod("probor");
+			model.setDefuzzMethod("wtaver");
+		}
+
+		for (int i = 0; i < inputs; i++) {
+			ArrayList<MembershipFunction> list = new ArrayList<MembershipFunction>();
+			double width = 10.0 / (mfs - 1);
+			for (int k = 0; k < mfs; k++) {
+				double centre = width * k;
+				if (k % 2 == 0) {
+					list.add(new MembershipFunction("mf" + k,
+							Constants.MEMBERSHIPFUNCTION_TRIANGULAR,
+							new double[] { centre - width, centre,
+									centre + width, 1 }));
+				} else {
+					list.add(new MembershipFunction("mf" + k,
+							Constants.MEMBERSHIPFUNCTION_GAUSSIAN,
+							new double[] { width / 2, centre, 1 }));
+				}
+			}
+			model.getVarInList().add(
+					new Variable("input" + i, true, list, 0, 10));
+		}
+
+		ArrayList<MembershipFunction> list = new ArrayList<MembershipFunction>();
+		double width = 100.0 / (mfs - 1);
+		for (int k = 0; k < mfs; k++) {
+			double centre = width * k;
+			if (!model.isSugeno()) {
+				list.add(new MembershipFunction("mf" + k,
+						Constants.MEMBERSHIPFUNCTION_TRAPEZOIDAL, new double[] {
+								centre - width, centre - width / 4,
+								centre + width / 4, centre + width, 1 }));
+			} else if (k % 2 == 0) {
+				list.add(new MembershipFunction("mf" + k,
+						Constants.MEMBERSHIPFUNCTION_CONSTANT,
+						new double[] { centre }));
+			} else {
+				double[] coefficients = new double[inputs + 1];
+				for (int i = 0; i < inputs; i++) {
+					coefficients[i] = rnd.nextDouble() - 0.5;
+				}
+				coefficients[inputs] = centre;
+				list.add(new MembershipFunction("mf" + k,
+						Constants.MEMBERSHIPFUNCTION_LINEAR, coefficients));
+			}
+		}
+		model.getVarOutList().add(new Variable("output", false, list, 0, 100));
+
+		for (int r = 0; r < rules; r++) {
+			ArrayList<SubRule> antecedents = new ArrayList<SubRule>();
+			for (int i = 0; i < inputs; i++) {
+				int value = rnd.nextInt(4) == 0 ? 1 : 2 + rnd.nextInt(mfs);
+				antecedents.add(new SubRule("mf" + (value - 2), "input" + i, value,
+						value > 1 && rnd.nextInt(10) == 0));
+			}
+			ArrayList<SubRule> consequents = new ArrayList<SubRule>();
+			int value = 2 + rnd.nextInt(mfs);
+			consequents.add(new SubRule("mf" + (value - 2), "output", value,
+					false));
+			model.getRuleList().add(
+					new Rule(antecedents, consequents,
+							0.5 + rnd.nextDouble() / 2,
+							rnd.nextBoolean() ? Constants.CONNECTIVE_AND
+									: Constants.CONNECTIVE_OR));
+		}
+
+		return model;
+	}
+
+	public static double[][] inputs(Model model, int rows, long seed) {
+		/**
+		 * Draws random rows of inputs from the ranges of a system's inputs
+		 * 
+		 * @return array of rows
+		 */
+
+		Random rnd = new Random(seed);
+		int n = model.getVarInList().size();
+		double[][] data = new double[rows][n];
+		for (int j = 0; j < rows; j++) {
+			for (int i = 0; i < n; i++) {
+				Variable v = model.getVarInList().get(i);
+				data[j][i] = v.getRangeMin() + rnd.nextDouble()
+						* (v.getRangeMax() - v.getRangeMin());
+			}
+		}
+		return data;
+	}
+}
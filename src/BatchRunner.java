@@ -0,0 +1,317 @@
+/**
+ * BatchRunner Class
+ * Command line entry point which evaluates a Fuzzy Inference System over CSV
+ * files, or rows given on standard input, without opening a window. Nothing
+ * here uses AWT or Swing, so it runs on machines without a display and starts
+ * without the cost of loading them
+ * 
+ * @author Craig Knott
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+
+import data.Model;
+import inference.InferenceEngine;
+import io.BinaryFIS;
+import io.CsvBatchScorer;
+import io.FISReader;
+import io.InvalidFormatException;
+
+public class BatchRunner {
+
+	/*
+	 * Exit statuses
+	 */
+	public static final int EXIT_OK = 0;
+	public static final int EXIT_FAILED = 1;
+	public static final int EXIT_USAGE = 2;
+
+	private static final String USAGE = "Usage: BatchRunner [options] model.fis [input.csv ...]\n"
+			+ "\n"
+			+ "Evaluates a fis (or fisb) file over CSV files of inputs, writing each row\n"
+			+ "with the outputs of the system added on the end. With no input files, or\n"
+			+ "an input of -, rows are read from standard input. The first line of each\n"
+			+ "file names its columns, and the columns named after the input variables\n"
+			+ "are used as the inputs.\n"
+			+ "\n"
+			+ "Options:\n"
+			+ "  -o, --output PATH     file to write to when there is one input, or the\n"
+			+ "                        directory to write to when there are several.\n"
+			+ "                        One input is written to standard output by\n"
+			+ "                        default, several to scored_<name> beside each\n"
+			+ "  -t, --threads N       threads to evaluate on (default: all processors)\n"
+			+ "  -p, --precision N     digits written after the decimal point of each\n"
+			+ "                        output (default: in full)\n"
+			+ "  -r, --resolution N    points each output is sampled at for\n"
+			+ "                        defuzzification (default: "
+			+ InferenceEngine.DEFAULT_RESOLUTION
+			+ ")\n"
+			+ "  -c, --chunk-rows N    rows read and evaluated together (default: "
+			+ CsvBatchScorer.DEFAULT_CHUNK_ROWS
+			+ ")\n"
+			+ "      --cache N         remember the membership degrees of N distinct\n"
+			+ "                        values of each input, for inputs quantised to a\n"
+			+ "                        few levels (default: no cache)\n"
+			+ "      --no-header       inputs have no header line; their columns are the\n"
+			+ "                        input variables in order\n"
+			+ "  -q, --quiet           do not report the rows scored on standard error\n"
+			+ "  -h, --help            show this message\n";
+
+	/*
+	 * Options
+	 */
+	private File modelFile;
+	private ArrayList<String> inputs = new ArrayList<String>();
+	private File output;
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private int precision = -1;
+	private int resolution = InferenceEngine.DEFAULT_RESOLUTION;
+	private int chunkRows = CsvBatchScorer.DEFAULT_CHUNK_ROWS;
+	private int cache;
+	private boolean header = true;
+	private boolean quiet;
+
+	private InputStream stdin;
+	private PrintStream stdout;
+	private PrintStream stderr;
+
+	private BatchRunner(InputStream stdin, PrintStream stdout,
+			PrintStream stderr) {
+		this.stdin = stdin;
+		this.stdout = stdout;
+		this.stderr = stderr;
+	}
+
+	/*
+	 * System Main
+	 */
+
+	public static void main(String[] args) {
+		/**
+		 * Main method. Exits with 0 if every input was scored, 1 if any could
+		 * not be, or 2 if the arguments were not understood
+		 */
+		System.exit(run(args, System.in, System.out, System.err));
+	}
+
+	public static int run(String[] args, InputStream stdin, PrintStream stdout,
+			PrintStream stderr) {
+		/**
+		 * Runs the batch runner with the given arguments and streams
+		 * 
+		 * @param args
+		 *            array of command line arguments
+		 * @param stdin
+		 *            InputStream rows are read from when no input is given
+		 * @param stdout
+		 *            PrintStream results are written to when no output is
+		 *            given
+		 * @param stderr
+		 *            PrintStream errors and summaries are written to
+		 * 
+		 * @return integer exit status
+		 */
+
+		BatchRunner br = new BatchRunner(stdin, stdout, stderr);
+		try {
+			if (!br.parseArguments(args)) {
+				stdout.print(USAGE);
+				return EXIT_OK;
+			}
+		} catch (IllegalArgumentException iae) {
+			stderr.println("BatchRunner: " + iae.getMessage());
+			stderr.println("Try 'BatchRunner --help' for more information.");
+			return EXIT_USAGE;
+		}
+		return br.runAll();
+	}
+
+	/*
+	 * Arguments
+	 */
+
+	private boolean parseArguments(String[] args) {
+		/**
+		 * Reads the options and files given
+		 * 
+		 * @return boolean, false if help was asked for
+		 */
+
+		boolean options = true;
+		for (int i = 0; i < args.length; i++) {
+			String arg = args[i];
+
+			if (options && arg.equals("--")) {
+				options = false;
+			} else if (options && (arg.equals("-h") || arg.equals("--help"))) {
+				return false;
+			} else if (options && (arg.equals("-o") || arg.equals("--output"))) {
+				output = new File(value(args, ++i, arg));
+			} else if (options && (arg.equals("-t") || arg.equals("--threads"))) {
+				threads = number(args, ++i, arg, 1);
+			} else if (options
+					&& (arg.equals("-p") || arg.equals("--precision"))) {
+				precision = number(args, ++i, arg, 0);
+				if (precision > CsvBatchScorer.MAX_PRECISION) {
+					throw new IllegalArgumentException(arg
+							+ " cannot be more than "
+							+ CsvBatchScorer.MAX_PRECISION);
+				}
+			} else if (options
+					&& (arg.equals("-r") || arg.equals("--resolution"))) {
+				resolution = number(args, ++i, arg, 2);
+			} else if (options
+					&& (arg.equals("-c") || arg.equals("--chunk-rows"))) {
+				chunkRows = number(args, ++i, arg, 1);
+			} else if (options && arg.equals("--cache")) {
+				cache = number(args, ++i, arg, 0);
+			} else if (options && arg.equals("--no-header")) {
+				header = false;
+			} else if (options && (arg.equals("-q") || arg.equals("--quiet"))) {
+				quiet = true;
+			} else if (options && arg.startsWith("-") && !arg.equals("-")) {
+				throw new IllegalArgumentException("unknown option " + arg);
+			} else if (modelFile == null) {
+				modelFile = new File(arg);
+			} else {
+				inputs.add(arg);
+			}
+		}
+
+		if (modelFile == null) {
+			throw new IllegalArgumentException("no fis file given");
+		}
+		if (inputs.isEmpty()) {
+			inputs.add("-");
+		}
+		if (inputs.size() > 1 && output != null && !output.isDirectory()) {
+			throw new IllegalArgumentException(
+					"with several inputs, the output must be a directory");
+		}
+		if (inputs.size() > 1 && inputs.contains("-")) {
+			throw new IllegalArgumentException(
+					"standard input cannot be scored alongside files");
+		}
+		return true;
+	}
+
+	private static String value(String[] args, int i, String option) {
+		if (i >= args.length) {
+			throw new IllegalArgumentException(option + " needs a value");
+		}
+		return args[i];
+	}
+
+	private static int number(String[] args, int i, String option, int min) {
+		String value = value(args, i, option);
+		try {
+			int n = Integer.parseInt(value);
+			if (n >= min) {
+				return n;
+			}
+		} catch (NumberFormatException nfe) {
+		}
+		throw new IllegalArgumentException(option
+				+ " needs a whole number of at least " + min + ", not '"
+				+ value + "'");
+	}
+
+	/*
+	 * Scoring
+	 */
+
+	private int runAll() {
+		/**
+		 * Loads the system and scores every input
+		 * 
+		 * @return integer exit status
+		 */
+
+		CsvBatchScorer scorer;
+		try {
+			Model model;
+			if (modelFile.getName().endsWith(".fisb")) {
+				model = BinaryFIS.readModel(modelFile);
+			} else {
+				model = FISReader.read(modelFile);
+			}
+			scorer = new CsvBatchScorer(model, resolution);
+		} catch (IOException io) {
+			stderr.println(modelFile + ": " + io.getMessage());
+			return EXIT_FAILED;
+		} catch (InvalidFormatException ife) {
+			stderr.println(modelFile + ": " + ife.getMessage());
+			return EXIT_FAILED;
+		} catch (IllegalArgumentException iae) {
+			stderr.println(modelFile + ": " + iae.getMessage());
+			return EXIT_FAILED;
+		}
+
+		scorer.setParallelism(threads);
+		scorer.setPrecision(precision);
+		scorer.setChunkRows(chunkRows);
+		scorer.setCacheCapacity(cache);
+		scorer.setHeader(header);
+
+		int status = EXIT_OK;
+		for (String input : inputs) {
+			String name = input.equals("-") ? "standard input" : input;
+			try {
+				CsvBatchScorer.Summary summary = score(scorer, input);
+				if (!quiet) {
+					stderr.println(name + ": " + summary);
+				}
+			} catch (IOException io) {
+				stderr.println(name + ": " + io.getMessage());
+				status = EXIT_FAILED;
+			} catch (InvalidFormatException ife) {
+				stderr.println(name + ": " + ife.getMessage());
+				status = EXIT_FAILED;
+			} catch (RuntimeException re) {
+				// a failure evaluating one input should not stop the rest
+				stderr.println(name + ": "
+						+ (re.getMessage() != null ? re.getMessage() : re));
+				status = EXIT_FAILED;
+			}
+		}
+		return status;
+	}
+
+	private CsvBatchScorer.Summary score(CsvBatchScorer scorer, String input)
+			throws IOException, InvalidFormatException {
+		/**
+		 * Scores a single input, working out where its result goes
+		 */
+
+		if (input.equals("-")) {
+			if (output != null) {
+				return scorer.score(Channels.newChannel(stdin), output);
+			}
+			CsvBatchScorer.Summary summary = scorer.score(
+					Channels.newChannel(stdin), Channels.newChannel(stdout));
+			stdout.flush();
+			return summary;
+		}
+
+		File file = new File(input);
+		if (inputs.size() == 1) {
+			if (output != null) {
+				return scorer.score(file, output);
+			}
+			CsvBatchScorer.Summary summary = scorer.score(file,
+					Channels.newChannel(stdout));
+			stdout.flush();
+			return summary;
+		}
+
+		File directory = output != null ? output : file.getAbsoluteFile()
+				.getParentFile();
+		return scorer.score(file, new File(directory, "scored_"
+				+ file.getName()));
+	}
+}
@@ -18,18 +18,17 @@ import java.awt.event.ActionListener;
 import java.awt.event.FocusEvent;
 import java.awt.event.FocusListener;
 import java.awt.event.KeyEvent;
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
 
 import javax.swing.AbstractAction;
 import javax.swing.Action;
 import javax.swing.BorderFactory;
+import javax.swing.DefaultComboBoxModel;
 import javax.swing.JButton;
 import javax.swing.JComboBox;
 import javax.swing.JFileChooser;
@@ -41,18 +40,31 @@ import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JScrollBar;
 import javax.swing.JScrollPane;
+import javax.swing.JSpinner;
 import javax.swing.JSplitPane;
 import javax.swing.JTabbedPane;
 import javax.swing.JTextField;
 import javax.swing.KeyStroke;
+import javax.swing.SpinnerNumberModel;
 import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.filechooser.FileNameExtensionFilter;
 
 import data.Constants;
-import data.MembershipFunction;
+import data.Model;
 import data.Rule;
-import data.SubRule;
 import data.Variable;
+import inference.CompiledFIS;
+import inference.LookupTable;
+import inference.ParallelEvaluator;
+import io.BinaryFIS;
+import io.CsvBatchScorer;
+import io.EditJournal;
+import io.FISReader;
+import io.FISWriter;
+import io.InvalidFormatException;
 
 public class FISEditor {
 
@@ -70,6 +82,12 @@ public class FISEditor {
 	private JMenuItem file_saveAs;
 	private JMenuItem file_open;
 	private JMenuItem file_close;
+
+	private JMenu testMenu;
+	private JMenuItem test_batch;
+	private JMenuItem test_lookup;
+	private JMenuItem test_csv;
+	private JMenuItem test_surface;
 	
 	/*
 	 * Panels
@@ -93,6 +111,8 @@ public class FISEditor {
 	private JLabel impMethodLabel;
 	private JLabel aggMethodLabel;
 	private JLabel defuzzMethodLabel;
+	private JLabel parallelismLabel;
+	private JLabel typeLabel;
 
 	private JTextField fisNameTextField;
 	private JComboBox<String> andMethodComboBox;
@@ -100,9 +120,14 @@ public class FISEditor {
 	private JComboBox<String> impMethodComboBox;
 	private JComboBox<String> aggMethodComboBox;
 	private JComboBox<String> defuzzMethodComboBox;
+	private JSpinner parallelismSpinner;
+	private JComboBox<String> typeComboBox;
 
 	private final String[] methodsDefuzz = { "centroid", "bisector", "mom",
 			"som", "lom" };
+	private final String[] methodsDefuzzSugeno = { "wtaver", "wtsum" };
+	private final String[] types = { Constants.TYPE_MAMDANI,
+			Constants.TYPE_SUGENO };
 	private final String[] methodsImpAnd = { "min", "prod" };
 	private final String[] methodsOr = { "max", "probor" };
 	private final String[] methodsAgg = { "max", "sum", "probor" };
@@ -115,6 +140,13 @@ public class FISEditor {
 	private JButton addNewOutputButton;
 	private JButton addNewRuleButton;
 
+	/*
+	 * The rules panel shows one page of rules at a time, so that only the
+	 * rules on screen are ever created from a file's packed rules
+	 */
+	private static final int RULES_PER_PAGE = 50;
+	private int rulePage;
+
 	/*
 	 * Structure variables
 	 */
@@ -122,6 +154,15 @@ public class FISEditor {
 	private String fileName = "";
 	private boolean fileOpen;
 
+	/*
+	 * Journal of the edits made since the model was opened or saved, and
+	 * where unsaved work is journaled before it has a file of its own
+	 */
+	private EditJournal journal;
+	private static final File UNTITLED = new File(
+			System.getProperty("user.home"), ".fuzzysetconstructor"
+					+ File.separator + "untitled.fis");
+
 	private SuperController c;
 
 	/*
@@ -178,7 +219,7 @@ public class FISEditor {
 		
 		public void actionPerformed(ActionEvent e) {
 	      
-		SliderPanel sp = new SliderPanel();
+		SliderPanel sp = new SliderPanel(model);
 		sp.equals(null);
 	    }
 	  });
@@ -455,24 +496,31 @@ public class FISEditor {
 
 		JPanel labelPane = new JPanel(new GridBagLayout());
 
+		int numRules = model.getRuleList().size();
+		int lastPage = Math.max(0, (numRules - 1) / RULES_PER_PAGE);
+		rulePage = Math.min(Math.max(rulePage, 0), lastPage);
+		int first = rulePage * RULES_PER_PAGE;
+		int last = Math.min(numRules, first + RULES_PER_PAGE);
+
 		int y = 0;
 
-		for (Rule r : model.getRuleList()) {
+		for (int i = first; i < last; i++) {
 			d.gridx = 0;
 			d.gridy = y;
 
-			labelPane.add(new JLabel("<html>" + r.toString() + "</html>"), d);
+			labelPane.add(new JLabel("<html>"
+					+ model.getRuleList().view(i).toString() + "</html>"), d);
 
 			d.gridx = 1;
 			d.anchor = GridBagConstraints.WEST;
 			d.fill = GridBagConstraints.HORIZONTAL;
 			d.weightx = -1;
-			final int x = y;
+			final int x = i;
 			JButton tempEdit = new JButton("Edit");
 
 			tempEdit.addActionListener(new ActionListener() {
 				public void actionPerformed(ActionEvent e) {
-					editRule(model.getRuleList().get(x), x);
+					editRule(model.getRuleList().view(x), x);
 				}
 			});
 			labelPane.add(tempEdit, d);
@@ -498,6 +546,38 @@ public class FISEditor {
 		d.gridy = 0;
 		returnPanel.add(labelPane, d);
 
+		if (lastPage > 0) {
+			JPanel pagePane = new JPanel();
+
+			JButton previousPage = new JButton("Previous");
+			previousPage.setEnabled(rulePage > 0);
+			previousPage.addActionListener(new ActionListener() {
+				public void actionPerformed(ActionEvent e) {
+					showRulePage(rulePage - 1);
+				}
+			});
+			pagePane.add(previousPage);
+
+			pagePane.add(new JLabel("Rules " + (first + 1) + " to " + last
+					+ " of " + numRules));
+
+			JButton nextPage = new JButton("Next");
+			nextPage.setEnabled(rulePage < lastPage);
+			nextPage.addActionListener(new ActionListener() {
+				public void actionPerformed(ActionEvent e) {
+					showRulePage(rulePage + 1);
+				}
+			});
+			pagePane.add(nextPage);
+
+			d.gridy = 2;
+			d.anchor = GridBagConstraints.WEST;
+			d.fill = GridBagConstraints.NONE;
+			d.weightx = -1;
+			d.weighty = -1;
+			returnPanel.add(pagePane, d);
+		}
+
 		addNewRuleButton = new JButton("New");
 		d.gridx = 0;
 		d.gridy = 1;
@@ -555,6 +635,27 @@ public class FISEditor {
 
 		menuBar.add(fileMenu);
 
+		testMenu = new JMenu("Test");
+		testMenu.setMnemonic('T');
+
+		test_batch = new JMenuItem("Batch Evaluation");
+		test_batch.setMnemonic('B');
+
+		test_lookup = new JMenuItem("Lookup Table Error");
+		test_lookup.setMnemonic('L');
+
+		test_surface = new JMenuItem("Control Surface");
+		test_surface.setMnemonic('S');
+
+		test_csv = new JMenuItem("Score CSV File");
+		test_csv.setMnemonic('C');
+
+		testMenu.add(test_batch);
+		testMenu.add(test_lookup);
+		testMenu.add(test_surface);
+		testMenu.add(test_csv);
+
+		menuBar.add(testMenu);
 	}
 	
 	
@@ -615,6 +716,16 @@ public class FISEditor {
 		c.gridy = 2;
 		propertiesPanel.add(defuzzMethodLabel, c);
 
+		parallelismLabel = new JLabel("Parallelism");
+		c.gridx = 2;
+		c.gridy = 3;
+		propertiesPanel.add(parallelismLabel, c);
+
+		typeLabel = new JLabel("System Type");
+		c.gridx = 0;
+		c.gridy = 4;
+		propertiesPanel.add(typeLabel, c);
+
 		fisNameTextField = new JTextField();
 		fisNameTextField.addFocusListener(new FocusListener() {
 
@@ -657,6 +768,29 @@ public class FISEditor {
 		c.gridy = 2;
 		propertiesPanel.add(defuzzMethodComboBox, c);
 
+		int processors = Runtime.getRuntime().availableProcessors();
+		parallelismSpinner = new JSpinner(new SpinnerNumberModel(processors,
+				1, Math.max(64, processors), 1));
+		c.gridx = 3;
+		c.gridy = 3;
+		propertiesPanel.add(parallelismSpinner, c);
+
+		typeComboBox = new JComboBox<String>(types);
+		c.gridx = 1;
+		c.gridy = 4;
+		propertiesPanel.add(typeComboBox, c);
+
+		/*
+		 * Keep the model's FIS properties in step with the panel
+		 */
+		propertyActions pa = new propertyActions();
+		fisNameTextField.getDocument().addDocumentListener(pa);
+		typeComboBox.addActionListener(pa);
+		andMethodComboBox.addActionListener(pa);
+		orMethodComboBox.addActionListener(pa);
+		impMethodComboBox.addActionListener(pa);
+		aggMethodComboBox.addActionListener(pa);
+		defuzzMethodComboBox.addActionListener(pa);
 	}
 
 	public void createTabsPanel() {
@@ -763,6 +897,24 @@ public class FISEditor {
 	 * Data retreival methods
 	 */
 
+	public Model getModel() {
+		/**
+		 * Returns the model holding the FIS being edited
+		 * 
+		 * @return Model of the FIS
+		 */
+		return model;
+	}
+
+	public int getParallelism() {
+		/**
+		 * Returns the number of threads to use when evaluating the FIS
+		 * 
+		 * @return integer, the parallelism chosen on the properties panel
+		 */
+		return (Integer) parallelismSpinner.getValue();
+	}
+
 	public JPanel getContent() {
 		/**
 		 * Returns JPanel with object content
@@ -800,161 +952,57 @@ public class FISEditor {
 	}
 
 	/*
-	 * Data retreival, as string
+	 * Data manipulation methods
 	 */
 
-	private String getFISParameters() {
-		/**
-		 * Constructs and returns a list of all the parameters of the FIS
-		 * structure, as a string, similar to the format specified by a MATLAB
-		 * fis object
-		 * 
-		 * @return String representing parameters of the FIS
-		 */
-
-		StringBuilder sb = new StringBuilder();
-		sb.append("[System]\n");
-
-		if (fisNameTextField.getText().equals("")) {
-			sb.append("Name='unnamed'\n");
-		} else {
-			sb.append("Name='" + fisNameTextField.getText() + "'\n");
-		}
-		sb.append("Type='mamdani'\n");
-		sb.append("Version=" + Constants.SYSTEM_VERSION + "\n");
-		sb.append("NumInputs=" + model.getVarInList().size() + "\n");
-		sb.append("NumOutputs=" + model.getVarOutList().size() + "\n");
-		sb.append("NumRules=" + model.getRuleList().size() + "\n");
-		sb.append("AndMethod='" + andMethodComboBox.getSelectedItem() + "'\n");
-		sb.append("OrMethod='" + orMethodComboBox.getSelectedItem() + "'\n");
-		sb.append("ImpMethod='" + impMethodComboBox.getSelectedItem() + "'\n");
-		sb.append("AggMethod='" + aggMethodComboBox.getSelectedItem() + "'\n");
-		sb.append("DefuzzMethod='" + defuzzMethodComboBox.getSelectedItem()
-				+ "'\n\n");
-		return sb.toString();
-	}
-
-	private String getMembershipFunctions(Variable v) {
+	public void setFileName(String filename) {
 		/**
-		 * Returns the membership functions of a given variable, v, as a string,
-		 * in the same format as a MATLAB fis object
-		 * 
-		 * @param v
-		 *            Variable to retreive membership functions from
+		 * Sets the given filename to be the FISEditor filename
 		 * 
-		 * @return String with a list of the membership functions in v
+		 * @param filename
+		 *            a string to set as the filename variable
 		 */
-
-		StringBuilder sb = new StringBuilder();
-
-		int i = 0;
-		for (MembershipFunction mf : v.getMFs()) {
-			sb.append("MF" + ++i);
-			sb.append("='" + mf.getName() + "'");
-			sb.append(":'" + mf.intToType(mf.getType()) + "',[");
-
-			for (int j = 0; j < mf.getParametersSize(); j++) {
-				sb.append(mf.getParameter(j));
-				if (j + 1 != mf.getParametersSize()) {
-					sb.append(" ");
-				}
-			}
-
-			sb.append("]\n");
-		}
-		return sb.toString();
+		this.fileName = filename;
 	}
 
-	private String getInputVars() {
+	private void updateModelProperties() {
 		/**
-		 * Returns the input variables the fis, as a string, in the same format
-		 * as a MATLAB fis object
-		 * 
-		 * @return String with a list of the input variables
+		 * Copies the values on the fis properties panel into the model, so
+		 * that the model can be evaluated without reference to the GUI
 		 */
-
-		StringBuilder sb = new StringBuilder();
-
-		int i = 0;
-		for (Variable v : model.getVarInList()) {
-			sb.append("[Input" + ++i + "]\n");
-			sb.append("Name='" + v.getName() + "'\n");
-			sb.append("Range=[" + v.getRangeMin() + " " + v.getRangeMax()
-					+ "]\n");
-			sb.append("NumMFs=" + v.getMFs().size() + "\n");
-
-			sb.append(getMembershipFunctions(v));
-
-			sb.append("\n");
+		if (model == null) {
+			return;
 		}
 
-		return sb.toString();
-	}
-
-	private String getOutputVars() {
-		/**
-		 * Returns the output variables the fis, as a string, in the same format
-		 * as a MATLAB fis object
-		 * 
-		 * @return String with a list of the output variables
-		 */
-
-		StringBuilder sb = new StringBuilder();
-
-		int i = 0;
-		for (Variable v : model.getVarOutList()) {
-			sb.append("[Output" + ++i + "]\n");
-			sb.append("Name='" + v.getName() + "'\n");
-
-			sb.append("Range=[" + v.getRangeMin() + " " + v.getRangeMax()
-					+ "]\n");
-			sb.append("NumMFs=" + v.getMFs().size() + "\n");
+		model.setName(fisNameTextField.getText());
+		model.setType((String) typeComboBox.getSelectedItem());
+		model.setAndMethod((String) andMethodComboBox.getSelectedItem());
+		model.setOrMethod((String) orMethodComboBox.getSelectedItem());
+		model.setImpMethod((String) impMethodComboBox.getSelectedItem());
+		model.setAggMethod((String) aggMethodComboBox.getSelectedItem());
+		model.setDefuzzMethod((String) defuzzMethodComboBox.getSelectedItem());
 
-			sb.append(getMembershipFunctions(v));
-
-			sb.append("\n");
+		if (journal != null) {
+			journal.propertiesChanged(model);
 		}
-
-		return sb.toString();
 	}
 
-	private String getRules() {
+	private void updateSystemType() {
 		/**
-		 * Returns the rlues of the fis, as a string, in the same format as a
-		 * MATLAB fis object. Makes use of the 'asNumberString' method in the
-		 * Rule class
-		 * 
-		 * @return String with a list of the fis rules
+		 * Offers the defuzzification methods of the chosen system type. A
+		 * Sugeno system takes the weighted average (or sum) of its rule
+		 * outputs, so has no use for the implication and aggregation methods
 		 */
+		boolean sugeno = Constants.TYPE_SUGENO.equals(typeComboBox
+				.getSelectedItem());
 
-		if (model.getRuleList().size() > 0) {
-
-			StringBuilder sb = new StringBuilder();
-			sb.append("[Rules]\n");
-
-			for (Rule r : model.getRuleList()) {
-				sb.append(r.asNumberString());
-			}
-
-			return sb.toString();
-		} else {
-			return "";
-		}
+		Object defuzz = defuzzMethodComboBox.getSelectedItem();
+		defuzzMethodComboBox.setModel(new DefaultComboBoxModel<String>(
+				sugeno ? methodsDefuzzSugeno : methodsDefuzz));
+		defuzzMethodComboBox.setSelectedItem(defuzz);
 
-	}
-
-	/*
-	 * Data manipulation methods
-	 */
-
-	public void setFileName(String filename) {
-		/**
-		 * Sets the given filename to be the FISEditor filename
-		 * 
-		 * @param filename
-		 *            a string to set as the filename variable
-		 */
-		this.fileName = filename;
+		impMethodComboBox.setEnabled(!sugeno);
+		aggMethodComboBox.setEnabled(!sugeno);
 	}
 
 	public void clearFISProperties() {
@@ -962,6 +1010,7 @@ public class FISEditor {
 		 * Clears all the input fields on the fis properties panel
 		 */
 		fisNameTextField.setText("");
+		typeComboBox.setSelectedIndex(0);
 		andMethodComboBox.setSelectedIndex(0);
 		andMethodComboBox.setSelectedIndex(0);
 		orMethodComboBox.setSelectedIndex(0);
@@ -979,6 +1028,7 @@ public class FISEditor {
 		model.getVarInList().clear();
 		model.getVarOutList().clear();
 		model.getRuleList().clear();
+		rulePage = 0;
 
 		inputsPanel.removeAll();
 
@@ -1014,6 +1064,27 @@ public class FISEditor {
 		 */
 
 		model.getRuleList().remove(x);
+		journal.ruleDeleted(x, model);
+		rulesPanel.removeAll();
+
+		rulesPanel = createNewRulesPanel();
+		rulesPanel.setBorder(BorderFactory.createTitledBorder("System Rules"));
+
+		refreshTabs();
+		refreshView();
+
+		tabbedPane.setSelectedIndex(2);
+	}
+
+	private void showRulePage(int page) {
+		/**
+		 * Shows another page of the rules panel
+		 * 
+		 * @param page
+		 *            integer, the page to show, counting from 0
+		 */
+
+		rulePage = page;
 		rulesPanel.removeAll();
 
 		rulesPanel = createNewRulesPanel();
@@ -1039,8 +1110,8 @@ public class FISEditor {
 		RuleEditor re = new RuleEditor(r, this);
 
 		Rule rule = re.getRule();
-		model.getRuleList().add(x, rule);
-		model.getRuleList().remove(x + 1);
+		model.getRuleList().set(x, rule);
+		journal.ruleChanged(rule, x, model);
 
 		rulesPanel.removeAll();
 
@@ -1093,13 +1164,8 @@ public class FISEditor {
 			refreshAllPanels();
 		}
 
-		for (Rule r : model.getRuleList()) {
-			if (input) {
-				r.getInputs().remove(x);
-			} else {
-				r.getOutputs().remove(x);
-			}
-		}
+		model.getRuleList().removeColumn(input, x);
+		journal.variableDeleted(input, x, model);
 
 		rulesPanel.removeAll();
 
@@ -1130,6 +1196,7 @@ public class FISEditor {
 					Variable var = ve.getVariable();
 					model.getVarInList().add(x, var);
 					model.getVarInList().remove(x + 1);
+					journal.variableChanged(var, x, model);
 
 					inputsPanel.removeAll();
 
@@ -1154,6 +1221,7 @@ public class FISEditor {
 					Variable var = ve.getVariable();
 					model.getVarOutList().add(x, var);
 					model.getVarOutList().remove(x + 1);
+					journal.variableChanged(var, x, model);
 
 					outputsPanel.removeAll();
 
@@ -1197,13 +1265,15 @@ public class FISEditor {
 			saveFileAs();
 		} else {
 
-			String out = createSaveFile();
+			updateModelProperties();
 
 			try {
-				FileWriter fileWriter = new FileWriter(file);
-				BufferedWriter output = new BufferedWriter(fileWriter);
-				output.write(out);
-				output.close();
+				if (fileName.endsWith(".fisb")) {
+					BinaryFIS.write(model, file);
+				} else {
+					FISWriter.write(model, file);
+				}
+				startJournal(file, true);
 			} catch (IOException e) {
 				JPanel subContent = new JPanel();
 				subContent
@@ -1219,7 +1289,7 @@ public class FISEditor {
 		/**
 		 * Saves the file to a new file on the hard drive
 		 */
-		String out = createSaveFile();
+		updateModelProperties();
 
 		JFileChooser jfc = new JFileChooser(System.getProperty("user.dir"));
 		int returnVal = jfc.showSaveDialog(null);
@@ -1228,16 +1298,21 @@ public class FISEditor {
 			try {
 				String file = jfc.getSelectedFile().getAbsoluteFile()
 						.toString();
-				if (file.endsWith(".fis")) {
-					jfc.setSelectedFile(new File(file.substring(0,
-							file.length() - 4)));
-				}
+				File saved;
+				if (file.endsWith(".fisb")) {
+					saved = new File(file);
+					BinaryFIS.write(model, saved);
+				} else {
+					if (file.endsWith(".fis")) {
+						jfc.setSelectedFile(new File(file.substring(0,
+								file.length() - 4)));
+					}
 
-				FileWriter fileWriter = new FileWriter(jfc.getSelectedFile()
-						.getAbsoluteFile() + ".fis");
-				BufferedWriter output = new BufferedWriter(fileWriter);
-				output.write(out);
-				output.close();
+					saved = new File(jfc.getSelectedFile().getAbsoluteFile()
+							+ ".fis");
+					FISWriter.write(model, saved);
+				}
+				startJournal(saved, true);
 			} catch (IOException e) {
 				JPanel subContent = new JPanel();
 				subContent
@@ -1252,20 +1327,30 @@ public class FISEditor {
 		}
 	}
 
-	private String createSaveFile() {
+	private void showModelProperties() {
 		/**
-		 * Returns a String representing an entire fis save structutre,
-		 * comprised of each of the individual "getX" methods
-		 * 
-		 * @return String representing a fis
+		 * Shows the FIS properties held by the model on the properties panel.
+		 * The system type is set first, as it decides which defuzzification
+		 * methods are offered
 		 */
 
-		StringBuilder out = new StringBuilder();
-		out.append(getFISParameters());
-		out.append(getInputVars());
-		out.append(getOutputVars());
-		out.append(getRules());
-		return out.toString();
+		String name = model.getName();
+		String type = model.getType();
+		String andMethod = model.getAndMethod();
+		String orMethod = model.getOrMethod();
+		String impMethod = model.getImpMethod();
+		String aggMethod = model.getAggMethod();
+		String defuzzMethod = model.getDefuzzMethod();
+
+		fisNameTextField.setText(name);
+		typeComboBox.setSelectedItem(type);
+		andMethodComboBox.setSelectedItem(andMethod);
+		orMethodComboBox.setSelectedItem(orMethod);
+		impMethodComboBox.setSelectedItem(impMethod);
+		aggMethodComboBox.setSelectedItem(aggMethod);
+		defuzzMethodComboBox.setSelectedItem(defuzzMethod);
+
+		updateModelProperties();
 	}
 
 	public void openFile(String filePath) {
@@ -1278,6 +1363,9 @@ public class FISEditor {
 
 		fileOpen = true;
 		loadFile(filePath);
+		if (journal == null) {
+			openUntitled();
+		}
 	}
 
 	private void newFile() {
@@ -1291,58 +1379,11 @@ public class FISEditor {
 				"Overwrite Warning", JOptionPane.WARNING_MESSAGE);
 		if (closeSystemWarning == JOptionPane.OK_OPTION) {
 			clearAllFields();
+			startJournal(UNTITLED, false);
 		}
 
 	}
 
-	private boolean isValidFile(String line) throws InvalidFormatException {
-		/**
-		 * Method that uses regular expressions to check whether or not the file
-		 * is in the correct format. Any malformed parts will result in an
-		 * InvalidFormatException being thrown
-		 * 
-		 * @param line
-		 *            String representing the file read in
-		 * 
-		 * @return boolean representing validity of the file, always returns
-		 *         true, as any invalid file will exception
-		 * 
-		 */
-
-		String[] validInput = line.split("\n\n");
-
-		if (validInput[0]
-				.matches("\\[System]\nName='\\w+'\nType='\\w+'\nVersion=(\\d+\\.+\\d+|\\d+)\nNumInputs=\\d+\nNumOutputs=\\d+\nNumRules=\\d+\nAndMethod='\\w+'\nOrMethod='\\w+'\nImpMethod='\\w+'\nAggMethod='\\w+'\nDefuzzMethod='\\w+'")) {
-			for (int i = 0; i < validInput.length; i++) {
-				if (validInput[i].startsWith("[Input")) {
-					if (!(validInput[i]
-							.matches("\\[Input\\d+]\nName='\\w+'\nRange=\\[(-)?(\\d+|\\d+\\.\\d+) ((-)?\\d+|\\d+\\.\\d+)]\nNumMFs=(\\d+|\\d+\\.\\d+)\n(MF\\d+='\\w+':'\\w+',\\[((-)?(\\d+\\.\\d+|\\d+)( |))*])(.|\n| )*"))) {
-						throw new InvalidFormatException(
-								"This file contains a malformed input variable(s), please check that they are of the correct format");
-					}
-
-				} else if (validInput[i].startsWith("[Output")) {
-					if (!(validInput[i]
-							.matches("\\[Output\\d+]\nName='\\w+'\nRange=\\[(-)?(\\d+|\\d+\\.\\d+) ((-)?\\d+|\\d+\\.\\d+)]\nNumMFs=(\\d+|\\d+\\.\\d+)\n(MF\\d+='\\w+':'\\w+',\\[((-)?(\\d+\\.\\d+|\\d+)( |))*])(.|\n| )*"))) {
-
-						throw new InvalidFormatException(
-								"This file contains a malformed output variable(s), please check that they are of the correct format");
-					}
-				} else if (validInput[i].startsWith("[Rule")) {
-					if (!(validInput[i]
-							.matches("\\[Rules]\n(((|-)\\d+| )*,(|-)((|-)\\d+| )*\\((\\d+\\.\\d+|\\d+)\\) : \\d+(\n|))*"))) {
-						throw new InvalidFormatException(
-								"This file contains a malformed rule(s), please check that they are of the correct format");
-					}
-				}
-			}
-		} else {
-			throw new InvalidFormatException(
-					"This file contains malformed system parameters, please check that they are of the correct format");
-		}
-		return true;
-	}
-
 	private void loadFile(String filePath) {
 		/**
 		 * Loads a fis from file. Firstly asked if the user is certain they wish
@@ -1372,7 +1413,7 @@ public class FISEditor {
 
 			jfc = new JFileChooser(System.getProperty("user.dir"));
 			jfc.setFileFilter(new FileNameExtensionFilter("FIS Structures",
-					"fis"));
+					"fis", "fisb"));
 			returnVal = jfc.showOpenDialog(null);
 		} else {
 			jfc = new JFileChooser();
@@ -1381,101 +1422,24 @@ public class FISEditor {
 
 		if (!(returnVal == JFileChooser.CANCEL_OPTION)) {
 
-			StringBuilder sb = new StringBuilder();
-			String line = null;
-			ArrayList<String> stringArray = new ArrayList<String>();
-
+			boolean loaded = false;
 			try {
 				fileName = jfc.getSelectedFile().getAbsoluteFile().toString();
+				File file = new File(fileName);
 
-				@SuppressWarnings("resource")
-				BufferedReader reader = new BufferedReader(new FileReader(
-						jfc.getSelectedFile()));
-				line = reader.readLine();
-
-				while (line != null) {
-					sb.append(line + "\n");
-					line = reader.readLine();
-				}
-
-				line = sb.toString();
-
-				if (isValidFile(line)) {
-					for (String inputFile : line.split("\n")) {
-						stringArray.add(inputFile);
-					}
-
-					/*
-					 * Import FIS Parameters
-					 */
-
-					String title = (stringArray.get(1)).substring(6,
-							stringArray.get(1).length() - 1);
-
-					fisNameTextField.setText(title);
-
-					andMethodComboBox.setSelectedItem(extractString(stringArray
-							.get(7)));
-					orMethodComboBox.setSelectedItem(extractString(stringArray
-							.get(8)));
-					impMethodComboBox.setSelectedItem(extractString(stringArray
-							.get(9)));
-					aggMethodComboBox.setSelectedItem(extractString(stringArray
-							.get(10)));
-					defuzzMethodComboBox
-							.setSelectedItem(extractString(stringArray.get(11)));
-
-					/*
-					 * Import variables and rules
-					 */
-
-					for (int i = 13; i < stringArray.size(); i++) {
-						if (stringArray.get(i).startsWith("[Input")) {
-
-							String name = stringArray.get(i + 1).substring(6,
-									stringArray.get(i + 1).length() - 1);
-							double min = extractRange(stringArray.get(i + 2))[0];
-							double max = extractRange(stringArray.get(i + 2))[1];
-
-							ArrayList<MembershipFunction> mfs = new ArrayList<MembershipFunction>();
-
-							for (int j = 0; j < Double
-									.valueOf(extractValue(stringArray
-											.get(i + 3))); j++) {
-								mfs.add(extractMF(stringArray.get(i + 4 + j)));
-							}
-
-							Variable v = new Variable(name, true, mfs, min, max);
-							model.getVarInList().add(v);
-
-						} else if (stringArray.get(i).startsWith("[Output")) {
-
-							String name = stringArray.get(i + 1).substring(6,
-									stringArray.get(i + 1).length() - 1);
-							double min = extractRange(stringArray.get(i + 2))[0];
-							double max = extractRange(stringArray.get(i + 2))[1];
-
-							ArrayList<MembershipFunction> mfs = new ArrayList<MembershipFunction>();
-
-							for (int j = 0; j < Double
-									.valueOf(extractValue(stringArray
-											.get(i + 3))); j++) {
-								mfs.add(extractMF(stringArray.get(i + 4 + j)));
-							}
-
-							Variable v = new Variable(name, false, mfs, min,
-									max);
-							model.getVarOutList().add(v);
-
-						} else if (stringArray.get(i).startsWith("[Rules")) {
-							for (int k = i + 1; k < stringArray.size(); k++) {
-								model.getRuleList().add(
-										extractRules(stringArray.get(k)));
-							}
-						}
+				if (recoverJournal(file)) {
+					startJournal(file, false);
+				} else {
+					if (fileName.endsWith(".fisb")) {
+						BinaryFIS.read(file).unpack(model);
+					} else {
+						FISReader.read(file, model);
 					}
-
+					startJournal(file, true);
 				}
+				loaded = true;
+				rulePage = 0;
+				showModelProperties();
 
 			} catch (IOException io) {
 
@@ -1496,194 +1460,298 @@ public class FISEditor {
 						"Bad File Detected", JOptionPane.WARNING_MESSAGE);
 
 			}
+			if (!loaded) {
+				// the model was left as it was, so it is journaled as an
+				// unsaved system rather than against the file that failed
+				fileName = "";
+				startJournal(UNTITLED, false);
+			}
 			refreshAllPanels();
 			fileOpen = true;
 		}
 	}
 
-	public Rule extractRules(String line) throws InvalidFormatException {
+	/*
+	 * Autosave
+	 */
+
+	public void openUntitled() {
 		/**
-		 * Returns the rule specified by the given string
-		 * 
-		 * @param line
-		 *            The string to extract the rule from
+		 * Starts editing a new, unsaved system, first offering to restore any
+		 * unsaved system left by a crash
+		 */
+		if (recoverJournal(UNTITLED)) {
+			showModelProperties();
+			refreshAllPanels();
+		}
+		startJournal(UNTITLED, false);
+	}
+
+	private void startJournal(File file, boolean saved) {
+		/**
+		 * Starts journaling the edits made to the model, discarding the
+		 * journal of what was edited before, which has now been saved or
+		 * abandoned
 		 * 
-		 * @return a Rule that is specified by the string
+		 * @param file
+		 *            File the model is saved to
+		 * @param saved
+		 *            boolean, whether the model is exactly what the file
+		 *            holds
 		 */
+		if (journal != null) {
+			journal.discard();
+		}
+		UNTITLED.getParentFile().mkdirs();
+		journal = new EditJournal(file, model, saved);
+	}
 
-		String[] subSections = line.split(", |\\(|\\) : ");
-		/*
-		 * Splits the rule into the format
-		 * "Inputs\n Outputs\n Weight\n Connective"
+	private boolean recoverJournal(File file) {
+		/**
+		 * If unsaved edits to a file were left in a journal, offers to
+		 * restore them into the (empty) model
+		 * 
+		 * @param file
+		 *            File the model is saved to
+		 * 
+		 * @return boolean, whether the edits were restored
 		 */
 
-		String[] inputs = subSections[0].split(" ");
-		String[] outputs = subSections[1].split(" ");
-		double weight = Double.valueOf(subSections[2]);
-		int connective = Integer.valueOf(subSections[3]);
+		if (!EditJournal.hasJournal(file)) {
+			return false;
+		}
+		int restore = JOptionPane.showConfirmDialog(null, "Unsaved changes to "
+				+ file.getName()
+				+ " were autosaved. Do you wish to restore them?",
+				"Autosave", JOptionPane.YES_NO_OPTION);
+		if (restore != JOptionPane.YES_OPTION) {
+			return false;
+		}
 
-		ArrayList<SubRule> inputSubRules = new ArrayList<SubRule>();
-		ArrayList<SubRule> outputSubRules = new ArrayList<SubRule>();
+		try {
+			EditJournal.recover(file, model);
+			return true;
+		} catch (IOException io) {
+			JOptionPane.showMessageDialog(null, "The autosave could not be read: "
+					+ io.getMessage(), "Autosave", JOptionPane.WARNING_MESSAGE);
+		} catch (InvalidFormatException ife) {
+			JOptionPane.showMessageDialog(null, "The autosave could not be read: "
+					+ ife.getMessage(), "Autosave", JOptionPane.WARNING_MESSAGE);
+		}
+		model.getVarInList().clear();
+		model.getVarOutList().clear();
+		model.getRuleList().clear();
+		return false;
+	}
 
-		if (inputs.length != model.getVarInList().size()
-				|| outputs.length != model.getVarOutList().size()) {
-			throw new InvalidFormatException(
-					"This file contains a malformed rule(s), please check that they are of the correct format");
-		} else {
+	/*
+	 * Testing
+	 */
 
-			for (int i = 0; i < inputs.length; i++) {
-				boolean negated = inputs[i].startsWith("-");
+	private void testBatchEvaluation() {
+		/**
+		 * Evaluates the FIS over a batch of random inputs, drawn from the
+		 * range of each input variable, and reports the throughput achieved
+		 * with the parallelism chosen on the properties panel
+		 */
 
-				int value = Integer.valueOf(removeMinus(inputs[i]));
+		String answer = JOptionPane.showInputDialog(null,
+				"Number of rows to evaluate", "1000000");
+		if (answer == null) {
+			return;
+		}
 
-				if (value == 0) {
-					SubRule sr = new SubRule("none", model.getVarInList()
-							.get(i).getName(), value, negated);
-					inputSubRules.add(sr);
-				} else {
-					SubRule sr = new SubRule(model.getVarInList().get(i)
-							.getMfAtIndex(value - 1).getName(), model
-							.getVarInList().get(i).getName(), value + 1,
-							negated);
-					inputSubRules.add(sr);
-				}
-			}
+		final int rows;
+		final CompiledFIS fis;
+		try {
+			rows = Integer.valueOf(answer.trim());
+			fis = CompiledFIS.compile(model);
+		} catch (NumberFormatException nfe) {
+			JOptionPane.showMessageDialog(null,
+					"Please make sure you are entering a whole number",
+					"Number Required", JOptionPane.ERROR_MESSAGE);
+			return;
+		} catch (IllegalArgumentException iae) {
+			JOptionPane.showMessageDialog(null, iae.getMessage(),
+					"FIS Cannot Be Evaluated", JOptionPane.ERROR_MESSAGE);
+			return;
+		}
 
-			for (int i = 0; i < outputs.length; i++) {
-				boolean negated = outputs[i].startsWith("-");
+		final int threads = getParallelism();
+		test_batch.setEnabled(false);
+
+		// the ranges are read here, as the model may be edited while the
+		// batch is being evaluated
+		final double[] mins = new double[fis.getNumInputs()];
+		final double[] widths = new double[fis.getNumInputs()];
+		for (int i = 0; i < mins.length; i++) {
+			Variable v = model.getVarInList().get(i);
+			mins[i] = v.getRangeMin();
+			widths[i] = v.getRangeMax() - v.getRangeMin();
+		}
 
-				int value = Integer.valueOf(removeMinus(outputs[i]));
+		new SwingWorker<Long, Void>() {
 
-				if (value == 0) {
-					SubRule sr = new SubRule("none", model.getVarOutList()
-							.get(i).getName(), value, negated);
-					outputSubRules.add(sr);
-				} else {
-					SubRule sr = new SubRule(model.getVarOutList().get(i)
-							.getMfAtIndex(value - 1).getName(), model
-							.getVarOutList().get(i).getName(), value + 1,
-							negated);
-					outputSubRules.add(sr);
+			protected Long doInBackground() throws Exception {
+				Random random = new Random();
+				double[][] columns = new double[fis.getNumInputs()][rows];
+				double[][] outColumns = new double[fis.getNumOutputs()][rows];
+
+				for (int i = 0; i < columns.length; i++) {
+					for (int j = 0; j < rows; j++) {
+						columns[i][j] = mins[i] + random.nextDouble()
+								* widths[i];
+					}
 				}
-			}
 
-			Rule r = new Rule(inputSubRules, outputSubRules, weight, connective);
+				ParallelEvaluator pe = new ParallelEvaluator(fis, threads);
+				try {
+					long start = System.nanoTime();
+					pe.evaluate(columns, outColumns);
+					return System.nanoTime() - start;
+				} finally {
+					pe.shutdown();
+				}
+			}
 
-			return r;
-		}
+			protected void done() {
+				test_batch.setEnabled(true);
+				try {
+					long nanos = get();
+					JOptionPane.showMessageDialog(null, String.format(
+							"Evaluated %d rows on %d thread(s) in %.1f ms%n"
+									+ "(%.0f rows per second)", rows, threads,
+							nanos / 1e6, rows / (nanos / 1e9)),
+							"Batch Evaluation", JOptionPane.INFORMATION_MESSAGE);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} catch (ExecutionException e) {
+					JOptionPane.showMessageDialog(null, e.getCause()
+							.toString(), "Batch Evaluation Failed",
+							JOptionPane.ERROR_MESSAGE);
+				}
+			}
+		}.execute();
 	}
 
-	public String extractString(String line) {
+	private void testScoreCsv() {
 		/**
-		 * Extracts the "value" of the provided String. eg. Name='tippertest'
-		 * will return 'tippertest'. Similar to extractValue but slightly
-		 * different formats
-		 * 
-		 * @param line
-		 * 
-		 * @return a string with an extracted value
+		 * Scores a CSV file of inputs with the FIS, writing each row with the
+		 * outputs added to another CSV file, and reports the throughput
+		 * achieved with the parallelism chosen on the properties panel
 		 */
 
-		String[] strings = line.split("'");
-		return strings[1];
-	}
-
-	public String removeMinus(String line) {
-		/**
-		 * Removes the '-' character from the start of a string, if it exists
-		 * 
-		 * @param line
-		 *            A string to be checked
-		 * 
-		 * @return String without a '-' at the beginning
-		 */
-		if (line.startsWith("-")) {
-			line = line.substring(1);
+		final CsvBatchScorer scorer;
+		try {
+			scorer = new CsvBatchScorer(model);
+		} catch (IllegalArgumentException iae) {
+			JOptionPane.showMessageDialog(null, iae.getMessage(),
+					"FIS Cannot Be Evaluated", JOptionPane.ERROR_MESSAGE);
+			return;
 		}
-		return line;
-	}
+		scorer.setParallelism(getParallelism());
 
-	public MembershipFunction extractMF(String line)
-			throws InvalidFormatException {
-		/**
-		 * Extracts the membership function contained within the line. For
-		 * example "MF1='Rancid':'gaussmf',[1.0 1.0 1.0]" will return a
-		 * MembershipFunction ("Rancid", 0, [1.0,1.0,1.0])
-		 * 
-		 * 
-		 * @param line
-		 *            string to extract value from
-		 * 
-		 * @return membership function object representing the values stored
-		 */
+		JFileChooser jfc = new JFileChooser(System.getProperty("user.dir"));
+		jfc.setFileFilter(new FileNameExtensionFilter("CSV Files", "csv"));
+		jfc.setDialogTitle("CSV file of inputs");
+		if (jfc.showOpenDialog(null) != JFileChooser.APPROVE_OPTION) {
+			return;
+		}
+		final File input = jfc.getSelectedFile();
 
-		String[] values = line.split("'|,");
-
-		String name = values[1];
-		int type;
-
-		switch (values[3]) {
-		case ("gaussmf"):
-			type = Constants.MEMBERSHIPFUNCTION_GAUSSIAN;
-			break;
-		case ("gaussbmf"):
-			type = Constants.MEMBERSHIPFUNCTION_GAUSSIAN_B;
-			break;
-		case ("trimf"):
-			type = Constants.MEMBERSHIPFUNCTION_TRIANGULAR;
-			break;
-		case ("trapmf"):
-			type = Constants.MEMBERSHIPFUNCTION_TRAPEZOIDAL;
-			break;
-		default:
-			throw new InvalidFormatException(
-					"<html>Unsupported Membership Function type declared, please specify either<br> \"Gaussian\", \"Gaussian B\", \"Trapezoidal\" or \"Triangular\"</html>");
+		jfc.setDialogTitle("CSV file to write the outputs to");
+		jfc.setSelectedFile(new File(input.getParentFile(), "scored_"
+				+ input.getName()));
+		if (jfc.showSaveDialog(null) != JFileChooser.APPROVE_OPTION) {
+			return;
 		}
+		final File output = jfc.getSelectedFile();
 
-		String[] params = values[5].split("\\[| |]");
+		test_csv.setEnabled(false);
 
-		double[] mfParams = new double[params.length - 1];
-		for (int i = 1; i <= mfParams.length; i++) {
-			mfParams[i - 1] = Double.valueOf(params[i]);
-		}
+		new SwingWorker<CsvBatchScorer.Summary, Void>() {
 
-		MembershipFunction mf = new MembershipFunction(name, type, mfParams);
+			protected CsvBatchScorer.Summary doInBackground()
+					throws Exception {
+				return scorer.score(input, output);
+			}
 
-		return mf;
+			protected void done() {
+				test_csv.setEnabled(true);
+				try {
+					JOptionPane.showMessageDialog(null, get().toString(),
+							"Score CSV File", JOptionPane.INFORMATION_MESSAGE);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} catch (ExecutionException e) {
+					JOptionPane.showMessageDialog(null, e.getCause()
+							.getMessage(), "Score CSV File Failed",
+							JOptionPane.ERROR_MESSAGE);
+				}
+			}
+		}.execute();
 	}
 
-	public double[] extractRange(String line) {
+	private void testLookupTable() {
 		/**
-		 * Extracts the range values of the provided range String. eg.
-		 * Range=[0.0 1.0] will return [0.0, 1.0]
-		 * 
-		 * @param line
-		 *            string to extract value from
-		 * 
-		 * @return returns the value of the minimum and maximum range
+		 * Compiles the FIS into a lookup table with the chosen number of grid
+		 * points along each input, and reports the memory it needs and its
+		 * error against exact inference
 		 */
 
-		String[] strings = line.split("\\[| |]");
-		double[] range = { Double.valueOf(strings[1]),
-				Double.valueOf(strings[2]) };
+		String answer = JOptionPane.showInputDialog(null,
+				"Number of grid points along each input",
+				String.valueOf(LookupTable.DEFAULT_POINTS));
+		if (answer == null) {
+			return;
+		}
 
-		return range;
+		final int points;
+		final CompiledFIS fis;
+		try {
+			points = Integer.valueOf(answer.trim());
+			fis = CompiledFIS.compile(model);
+		} catch (NumberFormatException nfe) {
+			JOptionPane.showMessageDialog(null,
+					"Please make sure you are entering a whole number",
+					"Number Required", JOptionPane.ERROR_MESSAGE);
+			return;
+		} catch (IllegalArgumentException iae) {
+			JOptionPane.showMessageDialog(null, iae.getMessage(),
+					"FIS Cannot Be Evaluated", JOptionPane.ERROR_MESSAGE);
+			return;
+		}
 
-	}
+		test_lookup.setEnabled(false);
 
-	public String extractValue(String line) {
-		/**
-		 * Extracts the "value" of the provided String. eg. Name='tippertest'
-		 * will return 'tippertest'
-		 * 
-		 * @param line
-		 *            string to extract value from
-		 * 
-		 * @return returns the value of the provided string
-		 */
+		new SwingWorker<String, Void>() {
 
-		String[] strings = line.split("'|=");
-		return strings[1];
+			protected String doInBackground() throws Exception {
+				long start = System.nanoTime();
+				LookupTable table = LookupTable.build(fis, points);
+				long nanos = System.nanoTime() - start;
+
+				return String.format(
+						"Built a %d point grid of %.1f KB in %.1f ms%n%n",
+						points, table.getMemoryUsage() / 1024.0, nanos / 1e6)
+						+ table.measureError(100000, 0);
+			}
+
+			protected void done() {
+				test_lookup.setEnabled(true);
+				try {
+					JOptionPane.showMessageDialog(null, get(),
+							"Lookup Table Error",
+							JOptionPane.INFORMATION_MESSAGE);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} catch (ExecutionException e) {
+					JOptionPane.showMessageDialog(null, e.getCause()
+							.getMessage(), "Lookup Table Failed",
+							JOptionPane.ERROR_MESSAGE);
+				}
+			}
+		}.execute();
 	}
 
 	/*
@@ -1714,6 +1782,18 @@ public class FISEditor {
 		file_close.addActionListener(ml);
 		file_close.setActionCommand("file_close_ml");
 
+		test_batch.addActionListener(ml);
+		test_batch.setActionCommand("test_batch_ml");
+
+		test_lookup.addActionListener(ml);
+		test_lookup.setActionCommand("test_lookup_ml");
+
+		test_surface.addActionListener(ml);
+		test_surface.setActionCommand("test_surface_ml");
+
+		test_csv.addActionListener(ml);
+		test_csv.setActionCommand("test_csv_ml");
+
 	}
 
 	public void assignActionListeners(ActionListener al) {
@@ -1756,12 +1836,23 @@ public class FISEditor {
 				saveFileAs();
 			} else if (e.getActionCommand().equals("file_open_ml")) {
 				loadFile(null);
+			} else if (e.getActionCommand().equals("test_batch_ml")) {
+				testBatchEvaluation();
+			} else if (e.getActionCommand().equals("test_lookup_ml")) {
+				testLookupTable();
+			} else if (e.getActionCommand().equals("test_surface_ml")) {
+				new SurfaceView(model, getParallelism());
+			} else if (e.getActionCommand().equals("test_csv_ml")) {
+				testScoreCsv();
 			} else if (e.getActionCommand().equals("file_close_ml")) {
 
 				int closeSystemWarning = JOptionPane.showConfirmDialog(null,
 						"Are you sure you wish to exit?", "Exit Message",
 						JOptionPane.WARNING_MESSAGE);
 				if (!(closeSystemWarning == JOptionPane.CANCEL_OPTION)) {
+					if (journal != null) {
+						journal.discard();
+					}
 					System.exit(0);
 				}
 
@@ -1770,6 +1861,33 @@ public class FISEditor {
 		}
 	}
 
+	class propertyActions implements ActionListener, DocumentListener {
+
+		/*
+		 * Listener for the fis properties panel, updating the model whenever
+		 * a property changes
+		 */
+
+		public void actionPerformed(ActionEvent e) {
+			if (e.getSource() == typeComboBox) {
+				updateSystemType();
+			}
+			updateModelProperties();
+		}
+
+		public void insertUpdate(DocumentEvent e) {
+			updateModelProperties();
+		}
+
+		public void removeUpdate(DocumentEvent e) {
+			updateModelProperties();
+		}
+
+		public void changedUpdate(DocumentEvent e) {
+			updateModelProperties();
+		}
+	}
+
 	class buttonActions implements ActionListener {
 
 		public void actionPerformed(ActionEvent e) {
@@ -1804,10 +1922,10 @@ public class FISEditor {
 
 					tabbedPane.setSelectedIndex(0);
 
-					for (Rule r : model.getRuleList()) {
-						r.getInputs().add(
-								new SubRule(v.getName(), "none", 0, false));
-					}
+					model.getRuleList().addColumn(true,
+							model.getVarInList().size() - 1, v);
+					journal.variableAdded(v,
+							model.getVarInList().size() - 1, model);
 
 				} catch (InvalidFormatException ife) {
 					JOptionPane.showMessageDialog(null, ife.getMessage(),
@@ -1850,10 +1968,10 @@ public class FISEditor {
 					refreshView();
 					tabbedPane.setSelectedIndex(1);
 
-					for (Rule r : model.getRuleList()) {
-						r.getOutputs().add(
-								new SubRule(v.getName(), "none", 0, false));
-					}
+					model.getRuleList().addColumn(false,
+							model.getVarOutList().size() - 1, v);
+					journal.variableAdded(v,
+							model.getVarOutList().size() - 1, model);
 				} catch (InvalidFormatException ife) {
 					JOptionPane.showMessageDialog(null, ife.getMessage(),
 							"No Membership functions entered",
@@ -1891,6 +2009,10 @@ public class FISEditor {
 							"Rule Editor", JOptionPane.INFORMATION_MESSAGE);
 				} else {
 					model.getRuleList().add(r);
+					journal.ruleAdded(r, model.getRuleList().size() - 1,
+							model);
+					rulePage = (model.getRuleList().size() - 1)
+							/ RULES_PER_PAGE;
 
 					rulesPanel.removeAll();
 					rulesPanel = createNewRulesPanel();
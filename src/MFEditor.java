@@ -46,7 +46,10 @@ public class MFEditor {
 
 	private JComboBox<String> functionTypeCombo;
 	final String[] mfNameList = { "Gaussian Curve", "Gaussian B Curve",
-			"Triangular Function", "Trapezoidal Function" };
+			"Triangular Function", "Trapezoidal Function", "Constant (Sugeno)",
+			"Linear (Sugeno)", "Generalised Bell Curve", "Sigmoid Curve",
+			"Difference of Sigmoids", "Product of Sigmoids", "Pi-shaped Curve",
+			"S-shaped Curve", "Z-shaped Curve", "Singleton" };
 
 	/*
 	 * The membership function being created
@@ -103,19 +106,20 @@ public class MFEditor {
 
 		functionTypeCombo.setSelectedIndex(mff.getType());
 
-		inputOne.setText(Double.toString(mff.getParameter(0)));
-		inputTwo.setText(Double.toString(mff.getParameter(1)));
-		inputThree.setText(Double.toString(mff.getParameter(2)));
-
-		if (type == Constants.MEMBERSHIPFUNCTION_GAUSSIAN_B
-				|| type == Constants.MEMBERSHIPFUNCTION_TRIANGULAR
-				|| type == Constants.MEMBERSHIPFUNCTION_TRAPEZOIDAL) {
-			inputFour.setText(Double.toString(mff.getParameter(3)));
-		}
-
-		if (type == Constants.MEMBERSHIPFUNCTION_GAUSSIAN_B
-				|| type == Constants.MEMBERSHIPFUNCTION_TRAPEZOIDAL) {
-			inputFive.setText(Double.toString(mff.getParameter(4)));
+		if (type == Constants.MEMBERSHIPFUNCTION_LINEAR) {
+			StringBuilder sb = new StringBuilder();
+			for (int j = 0; j < mff.getParametersSize(); j++) {
+				if (j > 0) {
+					sb.append(" ");
+				}
+				sb.append(mff.getParameter(j));
+			}
+			inputOne.setText(sb.toString());
+		} else {
+			JTextField[] inputs = getInputs();
+			for (int j = 0; j < mff.getParametersSize(); j++) {
+				inputs[j].setText(Double.toString(mff.getParameter(j)));
+			}
 		}
 
 		original = nameTextField.getText();
@@ -167,6 +171,23 @@ public class MFEditor {
 			params[3] = Double.valueOf(inputFour.getText());
 			params[4] = Double.valueOf(inputFive.getText());
 			break;
+		case (Constants.MEMBERSHIPFUNCTION_CONSTANT):
+			params = new double[1];
+			params[0] = Double.valueOf(inputOne.getText());
+			break;
+		case (Constants.MEMBERSHIPFUNCTION_LINEAR):
+			String[] coefficients = inputOne.getText().trim().split("\\s+");
+			params = new double[coefficients.length];
+			for (int j = 0; j < coefficients.length; j++) {
+				params[j] = Double.valueOf(coefficients[j]);
+			}
+			break;
+		default:
+			JTextField[] inputs = getInputs();
+			params = new double[MembershipFunction.parametersForType(i)];
+			for (int j = 0; j < params.length; j++) {
+				params[j] = Double.valueOf(inputs[j].getText());
+			}
 		}
 
 		String name = nameTextField.getText();
@@ -485,14 +506,126 @@ public class MFEditor {
 			c.gridy = 5;
 			returnPanel.add(inputFive, c);
 			break;
+
+		case (Constants.MEMBERSHIPFUNCTION_CONSTANT):
+			// Create the input for a constant Sugeno output
+			c.gridx = 0;
+			c.gridy = 0;
+			returnPanel.add(new JLabel("Value"), c);
+
+			inputOne = new JTextField();
+			inputOne.setMinimumSize(new Dimension(150, 30));
+			inputOne.setPreferredSize(new Dimension(150, 30));
+			c.gridx = 1;
+			c.gridy = 0;
+			returnPanel.add(inputOne, c);
+			break;
+
+		case (Constants.MEMBERSHIPFUNCTION_LINEAR):
+			// Create the input for a linear Sugeno output
+			c.gridx = 0;
+			c.gridy = 0;
+			returnPanel.add(new JLabel("Coefficients"), c);
+
+			inputOne = new JTextField();
+			inputOne.setMinimumSize(new Dimension(150, 30));
+			inputOne.setPreferredSize(new Dimension(150, 30));
+			inputOne.setToolTipText("One coefficient per input variable, "
+					+ "then the constant term, separated by spaces");
+			c.gridx = 1;
+			c.gridy = 0;
+			returnPanel.add(inputOne, c);
+
+			c.gridx = 0;
+			c.gridy = 1;
+			c.gridwidth = 2;
+			returnPanel.add(new JLabel("<html>One per input, then the "
+					+ "constant,<br>separated by spaces</html>"), c);
+			break;
+
+		case (Constants.MEMBERSHIPFUNCTION_BELL):
+			addInputs(returnPanel, c, "Width", "Slope", "Centre", "Height");
+			break;
+		case (Constants.MEMBERSHIPFUNCTION_SIGMOID):
+			addInputs(returnPanel, c, "Slope", "Centre", "Height");
+			break;
+		case (Constants.MEMBERSHIPFUNCTION_DIFF_SIGMOID):
+		case (Constants.MEMBERSHIPFUNCTION_PROD_SIGMOID):
+			addInputs(returnPanel, c, "First Slope", "First Centre",
+					"Second Slope", "Second Centre", "Height");
+			break;
+		case (Constants.MEMBERSHIPFUNCTION_PI):
+			addInputs(returnPanel, c, "Left Foot", "Left Shoulder",
+					"Right Shoulder", "Right Foot", "Height");
+			break;
+		case (Constants.MEMBERSHIPFUNCTION_S):
+			addInputs(returnPanel, c, "Foot", "Shoulder", "Height");
+			break;
+		case (Constants.MEMBERSHIPFUNCTION_Z):
+			addInputs(returnPanel, c, "Shoulder", "Foot", "Height");
+			break;
+		case (Constants.MEMBERSHIPFUNCTION_SINGLETON):
+			addInputs(returnPanel, c, "Value", "Height");
+			break;
 		}
 		inputOne.addFocusListener(new assignFocusListener());
-		inputTwo.addFocusListener(new assignFocusListener());
-		inputThree.addFocusListener(new assignFocusListener());
+		if (MembershipFunction.parametersForType(i) >= 2) {
+			inputTwo.addFocusListener(new assignFocusListener());
+		}
+		if (MembershipFunction.parametersForType(i) >= 3) {
+			inputThree.addFocusListener(new assignFocusListener());
+		}
 
 		return returnPanel;
 	}
 
+	private void addInputs(JPanel panel, GridBagConstraints c,
+			String... labels) {
+		/**
+		 * Creates a labelled input for each parameter of a function, one per
+		 * row, in the same way as the inputs above
+		 * 
+		 * @param panel
+		 *            JPanel to add the inputs to
+		 * @param c
+		 *            GridBagConstraints to lay the inputs out with
+		 * @param labels
+		 *            Strings naming each parameter, at most five
+		 */
+
+		JTextField[] inputs = new JTextField[5];
+		for (int j = 0; j < labels.length; j++) {
+			c.gridx = 0;
+			c.gridy = j;
+			panel.add(new JLabel(labels[j]), c);
+
+			inputs[j] = new JTextField();
+			if (j == 0) {
+				inputs[j].setMinimumSize(new Dimension(150, 30));
+				inputs[j].setPreferredSize(new Dimension(150, 30));
+			} else if (j > 2) {
+				inputs[j].addFocusListener(new assignFocusListener());
+			}
+			c.gridx = 1;
+			c.gridy = j;
+			panel.add(inputs[j], c);
+		}
+
+		inputOne = inputs[0];
+		inputTwo = inputs[1];
+		inputThree = inputs[2];
+		inputFour = inputs[3];
+		inputFive = inputs[4];
+	}
+
+	private JTextField[] getInputs() {
+		/**
+		 * Returns the parameter inputs, in the order of the parameters
+		 */
+		return new JTextField[] { inputOne, inputTwo, inputThree, inputFour,
+				inputFive };
+	}
+
 	class assignFocusListener implements FocusListener {
 
 		/*
@@ -7,16 +7,38 @@
  * Using the JFreeChart package, found here http://www.jfree.org/jfreechart/
  */
 
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
 import org.jfree.data.xy.XYSeries;
 import data.Constants;
+import inference.PiecewiseLinear;
 
 import data.MembershipFunction;
 
 public class Plotter {
 
+	/*
+	 * Most points put in a series by default
+	 */
+	public static final int DEFAULT_POINT_BUDGET = 400;
+
+	/*
+	 * Largest gap, in degrees of membership, allowed between a curve and
+	 * the straight lines drawn through its points
+	 */
+	public static final double TOLERANCE = 0.001;
+
+	/*
+	 * Number of even pieces the range is first cut into for functions whose
+	 * shape the Plotter knows nothing about
+	 */
+	private static final int GRID_SEGMENTS = 16;
+
 	private MembershipFunction mf;
 	private double rangeMin;
 	private double rangeMax;
+	private int pointBudget;
 
 	/*
 	 * Constructor
@@ -37,46 +59,50 @@ public class Plotter {
 		 * 
 		 */
 
-		this.mf = mf;
-		this.rangeMin = rangeMin;
-		this.rangeMax = rangeMax;
+		this(mf, rangeMin, rangeMax, DEFAULT_POINT_BUDGET);
 	}
 
-	public double[] getYValues(int interval) {
+	public Plotter(MembershipFunction mf, double rangeMin, double rangeMax,
+			int pointBudget) {
 		/**
-		 * Returns a double array of y values, which has size of interval
+		 * Constructor
 		 * 
-		 * @param interval
-		 *            int to determine size of array
+		 * @param mf
+		 *            membership function to be plotted
 		 * 
-		 * @return double[] with the y values of the graph
+		 * @param rangeMin
+		 *            double representing min range of the graph
+		 * 
+		 * @param rangeMax
+		 *            double representing max range of the graph
+		 * 
+		 * @param pointBudget
+		 *            integer, the most points to put in the series. The
+		 *            corners of a function are always included, even if
+		 *            there are more of them than this
 		 * 
 		 */
 
-		double[] yValues = new double[interval + 1];
-
-		switch (mf.getType()) {
-		case (Constants.MEMBERSHIPFUNCTION_GAUSSIAN):
-			yValues = calculateGaussian(interval);
-			break;
-		case (Constants.MEMBERSHIPFUNCTION_GAUSSIAN_B):
-			yValues = calculateGaussianB(interval);
-			break;
-		case (Constants.MEMBERSHIPFUNCTION_TRIANGULAR):
-			yValues = calculateTriangular(interval);
-			break;
-		case (Constants.MEMBERSHIPFUNCTION_TRAPEZOIDAL):
-			yValues = calculateTrapezoidal(interval);
-			break;
+		if (pointBudget < 2) {
+			throw new IllegalArgumentException(
+					"A series needs a budget of at least 2 points");
 		}
 
-		return yValues;
+		this.mf = mf;
+		this.rangeMin = rangeMin;
+		this.rangeMax = rangeMax;
+		this.pointBudget = pointBudget;
 	}
 
 	public XYSeries getMFXYSeries() {
 		/**
-		 * Returns theXYSeries data of a membership function, which is
-		 * calculated on the fly
+		 * Returns the XYSeries data of a membership function, which is
+		 * calculated on the fly. Points are placed where the function bends
+		 * rather than at every integer, so the series is accurate and small
+		 * whatever the range: triangles and trapezoids are given exactly by
+		 * their corners, and curves are split until the lines drawn between
+		 * their points are within TOLERANCE of them, or the point budget is
+		 * spent
 		 * 
 		 * @return XYSeries object of the X and Y points of the membership
 		 *         function
@@ -84,152 +110,297 @@ public class Plotter {
 
 		final XYSeries series = new XYSeries(mf.getName());
 
-		int interval = (int) (rangeMax - rangeMin);
-
-		double[] yValues = getYValues(interval);
+		if (rangeMax < rangeMin) {
+			return series;
+		}
 
-		int j = 0;
-		for (int i = (int) rangeMin; i <= rangeMax; i++, j++) {
-			series.add(i, yValues[j]);
+		switch (mf.getType()) {
+		case (Constants.MEMBERSHIPFUNCTION_TRIANGULAR):
+		case (Constants.MEMBERSHIPFUNCTION_TRAPEZOIDAL):
+			PiecewiseLinear corners = PiecewiseLinear.of(mf);
+			corners.restrict(rangeMin, rangeMax);
+			for (int i = 0; i < corners.size(); i++) {
+				series.add(corners.getX(i), corners.getY(i), false);
+			}
+			break;
+		case (Constants.MEMBERSHIPFUNCTION_CONSTANT):
+		case (Constants.MEMBERSHIPFUNCTION_SINGLETON):
+			double value = mf.getParameter(0);
+			double height = 1;
+			if (mf.getType() == Constants.MEMBERSHIPFUNCTION_SINGLETON) {
+				height = mf.getParameter(1);
+			}
+			series.add(rangeMin, 0, false);
+			if (value >= rangeMin && value <= rangeMax) {
+				series.add(value, 0, false);
+				series.add(value, height, false);
+				series.add(value, 0, false);
+			}
+			series.add(rangeMax, 0, false);
+			break;
+		case (Constants.MEMBERSHIPFUNCTION_LINEAR):
+			series.add(rangeMin, 0, false);
+			series.add(rangeMax, 0, false);
+			break;
+		default:
+			addCurve(series);
 		}
 
 		return series;
 	}
 
-	public double[] calculateGaussian(int interval) {
+	/*
+	 * Sampling Methods
+	 */
+
+	private void addCurve(XYSeries series) {
 		/**
-		 * Returns a double array of y values for a gaussian membership function
-		 * 
-		 * @param interval
-		 *            int to determine size of array
-		 * 
-		 * @return double[] with the y values of the graph
+		 * Adds points along a smooth function. Starting from its known
+		 * features, the piece of the range with the largest error is halved
+		 * until every piece is within TOLERANCE or the budget is spent
 		 * 
+		 * @param series
+		 *            XYSeries to add the points to
 		 */
 
-		double[] values = new double[interval + 1];
-		double sigma = mf.getParameter(0);
-		double mean = mf.getParameter(1);
-		double height = mf.getParameter(2);
+		double[] xs = features();
+		PriorityQueue<Segment> queue = new PriorityQueue<Segment>();
 
-		int j = 0;
-		for (int i = (int) rangeMin; i <= (int) rangeMax; i++, j++) {
-			values[j] = (height * Math
-					.exp(-((Math.pow(i - mean, 2) / (2 * (Math.pow(sigma, 2)))))));
+		double y0 = mf.degree(xs[0]);
+		series.add(xs[0], y0, false);
+		for (int i = 1; i < xs.length; i++) {
+			double y1 = mf.degree(xs[i]);
+			series.add(xs[i], y1, false);
+			queue.add(segment(xs[i - 1], y0, xs[i], y1));
+			y0 = y1;
 		}
 
-		return values;
+		int points = xs.length;
+		while (points < pointBudget && !queue.isEmpty()) {
+			Segment s = queue.poll();
+			if (!(s.error > TOLERANCE)) {
+				break;
+			}
+			series.add(s.xm, s.ym, false);
+			points++;
+			queue.add(segment(s.x0, s.y0, s.xm, s.ym));
+			queue.add(segment(s.xm, s.ym, s.x1, s.y1));
+		}
 	}
 
-	public double[] calculateGaussianB(int interval) {
+	private double[] features() {
 		/**
-		 * Returns a double array of y values for a gaussian b membership
-		 * function
-		 * 
-		 * @param interval
-		 *            int to determine size of array
-		 * 
-		 * @return double[] with the y values of the graph
+		 * Returns the x values a curve must be drawn through, in order and
+		 * without repeats: the ends of the range, and for Gaussians each
+		 * mean, where the curve peaks or meets its plateau, and the points
+		 * one, root three and three standard deviations either side, where
+		 * its bend is zero or greatest, or where it has all but reached zero.
+		 * Other curves are drawn through an even grid, along with their
+		 * centres, feet and shoulders and the points either side of them
+		 * where they bend the most, so that no narrow peak falls between the
+		 * points of the grid
 		 * 
+		 * @return array of doubles, x values within the range
 		 */
 
-		double[] values = new double[interval + 1];
-
-		double leftSigma = mf.getParameter(0);
-		double leftMean = mf.getParameter(1);
-		double rightSigma = mf.getParameter(2);
-		double rightMean = mf.getParameter(3);
-		double height = mf.getParameter(4);
-
-		int lastLeft = 0;
-
-		int j = 0;
-		for (int i = (int) rangeMin; i <= (int) rangeMax; i++, j++) {
-			if (i <= leftMean) {
-				values[j] = (height * Math
-						.exp(-((Math.pow(i - leftMean, 2) / (2 * (Math.pow(
-								leftSigma, 2)))))));
-				lastLeft = j;
-			} else if (i >= rightMean) {
-				values[j] = (height * Math
-						.exp(-((Math.pow(i - rightMean, 2) / (2 * (Math.pow(
-								rightSigma, 2)))))));
+		double[] xs;
+		switch (mf.getType()) {
+		case (Constants.MEMBERSHIPFUNCTION_GAUSSIAN):
+			xs = sides(mf.getParameter(0), mf.getParameter(1),
+					mf.getParameter(0), mf.getParameter(1));
+			break;
+		case (Constants.MEMBERSHIPFUNCTION_GAUSSIAN_B):
+			xs = sides(mf.getParameter(0), mf.getParameter(1),
+					mf.getParameter(2), mf.getParameter(3));
+			break;
+		case (Constants.MEMBERSHIPFUNCTION_BELL): {
+			double width = Math.abs(mf.getParameter(0));
+			double centre = mf.getParameter(2);
+			xs = grid(centre - 2 * width, centre - width, centre, centre
+					+ width, centre + 2 * width);
+			break;
+		}
+		case (Constants.MEMBERSHIPFUNCTION_SIGMOID):
+			xs = grid(slopes(mf.getParameter(0), mf.getParameter(1)));
+			break;
+		case (Constants.MEMBERSHIPFUNCTION_DIFF_SIGMOID):
+		case (Constants.MEMBERSHIPFUNCTION_PROD_SIGMOID): {
+			double[] first = slopes(mf.getParameter(0), mf.getParameter(1));
+			double[] second = slopes(mf.getParameter(2), mf.getParameter(3));
+			double[] both = Arrays.copyOf(first, first.length * 2);
+			System.arraycopy(second, 0, both, first.length, second.length);
+			xs = grid(both);
+			break;
+		}
+		case (Constants.MEMBERSHIPFUNCTION_PI):
+			xs = grid(mf.getParameter(0),
+					(mf.getParameter(0) + mf.getParameter(1)) / 2,
+					mf.getParameter(1), mf.getParameter(2),
+					(mf.getParameter(2) + mf.getParameter(3)) / 2,
+					mf.getParameter(3));
+			break;
+		case (Constants.MEMBERSHIPFUNCTION_S):
+		case (Constants.MEMBERSHIPFUNCTION_Z):
+			xs = grid(mf.getParameter(0),
+					(mf.getParameter(0) + mf.getParameter(1)) / 2,
+					mf.getParameter(1));
+			break;
+		default:
+			xs = grid();
+		}
+		xs[0] = rangeMin;
+		xs[xs.length - 1] = rangeMax;
+
+		Arrays.sort(xs);
+		int n = 0;
+		for (double x : xs) {
+			if (x >= rangeMin && x <= rangeMax && (n == 0 || x != xs[n - 1])) {
+				xs[n++] = x;
 			}
 		}
-		values[lastLeft + 1] = (values[lastLeft] + values[lastLeft + 2]) / 2;
+		return Arrays.copyOf(xs, n);
+	}
 
-		return values;
+	private double[] grid(double... features) {
+		/**
+		 * Returns an even grid across the range followed by the features
+		 * given, with a free slot at either end for the ends of the range
+		 */
 
+		double[] xs = new double[GRID_SEGMENTS + features.length + 3];
+		for (int i = 0; i <= GRID_SEGMENTS; i++) {
+			xs[i + 1] = rangeMin + (rangeMax - rangeMin) * i / GRID_SEGMENTS;
+		}
+		System.arraycopy(features, 0, xs, GRID_SEGMENTS + 2, features.length);
+		return xs;
 	}
 
-	public double[] calculateTrapezoidal(int interval) {
+	private static double[] slopes(double slope, double centre) {
 		/**
-		 * Returns a double array of y values for a trapezoidal membership
-		 * function
-		 * 
-		 * @param interval
-		 *            int to determine size of array
-		 * 
-		 * @return double[] with the y values of the graph
-		 * 
+		 * Returns the features of a sigmoid: its centre, where it is half
+		 * way up, and either side of it the points where it bends the most,
+		 * log(2 + root three) over its slope away, and where it is within a
+		 * percent of levelling off, five over its slope away
 		 */
 
-		double[] values = new double[interval + 1];
-
-		double leftFoot = mf.getParameter(0);
-		double leftShoulder = mf.getParameter(1);
-		double rightShoulder = mf.getParameter(2);
-		double rightFoot = mf.getParameter(3);
-		double height = mf.getParameter(4);
-		
-		int j = 0;
-		for (int i = (int) rangeMin; j < values.length; i++, j++) {
-			double a = (i - leftFoot) / (leftShoulder - leftFoot);
-			double b = 1.0;
-			double c = (rightFoot - i) / (rightFoot - rightShoulder);
-
-			double e = height * Math.max(Math.min(Math.min(a, b), c), 0);
-			
-			if(Double.isNaN(e)){
-				e = 1;
-			}
-			
-			values[j] = e; 
+		double bend = Math.log(2 + Math.sqrt(3)) / Math.abs(slope);
+		double level = 5 / Math.abs(slope);
+		return new double[] { centre - level, centre - bend, centre,
+				centre + bend, centre + level };
+	}
 
-		}
+	private static double[] sides(double leftSigma, double leftMean,
+			double rightSigma, double rightMean) {
+		/**
+		 * Returns the features of a Gaussian, or of a Gaussian b with its two
+		 * sides, with a free slot at either end for the ends of the range
+		 */
 
-		return values;
+		double l = Math.abs(leftSigma);
+		double r = Math.abs(rightSigma);
+		double root3 = Math.sqrt(3);
+		return new double[] { 0, leftMean - 3 * l, leftMean - root3 * l,
+				leftMean - l, leftMean, rightMean, rightMean + r,
+				rightMean + root3 * r, rightMean + 3 * r, 0 };
 	}
 
-	public double[] calculateTriangular(int interval) {
+	private Segment segment(double x0, double y0, double x1, double y1) {
 		/**
-		 * Returns a double array of y values for a triangular membership
-		 * function
-		 * 
-		 * @param interval
-		 *            int to determine size of array
-		 * 
-		 * @return double[] with the y values of the graph
-		 * 
+		 * Returns a piece of the curve between two of its points, with the
+		 * most a straight line across it can be out by. For Gaussians this is
+		 * bounded by the greatest bend of the curve over the piece, and for
+		 * anything else it is estimated from how far the curve is from the
+		 * line at its middle
 		 */
 
-		double[] values = new double[interval + 1];
+		double xm = (x0 + x1) / 2;
+		double ym = mf.degree(xm);
+		double width = x1 - x0;
+		double error;
 
-		double left = mf.getParameter(0);
-		double mean = mf.getParameter(1);
-		double right = mf.getParameter(2);
-		double height = mf.getParameter(3);
+		switch (mf.getType()) {
+		case (Constants.MEMBERSHIPFUNCTION_GAUSSIAN):
+			error = width * width / 8
+					* bend(mf.getParameter(0), mf.getParameter(1),
+							mf.getParameter(2), x0, x1);
+			break;
+		case (Constants.MEMBERSHIPFUNCTION_GAUSSIAN_B): {
+			// the plateau between the means is straight
+			double leftMean = mf.getParameter(1);
+			double rightMean = mf.getParameter(3);
+			double left = x0 < leftMean ? bend(mf.getParameter(0), leftMean,
+					mf.getParameter(4), x0, Math.min(x1, leftMean)) : 0;
+			double right = x1 > rightMean ? bend(mf.getParameter(2),
+					rightMean, mf.getParameter(4), Math.max(x0, rightMean), x1)
+					: 0;
+			error = width * width / 8 * Math.max(left, right);
+			break;
+		}
+		default:
+			error = Math.abs(ym - (y0 + y1) / 2);
+		}
 
-		int j = 0;
-		for (int i = (int) rangeMin; j < values.length; i++, j++) {
-			double a = (i - left) / (mean - left);
-			double b = (right - i) / (right - mean);
+		return new Segment(x0, y0, x1, y1, xm, ym, error);
+	}
 
-			values[j] = height * (Math.max(Math.min(a, b), 0));
-		}
+	private static double bend(double sigma, double mean, double height,
+			double x0, double x1) {
+		/**
+		 * Returns the greatest magnitude of the second derivative of a
+		 * Gaussian between two x values. In standard deviations u from the
+		 * mean this is |u^2 - 1| e^(-u^2 / 2) times height over sigma
+		 * squared, which peaks at the mean and again at root three
+		 */
 
-		return values;
+		if (sigma == 0) {
+			return 0;
+		}
+		double u0 = (x0 - mean) / Math.abs(sigma);
+		double u1 = (x1 - mean) / Math.abs(sigma);
+		double root3 = Math.sqrt(3);
+
+		double most = Math.max(bend(u0), bend(u1));
+		if (u0 < 0 && u1 > 0) {
+			most = 1;
+		} else if ((u0 < -root3 && u1 > -root3) || (u0 < root3 && u1 > root3)) {
+			most = Math.max(most, bend(root3));
+		}
+		return most * Math.abs(height) / (sigma * sigma);
+	}
 
+	private static double bend(double u) {
+		double e = Math.exp(-u * u / 2);
+		return e == 0 ? 0 : Math.abs(u * u - 1) * e;
 	}
 
+	/*
+	 * Segment Sub Class
+	 */
+
+	private static final class Segment implements Comparable<Segment> {
+
+		/**
+		 * A piece of a curve between two sampled points, with its middle
+		 * point ready for when it is split. Segments order by error, largest
+		 * first
+		 */
+
+		final double x0, y0, x1, y1, xm, ym, error;
+
+		Segment(double x0, double y0, double x1, double y1, double xm,
+				double ym, double error) {
+			this.x0 = x0;
+			this.y0 = y0;
+			this.x1 = x1;
+			this.y1 = y1;
+			this.xm = xm;
+			this.ym = ym;
+			this.error = error;
+		}
+
+		@Override
+		public int compareTo(Segment other) {
+			return Double.compare(other.error, error);
+		}
+	}
 }
@@ -1,63 +1,92 @@
+/**
+ * SliderPanel Class
+ * Interactive view of a Fuzzy Inference System, with one slider for each input
+ * variable across its range and the crisp value of every output. The outputs
+ * are recomputed from the Model whenever a slider moves, on a background
+ * thread so the sliders stay responsive however large the rule base is
+ * 
+ * @author Craig Knott
+ */
+
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileReader;
-import java.io.IOException;
 import java.util.ArrayList;
 
 import javax.swing.BorderFactory;
-import javax.swing.JFileChooser;
 import javax.swing.JLabel;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JSlider;
+import javax.swing.SwingWorker;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
-import javax.swing.filechooser.FileNameExtensionFilter;
-
-public class SliderPanel {
-
-	private JPanel inputOne;
-	private JPanel inputTwo;
-	private JPanel outputOne;
-
-	private JSlider inputOneSlider;
-	private JSlider inputTwoSlider;
-
-	private JLabel outputText;
-
-	private String[][] dataSet;
-
-	private File data;
 
-	public SliderPanel() {
+import data.Model;
+import data.Variable;
+import inference.CompiledFIS;
+import inference.InferenceEngine;
 
-		JFileChooser jfc = new JFileChooser(System.getProperty("user.dir"));
-		jfc.setFileFilter(new FileNameExtensionFilter("CSV", "csv"));
-		int returnVal = jfc.showOpenDialog(null);
-
-		if (returnVal == JFileChooser.APPROVE_OPTION) {
+public class SliderPanel {
 
-			data = new File(jfc.getSelectedFile().getAbsolutePath());
+	/*
+	 * Number of steps each slider is divided into across its variable's range
+	 */
+	private static final int SLIDER_STEPS = 1000;
+
+	private ArrayList<Variable> inputs;
+	private ArrayList<Variable> outputs;
+
+	private JSlider[] inputSliders;
+	private JLabel[] inputText;
+	private JLabel[] outputText;
+	private JLabel timingText;
+
+	private InferenceEngine engine;
+
+	/*
+	 * Inputs waiting to be evaluated, and whether an evaluation is running.
+	 * Only touched on the event dispatch thread
+	 */
+	private double[] pending;
+	private boolean evaluating;
+
+	public SliderPanel(Model model) {
+		/**
+		 * Constructor, compiles the model and shows the sliders in a dialog
+		 * 
+		 * @param model
+		 *            Model to be explored
+		 */
+
+		try {
+			engine = new InferenceEngine(CompiledFIS.compile(model));
+		} catch (IllegalArgumentException iae) {
+			JOptionPane.showMessageDialog(null, iae.getMessage(),
+					"FIS Cannot Be Evaluated", JOptionPane.ERROR_MESSAGE);
+			return;
+		}
 
-			JPanel sliderPanel = null;
-			sliderPanel = addContent(sliderPanel);
+		inputs = new ArrayList<Variable>(model.getVarInList());
+		outputs = new ArrayList<Variable>(model.getVarOutList());
 
-			try {
-				readFile();
-			} catch (IOException e) {
-				System.err.println("Could not read in file");
-			}
+		JPanel sliderPanel = null;
+		sliderPanel = addContent(sliderPanel);
 
-			updateValue(inputOneSlider.getValue(), inputTwoSlider.getValue());
+		updateValue();
 
-			JOptionPane.showMessageDialog(null, sliderPanel,
-					"Interactive Sliders", JOptionPane.PLAIN_MESSAGE);
-		}
+		JOptionPane.showMessageDialog(null, sliderPanel,
+				"Interactive Sliders", JOptionPane.PLAIN_MESSAGE);
 	}
 
 	public JPanel addContent(JPanel sliderPanel) {
+		/**
+		 * Adds a slider for every input and a label for every output
+		 * 
+		 * @param sliderPanel
+		 *            JPanel to add to
+		 * 
+		 * @return the filled panel
+		 */
 		sliderPanel = new JPanel(new GridBagLayout());
 
 		GridBagConstraints c = new GridBagConstraints();
@@ -66,97 +95,128 @@ public class SliderPanel {
 		c.ipady = 10;
 		c.weightx = 10;
 		c.anchor = GridBagConstraints.NORTH;
-
-		inputOne = new JPanel();
-		inputOne.setBorder(BorderFactory.createTitledBorder("Service"));
 		c.gridx = 0;
 		c.gridy = 0;
-		sliderPanel.add(inputOne, c);
 
-		inputOneSlider = new JSlider(JSlider.HORIZONTAL, 0, 10, 5);
-		inputOneSlider.setMajorTickSpacing(1);
-		inputOneSlider.setPaintTicks(true);
-		inputOneSlider.setPaintLabels(true);
-		inputOneSlider.addChangeListener(new myChangeListener());
-		c.gridx = 0;
-		c.gridy = 1;
-		inputOne.add(inputOneSlider, c);
+		inputSliders = new JSlider[inputs.size()];
+		inputText = new JLabel[inputs.size()];
+		for (int i = 0; i < inputs.size(); i++) {
+			Variable v = inputs.get(i);
+
+			JPanel inputPanel = new JPanel();
+			inputPanel.setBorder(BorderFactory.createTitledBorder(v.getName()
+					+ " [" + v.getRangeMin() + ", " + v.getRangeMax() + "]"));
+			sliderPanel.add(inputPanel, c);
+			c.gridy++;
+
+			inputSliders[i] = new JSlider(JSlider.HORIZONTAL, 0, SLIDER_STEPS,
+					SLIDER_STEPS / 2);
+			inputSliders[i].setMajorTickSpacing(SLIDER_STEPS / 10);
+			inputSliders[i].setPaintTicks(true);
+			inputSliders[i].addChangeListener(new myChangeListener());
+			inputPanel.add(inputSliders[i]);
+
+			inputText[i] = new JLabel("");
+			inputPanel.add(inputText[i]);
+		}
 
-		inputTwo = new JPanel();
-		inputTwo.setBorder(BorderFactory.createTitledBorder("Food Quality"));
-		c.gridx = 0;
-		c.gridy = 3;
-		sliderPanel.add(inputTwo, c);
-
-		inputTwoSlider = new JSlider(JSlider.HORIZONTAL, 0, 10, 5);
-		inputTwoSlider.setMajorTickSpacing(1);
-		inputTwoSlider.setPaintTicks(true);
-		inputTwoSlider.setPaintLabels(true);
-		inputTwoSlider.addChangeListener(new myChangeListener());
-		c.gridx = 0;
-		c.gridy = 4;
-		inputTwo.add(inputTwoSlider, c);
+		outputText = new JLabel[outputs.size()];
+		for (int o = 0; o < outputs.size(); o++) {
+			JPanel outputPanel = new JPanel();
+			outputPanel.setBorder(BorderFactory.createTitledBorder(outputs
+					.get(o).getName()));
+			sliderPanel.add(outputPanel, c);
+			c.gridy++;
 
-		outputOne = new JPanel();
-		outputOne.setBorder(BorderFactory.createTitledBorder("Tip Quantity"));
-		c.gridx = 0;
-		c.gridy = 6;
-		sliderPanel.add(outputOne, c);
+			outputText[o] = new JLabel("");
+			outputPanel.add(outputText[o]);
+		}
 
-		outputText = new JLabel("");
-		c.gridx = 0;
-		c.gridy = 7;
-		outputOne.add(outputText, c);
+		timingText = new JLabel(" ");
+		sliderPanel.add(timingText, c);
 
 		return sliderPanel;
 	}
 
-	public void updateValue(int i, int j) {
-		outputText.setText(dataSet[i][j]);
+	private double sliderValue(int i) {
+		/**
+		 * Maps the position of a slider onto the range of its variable
+		 * 
+		 * @param i
+		 *            integer, the index of the input variable
+		 * 
+		 * @return double, the input value the slider represents
+		 */
+		Variable v = inputs.get(i);
+		return v.getRangeMin() + (v.getRangeMax() - v.getRangeMin())
+				* inputSliders[i].getValue() / SLIDER_STEPS;
 	}
 
-	public void readFile() throws IOException {
-
-		ArrayList<String> stringArray = new ArrayList<String>();
-		StringBuilder sb = new StringBuilder();
-		String line;
-
-		@SuppressWarnings("resource")
-		BufferedReader reader = new BufferedReader(new FileReader(data));
-		line = reader.readLine();
-
-		while (line != null) {
-			sb.append(line);
-			line = reader.readLine();
+	public void updateValue() {
+		/**
+		 * Reads the sliders and asks for the outputs to be recomputed. If an
+		 * evaluation is already running, only the latest positions are kept
+		 * and evaluated once it finishes
+		 */
+
+		double[] values = new double[inputs.size()];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = sliderValue(i);
+			inputText[i].setText(String.format("%.3f", values[i]));
 		}
 
-		line = sb.toString();
-
-		for (String returnVal : line.split(",")) {
-			stringArray.add(returnVal);
+		pending = values;
+		if (!evaluating) {
+			evaluatePending();
 		}
+	}
 
-		final int MAX_VALUE = 11;
+	private void evaluatePending() {
+		/**
+		 * Evaluates the waiting inputs on a background thread, displaying the
+		 * outputs on the event dispatch thread once done
+		 */
 
-		String[][] values = new String[MAX_VALUE][MAX_VALUE];
+		final double[] values = pending;
+		pending = null;
+		evaluating = true;
 
-		int k = 0;
+		new SwingWorker<double[], Void>() {
 
-		for (int i = 0; i < MAX_VALUE; i++) {
-			for (int j = 0; j < MAX_VALUE; j++) {
-				values[i][j] = stringArray.get(k);
-				k++;
-			}
-		}
+			private long nanos;
 
-		dataSet = values;
+			protected double[] doInBackground() {
+				long start = System.nanoTime();
+				double[] results = engine.evaluate(values);
+				nanos = System.nanoTime() - start;
+				return results;
+			}
 
+			protected void done() {
+				try {
+					double[] results = get();
+					for (int o = 0; o < results.length; o++) {
+						outputText[o].setText(String.format("%.4f",
+								results[o]));
+					}
+					timingText.setText(String.format("Evaluated in %.3f ms",
+							nanos / 1e6));
+				} catch (Exception e) {
+					timingText.setText("Evaluation failed: " + e.getMessage());
+				}
+
+				evaluating = false;
+				if (pending != null) {
+					evaluatePending();
+				}
+			}
+		}.execute();
 	}
 
 	class myChangeListener implements ChangeListener {
 
 		public void stateChanged(ChangeEvent e) {
-			updateValue(inputOneSlider.getValue(), inputTwoSlider.getValue());
+			updateValue();
 		}
 	}
 }
@@ -134,6 +134,8 @@ public class SuperController {
 
 		if (fileSelected) {
 			f.openFile(filePath);
+		} else {
+			f.openUntitled();
 		}
 
 		/*
@@ -0,0 +1,429 @@
+/**
+ * SurfaceView Class
+ * Dialog showing the control surface of a Fuzzy Inference System as a
+ * heatmap. Any two inputs can be chosen as the axes, with the others held at
+ * values set here, and the surface is drawn tile by tile as it is generated.
+ * Finished surfaces can be exported as CSV or binary
+ * 
+ * @author Craig Knott
+ */
+
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.GridBagConstraints;
+import java.awt.GridBagLayout;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+
+import javax.swing.BorderFactory;
+import javax.swing.JButton;
+import javax.swing.JComboBox;
+import javax.swing.JDialog;
+import javax.swing.JFileChooser;
+import javax.swing.JLabel;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JSpinner;
+import javax.swing.SpinnerNumberModel;
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
+
+import data.Model;
+import data.Variable;
+import inference.CompiledFIS;
+import inference.Surface;
+import inference.SurfaceGenerator;
+
+public class SurfaceView {
+
+	/*
+	 * Number of points along each side of a surface when first shown
+	 */
+	private static final int DEFAULT_POINTS = 500;
+
+	private Model model;
+	private CompiledFIS fis;
+	private SurfaceGenerator generator;
+
+	private JDialog dialog;
+	private JComboBox<String> xInputComboBox;
+	private JComboBox<String> yInputComboBox;
+	private JComboBox<String> outputComboBox;
+	private JSpinner pointsSpinner;
+	private JSpinner[] fixedSpinners;
+	private JButton generateButton;
+	private JButton exportCSVButton;
+	private JButton exportBinaryButton;
+	private JLabel statusText;
+	private HeatmapPanel heatmap;
+
+	private Surface surface;
+
+	public SurfaceView(Model model, int parallelism) {
+		/**
+		 * Constructor, compiles the model and shows the surface dialog
+		 * 
+		 * @param model
+		 *            Model to take surfaces of
+		 * @param parallelism
+		 *            integer number of threads to generate surfaces with
+		 */
+
+		this.model = model;
+		try {
+			fis = CompiledFIS.compile(model);
+		} catch (IllegalArgumentException iae) {
+			JOptionPane.showMessageDialog(null, iae.getMessage(),
+					"FIS Cannot Be Evaluated", JOptionPane.ERROR_MESSAGE);
+			return;
+		}
+
+		if (fis.getNumInputs() < 2 || fis.getNumOutputs() < 1) {
+			JOptionPane.showMessageDialog(null,
+					"A surface needs at least two inputs and one output",
+					"FIS Cannot Be Evaluated", JOptionPane.ERROR_MESSAGE);
+			return;
+		}
+
+		generator = new SurfaceGenerator(fis, parallelism);
+
+		dialog = new JDialog();
+		dialog.setTitle("Control Surface");
+		dialog.setDefaultCloseOperation(JDialog.DISPOSE_ON_CLOSE);
+		dialog.addWindowListener(new WindowAdapter() {
+			public void windowClosed(WindowEvent e) {
+				generator.shutdown();
+			}
+		});
+
+		dialog.getContentPane().add(createControlPanel(), BorderLayout.NORTH);
+		heatmap = new HeatmapPanel();
+		dialog.getContentPane().add(heatmap, BorderLayout.CENTER);
+		statusText = new JLabel(" ");
+		dialog.getContentPane().add(statusText, BorderLayout.SOUTH);
+
+		dialog.pack();
+		dialog.setLocationRelativeTo(null);
+		dialog.setVisible(true);
+	}
+
+	private JPanel createControlPanel() {
+		/**
+		 * Creates the panel holding the axis, output, resolution and fixed
+		 * input choices, and the buttons
+		 * 
+		 * @return the filled panel
+		 */
+
+		JPanel panel = new JPanel(new GridBagLayout());
+		panel.setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
+
+		GridBagConstraints c = new GridBagConstraints();
+		c.fill = GridBagConstraints.HORIZONTAL;
+		c.ipadx = 5;
+		c.ipady = 2;
+		c.weightx = 1;
+
+		String[] inputNames = new String[model.getVarInList().size()];
+		for (int i = 0; i < inputNames.length; i++) {
+			inputNames[i] = model.getVarInList().get(i).getName();
+		}
+		String[] outputNames = new String[model.getVarOutList().size()];
+		for (int o = 0; o < outputNames.length; o++) {
+			outputNames[o] = model.getVarOutList().get(o).getName();
+		}
+
+		xInputComboBox = new JComboBox<String>(inputNames);
+		yInputComboBox = new JComboBox<String>(inputNames);
+		yInputComboBox.setSelectedIndex(1);
+		outputComboBox = new JComboBox<String>(outputNames);
+		pointsSpinner = new JSpinner(new SpinnerNumberModel(DEFAULT_POINTS, 2,
+				4000, 50));
+
+		addRow(panel, c, 0, "X Axis", xInputComboBox);
+		addRow(panel, c, 1, "Y Axis", yInputComboBox);
+		addRow(panel, c, 2, "Output", outputComboBox);
+		addRow(panel, c, 3, "Points per Side", pointsSpinner);
+
+		fixedSpinners = new JSpinner[inputNames.length];
+		for (int i = 0; i < inputNames.length; i++) {
+			Variable v = model.getVarInList().get(i);
+			double min = v.getRangeMin();
+			double max = v.getRangeMax();
+			double step = max > min ? (max - min) / 100 : 1;
+			fixedSpinners[i] = new JSpinner(new SpinnerNumberModel(
+					(min + max) / 2, min, max, step));
+			addRow(panel, c, 4 + i, "Fixed " + inputNames[i], fixedSpinners[i]);
+		}
+
+		ActionListener axisListener = new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				updateFixedSpinners();
+			}
+		};
+		xInputComboBox.addActionListener(axisListener);
+		yInputComboBox.addActionListener(axisListener);
+		outputComboBox.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				heatmap.redraw();
+			}
+		});
+		updateFixedSpinners();
+
+		JPanel buttons = new JPanel();
+		generateButton = new JButton("Generate");
+		exportCSVButton = new JButton("Export CSV");
+		exportBinaryButton = new JButton("Export Binary");
+		exportCSVButton.setEnabled(false);
+		exportBinaryButton.setEnabled(false);
+		buttons.add(generateButton);
+		buttons.add(exportCSVButton);
+		buttons.add(exportBinaryButton);
+
+		generateButton.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				generate();
+			}
+		});
+		exportCSVButton.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				export(false);
+			}
+		});
+		exportBinaryButton.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				export(true);
+			}
+		});
+
+		c.gridx = 0;
+		c.gridy = 4 + inputNames.length;
+		c.gridwidth = 2;
+		panel.add(buttons, c);
+
+		return panel;
+	}
+
+	private void addRow(JPanel panel, GridBagConstraints c, int row,
+			String label, Component component) {
+		/**
+		 * Adds a labelled component as a row of the control panel
+		 */
+		c.gridwidth = 1;
+		c.gridx = 0;
+		c.gridy = row;
+		panel.add(new JLabel(label), c);
+		c.gridx = 1;
+		panel.add(component, c);
+	}
+
+	private void updateFixedSpinners() {
+		/**
+		 * Disables the fixed values of the inputs chosen as axes
+		 */
+		for (int i = 0; i < fixedSpinners.length; i++) {
+			fixedSpinners[i].setEnabled(i != xInputComboBox.getSelectedIndex()
+					&& i != yInputComboBox.getSelectedIndex());
+		}
+	}
+
+	/*
+	 * Generation and Export
+	 */
+
+	private void generate() {
+		/**
+		 * Generates the chosen surface on a background thread, drawing each
+		 * tile as it finishes
+		 */
+
+		final int xInput = xInputComboBox.getSelectedIndex();
+		final int yInput = yInputComboBox.getSelectedIndex();
+		if (xInput == yInput) {
+			JOptionPane.showMessageDialog(dialog,
+					"Please choose two different inputs for the axes",
+					"Invalid Axes", JOptionPane.ERROR_MESSAGE);
+			return;
+		}
+
+		final int points = (Integer) pointsSpinner.getValue();
+		final double[] fixed = new double[fixedSpinners.length];
+		for (int i = 0; i < fixed.length; i++) {
+			fixed[i] = ((Number) fixedSpinners[i].getValue()).doubleValue();
+		}
+
+		// the image and output are chosen here, so the workers drawing the
+		// tiles never read the components
+		final int output = outputComboBox.getSelectedIndex();
+		generateButton.setEnabled(false);
+		exportCSVButton.setEnabled(false);
+		exportBinaryButton.setEnabled(false);
+		final BufferedImage image = heatmap.reset(points, points);
+		statusText.setText("Generating...");
+
+		final int hitsBefore = generator.getCacheHits();
+		new SwingWorker<Surface, Void>() {
+
+			private long nanos;
+
+			protected Surface doInBackground() throws Exception {
+				long start = System.nanoTime();
+				Surface s = generator.generate(xInput, yInput, fixed, points,
+						points, new SurfaceGenerator.TileListener() {
+							public void tileFinished(Surface s, int x, int y,
+									int width, int height) {
+								heatmap.drawTile(image, s, output, x, y,
+										width, height);
+							}
+						});
+				nanos = System.nanoTime() - start;
+				return s;
+			}
+
+			protected void done() {
+				generateButton.setEnabled(true);
+				try {
+					surface = get();
+					exportCSVButton.setEnabled(true);
+					exportBinaryButton.setEnabled(true);
+					heatmap.redraw();
+					statusText.setText(String.format(
+							"%d x %d points in %.1f ms (%d cached tiles reused)",
+							points, points, nanos / 1e6,
+							generator.getCacheHits() - hitsBefore));
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} catch (ExecutionException e) {
+					statusText.setText("Generation failed: "
+							+ e.getCause().getMessage());
+				}
+			}
+		}.execute();
+	}
+
+	private void export(boolean binary) {
+		/**
+		 * Asks for a file and writes the current surface to it
+		 * 
+		 * @param binary
+		 *            boolean, true to write every output in binary, false to
+		 *            write the chosen output as CSV
+		 */
+
+		JFileChooser jfc = new JFileChooser(System.getProperty("user.dir"));
+		if (jfc.showSaveDialog(dialog) != JFileChooser.APPROVE_OPTION) {
+			return;
+		}
+
+		File file = jfc.getSelectedFile();
+		try {
+			if (binary) {
+				surface.exportBinary(file);
+			} else {
+				surface.exportCSV(file, outputComboBox.getSelectedIndex());
+			}
+			statusText.setText("Exported to " + file.getName());
+		} catch (IOException ioe) {
+			JOptionPane.showMessageDialog(dialog,
+					"Could not write " + file.getName() + ": "
+							+ ioe.getMessage(), "Export Failed",
+					JOptionPane.ERROR_MESSAGE);
+		}
+	}
+
+	/*
+	 * HeatmapPanel Sub Class
+	 */
+
+	class HeatmapPanel extends JPanel {
+
+		/*
+		 * Draws a surface as an image, one pixel per point, coloured from blue
+		 * at the bottom of the output's range to red at the top, and scaled
+		 * to fit the panel
+		 */
+
+		private static final long serialVersionUID = 1L;
+
+		private BufferedImage image;
+
+		public HeatmapPanel() {
+			setPreferredSize(new Dimension(DEFAULT_POINTS, DEFAULT_POINTS));
+			setBackground(Color.WHITE);
+		}
+
+		public BufferedImage reset(int width, int height) {
+			/**
+			 * Starts a new, blank image
+			 * 
+			 * @return BufferedImage, the image now shown
+			 */
+			image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+			repaint();
+			return image;
+		}
+
+		public void drawTile(BufferedImage img, Surface s, int o, int x,
+				int y, int width, int height) {
+			/**
+			 * Colours one finished tile of an output into an image. Called
+			 * from the generator's threads, which each write separate pixels
+			 * of the image
+			 */
+
+			if (img.getWidth() != s.getXPoints()
+					|| img.getHeight() != s.getYPoints()) {
+				return;
+			}
+
+			double min = fis.getOutputMin(o);
+			double max = fis.getOutputMax(o);
+			int rows = s.getYPoints();
+			for (int j = y; j < y + height; j++) {
+				for (int i = x; i < x + width; i++) {
+					img.setRGB(i, rows - 1 - j,
+							colour(s.getValue(o, i, j), min, max));
+				}
+			}
+
+			SwingUtilities.invokeLater(new Runnable() {
+				public void run() {
+					repaint();
+				}
+			});
+		}
+
+		public void redraw() {
+			/**
+			 * Colours the whole of the current surface again, for a newly
+			 * chosen output
+			 */
+			if (surface != null && image != null) {
+				drawTile(image, surface, outputComboBox.getSelectedIndex(), 0,
+						0, surface.getXPoints(), surface.getYPoints());
+			}
+		}
+
+		private int colour(double value, double min, double max) {
+			double t = max > min ? (value - min) / (max - min) : 0.5;
+			t = Math.max(0, Math.min(1, t));
+			return Color.HSBtoRGB((float) (0.66 * (1 - t)), 1f, 1f);
+		}
+
+		protected void paintComponent(Graphics g) {
+			super.paintComponent(g);
+			if (image != null) {
+				g.drawImage(image, 0, 0, getWidth(), getHeight(), null);
+			}
+		}
+	}
+}
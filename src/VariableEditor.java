@@ -28,11 +28,9 @@ import org.jfree.chart.ChartFactory;
 import org.jfree.chart.ChartPanel;
 import org.jfree.chart.JFreeChart;
 import org.jfree.chart.plot.PlotOrientation;
-import org.jfree.chart.renderer.xy.XYSplineRenderer;
 import org.jfree.data.xy.XYDataset;
 import org.jfree.data.xy.XYSeriesCollection;
 
-import data.Constants;
 import data.MembershipFunction;
 import data.Variable;
 
@@ -170,6 +168,26 @@ public class VariableEditor {
 			return "Triangular: ";
 		case (3):
 			return "Trapezoidal: ";
+		case (4):
+			return "Constant: ";
+		case (5):
+			return "Linear: ";
+		case (6):
+			return "Bell: ";
+		case (7):
+			return "Sigmoid: ";
+		case (8):
+			return "Difference of Sigmoids: ";
+		case (9):
+			return "Product of Sigmoids: ";
+		case (10):
+			return "Pi: ";
+		case (11):
+			return "S: ";
+		case (12):
+			return "Z: ";
+		case (13):
+			return "Singleton: ";
 		default:
 			return "Error";
 		}
@@ -578,12 +596,6 @@ public class VariableEditor {
 
 		chartPanel = new ChartPanel(chart);
 
-		if (mfList.size() > 0) {
-			if (mfList.get(0).getType() == Constants.MEMBERSHIPFUNCTION_GAUSSIAN
-					|| mfList.get(0).getType() == Constants.MEMBERSHIPFUNCTION_GAUSSIAN_B) {
-				chart.getXYPlot().setRenderer(new XYSplineRenderer());
-			}
-		}
 		c.gridx = 10;
 		c.gridheight = 15;
 		c.gridy = 0;
@@ -12,6 +12,14 @@ public class Constants {
 	public static final int DEFUZZ_MOM = 3;
 	public static final int DEFUZZ_SOM = 4;
 	public static final int DEFUZZ_LOM = 5;
+	public static final int DEFUZZ_WTAVER = 6;
+	public static final int DEFUZZ_WTSUM = 7;
+
+	/*
+	 * System types, as they appear in a fis file
+	 */
+	public static final String TYPE_MAMDANI = "mamdani";
+	public static final String TYPE_SUGENO = "sugeno";
 
 	/*
 	 * Indicates an inputless rule
@@ -25,6 +33,16 @@ public class Constants {
 	public static final int MEMBERSHIPFUNCTION_GAUSSIAN_B = 1;
 	public static final int MEMBERSHIPFUNCTION_TRIANGULAR = 2;
 	public static final int MEMBERSHIPFUNCTION_TRAPEZOIDAL = 3;
+	public static final int MEMBERSHIPFUNCTION_CONSTANT = 4;
+	public static final int MEMBERSHIPFUNCTION_LINEAR = 5;
+	public static final int MEMBERSHIPFUNCTION_BELL = 6;
+	public static final int MEMBERSHIPFUNCTION_SIGMOID = 7;
+	public static final int MEMBERSHIPFUNCTION_DIFF_SIGMOID = 8;
+	public static final int MEMBERSHIPFUNCTION_PROD_SIGMOID = 9;
+	public static final int MEMBERSHIPFUNCTION_PI = 10;
+	public static final int MEMBERSHIPFUNCTION_S = 11;
+	public static final int MEMBERSHIPFUNCTION_Z = 12;
+	public static final int MEMBERSHIPFUNCTION_SINGLETON = 13;
 
 	/*
 	 * Connectives
@@ -32,7 +50,18 @@ public class Constants {
 
 	public static final int CONNECTIVE_AND = 1;
 	public static final int CONNECTIVE_OR = 2;
-	
+
+	/*
+	 * Fuzzy operators, used by the And, Or, Implication and Aggregation
+	 * methods
+	 */
+
+	public static final int METHOD_MIN = 1;
+	public static final int METHOD_PROD = 2;
+	public static final int METHOD_MAX = 3;
+	public static final int METHOD_PROBOR = 4;
+	public static final int METHOD_SUM = 5;
+
 	/*
 	 * Fail safes
 	 */
@@ -1,7 +1,9 @@
 /**
  * MembershipFunction Class
  * Data storage class for MembershipFunctions
- * Currently supports Guassian, Gaussian b, Triangular and Trapezoidal
+ * Currently supports Guassian, Gaussian b, Triangular, Trapezoidal,
+ * generalised Bell, Sigmoid, difference and product of Sigmoids, Pi, S, Z and
+ * Singleton, and the Constant and Linear output functions of Sugeno systems
  * 
  * @author Craig Knott
  */
@@ -19,6 +21,20 @@ public class MembershipFunction {
 	int type;
 	double[] parameters;
 
+	/*
+	 * Largest bell function slope raised to by multiplication
+	 */
+	public static final int MAX_POWER = 8;
+
+	/*
+	 * Number of constants derived from the parameters of a function for its
+	 * shape to evaluate it from
+	 */
+	public static final int SHAPE_SIZE = 9;
+
+	private Shape shape;
+	private final double[] constants = new double[SHAPE_SIZE];
+
 	/*
 	 * Constructor
 	 */
@@ -37,6 +53,7 @@ public class MembershipFunction {
 
 		this.name = name;
 		this.type = i;
+		this.shape = shape(i);
 
 		/**
 		 * Dependant on type given, constructor sets up a relevant membership
@@ -59,9 +76,89 @@ public class MembershipFunction {
 			parameters = new double[5];
 			trapezoidalCreator(params);
 			break;
+		case (Constants.MEMBERSHIPFUNCTION_CONSTANT):
+			parameters = new double[1];
+			constantCreator(params);
+			break;
+		case (Constants.MEMBERSHIPFUNCTION_LINEAR):
+			parameters = new double[params.length];
+			linearCreator(params);
+			break;
+		case (Constants.MEMBERSHIPFUNCTION_BELL):
+			parameters = new double[4];
+			bellCreator(params);
+			break;
+		case (Constants.MEMBERSHIPFUNCTION_SIGMOID):
+			parameters = new double[3];
+			sigmoidCreator(params);
+			break;
+		case (Constants.MEMBERSHIPFUNCTION_DIFF_SIGMOID):
+			parameters = new double[5];
+			diffSigmoidCreator(params);
+			break;
+		case (Constants.MEMBERSHIPFUNCTION_PROD_SIGMOID):
+			parameters = new double[5];
+			prodSigmoidCreator(params);
+			break;
+		case (Constants.MEMBERSHIPFUNCTION_PI):
+			parameters = new double[5];
+			piCreator(params);
+			break;
+		case (Constants.MEMBERSHIPFUNCTION_S):
+			parameters = new double[3];
+			sCreator(params);
+			break;
+		case (Constants.MEMBERSHIPFUNCTION_Z):
+			parameters = new double[3];
+			zCreator(params);
+			break;
+		case (Constants.MEMBERSHIPFUNCTION_SINGLETON):
+			parameters = new double[2];
+			singletonCreator(params);
+			break;
 		}
 	}
 
+	/*
+	 * Evaluation
+	 */
+
+	public double degree(double x) {
+		/**
+		 * Returns the degree of membership of a crisp value in this function
+		 * 
+		 * @param x
+		 *            double, the crisp value
+		 * 
+		 * @return double, the degree of membership of x
+		 * 
+		 * @throws UnsupportedOperationException
+		 *             if this is a Sugeno output function
+		 */
+		return shape.degree(constants, 0, x);
+	}
+
+	public void degrees(double[] xs, double[] out, int from, int to) {
+		/**
+		 * Evaluates this function over a run of crisp values, writing each
+		 * degree of membership to the same index of out. Nothing is
+		 * allocated, so out can be reused from call to call
+		 * 
+		 * @param xs
+		 *            array of doubles holding the crisp values
+		 * @param out
+		 *            array of doubles to be filled with the degrees
+		 * @param from
+		 *            integer, index of the first value, inclusive
+		 * @param to
+		 *            integer, index of the last value, exclusive
+		 * 
+		 * @throws UnsupportedOperationException
+		 *             if this is a Sugeno output function
+		 */
+		shape.degrees(constants, 0, xs, from, to - from, out, from);
+	}
+
 	/*
 	 * Data Retrieval Methods
 	 */
@@ -132,6 +229,8 @@ public class MembershipFunction {
 		parameters[0] = params[0];
 		parameters[1] = params[1];
 		parameters[2] = params[2];
+
+		derive();
 	}
 
 	public void gaussianBCreator(double[] params) {
@@ -147,6 +246,8 @@ public class MembershipFunction {
 		parameters[2] = params[2];
 		parameters[3] = params[3];
 		parameters[4] = params[4];
+
+		derive();
 	}
 
 	public void triangularCreator(double[] params) {
@@ -161,6 +262,8 @@ public class MembershipFunction {
 		parameters[1] = params[1];
 		parameters[2] = params[2];
 		parameters[3] = params[3];
+
+		derive();
 	}
 
 	public void trapezoidalCreator(double[] params) {
@@ -176,12 +279,280 @@ public class MembershipFunction {
 		parameters[2] = params[2];
 		parameters[3] = params[3];
 		parameters[4] = params[4];
+
+		derive();
+	}
+
+	public void constantCreator(double[] params) {
+		/**
+		 * Creates a constant Sugeno output function
+		 * 
+		 * @param params
+		 *            array of doubles, holding the constant value
+		 */
+
+		parameters[0] = params[0];
+
+		derive();
+	}
+
+	public void linearCreator(double[] params) {
+		/**
+		 * Creates a linear Sugeno output function, whose value is the sum of
+		 * each input multiplied by its coefficient, plus the constant term
+		 * 
+		 * @param params
+		 *            array of doubles, one coefficient per input variable
+		 *            followed by the constant term
+		 */
+
+		for (int i = 0; i < params.length; i++) {
+			parameters[i] = params[i];
+		}
+
+		derive();
+	}
+
+	public void bellCreator(double[] params) {
+		/**
+		 * Creates a generalised bell function, height / (1 + |(x - centre) /
+		 * width|^(2 * slope))
+		 * 
+		 * @param params
+		 *            array of doubles holding the width, slope, centre and
+		 *            height
+		 */
+
+		for (int i = 0; i < parameters.length; i++) {
+			parameters[i] = params[i];
+		}
+
+		derive();
+	}
+
+	public void sigmoidCreator(double[] params) {
+		/**
+		 * Creates a sigmoid function, height / (1 + e^(-slope * (x -
+		 * centre)))
+		 * 
+		 * @param params
+		 *            array of doubles holding the slope, centre and height
+		 */
+
+		for (int i = 0; i < parameters.length; i++) {
+			parameters[i] = params[i];
+		}
+
+		derive();
+	}
+
+	public void diffSigmoidCreator(double[] params) {
+		/**
+		 * Creates the difference of two sigmoid functions, the second taken
+		 * from the first
+		 * 
+		 * @param params
+		 *            array of doubles holding the slope and centre of each
+		 *            sigmoid, then height
+		 */
+
+		for (int i = 0; i < parameters.length; i++) {
+			parameters[i] = params[i];
+		}
+
+		derive();
+	}
+
+	public void prodSigmoidCreator(double[] params) {
+		/**
+		 * Creates the product of two sigmoid functions
+		 * 
+		 * @param params
+		 *            array of doubles holding the slope and centre of each
+		 *            sigmoid, then height
+		 */
+
+		for (int i = 0; i < parameters.length; i++) {
+			parameters[i] = params[i];
+		}
+
+		derive();
+	}
+
+	public void piCreator(double[] params) {
+		/**
+		 * Creates a pi-shaped function, an S-shaped rise from the left foot
+		 * to the left shoulder and a Z-shaped fall from the right shoulder to
+		 * the right foot
+		 * 
+		 * @param params
+		 *            array of doubles holding the left foot, left shoulder,
+		 *            right shoulder, right foot and height
+		 */
+
+		for (int i = 0; i < parameters.length; i++) {
+			parameters[i] = params[i];
+		}
+
+		derive();
+	}
+
+	public void sCreator(double[] params) {
+		/**
+		 * Creates an S-shaped function, rising smoothly from 0 at the foot
+		 * to its height at the shoulder
+		 * 
+		 * @param params
+		 *            array of doubles holding the foot, shoulder and height
+		 */
+
+		for (int i = 0; i < parameters.length; i++) {
+			parameters[i] = params[i];
+		}
+
+		derive();
+	}
+
+	public void zCreator(double[] params) {
+		/**
+		 * Creates a Z-shaped function, falling smoothly from its height at the
+		 * shoulder to 0 at the foot
+		 * 
+		 * @param params
+		 *            array of doubles holding the shoulder, foot and height
+		 */
+
+		for (int i = 0; i < parameters.length; i++) {
+			parameters[i] = params[i];
+		}
+
+		derive();
+	}
+
+	public void singletonCreator(double[] params) {
+		/**
+		 * Creates a singleton, a fuzzy set with its height at exactly one
+		 * value and 0 everywhere else
+		 * 
+		 * @param params
+		 *            array of doubles holding the value and height
+		 */
+
+		for (int i = 0; i < parameters.length; i++) {
+			parameters[i] = params[i];
+		}
+
+		derive();
 	}
 
 	/*
 	 * Auxiliary Methods
 	 */
 
+	private void derive() {
+		/**
+		 * Works out the constants this function is evaluated from, once its
+		 * parameters are set
+		 */
+		derive(type, parameters, 0, constants, 0);
+	}
+
+	public boolean isSugenoOutput() {
+		/**
+		 * Returns whether this is a Sugeno output function rather than a
+		 * fuzzy set
+		 * 
+		 * @return boolean, true for constant and linear functions
+		 */
+		return type == Constants.MEMBERSHIPFUNCTION_CONSTANT
+				|| type == Constants.MEMBERSHIPFUNCTION_LINEAR;
+	}
+
+	public static int wholeSlope(double slope) {
+		/**
+		 * Returns the slope of a bell function if it is a whole number from 1
+		 * to MAX_POWER, to be passed to power, or 0 otherwise
+		 * 
+		 * @param slope
+		 *            double, the slope of the bell function
+		 * 
+		 * @return integer, the slope as a whole number, or 0
+		 */
+		return slope == Math.rint(slope) && slope >= 1 && slope <= MAX_POWER ? (int) slope
+				: 0;
+	}
+
+	public static double power(double t, int n, double slope) {
+		/**
+		 * Returns t to the power of a bell function's slope, multiplying t by
+		 * itself when the slope is a whole number n from 1 to MAX_POWER, or
+		 * with Math.pow when n is 0
+		 * 
+		 * @param t
+		 *            double, the base, the square of the scaled distance
+		 *            from the centre
+		 * @param n
+		 *            integer, the slope if it is a small whole number, else 0
+		 * @param slope
+		 *            double, the slope of the bell function
+		 * 
+		 * @return double, t to the power of slope
+		 */
+		if (n == 0) {
+			return Math.pow(t, slope);
+		}
+		double u = t;
+		for (int i = 1; i < n; i++) {
+			u *= t;
+		}
+		return u;
+	}
+
+	public static int parametersForType(int type) {
+		/**
+		 * Returns the number of parameters a type of function is made from
+		 * 
+		 * @param type
+		 *            integer representing the type of a membership function
+		 * 
+		 * @return integer number of parameters, -1 for a linear function,
+		 *         whose length depends on the number of inputs, or 0 if the
+		 *         type is unknown
+		 */
+		switch (type) {
+		case (Constants.MEMBERSHIPFUNCTION_GAUSSIAN):
+			return 3;
+		case (Constants.MEMBERSHIPFUNCTION_GAUSSIAN_B):
+			return 5;
+		case (Constants.MEMBERSHIPFUNCTION_TRIANGULAR):
+			return 4;
+		case (Constants.MEMBERSHIPFUNCTION_TRAPEZOIDAL):
+			return 5;
+		case (Constants.MEMBERSHIPFUNCTION_CONSTANT):
+			return 1;
+		case (Constants.MEMBERSHIPFUNCTION_LINEAR):
+			return -1;
+		case (Constants.MEMBERSHIPFUNCTION_BELL):
+			return 4;
+		case (Constants.MEMBERSHIPFUNCTION_SIGMOID):
+			return 3;
+		case (Constants.MEMBERSHIPFUNCTION_DIFF_SIGMOID):
+			return 5;
+		case (Constants.MEMBERSHIPFUNCTION_PROD_SIGMOID):
+			return 5;
+		case (Constants.MEMBERSHIPFUNCTION_PI):
+			return 5;
+		case (Constants.MEMBERSHIPFUNCTION_S):
+			return 3;
+		case (Constants.MEMBERSHIPFUNCTION_Z):
+			return 3;
+		case (Constants.MEMBERSHIPFUNCTION_SINGLETON):
+			return 2;
+		default:
+			return 0;
+		}
+	}
+
 	public String intToType(int type) {
 		/**
 		 * Returns a string representation of a given type number
@@ -201,9 +572,445 @@ public class MembershipFunction {
 			return "trimf";
 		case (Constants.MEMBERSHIPFUNCTION_TRAPEZOIDAL):
 			return "trapmf";
+		case (Constants.MEMBERSHIPFUNCTION_CONSTANT):
+			return "constant";
+		case (Constants.MEMBERSHIPFUNCTION_LINEAR):
+			return "linear";
+		case (Constants.MEMBERSHIPFUNCTION_BELL):
+			return "gbellmf";
+		case (Constants.MEMBERSHIPFUNCTION_SIGMOID):
+			return "sigmf";
+		case (Constants.MEMBERSHIPFUNCTION_DIFF_SIGMOID):
+			return "dsigmf";
+		case (Constants.MEMBERSHIPFUNCTION_PROD_SIGMOID):
+			return "psigmf";
+		case (Constants.MEMBERSHIPFUNCTION_PI):
+			return "pimf";
+		case (Constants.MEMBERSHIPFUNCTION_S):
+			return "smf";
+		case (Constants.MEMBERSHIPFUNCTION_Z):
+			return "zmf";
+		case (Constants.MEMBERSHIPFUNCTION_SINGLETON):
+			return "singleton";
 		default:
 			return null;
 		}
 
 	}
+
+	/*
+	 * Shapes. Every type is evaluated here, so that a function and a compiled
+	 * system holding the same parameters give exactly the same degrees. The
+	 * constants a shape needs (scales, slopes, corners, middles and curves)
+	 * are derived from the parameters once, when they are set or compiled,
+	 * into SHAPE_SIZE doubles; a Shape then evaluates from those alone, with
+	 * no type to switch on and nothing to divide, and a single value goes
+	 * through the same arithmetic as a run of them
+	 */
+
+	public static Shape shape(int type) {
+		/**
+		 * Returns the shape that evaluates functions of a type
+		 * 
+		 * @param type
+		 *            integer representing the type of the function
+		 * 
+		 * @return Shape for the type, which throws
+		 *         UnsupportedOperationException if the type has no degree of
+		 *         membership, as with the Sugeno output functions
+		 */
+		if (type >= 0 && type < SHAPES.length) {
+			return SHAPES[type];
+		}
+		return new NoDegree(type);
+	}
+
+	public static void derive(int type, double[] p, int o, double[] c, int k) {
+		/**
+		 * Works out the constants the shape of a type evaluates a function
+		 * from
+		 * 
+		 * @param type
+		 *            integer representing the type of the function
+		 * @param p
+		 *            array of doubles holding the parameters, laid out as in
+		 *            a MembershipFunction
+		 * @param o
+		 *            integer, the index of the first parameter in p
+		 * @param c
+		 *            array of doubles to hold the constants
+		 * @param k
+		 *            integer, the index of the first of the SHAPE_SIZE
+		 *            constants in c
+		 */
+
+		switch (type) {
+		case (Constants.MEMBERSHIPFUNCTION_GAUSSIAN):
+			c[k] = p[o + 1];
+			c[k + 1] = scale(p[o]);
+			c[k + 2] = p[o + 2];
+			break;
+		case (Constants.MEMBERSHIPFUNCTION_GAUSSIAN_B):
+			c[k] = p[o + 1];
+			c[k + 1] = scale(p[o]);
+			c[k + 2] = p[o + 3];
+			c[k + 3] = scale(p[o + 2]);
+			c[k + 4] = p[o + 4];
+			break;
+		case (Constants.MEMBERSHIPFUNCTION_TRIANGULAR):
+		case (Constants.MEMBERSHIPFUNCTION_TRAPEZOIDAL):
+			for (int j = 0; j < 5; j++) {
+				c[k + j] = corner(type, p, o, j);
+			}
+			c[k + 5] = c[k + 4] / (c[k + 1] - c[k]);
+			c[k + 6] = c[k + 4] / (c[k + 3] - c[k + 2]);
+			break;
+		case (Constants.MEMBERSHIPFUNCTION_BELL):
+			c[k] = p[o + 2];
+			c[k + 1] = 1 / p[o];
+			c[k + 2] = p[o + 1];
+			c[k + 3] = wholeSlope(p[o + 1]);
+			c[k + 4] = p[o + 3];
+			break;
+		case (Constants.MEMBERSHIPFUNCTION_SIGMOID):
+		case (Constants.MEMBERSHIPFUNCTION_DIFF_SIGMOID):
+		case (Constants.MEMBERSHIPFUNCTION_PROD_SIGMOID):
+		case (Constants.MEMBERSHIPFUNCTION_SINGLETON):
+			System.arraycopy(p, o, c, k, parametersForType(type));
+			break;
+		case (Constants.MEMBERSHIPFUNCTION_PI):
+		case (Constants.MEMBERSHIPFUNCTION_S):
+		case (Constants.MEMBERSHIPFUNCTION_Z):
+			for (int j = 0; j < 5; j++) {
+				c[k + j] = corner(type, p, o, j);
+			}
+			c[k + 5] = middle(c[k], c[k + 1]);
+			c[k + 6] = curve(c[k], c[k + 1]);
+			c[k + 7] = middle(c[k + 3], c[k + 2]);
+			c[k + 8] = curve(c[k + 3], c[k + 2]);
+			break;
+		default:
+			// no degree of membership, so nothing to work out
+		}
+	}
+
+	public abstract static class Shape {
+
+		/**
+		 * Evaluates functions of one type from their derived constants
+		 */
+
+		public abstract double degree(double[] c, int k, double x);
+
+		public abstract void degrees(double[] c, int k, double[] xs,
+				int from, int n, double[] out, int off);
+
+		/*
+		 * degree returns the degree of membership of x in the function whose
+		 * constants start at c[k]. degrees evaluates n values from xs[from]
+		 * into out[off], reading the constants once, so that each loop is a
+		 * tight body the JIT can unroll
+		 */
+	}
+
+	private static final Shape[] SHAPES = { new Gaussian(), new GaussianB(),
+			new Trapezoid(), new Trapezoid(),
+			new NoDegree(Constants.MEMBERSHIPFUNCTION_CONSTANT),
+			new NoDegree(Constants.MEMBERSHIPFUNCTION_LINEAR), new Bell(),
+			new Sigmoid(), new DiffSigmoid(), new ProdSigmoid(), new Smooth(),
+			new Smooth(), new Smooth(), new Singleton() };
+
+	private static final class Gaussian extends Shape {
+		public double degree(double[] c, int k, double x) {
+			return gaussian(x, c[k], c[k + 1], c[k + 2]);
+		}
+
+		public void degrees(double[] c, int k, double[] xs, int from, int n,
+				double[] out, int off) {
+			double mean = c[k];
+			double scale = c[k + 1];
+			double height = c[k + 2];
+			for (int j = 0; j < n; j++) {
+				out[off + j] = gaussian(xs[from + j], mean, scale, height);
+			}
+		}
+	}
+
+	private static final class GaussianB extends Shape {
+		public double degree(double[] c, int k, double x) {
+			return gaussianB(x, c[k], c[k + 1], c[k + 2], c[k + 3], c[k + 4]);
+		}
+
+		public void degrees(double[] c, int k, double[] xs, int from, int n,
+				double[] out, int off) {
+			double leftMean = c[k];
+			double leftScale = c[k + 1];
+			double rightMean = c[k + 2];
+			double rightScale = c[k + 3];
+			double height = c[k + 4];
+			for (int j = 0; j < n; j++) {
+				out[off + j] = gaussianB(xs[from + j], leftMean, leftScale,
+						rightMean, rightScale, height);
+			}
+		}
+	}
+
+	private static final class Trapezoid extends Shape {
+		public double degree(double[] c, int k, double x) {
+			return trapezoid(x, c[k], c[k + 1], c[k + 2], c[k + 3], c[k + 4],
+					c[k + 5], c[k + 6]);
+		}
+
+		public void degrees(double[] c, int k, double[] xs, int from, int n,
+				double[] out, int off) {
+			double leftFoot = c[k];
+			double leftShoulder = c[k + 1];
+			double rightShoulder = c[k + 2];
+			double rightFoot = c[k + 3];
+			double height = c[k + 4];
+			double up = c[k + 5];
+			double down = c[k + 6];
+			for (int j = 0; j < n; j++) {
+				out[off + j] = trapezoid(xs[from + j], leftFoot, leftShoulder,
+						rightShoulder, rightFoot, height, up, down);
+			}
+		}
+	}
+
+	private static final class Bell extends Shape {
+		public double degree(double[] c, int k, double x) {
+			return bell(x, c[k], c[k + 1], c[k + 2], (int) c[k + 3], c[k + 4]);
+		}
+
+		public void degrees(double[] c, int k, double[] xs, int from, int n,
+				double[] out, int off) {
+			double centre = c[k];
+			double scale = c[k + 1];
+			double slope = c[k + 2];
+			int power = (int) c[k + 3];
+			double height = c[k + 4];
+			for (int j = 0; j < n; j++) {
+				out[off + j] = bell(xs[from + j], centre, scale, slope, power,
+						height);
+			}
+		}
+	}
+
+	private static final class Sigmoid extends Shape {
+		public double degree(double[] c, int k, double x) {
+			return sigmoid(x, c[k], c[k + 1], c[k + 2]);
+		}
+
+		public void degrees(double[] c, int k, double[] xs, int from, int n,
+				double[] out, int off) {
+			double slope = c[k];
+			double centre = c[k + 1];
+			double height = c[k + 2];
+			for (int j = 0; j < n; j++) {
+				out[off + j] = sigmoid(xs[from + j], slope, centre, height);
+			}
+		}
+	}
+
+	private static final class DiffSigmoid extends Shape {
+		public double degree(double[] c, int k, double x) {
+			return c[k + 4]
+					* Math.max(sigmoid(x, c[k], c[k + 1], 1)
+							- sigmoid(x, c[k + 2], c[k + 3], 1), 0);
+		}
+
+		public void degrees(double[] c, int k, double[] xs, int from, int n,
+				double[] out, int off) {
+			double slope1 = c[k];
+			double centre1 = c[k + 1];
+			double slope2 = c[k + 2];
+			double centre2 = c[k + 3];
+			double height = c[k + 4];
+			for (int j = 0; j < n; j++) {
+				double x = xs[from + j];
+				out[off + j] = height
+						* Math.max(sigmoid(x, slope1, centre1, 1)
+								- sigmoid(x, slope2, centre2, 1), 0);
+			}
+		}
+	}
+
+	private static final class ProdSigmoid extends Shape {
+		public double degree(double[] c, int k, double x) {
+			return c[k + 4]
+					* (sigmoid(x, c[k], c[k + 1], 1) * sigmoid(x, c[k + 2],
+							c[k + 3], 1));
+		}
+
+		public void degrees(double[] c, int k, double[] xs, int from, int n,
+				double[] out, int off) {
+			double slope1 = c[k];
+			double centre1 = c[k + 1];
+			double slope2 = c[k + 2];
+			double centre2 = c[k + 3];
+			double height = c[k + 4];
+			for (int j = 0; j < n; j++) {
+				double x = xs[from + j];
+				out[off + j] = height
+						* (sigmoid(x, slope1, centre1, 1) * sigmoid(x, slope2,
+								centre2, 1));
+			}
+		}
+	}
+
+	private static final class Smooth extends Shape {
+		public double degree(double[] c, int k, double x) {
+			return c[k + 4]
+					* smooth(x, c[k], c[k + 1], c[k + 5], c[k + 6], c[k + 2],
+							c[k + 3], c[k + 7], c[k + 8]);
+		}
+
+		public void degrees(double[] c, int k, double[] xs, int from, int n,
+				double[] out, int off) {
+			double leftFoot = c[k];
+			double leftShoulder = c[k + 1];
+			double rightShoulder = c[k + 2];
+			double rightFoot = c[k + 3];
+			double height = c[k + 4];
+			double leftMiddle = c[k + 5];
+			double leftCurve = c[k + 6];
+			double rightMiddle = c[k + 7];
+			double rightCurve = c[k + 8];
+			for (int j = 0; j < n; j++) {
+				out[off + j] = height
+						* smooth(xs[from + j], leftFoot, leftShoulder,
+								leftMiddle, leftCurve, rightShoulder,
+								rightFoot, rightMiddle, rightCurve);
+			}
+		}
+	}
+
+	private static final class Singleton extends Shape {
+		public double degree(double[] c, int k, double x) {
+			return x == c[k] ? c[k + 1] : 0;
+		}
+
+		public void degrees(double[] c, int k, double[] xs, int from, int n,
+				double[] out, int off) {
+			double value = c[k];
+			double height = c[k + 1];
+			for (int j = 0; j < n; j++) {
+				out[off + j] = xs[from + j] == value ? height : 0;
+			}
+		}
+	}
+
+	private static final class NoDegree extends Shape {
+		private final int type;
+
+		NoDegree(int type) {
+			this.type = type;
+		}
+
+		public double degree(double[] c, int k, double x) {
+			throw failure();
+		}
+
+		public void degrees(double[] c, int k, double[] xs, int from, int n,
+				double[] out, int off) {
+			throw failure();
+		}
+
+		private UnsupportedOperationException failure() {
+			return new UnsupportedOperationException("Membership function type "
+					+ type + " has no degree of membership");
+		}
+	}
+
+	private static double corner(int type, double[] p, int o, int k) {
+		/**
+		 * Returns the left foot, left shoulder, right shoulder, right foot or
+		 * height (k from 0 to 4) of a triangular, trapezoidal, pi, S or
+		 * Z-shaped function. A triangle is a trapezoid whose shoulders meet,
+		 * and S and Z-shaped functions are pi-shaped ones with one side
+		 * infinitely far away
+		 */
+		switch (type) {
+		case (Constants.MEMBERSHIPFUNCTION_TRIANGULAR):
+			return p[o + (k < 2 ? k : k - 1)];
+		case (Constants.MEMBERSHIPFUNCTION_S):
+			return k == 2 || k == 3 ? Double.POSITIVE_INFINITY : p[o
+					+ (k < 2 ? k : 2)];
+		case (Constants.MEMBERSHIPFUNCTION_Z):
+			return k < 2 ? Double.NEGATIVE_INFINITY : p[o + k - 2];
+		default:
+			return p[o + k];
+		}
+	}
+
+	private static double scale(double sigma) {
+		return -1 / (2 * sigma * sigma);
+	}
+
+	private static double gaussian(double x, double mean, double scale,
+			double height) {
+		double d = x - mean;
+		return height * Math.exp(d * d * scale);
+	}
+
+	private static double gaussianB(double x, double leftMean,
+			double leftScale, double rightMean, double rightScale,
+			double height) {
+		if (x < leftMean) {
+			return gaussian(x, leftMean, leftScale, height);
+		} else if (x > rightMean) {
+			return gaussian(x, rightMean, rightScale, height);
+		}
+		return height;
+	}
+
+	private static double trapezoid(double x, double leftFoot,
+			double leftShoulder, double rightShoulder, double rightFoot,
+			double height, double up, double down) {
+		double rise = x < leftShoulder ? (x - leftFoot) * up : height;
+		double fall = x > rightShoulder ? (rightFoot - x) * down : height;
+		return Math.max(Math.min(rise, fall), 0);
+	}
+
+	private static double bell(double x, double centre, double scale,
+			double slope, int power, double height) {
+		// slopes that are small whole numbers, as they almost always are,
+		// are raised by multiplication rather than Math.pow
+		double t = (x - centre) * scale;
+		return height / (1 + power(t * t, power, slope));
+	}
+
+	private static double sigmoid(double x, double slope, double centre,
+			double height) {
+		return height / (1 + Math.exp(slope * (centre - x)));
+	}
+
+	private static double smooth(double x, double leftFoot,
+			double leftShoulder, double leftMiddle, double leftCurve,
+			double rightShoulder, double rightFoot, double rightMiddle,
+			double rightCurve) {
+		// each side is a pair of parabolas meeting halfway, picked between
+		// without branching on where x lies against the feet and shoulders
+		double a = Math.max(x - leftFoot, 0);
+		double b = Math.max(leftShoulder - x, 0);
+		double rise = x < leftMiddle ? leftCurve * a * a : 1 - leftCurve * b
+				* b;
+		double c = Math.max(x - rightShoulder, 0);
+		double d = Math.max(rightFoot - x, 0);
+		double fall = x < rightMiddle ? 1 - rightCurve * c * c : rightCurve
+				* d * d;
+		return rise * fall;
+	}
+
+	private static double middle(double foot, double shoulder) {
+		// a side that is infinitely far away has no middle to speak of
+		return Double.isInfinite(foot) ? foot : (foot + shoulder) / 2;
+	}
+
+	private static double curve(double foot, double shoulder) {
+		// 0 for a side that is a step, or is infinitely far away
+		double width = Math.abs(shoulder - foot);
+		return width > 0 && width < Double.POSITIVE_INFINITY ? 2 / (width
+				* width) : 0;
+	}
 }
@@ -0,0 +1,230 @@
+/**
+ * Model Class
+ * Used to co-ordinate access to stored data of the system
+ * 
+ * @author Craig Knott
+ */
+
+package data;
+
+import java.util.ArrayList;
+
+public class Model {
+
+	private ArrayList<Variable> varInList;
+	private ArrayList<Variable> varOutList;
+	private RuleList ruleList;
+
+	/*
+	 * FIS Properties, stored as they appear in a fis file
+	 */
+
+	private String name;
+	private String type;
+	private String andMethod;
+	private String orMethod;
+	private String impMethod;
+	private String aggMethod;
+	private String defuzzMethod;
+
+	/*
+	 * Constructor
+	 */
+
+	public Model() {
+		/*
+		 * Constructor
+		 */
+		varInList = new ArrayList<Variable>();
+		varOutList = new ArrayList<Variable>();
+		ruleList = new RuleList();
+
+		name = "";
+		type = Constants.TYPE_MAMDANI;
+		andMethod = "min";
+		orMethod = "max";
+		impMethod = "min";
+		aggMethod = "max";
+		defuzzMethod = "centroid";
+	}
+
+	/*
+	 * Data retrieval methods
+	 */
+
+	public ArrayList<Variable> getVarInList() {
+		/**
+		 * Returns the list of input variables
+		 * 
+		 * @return ArrayList<Variable>, of all system input variables
+		 */
+		return varInList;
+	}
+
+	public ArrayList<Variable> getVarOutList() {
+		/**
+		 * Returns the list of output variables
+		 * 
+		 * @return ArrayList<Variable>, of all system output variables
+		 */
+		return varOutList;
+	}
+
+	public RuleList getRuleList() {
+		/**
+		 * Returns the list of rules
+		 * 
+		 * @return RuleList, of all system rules
+		 */
+		return ruleList;
+	}
+
+	public String getName() {
+		/**
+		 * Returns the name of the FIS
+		 * 
+		 * @return String representing the name of the system
+		 */
+		return name;
+	}
+
+	public String getType() {
+		/**
+		 * Returns the type of the FIS (mamdani or sugeno)
+		 * 
+		 * @return String representing the type of the system
+		 */
+		return type;
+	}
+
+	public boolean isSugeno() {
+		/**
+		 * Returns whether this is a Sugeno system, whose outputs are constant
+		 * or linear functions of the inputs
+		 * 
+		 * @return boolean, true if the system is of Sugeno type
+		 */
+		return Constants.TYPE_SUGENO.equals(type);
+	}
+
+	public String getAndMethod() {
+		/**
+		 * Returns the And method of the FIS (min or prod)
+		 * 
+		 * @return String representing the And method
+		 */
+		return andMethod;
+	}
+
+	public String getOrMethod() {
+		/**
+		 * Returns the Or method of the FIS (max or probor)
+		 * 
+		 * @return String representing the Or method
+		 */
+		return orMethod;
+	}
+
+	public String getImpMethod() {
+		/**
+		 * Returns the Implication method of the FIS (min or prod)
+		 * 
+		 * @return String representing the Implication method
+		 */
+		return impMethod;
+	}
+
+	public String getAggMethod() {
+		/**
+		 * Returns the Aggregation method of the FIS (max, sum or probor)
+		 * 
+		 * @return String representing the Aggregation method
+		 */
+		return aggMethod;
+	}
+
+	public String getDefuzzMethod() {
+		/**
+		 * Returns the Defuzzification method of the FIS (centroid, bisector,
+		 * mom, som or lom, or wtaver or wtsum for a Sugeno system)
+		 * 
+		 * @return String representing the Defuzzification method
+		 */
+		return defuzzMethod;
+	}
+
+	/*
+	 * Data assignment methods
+	 */
+
+	public void setName(String name) {
+		/**
+		 * Sets the name of the FIS
+		 * 
+		 * @param name
+		 *            String to be used as the system name
+		 */
+		this.name = name;
+	}
+
+	public void setType(String type) {
+		/**
+		 * Sets the type of the FIS
+		 * 
+		 * @param type
+		 *            String representing the type (mamdani or sugeno)
+		 */
+		this.type = type;
+	}
+
+	public void setAndMethod(String andMethod) {
+		/**
+		 * Sets the And method of the FIS
+		 * 
+		 * @param andMethod
+		 *            String representing the And method (min or prod)
+		 */
+		this.andMethod = andMethod;
+	}
+
+	public void setOrMethod(String orMethod) {
+		/**
+		 * Sets the Or method of the FIS
+		 * 
+		 * @param orMethod
+		 *            String representing the Or method (max or probor)
+		 */
+		this.orMethod = orMethod;
+	}
+
+	public void setImpMethod(String impMethod) {
+		/**
+		 * Sets the Implication method of the FIS
+		 * 
+		 * @param impMethod
+		 *            String representing the Implication method (min or prod)
+		 */
+		this.impMethod = impMethod;
+	}
+
+	public void setAggMethod(String aggMethod) {
+		/**
+		 * Sets the Aggregation method of the FIS
+		 * 
+		 * @param aggMethod
+		 *            String representing the Aggregation method (max, sum or
+		 *            probor)
+		 */
+		this.aggMethod = aggMethod;
+	}
+
+	public void setDefuzzMethod(String defuzzMethod) {
+		/**
+		 * Sets the Defuzzification method of the FIS
+		 * 
+		 * @param defuzzMethod
+		 *            String representing the Defuzzification method
+		 */
+		this.defuzzMethod = defuzzMethod;
+	}
+}
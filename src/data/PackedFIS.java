@@ -0,0 +1,494 @@
+/**
+ * PackedFIS Class
+ * Data storage class holding a whole Fuzzy Inference System in a handful of
+ * flat arrays, rather than as Variables, MembershipFunctions and Rules. The
+ * rules are a matrix of small integers, one row per rule, in the same form as
+ * the rule lines of a fis file, so a packed system holds everything a fis
+ * file does and converts to and from a Model without loss
+ * 
+ * @author Craig Knott
+ */
+
+package data;
+
+import java.util.ArrayList;
+
+public class PackedFIS {
+
+	/*
+	 * Rule matrix entries hold the number of a membership function (BASE ONE,
+	 * with 0 meaning "none") in their low bits, and this bit if it is negated
+	 */
+	public static final int RULE_NEGATED = 0x8000;
+	public static final int RULE_VALUE = 0x7FFF;
+
+	private String name = "";
+	private String type = Constants.TYPE_MAMDANI;
+	private String andMethod = "min";
+	private String orMethod = "max";
+	private String impMethod = "min";
+	private String aggMethod = "max";
+	private String defuzzMethod = "centroid";
+
+	private int numInputs;
+	private int numOutputs;
+	private int numRules;
+
+	/*
+	 * Variables, inputs first and then outputs. The functions of variable v
+	 * are numbered from mfStart[v] up to mfStart[v + 1]
+	 */
+	private String[] varNames;
+	private double[] varMin;
+	private double[] varMax;
+	private int[] mfStart;
+
+	/*
+	 * Membership functions. The parameters of function m are held from
+	 * mfOffset[m] up to mfOffset[m + 1]
+	 */
+	private String[] mfNames;
+	private int[] mfType;
+	private int[] mfOffset;
+	private double[] mfParams;
+
+	/*
+	 * Rules. Row r of the matrix starts at r * (numInputs + numOutputs) and
+	 * holds the entry of every input followed by that of every output
+	 */
+	private double[] ruleWeight;
+	private byte[] ruleConnective;
+	private short[] ruleMatrix;
+
+	/*
+	 * Constructor
+	 */
+
+	public PackedFIS(int numInputs, int numOutputs, int numMFs,
+			int numParams, int numRules) {
+		/**
+		 * Constructor, allocates the arrays of a system of the given size for
+		 * the caller to fill
+		 * 
+		 * @param numInputs
+		 *            integer number of input variables
+		 * @param numOutputs
+		 *            integer number of output variables
+		 * @param numMFs
+		 *            integer number of membership functions, over every
+		 *            variable
+		 * @param numParams
+		 *            integer number of membership function parameters, over
+		 *            every function
+		 * @param numRules
+		 *            integer number of rules
+		 */
+
+		if (numInputs < 0 || numOutputs < 0 || numMFs < 0 || numParams < 0
+				|| numRules < 0) {
+			throw new IllegalArgumentException(
+					"Sizes of a system cannot be negative");
+		}
+
+		this.numInputs = numInputs;
+		this.numOutputs = numOutputs;
+		this.numRules = numRules;
+
+		int numVars = numInputs + numOutputs;
+		varNames = new String[numVars];
+		varMin = new double[numVars];
+		varMax = new double[numVars];
+		mfStart = new int[numVars + 1];
+
+		mfNames = new String[numMFs];
+		mfType = new int[numMFs];
+		mfOffset = new int[numMFs + 1];
+		mfParams = new double[numParams];
+
+		if ((long) numRules * numVars > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Too many rules to pack");
+		}
+		ruleWeight = new double[numRules];
+		ruleConnective = new byte[numRules];
+		ruleMatrix = new short[numRules * numVars];
+	}
+
+	/*
+	 * Conversion
+	 */
+
+	public static PackedFIS pack(Model model) {
+		/**
+		 * Packs a model. Rules the model still holds as rows of a packed
+		 * system are copied across as they are
+		 * 
+		 * @param model
+		 *            Model to be packed
+		 * 
+		 * @return PackedFIS holding the same system
+		 */
+
+		int numInputs = model.getVarInList().size();
+		int numOutputs = model.getVarOutList().size();
+		RuleList rules = model.getRuleList();
+
+		PackedFIS packed = pack(model.getVarInList(), model.getVarOutList(),
+				rules.size());
+		packed.setProperties(model);
+
+		// rows are only copied while the rule list's columns are still the
+		// variables of the model, which they stop being if a variable was
+		// added or deleted without the list being told
+		PackedFIS source = rules.getSource();
+		int[] columns = null;
+		if (source != null && rules.getNumInputColumns() == numInputs) {
+			columns = rules.getSourceColumns();
+			if (columns.length != numInputs + numOutputs) {
+				columns = null;
+			}
+		}
+
+		int width = numInputs + numOutputs;
+		for (int r = 0; r < rules.size(); r++) {
+			int row = rules.getSourceRow(r);
+			if (row >= 0 && columns != null) {
+				int sourceWidth = source.getNumVariables();
+				packed.ruleWeight[r] = source.ruleWeight[row];
+				packed.ruleConnective[r] = source.ruleConnective[row];
+				for (int c = 0; c < width; c++) {
+					packed.ruleMatrix[r * width + c] = columns[c] < 0 ? 0
+							: source.ruleMatrix[row * sourceWidth + columns[c]];
+				}
+				continue;
+			}
+
+			Rule rule = rules.view(r);
+			if (rule.getInputs().size() != numInputs
+					|| rule.getOutputs().size() != numOutputs) {
+				throw new IllegalArgumentException("Rule " + (r + 1)
+						+ " does not match the variables of the system");
+			}
+
+			packed.ruleWeight[r] = rule.getWeight();
+			packed.ruleConnective[r] = (byte) rule.getConnective();
+			for (int i = 0; i < numInputs; i++) {
+				packed.ruleMatrix[r * width + i] = entry(rule.getInputs()
+						.get(i));
+			}
+			for (int o = 0; o < numOutputs; o++) {
+				packed.ruleMatrix[r * width + numInputs + o] = entry(rule
+						.getOutputs().get(o));
+			}
+		}
+
+		return packed;
+	}
+
+	public static PackedFIS pack(ArrayList<Variable> inputs,
+			ArrayList<Variable> outputs, int numRules) {
+		/**
+		 * Packs the variables of a system, leaving room for the given number
+		 * of rules for the caller to fill
+		 * 
+		 * @param inputs
+		 *            ArrayList of the input variables
+		 * @param outputs
+		 *            ArrayList of the output variables
+		 * @param numRules
+		 *            integer number of rules
+		 * 
+		 * @return PackedFIS holding the variables
+		 */
+
+		ArrayList<Variable> vars = new ArrayList<Variable>(inputs);
+		vars.addAll(outputs);
+
+		int numMFs = 0;
+		int numParams = 0;
+		for (Variable v : vars) {
+			numMFs += v.getMFs().size();
+			for (MembershipFunction mf : v.getMFs()) {
+				numParams += mf.getParametersSize();
+			}
+		}
+
+		PackedFIS packed = new PackedFIS(inputs.size(), outputs.size(),
+				numMFs, numParams, numRules);
+
+		int m = 0;
+		int p = 0;
+		for (int v = 0; v < vars.size(); v++) {
+			Variable var = vars.get(v);
+			packed.varNames[v] = var.getName();
+			packed.varMin[v] = var.getRangeMin();
+			packed.varMax[v] = var.getRangeMax();
+
+			for (MembershipFunction mf : var.getMFs()) {
+				packed.mfNames[m] = mf.getName();
+				packed.mfType[m] = mf.getType();
+				packed.mfOffset[m] = p;
+				for (int j = 0; j < mf.getParametersSize(); j++) {
+					packed.mfParams[p++] = mf.getParameter(j);
+				}
+				m++;
+			}
+			packed.mfStart[v + 1] = m;
+		}
+		packed.mfOffset[m] = p;
+
+		return packed;
+	}
+
+	public Model toModel() {
+		/**
+		 * Unpacks this system into a new Model
+		 * 
+		 * @return Model holding the same system
+		 */
+		Model model = new Model();
+		unpack(model);
+		return model;
+	}
+
+	public void unpack(Model model) {
+		/**
+		 * Unpacks this system into the given Model, setting its name, type
+		 * and methods and adding its variables and rules to those already
+		 * held. The rules are left packed, and a Rule is only created for
+		 * each as the model asks for it
+		 * 
+		 * @param model
+		 *            Model to be filled
+		 */
+
+		model.setName(name);
+		model.setType(type);
+		model.setAndMethod(andMethod);
+		model.setOrMethod(orMethod);
+		model.setImpMethod(impMethod);
+		model.setAggMethod(aggMethod);
+		model.setDefuzzMethod(defuzzMethod);
+
+		for (int v = 0; v < numInputs + numOutputs; v++) {
+			ArrayList<MembershipFunction> mfs = new ArrayList<MembershipFunction>();
+			for (int m = mfStart[v]; m < mfStart[v + 1]; m++) {
+				double[] params = new double[mfOffset[m + 1] - mfOffset[m]];
+				System.arraycopy(mfParams, mfOffset[m], params, 0,
+						params.length);
+				mfs.add(new MembershipFunction(mfNames[m], mfType[m], params));
+			}
+
+			Variable var = new Variable(varNames[v], v < numInputs, mfs,
+					varMin[v], varMax[v]);
+			if (v < numInputs) {
+				model.getVarInList().add(var);
+			} else {
+				model.getVarOutList().add(var);
+			}
+		}
+
+		model.getRuleList().addPacked(this);
+	}
+
+	public Rule getRule(int r) {
+		/**
+		 * Creates a Rule from one row of the rule matrix
+		 * 
+		 * @param r
+		 *            integer, the index of the rule
+		 * 
+		 * @return a new Rule equal to the packed one
+		 */
+
+		int width = numInputs + numOutputs;
+		ArrayList<SubRule> inputs = new ArrayList<SubRule>(numInputs);
+		ArrayList<SubRule> outputs = new ArrayList<SubRule>(numOutputs);
+		for (int v = 0; v < width; v++) {
+			int e = ruleMatrix[r * width + v];
+			int value = e & RULE_VALUE;
+			boolean negated = (e & RULE_NEGATED) != 0;
+
+			SubRule sr;
+			if (value == 0) {
+				sr = new SubRule("none", varNames[v], 0, negated);
+			} else {
+				sr = new SubRule(mfNames[mfStart[v] + value - 1],
+						varNames[v], value + 1, negated);
+			}
+
+			if (v < numInputs) {
+				inputs.add(sr);
+			} else {
+				outputs.add(sr);
+			}
+		}
+		return new Rule(inputs, outputs, ruleWeight[r], ruleConnective[r]);
+	}
+
+	private static short entry(SubRule sr) {
+		/**
+		 * Returns the rule matrix entry of a SubRule. SubRule values are BASE
+		 * ONE with 1 meaning "none", whereas entries are the numbers written
+		 * to a fis file
+		 */
+		int value = sr.getValue() > 1 ? sr.getValue() - 1 : 0;
+		if (value > RULE_VALUE) {
+			throw new IllegalArgumentException(
+					"Too many membership functions to pack");
+		}
+		return (short) (value | (sr.isNegated() ? RULE_NEGATED : 0));
+	}
+
+	/*
+	 * Data Retrieval Methods. The arrays are returned as held, not copied, so
+	 * that they can be filled in place
+	 */
+
+	public String getName() {
+		return name;
+	}
+
+	public String getType() {
+		return type;
+	}
+
+	public boolean isSugeno() {
+		return Constants.TYPE_SUGENO.equals(type);
+	}
+
+	public String getAndMethod() {
+		return andMethod;
+	}
+
+	public String getOrMethod() {
+		return orMethod;
+	}
+
+	public String getImpMethod() {
+		return impMethod;
+	}
+
+	public String getAggMethod() {
+		return aggMethod;
+	}
+
+	public String getDefuzzMethod() {
+		return defuzzMethod;
+	}
+
+	public int getNumInputs() {
+		return numInputs;
+	}
+
+	public int getNumOutputs() {
+		return numOutputs;
+	}
+
+	public int getNumVariables() {
+		return numInputs + numOutputs;
+	}
+
+	public int getNumMFs() {
+		return mfType.length;
+	}
+
+	public int getNumParams() {
+		return mfParams.length;
+	}
+
+	public int getNumRules() {
+		return numRules;
+	}
+
+	public String[] getVarNames() {
+		return varNames;
+	}
+
+	public double[] getVarMin() {
+		return varMin;
+	}
+
+	public double[] getVarMax() {
+		return varMax;
+	}
+
+	public int[] getMFStart() {
+		return mfStart;
+	}
+
+	public String[] getMFNames() {
+		return mfNames;
+	}
+
+	public int[] getMFType() {
+		return mfType;
+	}
+
+	public int[] getMFOffset() {
+		return mfOffset;
+	}
+
+	public double[] getMFParams() {
+		return mfParams;
+	}
+
+	public double[] getRuleWeight() {
+		return ruleWeight;
+	}
+
+	public byte[] getRuleConnective() {
+		return ruleConnective;
+	}
+
+	public short[] getRuleMatrix() {
+		return ruleMatrix;
+	}
+
+	/*
+	 * Data Assignment Methods
+	 */
+
+	public void setProperties(Model model) {
+		/**
+		 * Copies the name, type and methods of a model
+		 * 
+		 * @param model
+		 *            Model to copy from
+		 */
+		name = model.getName();
+		type = model.getType();
+		andMethod = model.getAndMethod();
+		orMethod = model.getOrMethod();
+		impMethod = model.getImpMethod();
+		aggMethod = model.getAggMethod();
+		defuzzMethod = model.getDefuzzMethod();
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	public void setType(String type) {
+		this.type = type;
+	}
+
+	public void setAndMethod(String andMethod) {
+		this.andMethod = andMethod;
+	}
+
+	public void setOrMethod(String orMethod) {
+		this.orMethod = orMethod;
+	}
+
+	public void setImpMethod(String impMethod) {
+		this.impMethod = impMethod;
+	}
+
+	public void setAggMethod(String aggMethod) {
+		this.aggMethod = aggMethod;
+	}
+
+	public void setDefuzzMethod(String defuzzMethod) {
+		this.defuzzMethod = defuzzMethod;
+	}
+}
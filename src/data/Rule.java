@@ -133,8 +133,19 @@ public class Rule {
 		 * 
 		 * @return String representation of the Rule
 		 */
+		return appendNumberString(new StringBuilder()).toString();
+	}
 
-		StringBuilder sb = new StringBuilder();
+	public StringBuilder appendNumberString(StringBuilder sb) {
+		/**
+		 * Appends the rule to a StringBuilder in the a b, c (d) : e format,
+		 * ending with a new line
+		 * 
+		 * @param sb
+		 *            StringBuilder to append to
+		 * 
+		 * @return the same StringBuilder
+		 */
 
 		/*
 		 * Gather input values
@@ -143,17 +154,17 @@ public class Rule {
 		for (int i = 0; i < inputs.size(); i++) {
 			int k = inputs.get(i).getValue();
 			if (k == 0) {
-				sb.append(0);
+				sb.append('0');
 			} else {
 				k--;
 
 				if (inputs.get(i).isNegated()) {
-					sb.append("-");
+					sb.append('-');
 				}
 				sb.append(k);
 			}
 			if (i + 1 != inputs.size()) {
-				sb.append(" ");
+				sb.append(' ');
 			}
 		}
 
@@ -165,13 +176,13 @@ public class Rule {
 		for (int i = 0; i < outputs.size(); i++) {
 			int k = outputs.get(i).getValue();
 			if (k == 0) {
-				sb.append(0 + " ");
+				sb.append("0 ");
 			} else {
 				k--;
 				if (outputs.get(i).isNegated()) {
-					sb.append("-");
+					sb.append('-');
 				}
-				sb.append(k + " ");
+				sb.append(k).append(' ');
 			}
 
 		}
@@ -180,11 +191,11 @@ public class Rule {
 		 * Gather weight and connective.
 		 */
 
-		sb.append("(" + weight + ") ");
+		sb.append('(').append(weight).append(") ");
 
-		sb.append(": " + connective + "\n");
+		sb.append(": ").append(connective).append('\n');
 
-		return sb.toString();
+		return sb;
 	}
 
 	public ArrayList<SubRule> getInputs() {
@@ -0,0 +1,356 @@
+/**
+ * RuleList Class
+ * The list of rules held by a Model. Rules read from a file are kept as the
+ * rows of a PackedFIS, and a Rule is only created for one when it is asked
+ * for, so a system with a very large number of rules costs a few bytes per
+ * rule until they are viewed or edited. Rules returned by get are kept, as
+ * in an ArrayList, so that changes made to them are not lost, whereas view
+ * creates a Rule for reading only and keeps nothing. Variables added or
+ * deleted after the rules were read are tracked as columns, so they too
+ * leave the packed rows as they are
+ * 
+ * @author Craig Knott
+ */
+
+package data;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+public class RuleList extends AbstractList<Rule> implements RandomAccess {
+
+	/*
+	 * The packed rules the list was filled from, if any
+	 */
+	private PackedFIS source;
+
+	/*
+	 * For each rule, the Rule held, or null if it is still only a row of the
+	 * source, in which case rows gives the number of that row
+	 */
+	private Rule[] rules = new Rule[10];
+	private int[] rows = new int[10];
+	private int size;
+
+	/*
+	 * For each input and then each output entry of a rule, the variable of
+	 * the source whose entries it holds, or -1 for a variable added since,
+	 * which is "none" in every packed row. Null while the entries are still
+	 * exactly those of the source
+	 */
+	private int[] columns;
+	private String[] columnNames;
+	private int numInputColumns;
+
+	/*
+	 * Data retrieval methods
+	 */
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public Rule get(int index) {
+		/**
+		 * Returns a rule, creating it from its packed row if it has not been
+		 * created already. The Rule is kept, so any change made to it is
+		 * part of the list
+		 * 
+		 * @param index
+		 *            integer, the index of the rule
+		 * 
+		 * @return Rule at that index
+		 */
+		check(index);
+		if (rules[index] == null) {
+			rules[index] = unpack(rows[index]);
+		}
+		return rules[index];
+	}
+
+	public Rule view(int index) {
+		/**
+		 * Returns a rule for reading only. A rule that has not been created
+		 * yet is created from its packed row but not kept, so viewing any
+		 * number of rules does not add to the memory held by the list
+		 * 
+		 * @param index
+		 *            integer, the index of the rule
+		 * 
+		 * @return Rule at that index, which should not be changed
+		 */
+		check(index);
+		if (rules[index] == null) {
+			return unpack(rows[index]);
+		}
+		return rules[index];
+	}
+
+	public PackedFIS getSource() {
+		/**
+		 * Returns the packed rules the list was filled from
+		 * 
+		 * @return PackedFIS, or null if the list was not filled from one
+		 */
+		return source;
+	}
+
+	public int getSourceRow(int index) {
+		/**
+		 * Returns the row of the source a rule is still held as, so that it
+		 * can be copied without creating a Rule
+		 * 
+		 * @param index
+		 *            integer, the index of the rule
+		 * 
+		 * @return integer, the row of the source, or -1 if a Rule is held
+		 */
+		check(index);
+		return rules[index] == null ? rows[index] : -1;
+	}
+
+	public int[] getSourceColumns() {
+		/**
+		 * Returns the variable of the source that each entry of a rule still
+		 * held as a row of it comes from
+		 * 
+		 * @return array of integers, the index of a source variable for each
+		 *         input and then each output, or -1 for an entry which is
+		 *         "none" in every row
+		 */
+		if (columns != null) {
+			return columns.clone();
+		}
+		int[] identity = new int[source.getNumVariables()];
+		for (int c = 0; c < identity.length; c++) {
+			identity[c] = c;
+		}
+		return identity;
+	}
+
+	public int getNumInputColumns() {
+		/**
+		 * Returns how many of the source columns are inputs, the rest being
+		 * outputs
+		 * 
+		 * @return integer number of input entries in each rule
+		 */
+		return columns != null ? numInputColumns : source.getNumInputs();
+	}
+
+	/*
+	 * Data assignment methods
+	 */
+
+	@Override
+	public Rule set(int index, Rule rule) {
+		Rule old = view(index);
+		rules[index] = rule;
+		return old;
+	}
+
+	@Override
+	public void add(int index, Rule rule) {
+		if (index < 0 || index > size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: "
+					+ size);
+		}
+		grow(size + 1);
+		System.arraycopy(rules, index, rules, index + 1, size - index);
+		System.arraycopy(rows, index, rows, index + 1, size - index);
+		rules[index] = rule;
+		rows[index] = -1;
+		size++;
+		modCount++;
+	}
+
+	@Override
+	public Rule remove(int index) {
+		Rule old = view(index);
+		System.arraycopy(rules, index + 1, rules, index, size - index - 1);
+		System.arraycopy(rows, index + 1, rows, index, size - index - 1);
+		rules[--size] = null;
+		modCount++;
+		return old;
+	}
+
+	@Override
+	public void clear() {
+		Arrays.fill(rules, 0, size, null);
+		size = 0;
+		source = null;
+		columns = null;
+		columnNames = null;
+		modCount++;
+	}
+
+	public void addPacked(PackedFIS packed) {
+		/**
+		 * Adds every rule of a packed system to the end of the list. If the
+		 * list is empty the rules are kept as rows of the packed system until
+		 * they are needed, otherwise they are created straight away
+		 * 
+		 * @param packed
+		 *            PackedFIS holding the rules to add
+		 */
+
+		int n = packed.getNumRules();
+		if (size != 0 || source != null) {
+			for (int r = 0; r < n; r++) {
+				add(packed.getRule(r));
+			}
+			return;
+		}
+
+		source = packed;
+		rules = new Rule[Math.max(n, 10)];
+		rows = new int[rules.length];
+		for (int r = 0; r < n; r++) {
+			rows[r] = r;
+		}
+		size = n;
+		modCount++;
+	}
+
+	public void addColumn(boolean input, int index, Variable v) {
+		/**
+		 * Adds an unused entry for a new variable to every rule. Rules still
+		 * held as rows of the source are left as they are, and take the entry
+		 * as they are created
+		 * 
+		 * @param input
+		 *            boolean, whether the variable is an input
+		 * @param index
+		 *            integer, the index of the variable among the inputs or
+		 *            the outputs
+		 * @param v
+		 *            Variable that has been added
+		 */
+
+		for (int i = 0; i < size; i++) {
+			if (rules[i] != null) {
+				ArrayList<SubRule> entries = input ? rules[i].getInputs()
+						: rules[i].getOutputs();
+				entries.add(index, new SubRule("none", v.getName(), 0, false));
+			}
+		}
+
+		if (source != null) {
+			trackColumns();
+			int c = input ? index : numInputColumns + index;
+			columns = insert(columns, c, -1);
+			columnNames = Arrays.copyOf(columnNames, columns.length);
+			System.arraycopy(columnNames, c, columnNames, c + 1,
+					columns.length - c - 1);
+			columnNames[c] = v.getName();
+			if (input) {
+				numInputColumns++;
+			}
+		}
+		modCount++;
+	}
+
+	public void removeColumn(boolean input, int index) {
+		/**
+		 * Removes the entry of a deleted variable from every rule. Rules
+		 * still held as rows of the source are left as they are, and are
+		 * created without the entry
+		 * 
+		 * @param input
+		 *            boolean, whether the variable was an input
+		 * @param index
+		 *            integer, the index of the variable among the inputs or
+		 *            the outputs
+		 */
+
+		for (int i = 0; i < size; i++) {
+			if (rules[i] != null) {
+				(input ? rules[i].getInputs() : rules[i].getOutputs())
+						.remove(index);
+			}
+		}
+
+		if (source != null) {
+			trackColumns();
+			int c = input ? index : numInputColumns + index;
+			int after = columns.length - c - 1;
+			System.arraycopy(columns, c + 1, columns, c, after);
+			System.arraycopy(columnNames, c + 1, columnNames, c, after);
+			columns = Arrays.copyOf(columns, columns.length - 1);
+			columnNames = Arrays.copyOf(columnNames, columns.length);
+			if (input) {
+				numInputColumns--;
+			}
+		}
+		modCount++;
+	}
+
+	/*
+	 * Auxiliary Methods
+	 */
+
+	private Rule unpack(int row) {
+		/**
+		 * Creates a Rule from a row of the source, with an entry for each of
+		 * the current columns
+		 */
+
+		Rule packed = source.getRule(row);
+		if (columns == null) {
+			return packed;
+		}
+
+		ArrayList<SubRule> entries = new ArrayList<SubRule>(packed.getInputs());
+		entries.addAll(packed.getOutputs());
+
+		ArrayList<SubRule> inputs = new ArrayList<SubRule>(numInputColumns);
+		ArrayList<SubRule> outputs = new ArrayList<SubRule>(columns.length
+				- numInputColumns);
+		for (int c = 0; c < columns.length; c++) {
+			SubRule sr = columns[c] >= 0 ? entries.get(columns[c])
+					: new SubRule("none", columnNames[c], 0, false);
+			(c < numInputColumns ? inputs : outputs).add(sr);
+		}
+		return new Rule(inputs, outputs, packed.getWeight(),
+				packed.getConnective());
+	}
+
+	private void trackColumns() {
+		/**
+		 * Starts tracking the columns of the rules separately from those of
+		 * the source, before the first is added or removed
+		 */
+		if (columns == null) {
+			columns = getSourceColumns();
+			columnNames = new String[columns.length];
+			numInputColumns = source.getNumInputs();
+		}
+	}
+
+	private static int[] insert(int[] array, int index, int value) {
+		int[] grown = new int[array.length + 1];
+		System.arraycopy(array, 0, grown, 0, index);
+		grown[index] = value;
+		System.arraycopy(array, index, grown, index + 1, array.length - index);
+		return grown;
+	}
+
+	private void check(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: "
+					+ size);
+		}
+	}
+
+	private void grow(int capacity) {
+		if (capacity > rules.length) {
+			int length = Math.max(capacity, rules.length + (rules.length >> 1));
+			rules = Arrays.copyOf(rules, length);
+			rows = Arrays.copyOf(rows, length);
+		}
+	}
+}
@@ -0,0 +1,437 @@
+/**
+ * BatchEvaluator Class
+ * Evaluates a CompiledFIS over batches of inputs held as columns, one array
+ * per input variable. Rows are processed in blocks, and within a block each
+ * membership function is evaluated down a whole column at a time, so the
+ * membership formulas run as tight loops rather than once per row
+ * 
+ * @author Craig Knott
+ */
+
+package inference;
+
+import data.Constants;
+
+public class BatchEvaluator {
+
+	/*
+	 * Number of rows evaluated together, small enough that a block's degrees
+	 * and firing strengths stay in cache
+	 */
+	public static final int DEFAULT_BLOCK_SIZE = 512;
+
+	private CompiledFIS fis;
+	private int blockSize;
+	private Workspace workspace;
+
+	/*
+	 * Constructors
+	 */
+
+	public BatchEvaluator(CompiledFIS fis) {
+		/**
+		 * Constructor, using the default block size
+		 * 
+		 * @param fis
+		 *            CompiledFIS to evaluate
+		 */
+		this(fis, DEFAULT_BLOCK_SIZE);
+	}
+
+	public BatchEvaluator(CompiledFIS fis, int blockSize) {
+		/**
+		 * Constructor
+		 * 
+		 * @param fis
+		 *            CompiledFIS to evaluate
+		 * @param blockSize
+		 *            integer number of rows evaluated together
+		 */
+
+		if (blockSize < 1) {
+			throw new IllegalArgumentException(
+					"Block size must be at least 1 row");
+		}
+
+		this.fis = fis;
+		this.blockSize = blockSize;
+	}
+
+	/*
+	 * Data Retrieval Methods
+	 */
+
+	public CompiledFIS getCompiledFIS() {
+		return fis;
+	}
+
+	public int getBlockSize() {
+		return blockSize;
+	}
+
+	public Workspace newWorkspace() {
+		/**
+		 * Creates the working storage for one thread using this evaluator
+		 * 
+		 * @return a new Workspace sized for the system and block size
+		 */
+		return new Workspace(fis, blockSize);
+	}
+
+	/*
+	 * Evaluation
+	 */
+
+	public void evaluate(double[][] columns, double[][] outColumns) {
+		/**
+		 * Evaluates every row of a batch. Uses storage owned by this
+		 * evaluator, so must not be called from more than one thread at once
+		 * 
+		 * @param columns
+		 *            array of columns, one per input variable, all of the same
+		 *            length
+		 * @param outColumns
+		 *            array of columns to be filled, one per output variable,
+		 *            at least as long as the input columns
+		 */
+
+		if (workspace == null) {
+			workspace = newWorkspace();
+		}
+
+		int rows = checkColumns(columns, outColumns);
+		evaluate(columns, outColumns, 0, rows, workspace);
+	}
+
+	public void evaluate(double[][] columns, double[][] outColumns, int from,
+			int to, Workspace ws) {
+		/**
+		 * Evaluates the rows from (inclusive) to (exclusive) of a batch,
+		 * using the given working storage
+		 * 
+		 * @param columns
+		 *            array of columns, one per input variable
+		 * @param outColumns
+		 *            array of columns to be filled, one per output variable
+		 * @param from
+		 *            integer, the first row to evaluate
+		 * @param to
+		 *            integer, one past the last row to evaluate
+		 * @param ws
+		 *            Workspace created by this evaluator
+		 */
+
+		for (int start = from; start < to; start += blockSize) {
+			evaluateBlock(columns, outColumns, start,
+					Math.min(blockSize, to - start), ws);
+		}
+	}
+
+	private void evaluateBlock(double[][] columns, double[][] outColumns,
+			int start, int n, Workspace ws) {
+		/**
+		 * Evaluates a single block of at most blockSize rows
+		 */
+
+		CompiledFIS f = fis;
+		int b = blockSize;
+		double[] degrees = ws.degrees;
+		double[] firing = ws.firing;
+
+		/*
+		 * Fuzzify down each column, one membership function at a time, or
+		 * one row at a time through the input's cache
+		 */
+		for (int i = 0; i < f.numInputs; i++) {
+			FuzzificationCache cache = ws.row.caches[i];
+			if (cache != null) {
+				double[] x = columns[i];
+				for (int j = 0; j < n; j++) {
+					cache.fuzzify(x[start + j], degrees, f.mfStart[i] * b + j, b);
+				}
+				continue;
+			}
+			for (int m = f.mfStart[i]; m < f.mfStart[i + 1]; m++) {
+				f.degrees(m, columns[i], start, n, degrees, m * b);
+			}
+		}
+
+		/*
+		 * Rule firing strengths, one rule at a time across the block
+		 */
+		for (int r = 0; r < f.numRules; r++) {
+			int rOff = r * b;
+			int from = f.antecedentStart[r];
+			int to = f.antecedentStart[r + 1];
+
+			if (from == to) {
+				for (int j = 0; j < n; j++) {
+					firing[rOff + j] = 0;
+				}
+				continue;
+			}
+
+			int dOff = f.antecedentMF[from] * b;
+			if (f.antecedentNegated[from] == 0) {
+				System.arraycopy(degrees, dOff, firing, rOff, n);
+			} else {
+				for (int j = 0; j < n; j++) {
+					firing[rOff + j] = 1 - degrees[dOff + j];
+				}
+			}
+
+			int method = f.ruleConnective[r] == Constants.CONNECTIVE_AND ? f.andMethod
+					: f.orMethod;
+			for (int a = from + 1; a < to; a++) {
+				combine(method, firing, rOff, degrees, f.antecedentMF[a] * b,
+						f.antecedentNegated[a] != 0, n);
+			}
+
+			double w = f.ruleWeight[r];
+			if (w != 1) {
+				for (int j = 0; j < n; j++) {
+					firing[rOff + j] *= w;
+				}
+			}
+		}
+
+		if (f.sugeno) {
+			weighted(columns, outColumns, start, n, ws);
+			return;
+		}
+
+		/*
+		 * Implication, aggregation and defuzzification for each row
+		 */
+		double[] rowFiring = ws.row.firing;
+		for (int j = 0; j < n; j++) {
+			for (int r = 0; r < f.numRules; r++) {
+				rowFiring[r] = firing[r * b + j];
+			}
+
+			for (int o = 0; o < f.numOutputs; o++) {
+				outColumns[o][start + j] = f.infer(o, rowFiring, ws.row);
+			}
+		}
+	}
+
+	private void weighted(double[][] columns, double[][] outColumns,
+			int start, int n, Workspace ws) {
+		/**
+		 * Sugeno outputs for a block, the weighted average (or sum) of each
+		 * rule's output level, built up one consequent at a time across the
+		 * block
+		 */
+
+		CompiledFIS f = fis;
+		int b = blockSize;
+		double[] firing = ws.firing;
+		double[] levels = ws.levels;
+		double[] sums = ws.sums;
+		double[] weights = ws.weights;
+		double[] p = f.mfParams;
+
+		for (int o = 0; o < f.numOutputs; o++) {
+			for (int j = 0; j < n; j++) {
+				sums[j] = 0;
+				weights[j] = 0;
+			}
+
+			for (int c = f.consequentStart[o]; c < f.consequentStart[o + 1]; c++) {
+				int m = f.numInputMFs + f.consequentMF[c];
+				int off = f.mfOffset[m];
+				int rOff = f.consequentRule[c] * b;
+
+				if (f.mfType[m] == Constants.MEMBERSHIPFUNCTION_CONSTANT) {
+					double z = p[off];
+					for (int j = 0; j < n; j++) {
+						double w = firing[rOff + j];
+						sums[j] += w * z;
+						weights[j] += w;
+					}
+					continue;
+				}
+
+				double constant = p[off + f.numInputs];
+				for (int j = 0; j < n; j++) {
+					levels[j] = constant;
+				}
+				for (int i = 0; i < f.numInputs; i++) {
+					double coefficient = p[off + i];
+					if (coefficient != 0) {
+						double[] x = columns[i];
+						for (int j = 0; j < n; j++) {
+							levels[j] += coefficient * x[start + j];
+						}
+					}
+				}
+				for (int j = 0; j < n; j++) {
+					double w = firing[rOff + j];
+					sums[j] += w * levels[j];
+					weights[j] += w;
+				}
+			}
+
+			double[] out = outColumns[o];
+			if (f.defuzzMethod == Constants.DEFUZZ_WTSUM) {
+				System.arraycopy(sums, 0, out, start, n);
+			} else {
+				double middle = (f.outputMin[o] + f.outputMax[o]) / 2;
+				for (int j = 0; j < n; j++) {
+					out[start + j] = weights[j] > 0 ? sums[j] / weights[j]
+							: middle;
+				}
+			}
+		}
+	}
+
+	private static void combine(int method, double[] firing, int rOff,
+			double[] degrees, int dOff, boolean negated, int n) {
+		/**
+		 * Combines a column of antecedent degrees into a column of firing
+		 * strengths with the given operator
+		 */
+
+		if (negated) {
+			switch (method) {
+			case (Constants.METHOD_MIN):
+				for (int j = 0; j < n; j++) {
+					firing[rOff + j] = Math.min(firing[rOff + j],
+							1 - degrees[dOff + j]);
+				}
+				break;
+			case (Constants.METHOD_PROD):
+				for (int j = 0; j < n; j++) {
+					firing[rOff + j] *= 1 - degrees[dOff + j];
+				}
+				break;
+			case (Constants.METHOD_MAX):
+				for (int j = 0; j < n; j++) {
+					firing[rOff + j] = Math.max(firing[rOff + j],
+							1 - degrees[dOff + j]);
+				}
+				break;
+			case (Constants.METHOD_PROBOR):
+				for (int j = 0; j < n; j++) {
+					double d = 1 - degrees[dOff + j];
+					firing[rOff + j] += d - firing[rOff + j] * d;
+				}
+				break;
+			}
+		} else {
+			switch (method) {
+			case (Constants.METHOD_MIN):
+				for (int j = 0; j < n; j++) {
+					firing[rOff + j] = Math.min(firing[rOff + j],
+							degrees[dOff + j]);
+				}
+				break;
+			case (Constants.METHOD_PROD):
+				for (int j = 0; j < n; j++) {
+					firing[rOff + j] *= degrees[dOff + j];
+				}
+				break;
+			case (Constants.METHOD_MAX):
+				for (int j = 0; j < n; j++) {
+					firing[rOff + j] = Math.max(firing[rOff + j],
+							degrees[dOff + j]);
+				}
+				break;
+			case (Constants.METHOD_PROBOR):
+				for (int j = 0; j < n; j++) {
+					double d = degrees[dOff + j];
+					firing[rOff + j] += d - firing[rOff + j] * d;
+				}
+				break;
+			}
+		}
+	}
+
+	int checkColumns(double[][] columns, double[][] outColumns) {
+		/**
+		 * Checks the shape of a batch against the system
+		 * 
+		 * @return integer, the number of rows in the batch
+		 */
+
+		if (columns.length != fis.numInputs) {
+			throw new IllegalArgumentException("Expected " + fis.numInputs
+					+ " input columns but was given " + columns.length);
+		}
+		if (outColumns.length != fis.numOutputs) {
+			throw new IllegalArgumentException("Expected " + fis.numOutputs
+					+ " output columns but was given " + outColumns.length);
+		}
+
+		int rows = columns.length == 0 ? 0 : columns[0].length;
+		for (double[] column : columns) {
+			if (column.length != rows) {
+				throw new IllegalArgumentException(
+						"Input columns must all be the same length");
+			}
+		}
+		for (double[] column : outColumns) {
+			if (column.length < rows) {
+				throw new IllegalArgumentException(
+						"Output columns are shorter than the input columns");
+			}
+		}
+		return rows;
+	}
+
+	/*
+	 * Workspace Sub Class
+	 */
+
+	public static final class Workspace {
+
+		/*
+		 * Working storage for a single thread, holding the degrees and firing
+		 * strengths of one block, laid out one column after another, and the
+		 * running sums of a Sugeno output across the block
+		 */
+
+		final double[] degrees;
+		final double[] firing;
+		final double[] levels;
+		final double[] sums;
+		final double[] weights;
+		final CompiledFIS.Workspace row;
+
+		Workspace(CompiledFIS fis, int blockSize) {
+			degrees = new double[fis.numInputMFs * blockSize];
+			firing = new double[fis.numRules * blockSize];
+			int sugenoSize = fis.sugeno ? blockSize : 0;
+			levels = new double[sugenoSize];
+			sums = new double[sugenoSize];
+			weights = new double[sugenoSize];
+			row = fis.newWorkspace();
+		}
+
+		public void setCacheCapacity(int i, int capacity) {
+			/**
+			 * Gives this workspace a new FuzzificationCache for an input
+			 * variable, or takes its cache away
+			 * 
+			 * @param i
+			 *            integer, the index of the input variable
+			 * @param capacity
+			 *            integer, the most crisp values to cache, or 0 for no
+			 *            cache
+			 */
+			row.setCacheCapacity(i, capacity);
+		}
+
+		public FuzzificationCache getCache(int i) {
+			/**
+			 * Returns the fuzzification cache of an input variable
+			 * 
+			 * @param i
+			 *            integer, the index of the input variable
+			 * 
+			 * @return FuzzificationCache, or null if the input is not cached
+			 */
+			return row.getCache(i);
+		}
+	}
+}
@@ -0,0 +1,999 @@
+/**
+ * CompiledFIS Class
+ * A Fuzzy Inference System flattened into primitive arrays for evaluation.
+ * The Variable, Rule and SubRule classes are convenient for editing, but a
+ * compiled system never touches an ArrayList, String or SubRule once built,
+ * and evaluates without allocating
+ * 
+ * @author Craig Knott
+ */
+
+package inference;
+
+import data.Constants;
+import data.MembershipFunction;
+import data.Model;
+import data.PackedFIS;
+
+public class CompiledFIS {
+
+	/*
+	 * System dimensions
+	 */
+	final int numInputs;
+	final int numOutputs;
+	final int numRules;
+	final int resolution;
+
+	/*
+	 * Whether the outputs are Sugeno functions of the inputs rather than
+	 * fuzzy sets
+	 */
+	final boolean sugeno;
+
+	/*
+	 * Operators, as Constants values
+	 */
+	final int andMethod;
+	final int orMethod;
+	final int impMethod;
+	final int aggMethod;
+	final int defuzzMethod;
+
+	/*
+	 * Membership functions. Input functions are numbered first, then output
+	 * functions, and the functions of variable i are numbered from
+	 * mfStart[i] up to mfStart[i + 1]
+	 */
+	final int numInputMFs;
+	final int[] mfStart;
+	final int[] mfType;
+	final int[] mfOffset;
+	final double[] mfParams;
+
+	/*
+	 * The shape of each membership function, and the constants derived from
+	 * its parameters that it is evaluated from, SHAPE_SIZE to a function
+	 */
+	final MembershipFunction.Shape[] mfShape;
+	final double[] mfConstants;
+
+	/*
+	 * Input variable ranges
+	 */
+	final double[] inputMin;
+	final double[] inputMax;
+
+	/*
+	 * Output variable ranges, and every output function sampled once over its
+	 * variable's range (with its complement, for negated consequents)
+	 */
+	final double[] outputMin;
+	final double[] outputMax;
+	final double[] outputStep;
+	final double[] outputSamples;
+	final double[] outputSamplesNegated;
+
+	/*
+	 * Rules. The antecedents of rule r are held from antecedentStart[r] up to
+	 * antecedentStart[r + 1]. Consequents are grouped by output instead, and
+	 * those of output o are held from consequentStart[o] up to
+	 * consequentStart[o + 1]
+	 */
+	final double[] ruleWeight;
+	final int[] ruleConnective;
+	final int[] antecedentStart;
+	final int[] antecedentMF;
+	final byte[] antecedentNegated;
+	final int[] consequentStart;
+	final int[] consequentRule;
+	final int[] consequentMF;
+	final byte[] consequentNegated;
+
+	/*
+	 * Corners (left foot, left shoulder, right shoulder, right foot, height)
+	 * of each triangular or trapezoidal output function, and whether each
+	 * output may be defuzzified exactly from them
+	 */
+	final double[] outputShape;
+	final boolean[] analytic;
+
+	/*
+	 * Constructor
+	 */
+
+	private CompiledFIS(PackedFIS fis, int resolution, boolean analyticEnabled) {
+		/**
+		 * Constructor, flattens the given packed system. The membership
+		 * function arrays of the packed system are used as they are, rather
+		 * than copied
+		 * 
+		 * @param fis
+		 *            PackedFIS to be compiled
+		 * @param resolution
+		 *            integer number of points each output variable is sampled
+		 *            at
+		 * @param analyticEnabled
+		 *            boolean, whether outputs may be defuzzified exactly
+		 *            where the output functions allow it
+		 */
+
+		if (resolution < 2) {
+			throw new IllegalArgumentException(
+					"Output resolution must be at least 2 points");
+		}
+
+		this.numInputs = fis.getNumInputs();
+		this.numOutputs = fis.getNumOutputs();
+		this.numRules = fis.getNumRules();
+		this.resolution = resolution;
+
+		andMethod = methodToInt("And", fis.getAndMethod(),
+				Constants.METHOD_MIN, Constants.METHOD_PROD);
+		orMethod = methodToInt("Or", fis.getOrMethod(), Constants.METHOD_MAX,
+				Constants.METHOD_PROBOR);
+		impMethod = methodToInt("Imp", fis.getImpMethod(),
+				Constants.METHOD_MIN, Constants.METHOD_PROD);
+		aggMethod = methodToInt("Agg", fis.getAggMethod(),
+				Constants.METHOD_MAX, Constants.METHOD_SUM,
+				Constants.METHOD_PROBOR);
+		defuzzMethod = defuzzToInt(fis.getDefuzzMethod());
+		sugeno = fis.isSugeno();
+
+		if (sugeno != (defuzzMethod == Constants.DEFUZZ_WTAVER
+				|| defuzzMethod == Constants.DEFUZZ_WTSUM)) {
+			throw new IllegalArgumentException("Defuzzification method '"
+					+ fis.getDefuzzMethod() + "' cannot be used by a "
+					+ fis.getType() + " system");
+		}
+
+		/*
+		 * The membership functions are already packed, and only need
+		 * checking
+		 */
+		mfStart = fis.getMFStart();
+		mfType = fis.getMFType();
+		mfOffset = fis.getMFOffset();
+		mfParams = fis.getMFParams();
+		numInputMFs = mfStart[numInputs];
+
+		for (int v = 0; v < numInputs + numOutputs; v++) {
+			for (int m = mfStart[v]; m < mfStart[v + 1]; m++) {
+				checkFunction(fis, v, m);
+			}
+		}
+
+		mfShape = new MembershipFunction.Shape[mfType.length];
+		mfConstants = new double[mfType.length * MembershipFunction.SHAPE_SIZE];
+		for (int m = 0; m < mfType.length; m++) {
+			mfShape[m] = MembershipFunction.shape(mfType[m]);
+			MembershipFunction.derive(mfType[m], mfParams, mfOffset[m],
+					mfConstants, m * MembershipFunction.SHAPE_SIZE);
+		}
+
+		double[] varMin = fis.getVarMin();
+		double[] varMax = fis.getVarMax();
+		inputMin = new double[numInputs];
+		inputMax = new double[numInputs];
+		System.arraycopy(varMin, 0, inputMin, 0, numInputs);
+		System.arraycopy(varMax, 0, inputMax, 0, numInputs);
+
+		/*
+		 * Sample the output functions over their ranges
+		 */
+		outputMin = new double[numOutputs];
+		outputMax = new double[numOutputs];
+		outputStep = new double[numOutputs];
+		int numOutputMFs = mfType.length - numInputMFs;
+		outputSamples = new double[sugeno ? 0 : numOutputMFs * resolution];
+		outputSamplesNegated = new double[outputSamples.length];
+		outputShape = new double[sugeno ? 0 : numOutputMFs * 5];
+
+		for (int o = 0; o < numOutputs; o++) {
+			outputMin[o] = varMin[numInputs + o];
+			outputMax[o] = varMax[numInputs + o];
+			outputStep[o] = (outputMax[o] - outputMin[o]) / (resolution - 1);
+
+			for (int m = mfStart[numInputs + o]; !sugeno
+					&& m < mfStart[numInputs + o + 1]; m++) {
+				int base = (m - numInputMFs) * resolution;
+				for (int k = 0; k < resolution; k++) {
+					double degree = degree(m, outputMin[o] + k * outputStep[o]);
+					outputSamples[base + k] = degree;
+					outputSamplesNegated[base + k] = 1 - degree;
+				}
+				if (mfType[m] == Constants.MEMBERSHIPFUNCTION_SINGLETON) {
+					snap(m, base, o);
+				}
+				shape(m, (m - numInputMFs) * 5);
+			}
+		}
+
+		/*
+		 * Flatten the rule matrix, skipping entries set to "none"
+		 */
+		short[] matrix = fis.getRuleMatrix();
+		int width = numInputs + numOutputs;
+
+		ruleWeight = new double[numRules];
+		ruleConnective = new int[numRules];
+		antecedentStart = new int[numRules + 1];
+		consequentStart = new int[numOutputs + 1];
+
+		for (int r = 0; r < numRules; r++) {
+			int row = r * width;
+			int used = 0;
+			for (int i = 0; i < numInputs; i++) {
+				if ((matrix[row + i] & PackedFIS.RULE_VALUE) != 0) {
+					used++;
+				}
+			}
+			antecedentStart[r + 1] = antecedentStart[r] + used;
+			for (int o = 0; o < numOutputs; o++) {
+				if ((matrix[row + numInputs + o] & PackedFIS.RULE_VALUE) != 0) {
+					consequentStart[o + 1]++;
+				}
+			}
+		}
+		for (int o = 0; o < numOutputs; o++) {
+			consequentStart[o + 1] += consequentStart[o];
+		}
+
+		antecedentMF = new int[antecedentStart[numRules]];
+		antecedentNegated = new byte[antecedentMF.length];
+		consequentRule = new int[consequentStart[numOutputs]];
+		consequentMF = new int[consequentRule.length];
+		consequentNegated = new byte[consequentRule.length];
+
+		double[] weights = fis.getRuleWeight();
+		byte[] connectives = fis.getRuleConnective();
+		int a = 0;
+		int[] c = new int[numOutputs];
+		for (int r = 0; r < numRules; r++) {
+			int row = r * width;
+			ruleWeight[r] = weights[r];
+			ruleConnective[r] = connectives[r];
+
+			for (int i = 0; i < numInputs; i++) {
+				int e = matrix[row + i];
+				if ((e & PackedFIS.RULE_VALUE) != 0) {
+					antecedentMF[a] = mfIndex(i, e, r);
+					antecedentNegated[a] = (byte) ((e & PackedFIS.RULE_NEGATED) != 0 ? 1
+							: 0);
+					a++;
+				}
+			}
+
+			for (int o = 0; o < numOutputs; o++) {
+				int e = matrix[row + numInputs + o];
+				if ((e & PackedFIS.RULE_VALUE) != 0) {
+					boolean negated = (e & PackedFIS.RULE_NEGATED) != 0;
+					if (sugeno && negated) {
+						throw new IllegalArgumentException("Rule " + (r + 1)
+								+ " negates a Sugeno output function");
+					}
+					int k = consequentStart[o] + c[o]++;
+					consequentRule[k] = r;
+					consequentMF[k] = mfIndex(numInputs + o, e, r)
+							- numInputMFs;
+					consequentNegated[k] = (byte) (negated ? 1 : 0);
+				}
+			}
+		}
+
+		/*
+		 * An output is defuzzified exactly only if every consequent is a
+		 * triangle or trapezoid, clipped or scaled by the implication
+		 * method. Under probor aggregation only the centroid can be, and
+		 * then only while no consequent is negated
+		 */
+		analytic = new boolean[numOutputs];
+		for (int o = 0; o < numOutputs; o++) {
+			analytic[o] = analyticEnabled
+					&& !sugeno
+					&& (impMethod == Constants.METHOD_MIN || impMethod == Constants.METHOD_PROD)
+					&& (aggMethod != Constants.METHOD_PROBOR || defuzzMethod == Constants.DEFUZZ_CENTROID);
+			for (int k = consequentStart[o]; analytic[o]
+					&& k < consequentStart[o + 1]; k++) {
+				if (Double.isNaN(outputShape[consequentMF[k] * 5])) {
+					analytic[o] = false;
+				}
+			}
+		}
+	}
+
+	public static CompiledFIS compile(Model model) {
+		/**
+		 * Compiles a model, using the default output resolution
+		 * 
+		 * @param model
+		 *            Model to be compiled
+		 * 
+		 * @return CompiledFIS equivalent to the model
+		 */
+		return compile(model, InferenceEngine.DEFAULT_RESOLUTION, true);
+	}
+
+	public static CompiledFIS compile(Model model, int resolution) {
+		/**
+		 * Compiles a model
+		 * 
+		 * @param model
+		 *            Model to be compiled
+		 * @param resolution
+		 *            integer number of points each output variable is sampled
+		 *            at
+		 * 
+		 * @return CompiledFIS equivalent to the model
+		 */
+		return compile(model, resolution, true);
+	}
+
+	public static CompiledFIS compile(Model model, int resolution,
+			boolean analytic) {
+		/**
+		 * Compiles a model, optionally forcing every output to be defuzzified
+		 * from its sampled curve
+		 * 
+		 * @param model
+		 *            Model to be compiled
+		 * @param resolution
+		 *            integer number of points each output variable is sampled
+		 *            at
+		 * @param analytic
+		 *            boolean, whether outputs made of triangular and
+		 *            trapezoidal consequents may be defuzzified exactly
+		 * 
+		 * @return CompiledFIS equivalent to the model
+		 */
+		return new CompiledFIS(PackedFIS.pack(model), resolution, analytic);
+	}
+
+	public static CompiledFIS compile(PackedFIS fis) {
+		/**
+		 * Compiles a packed system, using the default output resolution. The
+		 * packed system must not be changed afterwards, as its membership
+		 * function arrays are shared rather than copied
+		 * 
+		 * @param fis
+		 *            PackedFIS to be compiled
+		 * 
+		 * @return CompiledFIS equivalent to the packed system
+		 */
+		return compile(fis, InferenceEngine.DEFAULT_RESOLUTION, true);
+	}
+
+	public static CompiledFIS compile(PackedFIS fis, int resolution,
+			boolean analytic) {
+		/**
+		 * Compiles a packed system. The packed system must not be changed
+		 * afterwards, as its membership function arrays are shared rather
+		 * than copied
+		 * 
+		 * @param fis
+		 *            PackedFIS to be compiled
+		 * @param resolution
+		 *            integer number of points each output variable is sampled
+		 *            at
+		 * @param analytic
+		 *            boolean, whether outputs made of triangular and
+		 *            trapezoidal consequents may be defuzzified exactly
+		 * 
+		 * @return CompiledFIS equivalent to the packed system
+		 */
+		return new CompiledFIS(fis, resolution, analytic);
+	}
+
+	/*
+	 * Data Retrieval Methods
+	 */
+
+	public int getNumInputs() {
+		return numInputs;
+	}
+
+	public int getNumOutputs() {
+		return numOutputs;
+	}
+
+	public int getNumRules() {
+		return numRules;
+	}
+
+	public int getResolution() {
+		return resolution;
+	}
+
+	public double getInputMin(int i) {
+		return inputMin[i];
+	}
+
+	public double getInputMax(int i) {
+		return inputMax[i];
+	}
+
+	public double getOutputMin(int o) {
+		return outputMin[o];
+	}
+
+	public double getOutputMax(int o) {
+		return outputMax[o];
+	}
+
+	public Workspace newWorkspace() {
+		/**
+		 * Creates the working storage needed to evaluate this system. A
+		 * workspace must not be shared between threads
+		 * 
+		 * @return a new Workspace sized for this system
+		 */
+		return new Workspace(this);
+	}
+
+	/*
+	 * Evaluation
+	 */
+
+	public void evaluate(double[] inputs, double[] outputs, Workspace ws) {
+		/**
+		 * Evaluates the system for a single set of crisp inputs
+		 * 
+		 * @param inputs
+		 *            array of doubles, one value per input variable
+		 * @param outputs
+		 *            array of doubles to be filled, one per output variable
+		 * @param ws
+		 *            Workspace created by this system
+		 */
+
+		double[] degrees = ws.degrees;
+
+		/*
+		 * Fuzzify, evaluating each input function only once
+		 */
+		for (int i = 0; i < numInputs; i++) {
+			double x = inputs[i];
+			FuzzificationCache cache = ws.caches[i];
+			if (cache != null) {
+				cache.fuzzify(x, degrees, mfStart[i], 1);
+				continue;
+			}
+			for (int m = mfStart[i]; m < mfStart[i + 1]; m++) {
+				degrees[m] = degree(m, x);
+			}
+		}
+
+		fire(degrees, ws.firing);
+
+		if (sugeno) {
+			System.arraycopy(inputs, 0, ws.inputs, 0, numInputs);
+		}
+		for (int o = 0; o < numOutputs; o++) {
+			outputs[o] = infer(o, ws.firing, ws);
+		}
+	}
+
+	double infer(int o, double[] firing, Workspace ws) {
+		/**
+		 * Produces the crisp value of one output from the rule firing
+		 * strengths. Sugeno outputs are the weighted average (or sum) of the
+		 * rule outputs, at the inputs held in the workspace. Mamdani outputs
+		 * are found exactly where possible and otherwise from the sampled,
+		 * aggregated output curve
+		 * 
+		 * @param o
+		 *            integer, the index of the output variable
+		 * @param firing
+		 *            array of doubles, the firing strength of each rule
+		 * @param ws
+		 *            Workspace created by this system
+		 * 
+		 * @return double, the crisp value of the output
+		 */
+
+		if (sugeno) {
+			return weighted(o, firing, ws.inputs);
+		}
+
+		if (analytic[o]) {
+			double y = Defuzzifier.analytic(this, o, firing, ws);
+			if (!Double.isNaN(y)) {
+				return y;
+			}
+		}
+
+		aggregate(o, firing, ws.curve);
+		return Defuzzifier.defuzzify(defuzzMethod, ws.curve, 0, resolution,
+				outputMin[o], outputStep[o]);
+	}
+
+	private double weighted(int o, double[] firing, double[] inputs) {
+		/**
+		 * Returns the weighted average, or weighted sum, of the Sugeno rule
+		 * outputs of one output variable. If no rule fires, the weighted
+		 * average is the middle of the output range
+		 */
+
+		double sum = 0;
+		double weights = 0;
+		for (int c = consequentStart[o]; c < consequentStart[o + 1]; c++) {
+			double w = firing[consequentRule[c]];
+			if (w != 0) {
+				sum += w * level(numInputMFs + consequentMF[c], inputs);
+				weights += w;
+			}
+		}
+
+		if (defuzzMethod == Constants.DEFUZZ_WTSUM) {
+			return sum;
+		}
+		return weights > 0 ? sum / weights : (outputMin[o] + outputMax[o]) / 2;
+	}
+
+	double level(int m, double[] inputs) {
+		/**
+		 * Returns the value of a Sugeno output function at the given inputs
+		 * 
+		 * @param m
+		 *            integer, the index of a constant or linear function
+		 * @param inputs
+		 *            array of doubles, one value per input variable
+		 * 
+		 * @return double, the output level of the function
+		 */
+		double[] p = mfParams;
+		int off = mfOffset[m];
+
+		if (mfType[m] == Constants.MEMBERSHIPFUNCTION_CONSTANT) {
+			return p[off];
+		}
+
+		double z = p[off + numInputs];
+		for (int i = 0; i < numInputs; i++) {
+			z += p[off + i] * inputs[i];
+		}
+		return z;
+	}
+
+	void fire(double[] degrees, double[] firing) {
+		/**
+		 * Calculates the firing strength of every rule from the degrees of
+		 * the input membership functions
+		 * 
+		 * @param degrees
+		 *            array of doubles, the degree of each input function
+		 * @param firing
+		 *            array of doubles to be filled, one per rule
+		 */
+
+		for (int r = 0; r < numRules; r++) {
+			int from = antecedentStart[r];
+			int to = antecedentStart[r + 1];
+
+			if (from == to) {
+				firing[r] = 0;
+				continue;
+			}
+
+			int method = ruleConnective[r] == Constants.CONNECTIVE_AND ? andMethod
+					: orMethod;
+
+			double strength = antecedent(degrees, from);
+			for (int a = from + 1; a < to; a++) {
+				double degree = antecedent(degrees, a);
+				switch (method) {
+				case (Constants.METHOD_MIN):
+					strength = Math.min(strength, degree);
+					break;
+				case (Constants.METHOD_PROD):
+					strength *= degree;
+					break;
+				case (Constants.METHOD_MAX):
+					strength = Math.max(strength, degree);
+					break;
+				case (Constants.METHOD_PROBOR):
+					strength = strength + degree - strength * degree;
+					break;
+				}
+			}
+
+			firing[r] = strength * ruleWeight[r];
+		}
+	}
+
+	private double antecedent(double[] degrees, int a) {
+		/**
+		 * Returns the truth of a single antecedent, applying negation
+		 */
+		double degree = degrees[antecedentMF[a]];
+		return antecedentNegated[a] == 0 ? degree : 1 - degree;
+	}
+
+	void aggregate(int o, double[] firing, double[] curve) {
+		/**
+		 * Applies implication to the consequents of one output and aggregates
+		 * them into its curve
+		 * 
+		 * @param o
+		 *            integer, the index of the output variable
+		 * @param firing
+		 *            array of doubles, the firing strength of each rule
+		 * @param curve
+		 *            array of doubles to be filled, resolution values long
+		 */
+
+		for (int k = 0; k < resolution; k++) {
+			curve[k] = 0;
+		}
+
+		for (int c = consequentStart[o]; c < consequentStart[o + 1]; c++) {
+			double w = firing[consequentRule[c]];
+			if (w <= 0) {
+				continue;
+			}
+
+			double[] samples = consequentNegated[c] == 0 ? outputSamples
+					: outputSamplesNegated;
+			accumulate(curve, 0, samples, consequentMF[c] * resolution, w);
+		}
+	}
+
+	private void accumulate(double[] curve, int off, double[] samples,
+			int soff, double w) {
+		/**
+		 * Implies one consequent by a firing strength, and aggregates it into
+		 * the curve. The operators are chosen outside of the loops so that
+		 * each loop body is branch free
+		 */
+
+		int n = resolution;
+		if (impMethod == Constants.METHOD_MIN) {
+			switch (aggMethod) {
+			case (Constants.METHOD_MAX):
+				for (int k = 0; k < n; k++) {
+					curve[off + k] = Math.max(curve[off + k],
+							Math.min(w, samples[soff + k]));
+				}
+				break;
+			case (Constants.METHOD_SUM):
+				for (int k = 0; k < n; k++) {
+					curve[off + k] += Math.min(w, samples[soff + k]);
+				}
+				break;
+			case (Constants.METHOD_PROBOR):
+				for (int k = 0; k < n; k++) {
+					double y = Math.min(w, samples[soff + k]);
+					curve[off + k] += y - curve[off + k] * y;
+				}
+				break;
+			}
+		} else if (impMethod == Constants.METHOD_PROD) {
+			switch (aggMethod) {
+			case (Constants.METHOD_MAX):
+				for (int k = 0; k < n; k++) {
+					curve[off + k] = Math.max(curve[off + k], w
+							* samples[soff + k]);
+				}
+				break;
+			case (Constants.METHOD_SUM):
+				for (int k = 0; k < n; k++) {
+					curve[off + k] += w * samples[soff + k];
+				}
+				break;
+			case (Constants.METHOD_PROBOR):
+				for (int k = 0; k < n; k++) {
+					double y = w * samples[soff + k];
+					curve[off + k] += y - curve[off + k] * y;
+				}
+				break;
+			}
+		}
+	}
+
+	double degree(int m, double x) {
+		/**
+		 * Returns the degree of membership of x in packed membership function
+		 * m, exactly as a MembershipFunction with the same parameters would
+		 * 
+		 * @param m
+		 *            integer index of the membership function
+		 * @param x
+		 *            double, the crisp value
+		 * 
+		 * @return double, the degree of membership of x
+		 */
+		return mfShape[m].degree(mfConstants, m * MembershipFunction.SHAPE_SIZE,
+				x);
+	}
+
+	void degrees(int m, double[] xs, int from, int n, double[] out, int off) {
+		/**
+		 * Evaluates packed membership function m over a run of crisp values,
+		 * exactly as degree() would one at a time
+		 * 
+		 * @param m
+		 *            integer index of the membership function
+		 * @param xs
+		 *            array of doubles holding the crisp values
+		 * @param from
+		 *            integer, index of the first value in xs
+		 * @param n
+		 *            integer, the number of values to evaluate
+		 * @param out
+		 *            array of doubles to be filled with the degrees
+		 * @param off
+		 *            integer, index of the first degree in out
+		 */
+		mfShape[m].degrees(mfConstants, m * MembershipFunction.SHAPE_SIZE, xs,
+				from, n, out, off);
+	}
+
+	/*
+	 * Auxiliary Methods
+	 */
+
+	private void snap(int m, int base, int o) {
+		/**
+		 * Samples an output singleton at the nearest point of the output's
+		 * grid, which it would otherwise fall between and never be seen
+		 */
+		int k = (int) Math.round((mfParams[mfOffset[m]] - outputMin[o])
+				/ outputStep[o]);
+		if (k >= 0 && k < resolution) {
+			outputSamples[base + k] = mfParams[mfOffset[m] + 1];
+			outputSamplesNegated[base + k] = 1 - mfParams[mfOffset[m] + 1];
+		}
+	}
+
+	private void shape(int m, int off) {
+		/**
+		 * Records the corners of packed membership function m, if it is
+		 * triangular or trapezoidal, or NaN otherwise
+		 */
+		double[] p = mfParams;
+		int o = mfOffset[m];
+
+		switch (mfType[m]) {
+		case (Constants.MEMBERSHIPFUNCTION_TRIANGULAR):
+			outputShape[off] = p[o];
+			outputShape[off + 1] = p[o + 1];
+			outputShape[off + 2] = p[o + 1];
+			outputShape[off + 3] = p[o + 2];
+			outputShape[off + 4] = p[o + 3];
+			break;
+		case (Constants.MEMBERSHIPFUNCTION_TRAPEZOIDAL):
+			for (int j = 0; j < 5; j++) {
+				outputShape[off + j] = p[o + j];
+			}
+			break;
+		default:
+			for (int j = 0; j < 5; j++) {
+				outputShape[off + j] = Double.NaN;
+			}
+		}
+	}
+
+	private void checkFunction(PackedFIS fis, int v, int m) {
+		/**
+		 * Checks that a membership function suits its variable and the type
+		 * of the system. Sugeno outputs must be constant or linear, linear
+		 * functions needing a coefficient per input and a constant term, and
+		 * neither may be used anywhere else
+		 */
+
+		String name = fis.getMFNames()[m];
+		String varName = fis.getVarNames()[v];
+		int type = mfType[m];
+		int size = mfOffset[m + 1] - mfOffset[m];
+		boolean sugenoOutput = type == Constants.MEMBERSHIPFUNCTION_CONSTANT
+				|| type == Constants.MEMBERSHIPFUNCTION_LINEAR;
+
+		int expected = MembershipFunction.parametersForType(type);
+		if (type == Constants.MEMBERSHIPFUNCTION_LINEAR) {
+			expected = numInputs + 1;
+		}
+		if (expected == 0) {
+			throw new IllegalArgumentException("Function '" + name
+					+ "' of variable '" + varName + "' has an unknown type");
+		}
+		if (sugenoOutput != (sugeno && v >= numInputs)) {
+			throw new IllegalArgumentException("Function '" + name
+					+ "' of variable '" + varName
+					+ "' cannot be used in a "
+					+ (sugeno ? Constants.TYPE_SUGENO : Constants.TYPE_MAMDANI)
+					+ " system");
+		}
+		if (size != expected) {
+			throw new IllegalArgumentException("Function '" + name
+					+ "' of variable '" + varName + "' needs " + expected
+					+ " parameters but has " + size);
+		}
+	}
+
+	private int mfIndex(int v, int entry, int r) {
+		/**
+		 * Returns the packed index of the membership function a rule matrix
+		 * entry refers to. Entries are BASE ONE, with 0 meaning "none"
+		 */
+		int m = mfStart[v] + (entry & PackedFIS.RULE_VALUE) - 1;
+		if (m >= mfStart[v + 1]) {
+			throw new IllegalArgumentException("Rule " + (r + 1)
+					+ " refers to a missing membership function");
+		}
+		return m;
+	}
+
+	static int methodToInt(String method) {
+		/**
+		 * Returns the operator constant for a method name, as it appears in a
+		 * fis file
+		 * 
+		 * @param method
+		 *            String, one of min, prod, max, probor or sum
+		 * 
+		 * @return integer representing the operator (see Constants)
+		 */
+		switch (method) {
+		case ("min"):
+			return Constants.METHOD_MIN;
+		case ("prod"):
+			return Constants.METHOD_PROD;
+		case ("max"):
+			return Constants.METHOD_MAX;
+		case ("probor"):
+			return Constants.METHOD_PROBOR;
+		case ("sum"):
+			return Constants.METHOD_SUM;
+		default:
+			throw new IllegalArgumentException("Unknown method '" + method
+					+ "'");
+		}
+	}
+
+	static int methodToInt(String slot, String method, int... allowed) {
+		/**
+		 * Returns the operator constant for the method of one slot of the
+		 * system, rejecting an operator that the slot does not support rather
+		 * than substituting another
+		 * 
+		 * @param slot
+		 *            String, the name of the slot, for the error message
+		 * @param method
+		 *            String, the method name as it appears in a fis file
+		 * @param allowed
+		 *            integers, the operators the slot supports
+		 * 
+		 * @return integer representing the operator (see Constants)
+		 */
+		int m = methodToInt(method);
+		for (int a : allowed) {
+			if (a == m) {
+				return m;
+			}
+		}
+		throw new IllegalArgumentException(slot + " method '" + method
+				+ "' is not supported");
+	}
+
+	static int defuzzToInt(String method) {
+		/**
+		 * Returns the defuzzification constant for a method name, as it
+		 * appears in a fis file
+		 * 
+		 * @param method
+		 *            String, one of centroid, bisector, mom, som, lom, wtaver
+		 *            or wtsum
+		 * 
+		 * @return integer representing the method (see Constants)
+		 */
+		switch (method) {
+		case ("centroid"):
+			return Constants.DEFUZZ_CENTROID;
+		case ("bisector"):
+			return Constants.DEFUZZ_BISECTOR;
+		case ("mom"):
+			return Constants.DEFUZZ_MOM;
+		case ("som"):
+			return Constants.DEFUZZ_SOM;
+		case ("lom"):
+			return Constants.DEFUZZ_LOM;
+		case ("wtaver"):
+			return Constants.DEFUZZ_WTAVER;
+		case ("wtsum"):
+			return Constants.DEFUZZ_WTSUM;
+		default:
+			throw new IllegalArgumentException(
+					"Unknown defuzzification method '" + method + "'");
+		}
+	}
+
+	/*
+	 * Workspace Sub Class
+	 */
+
+	public static final class Workspace {
+
+		/*
+		 * Working storage for a single thread evaluating a CompiledFIS
+		 */
+
+		final double[] inputs;
+		final double[] degrees;
+		final double[] firing;
+		final double[] curve;
+
+		/*
+		 * Used by the analytic centroid, to hold the supports of the active
+		 * consequents and the running area and moment
+		 */
+		final double[] left;
+		final double[] right;
+		final double[] sums;
+
+		/*
+		 * Used by exact aggregation, to hold the strongest firing of each
+		 * output function (and of its complement), a consequent before and
+		 * after implication, and the aggregated set, which trade places as
+		 * it grows
+		 */
+		final double[] strongest;
+		PiecewiseLinear set = new PiecewiseLinear();
+		PiecewiseLinear implied = new PiecewiseLinear();
+		PiecewiseLinear total = new PiecewiseLinear();
+		PiecewiseLinear spare = new PiecewiseLinear();
+
+		/*
+		 * Fuzzification cache of each input variable, or null
+		 */
+		private final CompiledFIS fis;
+		final FuzzificationCache[] caches;
+
+		Workspace(CompiledFIS fis) {
+			inputs = new double[fis.numInputs];
+			degrees = new double[fis.numInputMFs];
+			firing = new double[fis.numRules];
+			curve = new double[fis.resolution];
+			left = new double[fis.numRules];
+			right = new double[fis.numRules];
+			sums = new double[2];
+			strongest = new double[fis.outputShape.length / 5 * 2];
+
+			this.fis = fis;
+			caches = new FuzzificationCache[fis.numInputs];
+		}
+
+		public void setCacheCapacity(int i, int capacity) {
+			/**
+			 * Gives this workspace a new FuzzificationCache for an input
+			 * variable, or takes its cache away. Worthwhile only for an input
+			 * that takes a few distinct values over and over, as every other
+			 * lookup is a miss. The cache belongs to the workspace, so the
+			 * system itself is left unchanged
+			 * 
+			 * @param i
+			 *            integer, the index of the input variable
+			 * @param capacity
+			 *            integer, the most crisp values to cache, or 0 for no
+			 *            cache
+			 */
+			if (capacity < 0) {
+				throw new IllegalArgumentException(
+						"Cache capacity cannot be negative");
+			}
+			caches[i] = capacity == 0 ? null : new FuzzificationCache(fis, i,
+					capacity);
+		}
+
+		public FuzzificationCache getCache(int i) {
+			/**
+			 * Returns the fuzzification cache of an input variable
+			 * 
+			 * @param i
+			 *            integer, the index of the input variable
+			 * 
+			 * @return FuzzificationCache, or null if the input is not cached
+			 */
+			return caches[i];
+		}
+	}
+}
@@ -0,0 +1,389 @@
+/**
+ * Defuzzifier Class
+ * Reduces an aggregated output set to a crisp value. Every method offered by
+ * the FIS editor can be applied to an output curve sampled across the range of
+ * its variable. Outputs made only of triangular and trapezoidal consequents
+ * can also be defuzzified exactly without sampling the curve at all, from the
+ * area and moment of each clipped or scaled shape, or from their max or sum
+ * aggregated as a PiecewiseLinear set
+ * 
+ * @author Craig Knott
+ */
+
+package inference;
+
+import data.Constants;
+
+public class Defuzzifier {
+
+	/*
+	 * Sampled Defuzzification
+	 */
+
+	public static double defuzzify(int method, double[] curve, int off, int n,
+			double min, double step) {
+		/**
+		 * Reduces a sampled output curve to a crisp value. If the curve is
+		 * empty, the middle of the range is returned
+		 * 
+		 * @param method
+		 *            integer, one of the DEFUZZ constants
+		 * @param curve
+		 *            array of doubles holding the sampled curve
+		 * @param off
+		 *            integer, the index of the first point of the curve
+		 * @param n
+		 *            integer, the number of points in the curve
+		 * @param min
+		 *            double, the value of the first point
+		 * @param step
+		 *            double, the distance between points
+		 * 
+		 * @return double, the crisp value of the curve
+		 */
+
+		double area = 0;
+		double moment = 0;
+		double peak = 0;
+		for (int k = 0; k < n; k++) {
+			double y = curve[off + k];
+			area += y;
+			moment += y * k;
+			peak = Math.max(peak, y);
+		}
+
+		if (area <= 0) {
+			return min + step * (n - 1) / 2;
+		}
+
+		switch (method) {
+		case (Constants.DEFUZZ_CENTROID):
+			return min + step * moment / area;
+		case (Constants.DEFUZZ_BISECTOR):
+			double running = 0;
+			for (int k = 0; k < n; k++) {
+				running += curve[off + k];
+				if (running >= area / 2) {
+					return min + k * step;
+				}
+			}
+			return min + step * (n - 1);
+		case (Constants.DEFUZZ_MOM):
+		case (Constants.DEFUZZ_SOM):
+		case (Constants.DEFUZZ_LOM):
+			int first = -1;
+			int last = -1;
+			int count = 0;
+			double total = 0;
+			for (int k = 0; k < n; k++) {
+				if (curve[off + k] == peak) {
+					if (first < 0) {
+						first = k;
+					}
+					last = k;
+					count++;
+					total += k;
+				}
+			}
+
+			if (method == Constants.DEFUZZ_SOM) {
+				return min + first * step;
+			} else if (method == Constants.DEFUZZ_LOM) {
+				return min + last * step;
+			}
+			return min + (total / count) * step;
+		default:
+			throw new IllegalArgumentException(
+					"Unknown defuzzification method " + method);
+		}
+	}
+
+	public static double defuzzify(String method, double[] curve, double min,
+			double max) {
+		/**
+		 * Reduces a curve sampled evenly from min to max to a crisp value
+		 * 
+		 * @param method
+		 *            String, the name of the method as shown in the FIS editor
+		 * @param curve
+		 *            array of doubles holding the sampled curve
+		 * @param min
+		 *            double, the value of the first point
+		 * @param max
+		 *            double, the value of the last point
+		 * 
+		 * @return double, the crisp value of the curve
+		 */
+		int n = curve.length;
+		double step = n > 1 ? (max - min) / (n - 1) : 0;
+		return defuzzify(CompiledFIS.defuzzToInt(method), curve, 0, n, min,
+				step);
+	}
+
+	/*
+	 * Analytic Defuzzification
+	 */
+
+	static double analytic(CompiledFIS f, int o, double[] firing,
+			CompiledFIS.Workspace ws) {
+		/**
+		 * Defuzzifies one output exactly. The centroid is first tried shape
+		 * by shape, which is cheapest. Failing that, under max or sum
+		 * aggregation, the consequents are aggregated as piecewise linear
+		 * sets and the result defuzzified by any method. Probor aggregation
+		 * does not keep the sets piecewise linear, so there NaN is returned
+		 * and the caller must sample the curve instead
+		 * 
+		 * @param f
+		 *            CompiledFIS the output belongs to
+		 * @param o
+		 *            integer, the index of the output variable
+		 * @param firing
+		 *            array of doubles, the firing strength of each rule
+		 * @param ws
+		 *            Workspace created by the system
+		 * 
+		 * @return double, the crisp value of the output, or NaN
+		 */
+
+		if (f.defuzzMethod == Constants.DEFUZZ_CENTROID) {
+			double y = centroid(f, o, firing, ws);
+			if (!Double.isNaN(y) || f.aggMethod == Constants.METHOD_PROBOR) {
+				return y;
+			}
+		} else if (f.aggMethod == Constants.METHOD_PROBOR) {
+			return Double.NaN;
+		}
+
+		return aggregate(f, o, firing, ws).defuzzify(f.defuzzMethod,
+				f.outputMin[o], f.outputMax[o]);
+	}
+
+	static PiecewiseLinear aggregate(CompiledFIS f, int o, double[] firing,
+			CompiledFIS.Workspace ws) {
+		/**
+		 * Implies and aggregates the consequents of one output as piecewise
+		 * linear sets, over the range of the output. Aggregation must be max
+		 * or sum
+		 * 
+		 * @param f
+		 *            CompiledFIS the output belongs to
+		 * @param o
+		 *            integer, the index of the output variable
+		 * @param firing
+		 *            array of doubles, the firing strength of each rule
+		 * @param ws
+		 *            Workspace created by the system
+		 * 
+		 * @return PiecewiseLinear held by the workspace, the aggregated set
+		 */
+
+		double lo = f.outputMin[o];
+		double hi = f.outputMax[o];
+		ws.total.clear();
+
+		if (f.aggMethod != Constants.METHOD_MAX) {
+			for (int c = f.consequentStart[o]; c < f.consequentStart[o + 1]; c++) {
+				double w = firing[f.consequentRule[c]];
+				if (w > 0) {
+					include(f, f.consequentMF[c], f.consequentNegated[c] != 0,
+							w, lo, hi, ws);
+				}
+			}
+			return ws.total;
+		}
+
+		/*
+		 * Under max aggregation a function implied by several rules is
+		 * bounded by the strongest of them, so only that one is drawn
+		 */
+		double[] strongest = ws.strongest;
+		for (int c = f.consequentStart[o]; c < f.consequentStart[o + 1]; c++) {
+			double w = firing[f.consequentRule[c]];
+			int k = f.consequentMF[c] * 2 + f.consequentNegated[c];
+			if (w > strongest[k]) {
+				strongest[k] = w;
+			}
+		}
+
+		int from = f.mfStart[f.numInputs + o] - f.numInputMFs;
+		int to = f.mfStart[f.numInputs + o + 1] - f.numInputMFs;
+		for (int k = from * 2; k < to * 2; k++) {
+			double w = strongest[k];
+			if (w > 0) {
+				strongest[k] = 0;
+				include(f, k / 2, (k & 1) != 0, w, lo, hi, ws);
+			}
+		}
+		return ws.total;
+	}
+
+	private static void include(CompiledFIS f, int mf, boolean negated,
+			double w, double lo, double hi, CompiledFIS.Workspace ws) {
+		/**
+		 * Implies one output function, by index among the output functions,
+		 * and aggregates it into the set being built in the workspace
+		 */
+
+		double[] shape = f.outputShape;
+		int s = mf * 5;
+		PiecewiseLinear set = ws.set;
+		if (negated) {
+			set.complement(shape[s], shape[s + 1], shape[s + 2],
+					shape[s + 3], shape[s + 4], lo, hi);
+		} else {
+			set.trapezoid(shape[s], shape[s + 1], shape[s + 2], shape[s + 3],
+					shape[s + 4]);
+		}
+
+		PiecewiseLinear implied = ws.implied;
+		if (f.impMethod == Constants.METHOD_MIN) {
+			implied.clip(set, w);
+		} else {
+			set.scale(w);
+			ws.set = implied;
+			ws.implied = set;
+			implied = set;
+		}
+		implied.restrict(lo, hi);
+
+		// the aggregate is built into the spare set, which then takes its
+		// place
+		PiecewiseLinear total = ws.total;
+		ws.spare.aggregate(total, implied, f.aggMethod);
+		ws.total = ws.spare;
+		ws.spare = total;
+	}
+
+	static double centroid(CompiledFIS f, int o, double[] firing,
+			CompiledFIS.Workspace ws) {
+		/**
+		 * Finds the centroid of one output in closed form. Each consequent is
+		 * clipped (min implication) or scaled (product implication) and its
+		 * area and moment summed. This is exact under sum aggregation, and
+		 * under max or probor aggregation while the supports of the active
+		 * consequents do not overlap. Otherwise, or if a consequent is
+		 * negated, NaN is returned
+		 * 
+		 * @param f
+		 *            CompiledFIS the output belongs to
+		 * @param o
+		 *            integer, the index of the output variable
+		 * @param firing
+		 *            array of doubles, the firing strength of each rule
+		 * @param ws
+		 *            Workspace created by the system
+		 * 
+		 * @return double, the centroid of the output, or NaN
+		 */
+
+		double lo = f.outputMin[o];
+		double hi = f.outputMax[o];
+		boolean additive = f.aggMethod == Constants.METHOD_SUM;
+		boolean clip = f.impMethod == Constants.METHOD_MIN;
+		double[] shape = f.outputShape;
+		double[] sums = ws.sums;
+		sums[0] = 0;
+		sums[1] = 0;
+
+		int active = 0;
+		for (int c = f.consequentStart[o]; c < f.consequentStart[o + 1]; c++) {
+			double w = firing[f.consequentRule[c]];
+			if (w <= 0) {
+				continue;
+			}
+			if (f.consequentNegated[c] != 0) {
+				return Double.NaN;
+			}
+
+			int s = f.consequentMF[c] * 5;
+			double a = shape[s];
+			double b = shape[s + 1];
+			double cc = shape[s + 2];
+			double d = shape[s + 3];
+			double h = shape[s + 4];
+
+			if (clip) {
+				if (w < h) {
+					double t = w / h;
+					b = a + t * (b - a);
+					cc = d - t * (d - cc);
+					h = w;
+				}
+			} else {
+				h *= w;
+			}
+
+			if (h <= 0 || d <= lo || a >= hi) {
+				continue;
+			}
+
+			if (!additive) {
+				if (!insert(ws, active, Math.max(a, lo), Math.min(d, hi))) {
+					return Double.NaN;
+				}
+			}
+			active++;
+
+			segment(a, 0, b, h, lo, hi, sums);
+			segment(b, h, cc, h, lo, hi, sums);
+			segment(cc, h, d, 0, lo, hi, sums);
+		}
+
+		if (sums[0] <= 0) {
+			return (lo + hi) / 2;
+		}
+		return sums[1] / sums[0];
+	}
+
+	private static boolean insert(CompiledFIS.Workspace ws, int count,
+			double left, double right) {
+		/**
+		 * Adds a support to those already held, kept in order of their left
+		 * edges
+		 * 
+		 * @return boolean, false if the support overlaps one already held
+		 */
+
+		double[] l = ws.left;
+		double[] r = ws.right;
+		int k = count;
+		while (k > 0 && l[k - 1] > left) {
+			l[k] = l[k - 1];
+			r[k] = r[k - 1];
+			k--;
+		}
+		l[k] = left;
+		r[k] = right;
+
+		return (k == 0 || r[k - 1] <= left)
+				&& (k == count || right <= l[k + 1]);
+	}
+
+	private static void segment(double x0, double y0, double x1, double y1,
+			double lo, double hi, double[] sums) {
+		/**
+		 * Adds the area, and the moment about zero, beneath the straight line
+		 * from (x0, y0) to (x1, y1), clipped to lo and hi, to sums[0] and
+		 * sums[1]
+		 */
+
+		if (x1 <= x0 || x1 <= lo || x0 >= hi) {
+			return;
+		}
+
+		double slope = (y1 - y0) / (x1 - x0);
+		if (x0 < lo) {
+			y0 += slope * (lo - x0);
+			x0 = lo;
+		}
+		if (x1 > hi) {
+			y1 -= slope * (x1 - hi);
+			x1 = hi;
+		}
+
+		double width = x1 - x0;
+		sums[0] += width * (y0 + y1) / 2;
+		sums[1] += width * (x0 * (2 * y0 + y1) + x1 * (y0 + 2 * y1)) / 6;
+	}
+}
@@ -0,0 +1,236 @@
+/**
+ * FuzzificationCache Class
+ * Remembers the degrees of every membership function of one input variable
+ * for the crisp values most recently seen, so that an input which takes only
+ * a few distinct values (a quantised sensor, say) is fuzzified once per value
+ * rather than once per row. Values are found by open addressing on their
+ * bits, and when the cache is full the entry to replace is chosen by the
+ * CLOCK algorithm, sparing those hit since the hand last passed. A cache
+ * belongs to a single workspace, so is never shared between threads
+ * 
+ * @author Craig Knott
+ */
+
+package inference;
+
+import java.util.Arrays;
+
+public class FuzzificationCache {
+
+	private final CompiledFIS fis;
+	private final int firstMF;
+	private final int numMFs;
+	private final int capacity;
+
+	/*
+	 * Entries, each the bits of a crisp value, the degree of every function
+	 * at it and whether it has been hit since the hand last passed
+	 */
+	private final long[] keys;
+	private final double[] degrees;
+	private final boolean[] referenced;
+	private int size;
+	private int hand;
+
+	/*
+	 * Open addressed table of entry numbers plus one, 0 marking a free slot,
+	 * kept at most half full
+	 */
+	private final int[] slots;
+	private final int mask;
+
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	/*
+	 * Constructor
+	 */
+
+	FuzzificationCache(CompiledFIS fis, int input, int capacity) {
+		/**
+		 * Constructor
+		 * 
+		 * @param fis
+		 *            CompiledFIS the input belongs to
+		 * @param input
+		 *            integer, the index of the input variable
+		 * @param capacity
+		 *            integer, the most crisp values to remember
+		 */
+
+		if (capacity < 1) {
+			throw new IllegalArgumentException(
+					"A cache must hold at least 1 value");
+		}
+
+		this.fis = fis;
+		this.firstMF = fis.mfStart[input];
+		this.numMFs = fis.mfStart[input + 1] - firstMF;
+		this.capacity = capacity;
+
+		keys = new long[capacity];
+		degrees = new double[capacity * numMFs];
+		referenced = new boolean[capacity];
+		slots = new int[Integer.highestOneBit(capacity) * 4];
+		mask = slots.length - 1;
+	}
+
+	/*
+	 * Fuzzification
+	 */
+
+	public void fuzzify(double x, double[] out, int off, int stride) {
+		/**
+		 * Writes the degree of every membership function of the input at a
+		 * crisp value, from the cache if the value has been seen, or
+		 * evaluating the functions and remembering the result if not
+		 * 
+		 * @param x
+		 *            double, the crisp value
+		 * @param out
+		 *            array of doubles to be filled
+		 * @param off
+		 *            integer, where the degree of the first function goes
+		 * @param stride
+		 *            integer, the distance in out between the degrees of
+		 *            neighbouring functions
+		 */
+
+		long key = Double.doubleToLongBits(x);
+		int s = hash(key) & mask;
+		int e;
+		while ((e = slots[s]) != 0) {
+			e--;
+			if (keys[e] == key) {
+				hits++;
+				referenced[e] = true;
+				int from = e * numMFs;
+				for (int k = 0; k < numMFs; k++) {
+					out[off + k * stride] = degrees[from + k];
+				}
+				return;
+			}
+			s = (s + 1) & mask;
+		}
+
+		misses++;
+		if (size < capacity) {
+			e = size++;
+		} else {
+			e = evict();
+			s = hash(key) & mask;
+			while (slots[s] != 0) {
+				s = (s + 1) & mask;
+			}
+		}
+
+		keys[e] = key;
+		referenced[e] = false;
+		slots[s] = e + 1;
+		int from = e * numMFs;
+		for (int k = 0; k < numMFs; k++) {
+			double degree = fis.degree(firstMF + k, x);
+			degrees[from + k] = degree;
+			out[off + k * stride] = degree;
+		}
+	}
+
+	public void clear() {
+		/**
+		 * Forgets every value held, leaving the counts as they are
+		 */
+		Arrays.fill(slots, 0);
+		Arrays.fill(referenced, false);
+		size = 0;
+		hand = 0;
+	}
+
+	/*
+	 * Data Retrieval Methods
+	 */
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	public long getHits() {
+		return hits;
+	}
+
+	public long getMisses() {
+		return misses;
+	}
+
+	public long getEvictions() {
+		return evictions;
+	}
+
+	public double getHitRate() {
+		/**
+		 * Returns the share of values found in the cache
+		 * 
+		 * @return double between 0 and 1, or 0 if nothing has been looked up
+		 */
+		long lookups = hits + misses;
+		return lookups == 0 ? 0 : (double) hits / lookups;
+	}
+
+	/*
+	 * Auxiliary Methods
+	 */
+
+	private int evict() {
+		/**
+		 * Moves the hand past entries that have been hit, clearing their
+		 * marks, and removes the first that has not
+		 * 
+		 * @return integer, the entry freed
+		 */
+
+		while (referenced[hand]) {
+			referenced[hand] = false;
+			hand = hand + 1 == capacity ? 0 : hand + 1;
+		}
+		int victim = hand;
+		hand = hand + 1 == capacity ? 0 : hand + 1;
+
+		// find the victim's slot, then close the gap it leaves by moving
+		// back any later entry of the run that may not skip over it
+		int i = hash(keys[victim]) & mask;
+		while (slots[i] != victim + 1) {
+			i = (i + 1) & mask;
+		}
+		slots[i] = 0;
+		int j = i;
+		while (slots[(j = (j + 1) & mask)] != 0) {
+			int home = hash(keys[slots[j] - 1]) & mask;
+			boolean between = i < j ? home > i && home <= j : home > i
+					|| home <= j;
+			if (!between) {
+				slots[i] = slots[j];
+				slots[j] = 0;
+				i = j;
+			}
+		}
+
+		evictions++;
+		return victim;
+	}
+
+	private static int hash(long key) {
+		/**
+		 * Mixes every bit of a key into the low bits
+		 */
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		key *= 0xc4ceb9fe1a85ec53L;
+		key ^= key >>> 33;
+		return (int) key;
+	}
+}
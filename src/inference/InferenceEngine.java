@@ -0,0 +1,111 @@
+/**
+ * InferenceEngine Class
+ * Evaluates a Fuzzy Inference System held in a Model directly, so crisp
+ * outputs can be produced without exporting the system to the R toolkit.
+ * Performs Mamdani or Sugeno inference, as given by the type of the Model, using
+ * the And, Or, Implication, Aggregation and Defuzzification methods it stores
+ * 
+ * @author Craig Knott
+ */
+
+package inference;
+
+import data.Model;
+
+public class InferenceEngine {
+
+	/*
+	 * Number of points each output variable is sampled at, the same default
+	 * as the MATLAB toolbox
+	 */
+	public static final int DEFAULT_RESOLUTION = 101;
+
+	private CompiledFIS fis;
+	private CompiledFIS.Workspace workspace;
+
+	/*
+	 * Constructors
+	 */
+
+	public InferenceEngine(Model model) {
+		/**
+		 * Constructor, using the default output resolution
+		 * 
+		 * @param model
+		 *            Model holding the variables, rules and methods to use
+		 */
+		this(model, DEFAULT_RESOLUTION);
+	}
+
+	public InferenceEngine(Model model, int resolution) {
+		/**
+		 * Constructor. The model is compiled once, so later changes to it are
+		 * not seen by this engine
+		 * 
+		 * @param model
+		 *            Model holding the variables, rules and methods to use
+		 * @param resolution
+		 *            integer number of points each output variable is sampled
+		 *            at during aggregation and defuzzification
+		 */
+		this(CompiledFIS.compile(model, resolution));
+	}
+
+	public InferenceEngine(CompiledFIS fis) {
+		/**
+		 * Constructor, for an already compiled system
+		 * 
+		 * @param fis
+		 *            CompiledFIS to evaluate
+		 */
+		this.fis = fis;
+		this.workspace = fis.newWorkspace();
+	}
+
+	/*
+	 * Evaluation methods
+	 */
+
+	public double[] evaluate(double[] inputs) {
+		/**
+		 * Evaluates the system for a single set of crisp inputs
+		 * 
+		 * @param inputs
+		 *            array of doubles, one value per input variable
+		 * 
+		 * @return array of doubles, one crisp value per output variable
+		 */
+		double[] outputs = new double[fis.getNumOutputs()];
+		evaluate(inputs, outputs);
+		return outputs;
+	}
+
+	public void evaluate(double[] inputs, double[] outputs) {
+		/**
+		 * Evaluates the system for a single set of crisp inputs, writing the
+		 * crisp results into the given array
+		 * 
+		 * @param inputs
+		 *            array of doubles, one value per input variable
+		 * @param outputs
+		 *            array of doubles to be filled, one per output variable
+		 */
+
+		if (inputs.length != fis.getNumInputs()) {
+			throw new IllegalArgumentException("Expected "
+					+ fis.getNumInputs() + " inputs but was given "
+					+ inputs.length);
+		}
+
+		fis.evaluate(inputs, outputs, workspace);
+	}
+
+	public CompiledFIS getCompiledFIS() {
+		/**
+		 * Returns the compiled system this engine evaluates
+		 * 
+		 * @return CompiledFIS of the engine
+		 */
+		return fis;
+	}
+}
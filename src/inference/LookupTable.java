@@ -0,0 +1,434 @@
+/**
+ * LookupTable Class
+ * A Fuzzy Inference System compiled down to a dense grid of its outputs,
+ * taken over the range of every input variable. Queries are answered by
+ * multilinear interpolation between the surrounding grid points, trading
+ * memory for speed where evaluating the rules each time would be too slow.
+ * The error this introduces can be measured against exact inference to choose
+ * a grid fine enough for the system
+ * 
+ * @author Craig Knott
+ */
+
+package inference;
+
+import java.util.Random;
+
+public class LookupTable {
+
+	/*
+	 * Number of grid points along each input when none is given
+	 */
+	public static final int DEFAULT_POINTS = 33;
+
+	/*
+	 * Number of grid points evaluated together while the table is built
+	 */
+	private static final int BUILD_CHUNK = 65536;
+
+	private CompiledFIS fis;
+	private int numInputs;
+	private int numOutputs;
+
+	/*
+	 * Grid layout. Grid point (k0, k1, ...) is numbered sum(k[i] * stride[i]),
+	 * with the last input varying fastest, and its outputs are held together
+	 * from that number times numOutputs
+	 */
+	private int[] points;
+	private int[] stride;
+	private double[] min;
+	private double[] max;
+	private double[] scale;
+	private double[] table;
+
+	/*
+	 * Constructors
+	 */
+
+	private LookupTable(CompiledFIS fis, int[] points) {
+		/**
+		 * Constructor, evaluates the system at every grid point
+		 * 
+		 * @param fis
+		 *            CompiledFIS to tabulate
+		 * @param points
+		 *            array of integers, the number of grid points along each
+		 *            input
+		 */
+
+		this.fis = fis;
+		this.numInputs = fis.getNumInputs();
+		this.numOutputs = fis.getNumOutputs();
+
+		if (numOutputs == 0) {
+			throw new IllegalArgumentException(
+					"The system has no outputs to tabulate");
+		}
+		if (points.length != numInputs) {
+			throw new IllegalArgumentException("Expected " + numInputs
+					+ " grid sizes but was given " + points.length);
+		}
+
+		this.points = points.clone();
+		this.stride = new int[numInputs];
+		this.min = new double[numInputs];
+		this.max = new double[numInputs];
+		this.scale = new double[numInputs];
+
+		long size = numOutputs;
+		for (int i = numInputs - 1; i >= 0; i--) {
+			if (points[i] < 2) {
+				throw new IllegalArgumentException(
+						"Each input needs at least 2 grid points");
+			}
+			stride[i] = (int) (size / numOutputs);
+			size *= points[i];
+			if (size > Integer.MAX_VALUE - 8) {
+				throw new IllegalArgumentException(
+						"Lookup table is too large, reduce the number of grid points");
+			}
+
+			min[i] = fis.getInputMin(i);
+			max[i] = fis.getInputMax(i);
+			scale[i] = max[i] > min[i] ? (points[i] - 1) / (max[i] - min[i])
+					: 0;
+		}
+
+		table = new double[(int) size];
+		fill();
+	}
+
+	public static LookupTable build(CompiledFIS fis) {
+		/**
+		 * Tabulates a system with the default number of grid points along
+		 * each input
+		 * 
+		 * @param fis
+		 *            CompiledFIS to tabulate
+		 * 
+		 * @return LookupTable of the system
+		 */
+		return build(fis, DEFAULT_POINTS);
+	}
+
+	public static LookupTable build(CompiledFIS fis, int points) {
+		/**
+		 * Tabulates a system with the same number of grid points along each
+		 * input
+		 * 
+		 * @param fis
+		 *            CompiledFIS to tabulate
+		 * @param points
+		 *            integer number of grid points along each input
+		 * 
+		 * @return LookupTable of the system
+		 */
+		int[] all = new int[fis.getNumInputs()];
+		for (int i = 0; i < all.length; i++) {
+			all[i] = points;
+		}
+		return new LookupTable(fis, all);
+	}
+
+	public static LookupTable build(CompiledFIS fis, int[] points) {
+		/**
+		 * Tabulates a system
+		 * 
+		 * @param fis
+		 *            CompiledFIS to tabulate
+		 * @param points
+		 *            array of integers, the number of grid points along each
+		 *            input
+		 * 
+		 * @return LookupTable of the system
+		 */
+		return new LookupTable(fis, points);
+	}
+
+	private void fill() {
+		/**
+		 * Evaluates the system at every grid point, a chunk of points at a
+		 * time
+		 */
+
+		BatchEvaluator batch = new BatchEvaluator(fis);
+		BatchEvaluator.Workspace ws = batch.newWorkspace();
+		int gridSize = table.length / numOutputs;
+		int chunk = Math.min(BUILD_CHUNK, gridSize);
+
+		double[][] columns = new double[numInputs][chunk];
+		double[][] outColumns = new double[numOutputs][chunk];
+
+		for (int start = 0; start < gridSize; start += chunk) {
+			int n = Math.min(chunk, gridSize - start);
+
+			for (int i = 0; i < numInputs; i++) {
+				double step = (max[i] - min[i]) / (points[i] - 1);
+				for (int j = 0; j < n; j++) {
+					int k = (start + j) / stride[i] % points[i];
+					columns[i][j] = k == points[i] - 1 ? max[i] : min[i] + k
+							* step;
+				}
+			}
+
+			batch.evaluate(columns, outColumns, 0, n, ws);
+
+			for (int o = 0; o < numOutputs; o++) {
+				for (int j = 0; j < n; j++) {
+					table[(start + j) * numOutputs + o] = outColumns[o][j];
+				}
+			}
+		}
+	}
+
+	/*
+	 * Data Retrieval Methods
+	 */
+
+	public CompiledFIS getCompiledFIS() {
+		return fis;
+	}
+
+	public int getPoints(int i) {
+		return points[i];
+	}
+
+	public long getMemoryUsage() {
+		/**
+		 * Returns the size of the table itself
+		 * 
+		 * @return long, the number of bytes held by the grid
+		 */
+		return 8L * table.length;
+	}
+
+	public Workspace newWorkspace() {
+		/**
+		 * Creates the working storage needed to query this table. A workspace
+		 * must not be shared between threads, but the table itself may be
+		 * 
+		 * @return a new Workspace sized for this table
+		 */
+		return new Workspace(numInputs);
+	}
+
+	/*
+	 * Evaluation
+	 */
+
+	public double[] evaluate(double[] inputs) {
+		/**
+		 * Interpolates the outputs of the system for a single set of crisp
+		 * inputs
+		 * 
+		 * @param inputs
+		 *            array of doubles, one value per input variable
+		 * 
+		 * @return array of doubles, one crisp value per output variable
+		 */
+		double[] outputs = new double[numOutputs];
+		evaluate(inputs, outputs, newWorkspace());
+		return outputs;
+	}
+
+	public void evaluate(double[] inputs, double[] outputs, Workspace ws) {
+		/**
+		 * Interpolates the outputs of the system for a single set of crisp
+		 * inputs. Inputs outside the range of their variable are clamped to
+		 * it
+		 * 
+		 * @param inputs
+		 *            array of doubles, one value per input variable
+		 * @param outputs
+		 *            array of doubles to be filled, one per output variable
+		 * @param ws
+		 *            Workspace created by this table
+		 */
+
+		if (inputs.length != numInputs) {
+			throw new IllegalArgumentException("Expected " + numInputs
+					+ " inputs but was given " + inputs.length);
+		}
+
+		double[] t = ws.fraction;
+		int base = 0;
+		for (int i = 0; i < numInputs; i++) {
+			double u = (inputs[i] - min[i]) * scale[i];
+			if (u <= 0 || u != u) {
+				u = 0;
+			}
+
+			int k = (int) u;
+			if (k >= points[i] - 1) {
+				k = points[i] - 2;
+			}
+			t[i] = Math.min(1, u - k);
+			base += k * stride[i];
+		}
+
+		for (int o = 0; o < numOutputs; o++) {
+			outputs[o] = 0;
+		}
+
+		/*
+		 * Sum the 2^n corners of the surrounding cell, each weighted by how
+		 * close the inputs are to it
+		 */
+		int corners = 1 << numInputs;
+		for (int c = 0; c < corners; c++) {
+			double w = 1;
+			int g = base;
+			for (int i = 0; i < numInputs && w != 0; i++) {
+				if ((c >> i & 1) == 0) {
+					w *= 1 - t[i];
+				} else {
+					w *= t[i];
+					g += stride[i];
+				}
+			}
+
+			if (w != 0) {
+				int off = g * numOutputs;
+				for (int o = 0; o < numOutputs; o++) {
+					outputs[o] += w * table[off + o];
+				}
+			}
+		}
+	}
+
+	/*
+	 * Error Measurement
+	 */
+
+	public ErrorReport measureError(int samples, long seed) {
+		/**
+		 * Compares the table against exact inference at random points drawn
+		 * from the range of each input
+		 * 
+		 * @param samples
+		 *            integer number of points to compare at
+		 * @param seed
+		 *            long, seed for the random points
+		 * 
+		 * @return ErrorReport of the largest and mean absolute errors of
+		 *         each output
+		 */
+
+		Random random = new Random(seed);
+		double[][] columns = new double[numInputs][samples];
+		double[][] exact = new double[numOutputs][samples];
+		for (int i = 0; i < numInputs; i++) {
+			for (int j = 0; j < samples; j++) {
+				columns[i][j] = min[i] + random.nextDouble() * (max[i] - min[i]);
+			}
+		}
+		new BatchEvaluator(fis).evaluate(columns, exact);
+
+		ErrorReport report = new ErrorReport(numInputs, numOutputs, samples);
+		Workspace ws = newWorkspace();
+		double[] in = new double[numInputs];
+		double[] out = new double[numOutputs];
+		for (int j = 0; j < samples; j++) {
+			for (int i = 0; i < numInputs; i++) {
+				in[i] = columns[i][j];
+			}
+			evaluate(in, out, ws);
+
+			for (int o = 0; o < numOutputs; o++) {
+				double error = Math.abs(out[o] - exact[o][j]);
+				report.meanError[o] += error / samples;
+				if (error > report.maxError[o]) {
+					report.maxError[o] = error;
+					report.worstInputs[o] = in.clone();
+				}
+			}
+		}
+		return report;
+	}
+
+	/*
+	 * Workspace Sub Class
+	 */
+
+	public static final class Workspace {
+
+		/*
+		 * Working storage for a single thread, holding how far the inputs lie
+		 * across their grid cell
+		 */
+
+		final double[] fraction;
+
+		Workspace(int numInputs) {
+			fraction = new double[numInputs];
+		}
+	}
+
+	/*
+	 * ErrorReport Sub Class
+	 */
+
+	public static final class ErrorReport {
+
+		/*
+		 * Interpolation error of each output, against exact inference
+		 */
+
+		private final int samples;
+		private final double[] maxError;
+		private final double[] meanError;
+		private final double[][] worstInputs;
+
+		ErrorReport(int numInputs, int numOutputs, int samples) {
+			this.samples = samples;
+			this.maxError = new double[numOutputs];
+			this.meanError = new double[numOutputs];
+			this.worstInputs = new double[numOutputs][numInputs];
+		}
+
+		public int getSamples() {
+			return samples;
+		}
+
+		public double getMaxError(int o) {
+			return maxError[o];
+		}
+
+		public double getMeanError(int o) {
+			return meanError[o];
+		}
+
+		public double[] getWorstInputs(int o) {
+			return worstInputs[o].clone();
+		}
+
+		public double getMaxError() {
+			/**
+			 * Returns the largest error of any output
+			 * 
+			 * @return double, the largest absolute error seen
+			 */
+			double worst = 0;
+			for (double e : maxError) {
+				worst = Math.max(worst, e);
+			}
+			return worst;
+		}
+
+		public String toString() {
+			/**
+			 * Returns a string representation of this report
+			 * 
+			 * @return String, one line per output
+			 */
+			StringBuilder sb = new StringBuilder();
+			for (int o = 0; o < maxError.length; o++) {
+				sb.append(String.format(
+						"Output %d: max error %.6g, mean error %.6g%n", o + 1,
+						maxError[o], meanError[o]));
+			}
+			return sb.toString();
+		}
+	}
+}
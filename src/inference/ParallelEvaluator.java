@@ -0,0 +1,348 @@
+/**
+ * ParallelEvaluator Class
+ * Spreads the evaluation of large batches over several threads. The batch is
+ * cut into chunks which a fixed set of workers take in turn, and each worker
+ * owns its own BatchEvaluator Workspace, so nothing is shared or allocated
+ * while rows are being evaluated
+ * 
+ * @author Craig Knott
+ */
+
+package inference;
+
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ParallelEvaluator {
+
+	/*
+	 * Number of rows handed to a worker at a time
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 8192;
+
+	private BatchEvaluator batch;
+	private ExecutorService executor;
+	private boolean ownsExecutor;
+	private int parallelism;
+	private int chunkSize;
+
+	private BatchEvaluator.Workspace[] workspaces;
+
+	/*
+	 * Constructors
+	 */
+
+	public ParallelEvaluator(CompiledFIS fis, int parallelism) {
+		/**
+		 * Constructor, creating a ForkJoinPool of the given parallelism which
+		 * is closed by shutdown()
+		 * 
+		 * @param fis
+		 *            CompiledFIS to evaluate
+		 * @param parallelism
+		 *            integer number of threads to evaluate with
+		 */
+		this(fis, new ForkJoinPool(Math.max(1, parallelism)), parallelism);
+		this.ownsExecutor = true;
+	}
+
+	public ParallelEvaluator(CompiledFIS fis, ExecutorService executor,
+			int parallelism) {
+		/**
+		 * Constructor, using an executor supplied by the caller, which is left
+		 * running by shutdown()
+		 * 
+		 * @param fis
+		 *            CompiledFIS to evaluate
+		 * @param executor
+		 *            ExecutorService to run the workers on
+		 * @param parallelism
+		 *            integer number of workers to split each batch between
+		 */
+
+		if (parallelism < 1) {
+			throw new IllegalArgumentException(
+					"Parallelism must be at least 1");
+		}
+
+		this.batch = new BatchEvaluator(fis);
+		this.executor = executor;
+		this.parallelism = parallelism;
+		this.chunkSize = DEFAULT_CHUNK_SIZE;
+
+		workspaces = new BatchEvaluator.Workspace[parallelism];
+		for (int i = 0; i < parallelism; i++) {
+			workspaces[i] = batch.newWorkspace();
+		}
+	}
+
+	/*
+	 * Data Retrieval and Assignment Methods
+	 */
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	public synchronized int getChunkSize() {
+		return chunkSize;
+	}
+
+	public synchronized long getCacheHits() {
+		/**
+		 * Returns the number of crisp inputs found in the fuzzification
+		 * caches of every worker, across every input variable
+		 * 
+		 * @return long number of hits
+		 */
+		long hits = 0;
+		for (BatchEvaluator.Workspace ws : workspaces) {
+			for (int i = 0; i < batch.getCompiledFIS().getNumInputs(); i++) {
+				FuzzificationCache cache = ws.getCache(i);
+				if (cache != null) {
+					hits += cache.getHits();
+				}
+			}
+		}
+		return hits;
+	}
+
+	public synchronized long getCacheMisses() {
+		/**
+		 * Returns the number of crisp inputs looked for in the fuzzification
+		 * caches of every worker and not found
+		 * 
+		 * @return long number of misses
+		 */
+		long misses = 0;
+		for (BatchEvaluator.Workspace ws : workspaces) {
+			for (int i = 0; i < batch.getCompiledFIS().getNumInputs(); i++) {
+				FuzzificationCache cache = ws.getCache(i);
+				if (cache != null) {
+					misses += cache.getMisses();
+				}
+			}
+		}
+		return misses;
+	}
+
+	public synchronized void setCacheCapacity(int i, int capacity) {
+		/**
+		 * Gives every worker a new FuzzificationCache for an input variable,
+		 * or takes their caches away
+		 * 
+		 * @param i
+		 *            integer, the index of the input variable
+		 * @param capacity
+		 *            integer, the most crisp values each worker caches, or 0
+		 *            for no cache
+		 */
+		for (BatchEvaluator.Workspace ws : workspaces) {
+			ws.setCacheCapacity(i, capacity);
+		}
+	}
+
+	public synchronized void setChunkSize(int chunkSize) {
+		/**
+		 * Sets the number of rows a worker takes at a time
+		 * 
+		 * @param chunkSize
+		 *            integer, rounded up to a whole number of blocks
+		 */
+		int block = batch.getBlockSize();
+		this.chunkSize = Math.max(block, (chunkSize + block - 1) / block
+				* block);
+	}
+
+	/*
+	 * Evaluation
+	 */
+
+	public synchronized void evaluate(final double[][] columns,
+			final double[][] outColumns) throws InterruptedException {
+		/**
+		 * Evaluates every row of a batch, blocking until all workers have
+		 * finished
+		 * 
+		 * @param columns
+		 *            array of columns, one per input variable, all of the same
+		 *            length
+		 * @param outColumns
+		 *            array of columns to be filled, one per output variable
+		 * 
+		 * @throws InterruptedException
+		 *             if the calling thread is interrupted while waiting
+		 */
+		evaluate(columns, outColumns, batch.checkColumns(columns, outColumns));
+	}
+
+	public synchronized void evaluate(final double[][] columns,
+			final double[][] outColumns, final int rows)
+			throws InterruptedException {
+		/**
+		 * Evaluates the first rows of a batch, so that columns can be reused
+		 * for batches that do not fill them, blocking until all workers have
+		 * finished
+		 * 
+		 * @param columns
+		 *            array of columns, one per input variable, all of the same
+		 *            length
+		 * @param outColumns
+		 *            array of columns to be filled, one per output variable
+		 * @param rows
+		 *            integer number of rows to evaluate
+		 * 
+		 * @throws InterruptedException
+		 *             if the calling thread is interrupted while waiting
+		 */
+
+		if (rows < 0 || rows > batch.checkColumns(columns, outColumns)) {
+			throw new IllegalArgumentException("Cannot evaluate " + rows
+					+ " rows of a batch this size");
+		}
+		final int chunks = (rows + chunkSize - 1) / chunkSize;
+
+		if (chunks <= 1 || parallelism == 1) {
+			batch.evaluate(columns, outColumns, 0, rows, workspaces[0]);
+			return;
+		}
+
+		final AtomicInteger next = new AtomicInteger();
+		final int size = chunkSize;
+
+		ArrayList<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for (int w = 0; w < Math.min(parallelism, chunks); w++) {
+			final BatchEvaluator.Workspace ws = workspaces[w];
+			tasks.add(new Callable<Void>() {
+				public Void call() {
+					int c;
+					while ((c = next.getAndIncrement()) < chunks) {
+						int from = c * size;
+						batch.evaluate(columns, outColumns, from,
+								Math.min(rows, from + size), ws);
+					}
+					return null;
+				}
+			});
+		}
+
+		runWorkers(executor, tasks, next, chunks);
+	}
+
+	static void runWorkers(ExecutorService executor,
+			ArrayList<Callable<Void>> tasks, AtomicInteger next, int count)
+			throws InterruptedException {
+		/**
+		 * Runs workers which take pieces of work in turn from a shared
+		 * counter, blocking until all have finished. If the wait is abandoned,
+		 * no further pieces are handed out and the workers already running
+		 * are waited for, so that none is still using a workspace or writing
+		 * results once this has returned
+		 * 
+		 * @param executor
+		 *            ExecutorService to run the workers on
+		 * @param tasks
+		 *            list of workers, each taking pieces until the counter
+		 *            reaches count
+		 * @param next
+		 *            AtomicInteger, the index of the next piece of work
+		 * @param count
+		 *            integer number of pieces of work
+		 * 
+		 * @throws InterruptedException
+		 *             if the calling thread is interrupted while waiting
+		 */
+
+		// a worker only runs once it has claimed itself, so that a worker
+		// which has not started can be claimed here instead and never run
+		final CountDownLatch finished = new CountDownLatch(tasks.size());
+		AtomicBoolean[] claimed = new AtomicBoolean[tasks.size()];
+		ArrayList<Future<Void>> futures = new ArrayList<Future<Void>>();
+
+		boolean waited = false;
+		try {
+			for (int w = 0; w < tasks.size(); w++) {
+				final Callable<Void> task = tasks.get(w);
+				final AtomicBoolean mine = new AtomicBoolean();
+				claimed[w] = mine;
+				futures.add(executor.submit(new Callable<Void>() {
+					public Void call() throws Exception {
+						if (!mine.compareAndSet(false, true)) {
+							return null;
+						}
+						try {
+							return task.call();
+						} finally {
+							finished.countDown();
+						}
+					}
+				}));
+			}
+			finished.await();
+			waited = true;
+		} finally {
+			if (!waited) {
+				stop(next, count, claimed, futures, finished);
+			}
+		}
+
+		for (Future<Void> f : futures) {
+			try {
+				f.get();
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) e.getCause();
+				}
+				throw new IllegalStateException(e.getCause());
+			}
+		}
+	}
+
+	private static void stop(AtomicInteger next, int count,
+			AtomicBoolean[] claimed, ArrayList<Future<Void>> futures,
+			CountDownLatch finished) {
+		/**
+		 * Stops the workers of an abandoned run, and waits for those already
+		 * running to finish their current piece of work
+		 */
+
+		next.set(count);
+		for (int w = 0; w < claimed.length; w++) {
+			if (claimed[w] == null || claimed[w].compareAndSet(false, true)) {
+				finished.countDown();
+				if (w < futures.size()) {
+					futures.get(w).cancel(false);
+				}
+			}
+		}
+
+		boolean interrupted = false;
+		while (true) {
+			try {
+				finished.await();
+				break;
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	public void shutdown() {
+		/**
+		 * Shuts down the thread pool, if it was created by this evaluator
+		 */
+		if (ownsExecutor) {
+			executor.shutdown();
+		}
+	}
+}
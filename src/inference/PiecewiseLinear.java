@@ -0,0 +1,535 @@
+/**
+ * PiecewiseLinear Class
+ * A fuzzy set made of straight lines, held as its vertices in order along the
+ * x axis and zero beyond the first and last of them. Two vertices at the same
+ * x value make a vertical edge. Triangles and trapezoids are exactly four or
+ * fewer vertices, and stay piecewise linear when clipped, scaled, and
+ * aggregated by max or sum, so a whole Mamdani output can be aggregated and
+ * defuzzified exactly, at a cost that grows with the number of vertices
+ * rather than with the sampling resolution. Nothing is allocated unless a
+ * set outgrows its arrays
+ * 
+ * @author Craig Knott
+ */
+
+package inference;
+
+import data.Constants;
+import data.MembershipFunction;
+
+public class PiecewiseLinear {
+
+	/*
+	 * Relative tolerance within which heights are taken as level, and
+	 * vertices as in line, so that rounding neither splits a flat top nor
+	 * keeps vertices that are not needed
+	 */
+	private static final double LEVEL = 1e-12;
+
+	private double[] xs;
+	private double[] ys;
+	private int size;
+
+	/*
+	 * Constructors
+	 */
+
+	public PiecewiseLinear() {
+		/**
+		 * Constructor, with room for a trapezoid and the ends of its range
+		 */
+		this(8);
+	}
+
+	public PiecewiseLinear(int capacity) {
+		/**
+		 * Constructor
+		 * 
+		 * @param capacity
+		 *            integer, the number of vertices to make room for
+		 */
+		xs = new double[Math.max(capacity, 2)];
+		ys = new double[xs.length];
+	}
+
+	public static PiecewiseLinear of(MembershipFunction mf) {
+		/**
+		 * Returns the vertices of a triangular or trapezoidal membership
+		 * function
+		 * 
+		 * @param mf
+		 *            MembershipFunction to convert
+		 * 
+		 * @return PiecewiseLinear equal to the function
+		 * 
+		 * @throws IllegalArgumentException
+		 *             if the function is not made of straight lines
+		 */
+
+		PiecewiseLinear p = new PiecewiseLinear();
+		switch (mf.getType()) {
+		case (Constants.MEMBERSHIPFUNCTION_TRIANGULAR):
+			p.trapezoid(mf.getParameter(0), mf.getParameter(1),
+					mf.getParameter(1), mf.getParameter(2),
+					mf.getParameter(3));
+			break;
+		case (Constants.MEMBERSHIPFUNCTION_TRAPEZOIDAL):
+			p.trapezoid(mf.getParameter(0), mf.getParameter(1),
+					mf.getParameter(2), mf.getParameter(3),
+					mf.getParameter(4));
+			break;
+		default:
+			throw new IllegalArgumentException("Function '" + mf.getName()
+					+ "' is not piecewise linear");
+		}
+		return p;
+	}
+
+	/*
+	 * Data Retrieval Methods
+	 */
+
+	public int size() {
+		return size;
+	}
+
+	public double getX(int i) {
+		return xs[i];
+	}
+
+	public double getY(int i) {
+		return ys[i];
+	}
+
+	public double value(double x) {
+		/**
+		 * Returns the height of the set at x. At a vertical edge this is the
+		 * height of the first vertex on it
+		 * 
+		 * @param x
+		 *            double, the point to evaluate at
+		 * 
+		 * @return double, the height of the set at x
+		 */
+		int i = 0;
+		while (i < size && xs[i] < x) {
+			i++;
+		}
+		if (i < size && xs[i] == x) {
+			// on a vertex, the first vertex included
+			return ys[i];
+		}
+		return left(x, i);
+	}
+
+	/*
+	 * Data Assignment Methods
+	 */
+
+	public void clear() {
+		size = 0;
+	}
+
+	public void add(double x, double y) {
+		/**
+		 * Adds a vertex after those already held. Vertices must be added in
+		 * order along the x axis. If the last vertex held lies on the
+		 * straight line to this one, it is replaced rather than kept, so sets
+		 * built up from many others hold only the vertices they need
+		 * 
+		 * @param x
+		 *            double, the x value of the vertex
+		 * @param y
+		 *            double, the height of the vertex
+		 */
+
+		if (size >= 2) {
+			double x0 = xs[size - 2];
+			double y0 = ys[size - 2];
+			double x1 = xs[size - 1];
+			double y1 = ys[size - 1];
+			if (x0 < x1 && x1 < x) {
+				double cross = (x1 - x0) * (y - y0) - (x - x0) * (y1 - y0);
+				double scale = (x - x0) * (Math.abs(y0) + Math.abs(y1) + Math.abs(y));
+				if (Math.abs(cross) <= scale * LEVEL) {
+					size--;
+				}
+			}
+		}
+
+		ensure(size + 1);
+		xs[size] = x;
+		ys[size] = y;
+		size++;
+	}
+
+	public void trapezoid(double leftFoot, double leftShoulder,
+			double rightShoulder, double rightFoot, double height) {
+		/**
+		 * Replaces the vertices with a trapezoid, or a triangle if the
+		 * shoulders meet
+		 */
+		clear();
+		add(leftFoot, 0);
+		add(leftShoulder, height);
+		if (rightShoulder != leftShoulder) {
+			add(rightShoulder, height);
+		}
+		add(rightFoot, 0);
+	}
+
+	public void complement(double leftFoot, double leftShoulder,
+			double rightShoulder, double rightFoot, double height,
+			double min, double max) {
+		/**
+		 * Replaces the vertices with the complement of a trapezoid, one minus
+		 * its height, from min to max
+		 */
+		clear();
+		add(Math.min(min, leftFoot), 1);
+		add(leftFoot, 1);
+		add(leftShoulder, 1 - height);
+		if (rightShoulder != leftShoulder) {
+			add(rightShoulder, 1 - height);
+		}
+		add(rightFoot, 1);
+		add(Math.max(max, rightFoot), 1);
+	}
+
+	/*
+	 * Operations
+	 */
+
+	public void scale(double w) {
+		/**
+		 * Multiplies the set by w, as product implication does
+		 */
+		for (int i = 0; i < size; i++) {
+			ys[i] *= w;
+		}
+	}
+
+	public void clip(PiecewiseLinear p, double w) {
+		/**
+		 * Sets this to the lesser of p and w, as min implication does. A
+		 * vertex is added wherever p crosses w
+		 * 
+		 * @param p
+		 *            PiecewiseLinear to clip, which must not be this
+		 * @param w
+		 *            double, the height to clip at
+		 */
+
+		clear();
+		for (int i = 0; i < p.size; i++) {
+			double x = p.xs[i];
+			double y = p.ys[i];
+			if (i > 0) {
+				double x0 = p.xs[i - 1];
+				double y0 = p.ys[i - 1];
+				if (x > x0 && (y0 - w) * (y - w) < 0) {
+					add(x0 + (x - x0) * (w - y0) / (y - y0), w);
+				}
+			}
+			add(x, Math.min(y, w));
+		}
+	}
+
+	public void restrict(double min, double max) {
+		/**
+		 * Cuts the set down to the range from min to max, so that its first
+		 * vertex is at min and its last at max
+		 * 
+		 * @param min
+		 *            double, the least x value of the range
+		 * @param max
+		 *            double, the greatest x value of the range
+		 */
+
+		int from = 0;
+		while (from < size && xs[from] < min) {
+			from++;
+		}
+		int to = from;
+		while (to < size && xs[to] <= max) {
+			to++;
+		}
+
+		int n = to - from;
+		boolean head = n == 0 || xs[from] > min;
+		boolean tail = n == 0 || xs[to - 1] < max;
+		double atMin = left(min, from);
+		double atMax = left(max, to);
+
+		ensure(size + 2);
+		int start = head ? 1 : 0;
+		System.arraycopy(xs, from, xs, start, n);
+		System.arraycopy(ys, from, ys, start, n);
+		if (head) {
+			xs[0] = min;
+			ys[0] = atMin;
+		}
+		size = start + n;
+		if (tail) {
+			xs[size] = max;
+			ys[size] = atMax;
+			size++;
+		}
+	}
+
+	public void aggregate(PiecewiseLinear a, PiecewiseLinear b, int method) {
+		/**
+		 * Sets this to the maximum or sum of two sets. The result has a
+		 * vertex wherever either set does, and for the maximum, wherever
+		 * the two cross
+		 * 
+		 * @param a
+		 *            PiecewiseLinear, which must not be this
+		 * @param b
+		 *            PiecewiseLinear, which must not be this
+		 * @param method
+		 *            integer, METHOD_MAX or METHOD_SUM (see Constants)
+		 */
+
+		boolean max;
+		if (method == Constants.METHOD_MAX) {
+			max = true;
+		} else if (method == Constants.METHOD_SUM) {
+			max = false;
+		} else {
+			throw new IllegalArgumentException("Aggregation method " + method
+					+ " does not keep sets piecewise linear");
+		}
+
+		clear();
+		int i = 0;
+		int j = 0;
+		double px = 0;
+		double pa = 0;
+		double pb = 0;
+		while (i < a.size || j < b.size) {
+			double x = Math.min(i < a.size ? a.xs[i] : Double.POSITIVE_INFINITY,
+					j < b.size ? b.xs[j] : Double.POSITIVE_INFINITY);
+
+			// heights arriving at x, along straight lines from px
+			double la = a.left(x, i);
+			double lb = b.left(x, j);
+			if (max && size > 0) {
+				double d0 = pa - pb;
+				double d1 = la - lb;
+				if ((d0 < 0 && d1 > 0) || (d0 > 0 && d1 < 0)) {
+					double t = d0 / (d0 - d1);
+					add(px + t * (x - px), pa + t * (la - pa));
+				}
+			}
+
+			int ia = i;
+			int jb = j;
+			while (i < a.size && a.xs[i] == x) {
+				i++;
+			}
+			while (j < b.size && b.xs[j] == x) {
+				j++;
+			}
+
+			// heights leaving x
+			double ra = a.right(x, i, ia);
+			double rb = b.right(x, j, jb);
+
+			double yl = max ? Math.max(la, lb) : la + lb;
+			double yr = max ? Math.max(ra, rb) : ra + rb;
+			add(x, yl);
+			if (yr != yl) {
+				add(x, yr);
+			}
+
+			px = x;
+			pa = ra;
+			pb = rb;
+		}
+	}
+
+	/*
+	 * Defuzzification
+	 */
+
+	public double area() {
+		/**
+		 * Returns the area beneath the set
+		 */
+		double area = 0;
+		for (int i = 1; i < size; i++) {
+			area += (xs[i] - xs[i - 1]) * (ys[i - 1] + ys[i]) / 2;
+		}
+		return area;
+	}
+
+	public double moment() {
+		/**
+		 * Returns the moment of the area beneath the set about zero
+		 */
+		double moment = 0;
+		for (int i = 1; i < size; i++) {
+			double x0 = xs[i - 1];
+			double x1 = xs[i];
+			double y0 = ys[i - 1];
+			double y1 = ys[i];
+			moment += (x1 - x0) * (x0 * (2 * y0 + y1) + x1 * (y0 + 2 * y1)) / 6;
+		}
+		return moment;
+	}
+
+	public double defuzzify(int method, double min, double max) {
+		/**
+		 * Reduces the set to a crisp value exactly. If the set is empty, the
+		 * middle of the range is returned
+		 * 
+		 * @param method
+		 *            integer, one of the DEFUZZ constants other than those of
+		 *            Sugeno systems
+		 * @param min
+		 *            double, the least value of the output range
+		 * @param max
+		 *            double, the greatest value of the output range
+		 * 
+		 * @return double, the crisp value of the set
+		 */
+
+		double area = area();
+		if (!(area > 0)) {
+			return (min + max) / 2;
+		}
+
+		switch (method) {
+		case (Constants.DEFUZZ_CENTROID):
+			return moment() / area;
+		case (Constants.DEFUZZ_BISECTOR):
+			return bisector(area / 2);
+		case (Constants.DEFUZZ_MOM):
+		case (Constants.DEFUZZ_SOM):
+		case (Constants.DEFUZZ_LOM):
+			return maximum(method);
+		default:
+			throw new IllegalArgumentException(
+					"Unknown defuzzification method " + method);
+		}
+	}
+
+	private double bisector(double half) {
+		/**
+		 * Returns the x value splitting the area beneath the set in two,
+		 * solving for it within the straight piece it falls in
+		 */
+
+		double running = 0;
+		for (int i = 1; i < size; i++) {
+			double x0 = xs[i - 1];
+			double width = xs[i] - x0;
+			double y0 = ys[i - 1];
+			double piece = width * (y0 + ys[i]) / 2;
+			if (width > 0 && running + piece >= half) {
+				// y0 * t + slope * t^2 / 2 = rest, for t from x0
+				double rest = Math.max(half - running, 0);
+				double slope = (ys[i] - y0) / width;
+				double root = Math.sqrt(Math.max(y0 * y0 + 2 * slope * rest, 0));
+				double t = y0 + root > 0 ? 2 * rest / (y0 + root) : 0;
+				return x0 + Math.min(t, width);
+			}
+			running += piece;
+		}
+		return xs[size - 1];
+	}
+
+	private double maximum(int method) {
+		/**
+		 * Returns the smallest, largest or mean x value at which the set is
+		 * highest. The mean is taken over the length of any flat tops, or
+		 * over the peaks themselves if they are single points
+		 */
+
+		double peak = 0;
+		for (int i = 0; i < size; i++) {
+			peak = Math.max(peak, ys[i]);
+		}
+		peak -= peak * LEVEL;
+
+		double first = Double.NaN;
+		double last = Double.NaN;
+		double length = 0;
+		double moment = 0;
+		double total = 0;
+		int count = 0;
+		for (int i = 0; i < size; i++) {
+			if (ys[i] < peak) {
+				continue;
+			}
+			if (count == 0) {
+				first = xs[i];
+			}
+			if (count == 0 || xs[i] != last) {
+				total += xs[i];
+				count++;
+			}
+			last = xs[i];
+			if (i > 0 && ys[i - 1] >= peak) {
+				double width = xs[i] - xs[i - 1];
+				length += width;
+				moment += width * (xs[i] + xs[i - 1]) / 2;
+			}
+		}
+
+		if (method == Constants.DEFUZZ_SOM) {
+			return first;
+		} else if (method == Constants.DEFUZZ_LOM) {
+			return last;
+		}
+		return length > 0 ? moment / length : total / count;
+	}
+
+	/*
+	 * Auxiliary Methods
+	 */
+
+	private void ensure(int capacity) {
+		/**
+		 * Grows the vertex arrays, doubling them, to hold at least capacity
+		 * vertices
+		 */
+		if (capacity > xs.length) {
+			int length = Math.max(capacity, xs.length * 2);
+			double[] x2 = new double[length];
+			double[] y2 = new double[length];
+			System.arraycopy(xs, 0, x2, 0, size);
+			System.arraycopy(ys, 0, y2, 0, size);
+			xs = x2;
+			ys = y2;
+		}
+	}
+
+	private double left(double x, int i) {
+		/**
+		 * Returns the height arriving at x from the left, where i is the
+		 * number of vertices before x
+		 */
+		if (i == 0 || i == size) {
+			return 0;
+		}
+		if (xs[i] == x) {
+			return ys[i];
+		}
+		double x0 = xs[i - 1];
+		return ys[i - 1] + (ys[i] - ys[i - 1]) * (x - x0) / (xs[i] - x0);
+	}
+
+	private double right(double x, int j, int i) {
+		/**
+		 * Returns the height leaving x to the right, where j is the number of
+		 * vertices at or before x and i the number before it
+		 */
+		if (j > i) {
+			// the last vertex at x, unless it ends the set
+			return j == size ? 0 : ys[j - 1];
+		}
+		return left(x, j);
+	}
+}
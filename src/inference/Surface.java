@@ -0,0 +1,239 @@
+/**
+ * Surface Class
+ * The outputs of a Fuzzy Inference System over a grid of two of its inputs,
+ * with every other input held at a fixed value. Filled in tile by tile by a
+ * SurfaceGenerator, and can be written out as CSV or in a compact binary form
+ * 
+ * @author Craig Knott
+ */
+
+package inference;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+
+public class Surface {
+
+	/*
+	 * Marks the start of a binary surface file, followed by the format version
+	 */
+	public static final int BINARY_MAGIC = 0x46535246;
+	public static final int BINARY_VERSION = 1;
+
+	private int xInput;
+	private int yInput;
+	private double[] fixed;
+
+	private int xPoints;
+	private int yPoints;
+	private double xMin;
+	private double xMax;
+	private double yMin;
+	private double yMax;
+
+	/*
+	 * Values of each output, with the point at (x, y) held at y * xPoints + x
+	 */
+	final double[][] values;
+
+	/*
+	 * Constructor
+	 */
+
+	Surface(CompiledFIS fis, int xInput, int yInput, double[] fixed,
+			int xPoints, int yPoints) {
+		/**
+		 * Constructor, for an empty surface
+		 * 
+		 * @param fis
+		 *            CompiledFIS the surface is taken from
+		 * @param xInput
+		 *            integer, the index of the input across the surface
+		 * @param yInput
+		 *            integer, the index of the input up the surface
+		 * @param fixed
+		 *            array of doubles, the value of every other input
+		 * @param xPoints
+		 *            integer number of points across the surface
+		 * @param yPoints
+		 *            integer number of points up the surface
+		 */
+
+		this.xInput = xInput;
+		this.yInput = yInput;
+		this.fixed = fixed.clone();
+		this.xPoints = xPoints;
+		this.yPoints = yPoints;
+		this.xMin = fis.getInputMin(xInput);
+		this.xMax = fis.getInputMax(xInput);
+		this.yMin = fis.getInputMin(yInput);
+		this.yMax = fis.getInputMax(yInput);
+
+		values = new double[fis.getNumOutputs()][xPoints * yPoints];
+	}
+
+	/*
+	 * Data Retrieval Methods
+	 */
+
+	public int getXInput() {
+		return xInput;
+	}
+
+	public int getYInput() {
+		return yInput;
+	}
+
+	public int getNumInputs() {
+		return fixed.length;
+	}
+
+	public double getFixedValue(int i) {
+		return fixed[i];
+	}
+
+	public int getXPoints() {
+		return xPoints;
+	}
+
+	public int getYPoints() {
+		return yPoints;
+	}
+
+	public int getNumOutputs() {
+		return values.length;
+	}
+
+	public double getXValue(int x) {
+		/**
+		 * Returns the input value at a column of the surface
+		 * 
+		 * @param x
+		 *            integer, the column
+		 * 
+		 * @return double, the value of the x input there
+		 */
+		return x == xPoints - 1 ? xMax : xMin + x * (xMax - xMin)
+				/ (xPoints - 1);
+	}
+
+	public double getYValue(int y) {
+		/**
+		 * Returns the input value at a row of the surface
+		 * 
+		 * @param y
+		 *            integer, the row
+		 * 
+		 * @return double, the value of the y input there
+		 */
+		return y == yPoints - 1 ? yMax : yMin + y * (yMax - yMin)
+				/ (yPoints - 1);
+	}
+
+	public double getValue(int o, int x, int y) {
+		/**
+		 * Returns the value of an output at a point of the surface
+		 * 
+		 * @param o
+		 *            integer, the index of the output variable
+		 * @param x
+		 *            integer, the column
+		 * @param y
+		 *            integer, the row
+		 * 
+		 * @return double, the crisp output
+		 */
+		return values[o][y * xPoints + x];
+	}
+
+	/*
+	 * Export
+	 */
+
+	public void exportCSV(File file, int o) throws IOException {
+		/**
+		 * Writes one output of the surface as CSV. The first row holds the x
+		 * input values and the first column the y input values
+		 * 
+		 * @param file
+		 *            File to write to
+		 * @param o
+		 *            integer, the index of the output variable
+		 * 
+		 * @throws IOException
+		 *             if the file could not be written
+		 */
+
+		BufferedWriter writer = new BufferedWriter(new FileWriter(file),
+				1 << 16);
+		try {
+			StringBuilder sb = new StringBuilder();
+			for (int x = 0; x < xPoints; x++) {
+				sb.append(',').append(getXValue(x));
+			}
+			writer.write(sb.toString());
+			writer.newLine();
+
+			double[] v = values[o];
+			for (int y = 0; y < yPoints; y++) {
+				sb.setLength(0);
+				sb.append(getYValue(y));
+				for (int x = 0; x < xPoints; x++) {
+					sb.append(',').append(v[y * xPoints + x]);
+				}
+				writer.write(sb.toString());
+				writer.newLine();
+			}
+		} finally {
+			writer.close();
+		}
+	}
+
+	public void exportBinary(File file) throws IOException {
+		/**
+		 * Writes every output of the surface in binary. The file is big-endian
+		 * and holds the magic number, version, input indices, number of
+		 * points across and up, number of outputs, the x and y ranges, the
+		 * fixed input values, and then the values of each output in turn, row
+		 * by row
+		 * 
+		 * @param file
+		 *            File to write to
+		 * 
+		 * @throws IOException
+		 *             if the file could not be written
+		 */
+
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(file), 1 << 16));
+		try {
+			out.writeInt(BINARY_MAGIC);
+			out.writeInt(BINARY_VERSION);
+			out.writeInt(xInput);
+			out.writeInt(yInput);
+			out.writeInt(xPoints);
+			out.writeInt(yPoints);
+			out.writeInt(values.length);
+			out.writeDouble(xMin);
+			out.writeDouble(xMax);
+			out.writeDouble(yMin);
+			out.writeDouble(yMax);
+			out.writeInt(fixed.length);
+			for (double f : fixed) {
+				out.writeDouble(f);
+			}
+			for (double[] v : values) {
+				for (double d : v) {
+					out.writeDouble(d);
+				}
+			}
+		} finally {
+			out.close();
+		}
+	}
+}
@@ -0,0 +1,351 @@
+/**
+ * SurfaceGenerator Class
+ * Computes the control surface of a Fuzzy Inference System over two of its
+ * inputs. The surface is cut into square tiles which a fixed set of workers
+ * evaluate in parallel, each through its own BatchEvaluator Workspace.
+ * Finished tiles are cached, so asking again for a surface already seen
+ * (or one sharing its inputs, fixed values and resolution) costs nothing, and
+ * a listener is told as each tile completes so a view can draw the surface
+ * progressively
+ * 
+ * @author Craig Knott
+ */
+
+package inference;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SurfaceGenerator {
+
+	/*
+	 * Width and height of a tile, in points
+	 */
+	public static final int TILE_SIZE = 64;
+
+	/*
+	 * Number of finished tiles kept by default, enough for several 1000x1000
+	 * surfaces of a single output
+	 */
+	public static final int DEFAULT_CACHE_TILES = 1024;
+
+	private CompiledFIS fis;
+	private BatchEvaluator batch;
+	private ExecutorService executor;
+	private boolean ownsExecutor;
+	private int parallelism;
+
+	private BatchEvaluator.Workspace[] workspaces;
+
+	/*
+	 * Finished tiles, least recently used first. Guarded by itself
+	 */
+	private LinkedHashMap<TileKey, double[][]> cache;
+	private int cacheHits;
+	private int cacheMisses;
+
+	/*
+	 * Constructors
+	 */
+
+	public SurfaceGenerator(CompiledFIS fis, int parallelism) {
+		/**
+		 * Constructor, creating a ForkJoinPool of the given parallelism which
+		 * is closed by shutdown()
+		 * 
+		 * @param fis
+		 *            CompiledFIS to take surfaces of
+		 * @param parallelism
+		 *            integer number of threads to generate with
+		 */
+		this(fis, new ForkJoinPool(Math.max(1, parallelism)), parallelism,
+				DEFAULT_CACHE_TILES);
+		this.ownsExecutor = true;
+	}
+
+	public SurfaceGenerator(CompiledFIS fis, ExecutorService executor,
+			int parallelism, final int cacheTiles) {
+		/**
+		 * Constructor, using an executor supplied by the caller, which is left
+		 * running by shutdown()
+		 * 
+		 * @param fis
+		 *            CompiledFIS to take surfaces of
+		 * @param executor
+		 *            ExecutorService to run the workers on
+		 * @param parallelism
+		 *            integer number of workers to split each surface between
+		 * @param cacheTiles
+		 *            integer, the most finished tiles to keep
+		 */
+
+		if (parallelism < 1) {
+			throw new IllegalArgumentException(
+					"Parallelism must be at least 1");
+		}
+
+		this.fis = fis;
+		this.batch = new BatchEvaluator(fis);
+		this.executor = executor;
+		this.parallelism = parallelism;
+
+		workspaces = new BatchEvaluator.Workspace[parallelism];
+		for (int i = 0; i < parallelism; i++) {
+			workspaces[i] = batch.newWorkspace();
+		}
+
+		cache = new LinkedHashMap<TileKey, double[][]>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			protected boolean removeEldestEntry(
+					Map.Entry<TileKey, double[][]> eldest) {
+				return size() > cacheTiles;
+			}
+		};
+	}
+
+	/*
+	 * Data Retrieval Methods
+	 */
+
+	public CompiledFIS getCompiledFIS() {
+		return fis;
+	}
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	public int getCacheHits() {
+		synchronized (cache) {
+			return cacheHits;
+		}
+	}
+
+	public int getCacheMisses() {
+		synchronized (cache) {
+			return cacheMisses;
+		}
+	}
+
+	public void clearCache() {
+		synchronized (cache) {
+			cache.clear();
+		}
+	}
+
+	/*
+	 * Generation
+	 */
+
+	public synchronized Surface generate(int xInput, int yInput,
+			double[] fixed, int xPoints, int yPoints,
+			final TileListener listener) throws InterruptedException {
+		/**
+		 * Computes a surface, blocking until every tile is finished
+		 * 
+		 * @param xInput
+		 *            integer, the index of the input across the surface
+		 * @param yInput
+		 *            integer, the index of the input up the surface
+		 * @param fixed
+		 *            array of doubles, a value for every input, those of the
+		 *            two surface inputs being ignored
+		 * @param xPoints
+		 *            integer number of points across the surface
+		 * @param yPoints
+		 *            integer number of points up the surface
+		 * @param listener
+		 *            TileListener told of each finished tile, or null. Called
+		 *            from the worker threads
+		 * 
+		 * @return the finished Surface
+		 * 
+		 * @throws InterruptedException
+		 *             if the calling thread is interrupted while waiting
+		 */
+
+		int n = fis.getNumInputs();
+		if (xInput < 0 || xInput >= n || yInput < 0 || yInput >= n
+				|| xInput == yInput) {
+			throw new IllegalArgumentException(
+					"A surface needs two different inputs of the system");
+		}
+		if (fixed.length != n) {
+			throw new IllegalArgumentException("Expected " + n
+					+ " input values but was given " + fixed.length);
+		}
+		if (xPoints < 2 || yPoints < 2) {
+			throw new IllegalArgumentException(
+					"A surface needs at least 2 points in each direction");
+		}
+
+		double[] values = fixed.clone();
+		values[xInput] = Double.NaN;
+		values[yInput] = Double.NaN;
+
+		final Surface surface = new Surface(fis, xInput, yInput, values,
+				xPoints, yPoints);
+		final int tilesAcross = (xPoints + TILE_SIZE - 1) / TILE_SIZE;
+		final int tiles = tilesAcross * ((yPoints + TILE_SIZE - 1) / TILE_SIZE);
+		final AtomicInteger next = new AtomicInteger();
+
+		ArrayList<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for (int w = 0; w < Math.min(parallelism, tiles); w++) {
+			final BatchEvaluator.Workspace ws = workspaces[w];
+			tasks.add(new Callable<Void>() {
+				public Void call() {
+					double[][] columns = new double[fis.getNumInputs()][TILE_SIZE
+							* TILE_SIZE];
+					int t;
+					while ((t = next.getAndIncrement()) < tiles) {
+						int x0 = t % tilesAcross * TILE_SIZE;
+						int y0 = t / tilesAcross * TILE_SIZE;
+						fillTile(surface, x0, y0, columns, ws);
+						if (listener != null) {
+							listener.tileFinished(surface, x0, y0,
+									Math.min(TILE_SIZE, surface.getXPoints()
+											- x0), Math.min(TILE_SIZE,
+											surface.getYPoints() - y0));
+						}
+					}
+					return null;
+				}
+			});
+		}
+
+		ParallelEvaluator.runWorkers(executor, tasks, next, tiles);
+		return surface;
+	}
+
+	private void fillTile(Surface surface, int x0, int y0,
+			double[][] columns, BatchEvaluator.Workspace ws) {
+		/**
+		 * Fills one tile of a surface, from the cache if it holds it
+		 */
+
+		int w = Math.min(TILE_SIZE, surface.getXPoints() - x0);
+		int h = Math.min(TILE_SIZE, surface.getYPoints() - y0);
+		int xPoints = surface.getXPoints();
+		double[][] values = surface.values;
+
+		TileKey key = new TileKey(surface, x0, y0);
+		double[][] tile;
+		synchronized (cache) {
+			tile = cache.get(key);
+			if (tile != null) {
+				cacheHits++;
+			} else {
+				cacheMisses++;
+			}
+		}
+
+		if (tile == null) {
+			int xInput = surface.getXInput();
+			int yInput = surface.getYInput();
+			for (int i = 0; i < columns.length; i++) {
+				if (i != xInput && i != yInput) {
+					Arrays.fill(columns[i], 0, w * h, surface.getFixedValue(i));
+				}
+			}
+			for (int y = 0; y < h; y++) {
+				double yValue = surface.getYValue(y0 + y);
+				for (int x = 0; x < w; x++) {
+					columns[xInput][y * w + x] = surface.getXValue(x0 + x);
+					columns[yInput][y * w + x] = yValue;
+				}
+			}
+
+			tile = new double[values.length][w * h];
+			batch.evaluate(columns, tile, 0, w * h, ws);
+
+			synchronized (cache) {
+				cache.put(key, tile);
+			}
+		}
+
+		for (int o = 0; o < values.length; o++) {
+			for (int y = 0; y < h; y++) {
+				System.arraycopy(tile[o], y * w, values[o], (y0 + y) * xPoints
+						+ x0, w);
+			}
+		}
+	}
+
+	public void shutdown() {
+		/**
+		 * Shuts down the thread pool, if it was created by this generator
+		 */
+		if (ownsExecutor) {
+			executor.shutdown();
+		}
+	}
+
+	/*
+	 * TileListener Interface
+	 */
+
+	public interface TileListener {
+
+		/*
+		 * Told of each tile once its values are in the surface
+		 */
+
+		void tileFinished(Surface surface, int x, int y, int width, int height);
+	}
+
+	/*
+	 * TileKey Sub Class
+	 */
+
+	private static final class TileKey {
+
+		/*
+		 * Identifies a tile by everything that decides its values
+		 */
+
+		private final int xInput;
+		private final int yInput;
+		private final int xPoints;
+		private final int yPoints;
+		private final int x;
+		private final int y;
+		private final double[] fixed;
+		private final int hash;
+
+		TileKey(Surface surface, int x, int y) {
+			this.xInput = surface.getXInput();
+			this.yInput = surface.getYInput();
+			this.xPoints = surface.getXPoints();
+			this.yPoints = surface.getYPoints();
+			this.x = x;
+			this.y = y;
+			this.fixed = new double[surface.getNumInputs()];
+			for (int i = 0; i < fixed.length; i++) {
+				fixed[i] = surface.getFixedValue(i);
+			}
+			this.hash = Arrays.hashCode(new int[] { xInput, yInput, xPoints,
+					yPoints, x, y }) * 31 + Arrays.hashCode(fixed);
+		}
+
+		public int hashCode() {
+			return hash;
+		}
+
+		public boolean equals(Object other) {
+			if (!(other instanceof TileKey)) {
+				return false;
+			}
+			TileKey k = (TileKey) other;
+			return hash == k.hash && xInput == k.xInput && yInput == k.yInput
+					&& xPoints == k.xPoints && yPoints == k.yPoints
+					&& x == k.x && y == k.y && Arrays.equals(fixed, k.fixed);
+		}
+	}
+}
@@ -0,0 +1,121 @@
+/**
+ * AtomicFile Class
+ * Replaces files safely. A file is written in full to a temporary file beside
+ * it, forced to disk, and only then renamed over the original, so a crash or
+ * error part way through a save leaves the original untouched rather than
+ * half written. The directory is forced to disk after the rename, so that
+ * the new file is not lost with it
+ * 
+ * @author Craig Knott
+ */
+
+package io;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+class AtomicFile {
+
+	private static final Random RANDOM = new Random();
+
+	static File temporaryFor(File target) throws IOException {
+		/**
+		 * Creates an empty temporary file in the same directory as the target,
+		 * so that it can be renamed over it. It is created as any new file
+		 * is, under the umask, and takes the permissions of the target if
+		 * there is one, so that a save does not change who can read the file
+		 * 
+		 * @param target
+		 *            File that will be replaced
+		 * 
+		 * @return the new temporary File
+		 */
+		// Files.createTempFile would make the file readable by its owner
+		// alone, which the rename would then pass on to the target
+		File dir = target.getAbsoluteFile().getParentFile();
+		File temporary;
+		do {
+			temporary = new File(dir, "." + target.getName() + "."
+					+ Long.toHexString(RANDOM.nextLong() >>> 1) + ".tmp");
+		} while (!temporary.createNewFile());
+
+		if (target.exists()) {
+			try {
+				copyPermissions(target.toPath(), temporary.toPath());
+			} catch (IOException ioe) {
+				temporary.delete();
+				throw ioe;
+			}
+		}
+		return temporary;
+	}
+
+	static void sync(FileOutputStream out) throws IOException {
+		/**
+		 * Flushes a stream and forces what has been written to disk
+		 */
+		out.flush();
+		out.getFD().sync();
+	}
+
+	static void commit(File temporary, File target) throws IOException {
+		/**
+		 * Renames a completely written temporary file over the target, and
+		 * forces the directory holding it to disk. The rename is atomic where
+		 * the file system allows it
+		 * 
+		 * @param temporary
+		 *            File created by temporaryFor, already closed
+		 * @param target
+		 *            File to be replaced
+		 */
+		try {
+			Files.move(temporary.toPath(), target.toPath(),
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException amnse) {
+			Files.move(temporary.toPath(), target.toPath(),
+					StandardCopyOption.REPLACE_EXISTING);
+		}
+		syncDirectory(target.getAbsoluteFile().getParentFile().toPath());
+	}
+
+	private static void copyPermissions(Path from, Path to)
+			throws IOException {
+		/**
+		 * Gives a file the permissions of another, where the file system has
+		 * POSIX permissions; elsewhere it keeps those it was created with
+		 */
+		try {
+			Files.setPosixFilePermissions(to, Files.getPosixFilePermissions(from));
+		} catch (UnsupportedOperationException uoe) {
+			// not a POSIX file system
+		}
+	}
+
+	private static void syncDirectory(Path dir) throws IOException {
+		/**
+		 * Forces a directory's entries to disk, so a rename within it survives
+		 * a crash. Some platforms, Windows among them, cannot open a directory
+		 * to do so; there the rename is left to the file system
+		 */
+		FileChannel channel;
+		try {
+			channel = FileChannel.open(dir, StandardOpenOption.READ);
+		} catch (IOException ioe) {
+			return;
+		}
+		try {
+			channel.force(true);
+		} finally {
+			channel.close();
+		}
+	}
+}
@@ -0,0 +1,394 @@
+/**
+ * BinaryFIS Class
+ * Reads and writes Fuzzy Inference Systems in a compact binary format, which
+ * holds exactly what a fis file does. The large blocks of the file, the
+ * membership function parameters and the rules, are stored in the same form
+ * as the arrays of a PackedFIS, so loading is a memory mapping of the file
+ * followed by a bulk copy of each block, with nothing to parse
+ * 
+ * @author Craig Knott
+ */
+
+package io;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+import data.Constants;
+import data.Model;
+import data.PackedFIS;
+
+public class BinaryFIS {
+
+	/*
+	 * "FISB", and the version of the layout written. The file is big-endian:
+	 * 
+	 * header       magic, version, number of inputs, outputs, membership
+	 *              functions, parameters and rules (ints), then the name,
+	 *              type and five methods (strings)
+	 * variables    for each variable, inputs first: name (string), range
+	 *              minimum and maximum (doubles), number of functions (int)
+	 * functions    for each function: name (string), type and number of
+	 *              parameters (ints)
+	 * padding      zero bytes up to a multiple of 8
+	 * parameters   every function parameter (doubles)
+	 * weights      the weight of every rule (doubles)
+	 * rules        the rule matrix of PackedFIS, row by row (shorts)
+	 * connectives  the connective of every rule (bytes)
+	 * 
+	 * Strings are an int length followed by that many bytes of UTF-8
+	 */
+	public static final int MAGIC = 0x46495342;
+	public static final int VERSION = 1;
+
+	/*
+	 * Writing methods
+	 */
+
+	public static void write(Model model, File file) throws IOException {
+		/**
+		 * Writes a model in the binary format
+		 * 
+		 * @param model
+		 *            Model to be written
+		 * @param file
+		 *            File to write to
+		 * 
+		 * @throws IOException
+		 *             if the file could not be written
+		 */
+		write(PackedFIS.pack(model), file);
+	}
+
+	public static void write(PackedFIS fis, File file) throws IOException {
+		/**
+		 * Writes a packed system in the binary format. As with fis files, the
+		 * file is written in full beside the target and then renamed over it
+		 * 
+		 * @param fis
+		 *            PackedFIS to be written
+		 * @param file
+		 *            File to write to
+		 * 
+		 * @throws IOException
+		 *             if the file could not be written
+		 */
+
+		File temporary = AtomicFile.temporaryFor(file);
+		boolean written = false;
+		FileOutputStream stream = new FileOutputStream(temporary);
+		try {
+			DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(stream, 1 << 16));
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(fis.getNumInputs());
+			out.writeInt(fis.getNumOutputs());
+			out.writeInt(fis.getNumMFs());
+			out.writeInt(fis.getNumParams());
+			out.writeInt(fis.getNumRules());
+			writeString(out, fis.getName());
+			writeString(out, fis.getType());
+			writeString(out, fis.getAndMethod());
+			writeString(out, fis.getOrMethod());
+			writeString(out, fis.getImpMethod());
+			writeString(out, fis.getAggMethod());
+			writeString(out, fis.getDefuzzMethod());
+
+			int[] mfStart = fis.getMFStart();
+			for (int v = 0; v < fis.getNumVariables(); v++) {
+				writeString(out, fis.getVarNames()[v]);
+				out.writeDouble(fis.getVarMin()[v]);
+				out.writeDouble(fis.getVarMax()[v]);
+				out.writeInt(mfStart[v + 1] - mfStart[v]);
+			}
+
+			int[] mfOffset = fis.getMFOffset();
+			for (int m = 0; m < fis.getNumMFs(); m++) {
+				writeString(out, fis.getMFNames()[m]);
+				out.writeInt(fis.getMFType()[m]);
+				out.writeInt(mfOffset[m + 1] - mfOffset[m]);
+			}
+
+			while (out.size() % 8 != 0) {
+				out.writeByte(0);
+			}
+
+			for (double p : fis.getMFParams()) {
+				out.writeDouble(p);
+			}
+			for (double w : fis.getRuleWeight()) {
+				out.writeDouble(w);
+			}
+			for (short e : fis.getRuleMatrix()) {
+				out.writeShort(e);
+			}
+			out.write(fis.getRuleConnective());
+			out.flush();
+			AtomicFile.sync(stream);
+			written = true;
+		} finally {
+			stream.close();
+			if (!written) {
+				temporary.delete();
+			}
+		}
+		AtomicFile.commit(temporary, file);
+	}
+
+	private static void writeString(DataOutputStream out, String s)
+			throws IOException {
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	/*
+	 * Reading methods
+	 */
+
+	public static PackedFIS read(File file) throws IOException,
+			InvalidFormatException {
+		/**
+		 * Reads a binary file by mapping it into memory
+		 * 
+		 * @param file
+		 *            File to be read
+		 * 
+		 * @return PackedFIS holding the system in the file
+		 * 
+		 * @throws IOException
+		 *             if the file could not be read
+		 * @throws InvalidFormatException
+		 *             if the file is not a valid binary fis
+		 */
+
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			MappedByteBuffer buffer = channel.map(
+					FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			return read(buffer);
+		} finally {
+			raf.close();
+		}
+	}
+
+	public static PackedFIS read(ByteBuffer buffer)
+			throws InvalidFormatException {
+		/**
+		 * Reads a binary fis from a buffer, starting at its position
+		 * 
+		 * @param buffer
+		 *            ByteBuffer holding the file, which is read as big-endian
+		 * 
+		 * @return PackedFIS holding the system in the buffer
+		 * 
+		 * @throws InvalidFormatException
+		 *             if the buffer does not hold a valid binary fis
+		 */
+
+		ByteBuffer b = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+		int start = b.position();
+
+		try {
+			if (b.getInt() != MAGIC) {
+				throw new InvalidFormatException("This is not a binary fis file");
+			}
+			int version = b.getInt();
+			if (version != VERSION) {
+				throw new InvalidFormatException("Binary fis version "
+						+ version + " is not supported, expected " + VERSION);
+			}
+
+			int numInputs = count(b);
+			int numOutputs = count(b);
+			int numMFs = count(b);
+			int numParams = count(b);
+			int numRules = count(b);
+
+			/*
+			 * Check the file is large enough before allocating anything
+			 */
+			long width = (long) numInputs + numOutputs;
+			long needed = width * 24 + numMFs * 12L + numParams * 8L
+					+ numRules * (9 + width * 2);
+			if (needed > b.remaining()) {
+				throw new InvalidFormatException(
+						"This binary fis file is truncated");
+			}
+
+			PackedFIS fis = new PackedFIS(numInputs, numOutputs, numMFs,
+					numParams, numRules);
+			fis.setName(readString(b));
+			fis.setType(readString(b));
+			fis.setAndMethod(readString(b));
+			fis.setOrMethod(readString(b));
+			fis.setImpMethod(readString(b));
+			fis.setAggMethod(readString(b));
+			fis.setDefuzzMethod(readString(b));
+
+			int[] mfStart = fis.getMFStart();
+			for (int v = 0; v < fis.getNumVariables(); v++) {
+				fis.getVarNames()[v] = readString(b);
+				fis.getVarMin()[v] = b.getDouble();
+				fis.getVarMax()[v] = b.getDouble();
+				mfStart[v + 1] = mfStart[v] + count(b);
+			}
+			if (mfStart[fis.getNumVariables()] != fis.getNumMFs()) {
+				throw new InvalidFormatException(
+						"This binary fis file has a corrupt variable table");
+			}
+
+			int[] mfOffset = fis.getMFOffset();
+			for (int m = 0; m < fis.getNumMFs(); m++) {
+				fis.getMFNames()[m] = readString(b);
+				fis.getMFType()[m] = b.getInt();
+				mfOffset[m + 1] = mfOffset[m] + count(b);
+			}
+			if (mfOffset[fis.getNumMFs()] != fis.getNumParams()) {
+				throw new InvalidFormatException(
+						"This binary fis file has a corrupt function table");
+			}
+
+			b.position(start + (b.position() - start + 7) / 8 * 8);
+
+			/*
+			 * The bulk of the file, copied straight into the packed arrays
+			 */
+			b.asDoubleBuffer().get(fis.getMFParams());
+			b.position(b.position() + fis.getNumParams() * 8);
+			b.asDoubleBuffer().get(fis.getRuleWeight());
+			b.position(b.position() + fis.getNumRules() * 8);
+			b.asShortBuffer().get(fis.getRuleMatrix());
+			b.position(b.position() + fis.getRuleMatrix().length * 2);
+			b.get(fis.getRuleConnective());
+
+			checkRules(fis);
+			return fis;
+		} catch (BufferUnderflowException bue) {
+			throw new InvalidFormatException("This binary fis file is truncated");
+		} catch (IllegalArgumentException iae) {
+			throw new InvalidFormatException("This binary fis file is truncated");
+		}
+	}
+
+	public static Model readModel(File file) throws IOException,
+			InvalidFormatException {
+		/**
+		 * Reads a binary file into a new Model
+		 * 
+		 * @param file
+		 *            File to be read
+		 * 
+		 * @return Model holding the system in the file
+		 * 
+		 * @throws IOException
+		 *             if the file could not be read
+		 * @throws InvalidFormatException
+		 *             if the file is not a valid binary fis
+		 */
+		return read(file).toModel();
+	}
+
+	private static String readString(ByteBuffer b)
+			throws InvalidFormatException {
+		int length = count(b);
+		if (length > b.remaining()) {
+			throw new BufferUnderflowException();
+		}
+		byte[] bytes = new byte[length];
+		b.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static int count(ByteBuffer b) throws InvalidFormatException {
+		/**
+		 * Reads a length or count, which cannot be negative
+		 */
+		int n = b.getInt();
+		if (n < 0) {
+			throw new InvalidFormatException(
+					"This binary fis file has a corrupt length");
+		}
+		return n;
+	}
+
+	private static void checkRules(PackedFIS fis)
+			throws InvalidFormatException {
+		/**
+		 * Checks that every rule refers to membership functions that exist
+		 * and has a known connective
+		 */
+
+		int width = fis.getNumVariables();
+		int[] mfStart = fis.getMFStart();
+		short[] matrix = fis.getRuleMatrix();
+		byte[] connectives = fis.getRuleConnective();
+
+		for (int r = 0; r < fis.getNumRules(); r++) {
+			for (int v = 0; v < width; v++) {
+				int value = matrix[r * width + v] & PackedFIS.RULE_VALUE;
+				if (value > mfStart[v + 1] - mfStart[v]) {
+					throw new InvalidFormatException("Rule " + (r + 1)
+							+ " refers to a missing membership function");
+				}
+			}
+			if (connectives[r] != Constants.CONNECTIVE_AND
+					&& connectives[r] != Constants.CONNECTIVE_OR) {
+				throw new InvalidFormatException("Rule " + (r + 1)
+						+ " has an unknown connective");
+			}
+		}
+	}
+
+	/*
+	 * Conversion
+	 */
+
+	public static void textToBinary(File fisFile, File binaryFile)
+			throws IOException, InvalidFormatException {
+		/**
+		 * Converts a fis file to the binary format
+		 * 
+		 * @param fisFile
+		 *            File in the fis format to be read
+		 * @param binaryFile
+		 *            File to write the binary format to
+		 * 
+		 * @throws IOException
+		 *             if either file could not be used
+		 * @throws InvalidFormatException
+		 *             if the fis file is not of the correct format
+		 */
+		write(FISReader.read(fisFile), binaryFile);
+	}
+
+	public static void binaryToText(File binaryFile, File fisFile)
+			throws IOException, InvalidFormatException {
+		/**
+		 * Converts a binary file to the fis format
+		 * 
+		 * @param binaryFile
+		 *            File in the binary format to be read
+		 * @param fisFile
+		 *            File to write the fis format to
+		 * 
+		 * @throws IOException
+		 *             if either file could not be used
+		 * @throws InvalidFormatException
+		 *             if the binary file is not valid
+		 */
+		FISWriter.write(readModel(binaryFile), fisFile);
+	}
+}
@@ -0,0 +1,924 @@
+/**
+ * CsvBatchScorer Class
+ * Scores a CSV file of inputs with a Fuzzy Inference System, writing each
+ * row back out with the outputs of the system added on the end. The first
+ * line of the file names its columns, and the columns named after the input
+ * variables are used as the inputs, in whatever order they appear; any other
+ * columns are copied through untouched. The file is read through a channel
+ * in fixed size chunks of rows, each of which is parsed into columns,
+ * evaluated and written before the next is read, so the memory used does not
+ * depend on the size of the file
+ * 
+ * @author Craig Knott
+ */
+
+package io;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import data.Model;
+import data.Variable;
+import inference.CompiledFIS;
+import inference.ParallelEvaluator;
+
+public class CsvBatchScorer {
+
+	/*
+	 * Number of rows parsed and evaluated together
+	 */
+	public static final int DEFAULT_CHUNK_ROWS = 65536;
+
+	/*
+	 * Most digits after the decimal point an output can be written with
+	 */
+	public static final int MAX_PRECISION = 17;
+
+	private static final int BUFFER_SIZE = 1 << 20;
+
+	/*
+	 * Powers of ten that are exact as doubles, used to parse most numbers
+	 * without creating a String
+	 */
+	private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4,
+			1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16,
+			1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+	private CompiledFIS fis;
+	private String[] inputNames;
+	private String[] outputNames;
+	private int parallelism = 1;
+	private int chunkRows = DEFAULT_CHUNK_ROWS;
+	private int precision = -1;
+	private int cacheCapacity;
+	private boolean header = true;
+
+	/*
+	 * State of a single run
+	 */
+	private ReadableByteChannel in;
+	private ByteBuffer inBuffer;
+	private WritableByteChannel out;
+	private ByteBuffer outBuffer;
+	private long line;
+	private boolean ended;
+
+	private int[] columnInput;
+	private int numColumns;
+	private double[][] columns;
+	private double[][] outColumns;
+	private byte[] rowBytes;
+	private int[] rowEnds;
+	private StringBuilder number = new StringBuilder(32);
+
+	/*
+	 * Constructors
+	 */
+
+	public CsvBatchScorer(Model model) {
+		/**
+		 * Constructor, compiling the system held in a model
+		 * 
+		 * @param model
+		 *            Model to score with
+		 */
+		this(CompiledFIS.compile(model), names(model.getVarInList()),
+				names(model.getVarOutList()));
+	}
+
+	public CsvBatchScorer(Model model, int resolution) {
+		/**
+		 * Constructor, compiling the system held in a model with the given
+		 * output resolution
+		 * 
+		 * @param model
+		 *            Model to score with
+		 * @param resolution
+		 *            integer number of points each output variable is sampled
+		 *            at
+		 */
+		this(CompiledFIS.compile(model, resolution),
+				names(model.getVarInList()), names(model.getVarOutList()));
+	}
+
+	public CsvBatchScorer(CompiledFIS fis, String[] inputNames,
+			String[] outputNames) {
+		/**
+		 * Constructor
+		 * 
+		 * @param fis
+		 *            CompiledFIS to score with
+		 * @param inputNames
+		 *            array of the names of the input variables, which are
+		 *            looked for in the header of the file
+		 * @param outputNames
+		 *            array of the names of the output variables, added to the
+		 *            header of the result
+		 */
+
+		if (inputNames.length != fis.getNumInputs()
+				|| outputNames.length != fis.getNumOutputs()) {
+			throw new IllegalArgumentException(
+					"Expected a name for every input and output variable");
+		}
+
+		this.fis = fis;
+		this.inputNames = inputNames;
+		this.outputNames = outputNames;
+	}
+
+	/*
+	 * Data Assignment Methods
+	 */
+
+	public void setParallelism(int parallelism) {
+		/**
+		 * Sets the number of threads each chunk is evaluated on
+		 * 
+		 * @param parallelism
+		 *            integer number of threads, at least 1
+		 */
+		if (parallelism < 1) {
+			throw new IllegalArgumentException(
+					"Parallelism must be at least 1");
+		}
+		this.parallelism = parallelism;
+	}
+
+	public void setChunkRows(int chunkRows) {
+		/**
+		 * Sets the number of rows parsed and evaluated together, which bounds
+		 * the memory used
+		 * 
+		 * @param chunkRows
+		 *            integer number of rows, at least 1
+		 */
+		if (chunkRows < 1) {
+			throw new IllegalArgumentException(
+					"A chunk must hold at least 1 row");
+		}
+		this.chunkRows = chunkRows;
+	}
+
+	public void setPrecision(int precision) {
+		/**
+		 * Sets the number of digits written after the decimal point of each
+		 * output. By default outputs are written in full, as Double.toString
+		 * would
+		 * 
+		 * @param precision
+		 *            integer number of digits, or -1 to write outputs in full
+		 */
+		if (precision < -1 || precision > MAX_PRECISION) {
+			throw new IllegalArgumentException(
+					"Precision must be between 0 and " + MAX_PRECISION
+							+ ", or -1");
+		}
+		this.precision = precision;
+	}
+
+	public void setCacheCapacity(int capacity) {
+		/**
+		 * Caches the membership degrees of every input variable for the given
+		 * number of distinct values each, which pays off when the inputs are
+		 * quantised to a few levels. The caches belong to the workers of each
+		 * run, so the CompiledFIS being scored with is left unchanged
+		 * 
+		 * @param capacity
+		 *            integer, the most values cached per input and thread, or
+		 *            0 for no cache
+		 */
+		if (capacity < 0) {
+			throw new IllegalArgumentException(
+					"Cache capacity cannot be negative");
+		}
+		this.cacheCapacity = capacity;
+	}
+
+	public void setHeader(boolean header) {
+		/**
+		 * Sets whether the file starts with a line naming its columns. Without
+		 * one, the columns are the input variables in order and the result
+		 * has no header either
+		 * 
+		 * @param header
+		 *            boolean, true if the first line names the columns
+		 */
+		this.header = header;
+	}
+
+	/*
+	 * Scoring
+	 */
+
+	public Summary score(File input, File output) throws IOException,
+			InvalidFormatException {
+		/**
+		 * Scores a CSV file. As with fis files, the result is written in full
+		 * beside the target and then renamed over it
+		 * 
+		 * @param input
+		 *            File holding the rows to score
+		 * @param output
+		 *            File to write the scored rows to
+		 * 
+		 * @return Summary of the rows scored
+		 * 
+		 * @throws IOException
+		 *             if either file could not be used
+		 * @throws InvalidFormatException
+		 *             if the input is not a CSV file of numbers with a column
+		 *             for every input variable
+		 */
+		FileInputStream source = new FileInputStream(input);
+		try {
+			return score(source.getChannel(), output);
+		} finally {
+			source.close();
+		}
+	}
+
+	public Summary score(File input, WritableByteChannel output)
+			throws IOException, InvalidFormatException {
+		/**
+		 * Scores a CSV file, writing the result to a channel, which is not
+		 * closed
+		 * 
+		 * @param input
+		 *            File holding the rows to score
+		 * @param output
+		 *            WritableByteChannel to write the scored rows to
+		 * 
+		 * @return Summary of the rows scored
+		 * 
+		 * @throws IOException
+		 *             if the file or channel could not be used
+		 * @throws InvalidFormatException
+		 *             if the input is not a CSV file of numbers with a column
+		 *             for every input variable
+		 */
+		FileInputStream source = new FileInputStream(input);
+		try {
+			return score(source.getChannel(), output);
+		} finally {
+			source.close();
+		}
+	}
+
+	public Summary score(ReadableByteChannel input, File output)
+			throws IOException, InvalidFormatException {
+		/**
+		 * Scores a CSV file read from a channel, which is not closed, writing
+		 * the result beside the target file and then renaming it over it
+		 * 
+		 * @param input
+		 *            ReadableByteChannel holding the rows to score
+		 * @param output
+		 *            File to write the scored rows to
+		 * 
+		 * @return Summary of the rows scored
+		 * 
+		 * @throws IOException
+		 *             if the channel or file could not be used
+		 * @throws InvalidFormatException
+		 *             if the input is not a CSV file of numbers with a column
+		 *             for every input variable
+		 */
+
+		File temporary = AtomicFile.temporaryFor(output);
+		boolean written = false;
+		Summary summary;
+		FileOutputStream target = new FileOutputStream(temporary);
+		try {
+			summary = score(input, target.getChannel());
+			AtomicFile.sync(target);
+			written = true;
+		} finally {
+			target.close();
+			if (!written) {
+				temporary.delete();
+			}
+		}
+		AtomicFile.commit(temporary, output);
+		return summary;
+	}
+
+	public synchronized Summary score(ReadableByteChannel input,
+			WritableByteChannel output) throws IOException,
+			InvalidFormatException {
+		/**
+		 * Scores a CSV file read from one channel, writing the result to
+		 * another. Neither channel is closed
+		 * 
+		 * @param input
+		 *            ReadableByteChannel holding the rows to score
+		 * @param output
+		 *            WritableByteChannel to write the scored rows to
+		 * 
+		 * @return Summary of the rows scored
+		 * 
+		 * @throws IOException
+		 *             if either channel fails
+		 * @throws InvalidFormatException
+		 *             if the input is not a CSV file of numbers with a column
+		 *             for every input variable
+		 */
+
+		long start = System.nanoTime();
+		long rows = 0;
+		long cacheHits = 0;
+		long cacheMisses = 0;
+
+		in = input;
+		out = output;
+		inBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+		inBuffer.flip();
+		outBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+		line = 0;
+		ended = false;
+
+		columns = new double[fis.getNumInputs()][chunkRows];
+		outColumns = new double[fis.getNumOutputs()][chunkRows];
+		rowBytes = new byte[4096];
+		rowEnds = new int[chunkRows];
+
+		ParallelEvaluator evaluator = new ParallelEvaluator(fis, parallelism);
+		evaluator.setChunkSize((chunkRows + parallelism - 1) / parallelism);
+		for (int i = 0; i < fis.getNumInputs(); i++) {
+			evaluator.setCacheCapacity(i, cacheCapacity);
+		}
+		try {
+			readHeader();
+
+			int n;
+			while ((n = readChunk()) > 0) {
+				evaluator.evaluate(columns, outColumns, n);
+				writeChunk(n);
+				rows += n;
+			}
+			flush();
+			cacheHits = evaluator.getCacheHits();
+			cacheMisses = evaluator.getCacheMisses();
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Scoring was interrupted", ie);
+		} finally {
+			evaluator.shutdown();
+			in = null;
+			out = null;
+			inBuffer = null;
+			outBuffer = null;
+			columns = null;
+			outColumns = null;
+			rowBytes = null;
+			rowEnds = null;
+		}
+
+		return new Summary(rows, System.nanoTime() - start, cacheHits,
+				cacheMisses);
+	}
+
+	/*
+	 * Reading
+	 */
+
+	private void readHeader() throws IOException, InvalidFormatException {
+		/**
+		 * Reads the names of the columns, finds the column of every input
+		 * variable and writes the header of the result
+		 */
+
+		if (!header) {
+			numColumns = inputNames.length;
+			columnInput = new int[numColumns];
+			for (int i = 0; i < numColumns; i++) {
+				columnInput[i] = i;
+			}
+			return;
+		}
+
+		int length;
+		while ((length = nextLine()) == 0) {
+			inBuffer.position(nextLineStart(inBuffer.position()));
+		}
+		if (length < 0) {
+			throw new InvalidFormatException("The CSV file is empty");
+		}
+		byte[] bytes = inBuffer.array();
+		int from = inBuffer.position();
+		int to = from + length;
+
+		numColumns = 0;
+		columnInput = new int[8];
+		int[] inputColumn = new int[inputNames.length];
+		Arrays.fill(inputColumn, -1);
+
+		int field = from;
+		while (field <= to) {
+			int end = fieldEnd(bytes, field, to);
+			String name = unquote(new String(bytes, field, end - field,
+					StandardCharsets.UTF_8).trim());
+
+			if (numColumns == columnInput.length) {
+				columnInput = Arrays.copyOf(columnInput, numColumns * 2);
+			}
+			columnInput[numColumns] = -1;
+			for (int i = 0; i < inputNames.length; i++) {
+				if (inputColumn[i] < 0 && inputNames[i].equals(name)) {
+					inputColumn[i] = numColumns;
+					columnInput[numColumns] = i;
+					break;
+				}
+			}
+			numColumns++;
+			field = end + 1;
+		}
+
+		for (int i = 0; i < inputNames.length; i++) {
+			if (inputColumn[i] < 0) {
+				throw new InvalidFormatException(
+						"The CSV file has no column for the input variable '"
+								+ inputNames[i] + "'");
+			}
+		}
+
+		write(bytes, from, length);
+		for (String name : outputNames) {
+			writeByte(',');
+			byte[] quoted = quote(name).getBytes(StandardCharsets.UTF_8);
+			write(quoted, 0, quoted.length);
+		}
+		writeByte('\n');
+
+		inBuffer.position(nextLineStart(to));
+	}
+
+	private int readChunk() throws IOException, InvalidFormatException {
+		/**
+		 * Parses up to a chunk of rows into the input columns, keeping the
+		 * text of each row to be copied to the result
+		 * 
+		 * @return integer, the number of rows read, 0 at the end of the file
+		 */
+
+		int rows = 0;
+		int used = 0;
+		int length;
+		while (rows < chunkRows && (length = nextLine()) >= 0) {
+			byte[] bytes = inBuffer.array();
+			int from = inBuffer.position();
+			int to = from + length;
+
+			if (length > 0) {
+				parseRow(bytes, from, to, rows);
+
+				if (used + length > rowBytes.length) {
+					rowBytes = Arrays.copyOf(rowBytes,
+							Math.max(used + length, rowBytes.length * 2));
+				}
+				System.arraycopy(bytes, from, rowBytes, used, length);
+				used += length;
+				rowEnds[rows++] = used;
+			}
+			inBuffer.position(nextLineStart(to));
+		}
+		return rows;
+	}
+
+	private void parseRow(byte[] bytes, int from, int to, int row)
+			throws InvalidFormatException {
+		/**
+		 * Parses the input columns of one row
+		 */
+
+		int column = 0;
+		int found = 0;
+		int field = from;
+		while (field <= to && column < numColumns) {
+			int end = fieldEnd(bytes, field, to);
+			int input = columnInput[column];
+			if (input >= 0) {
+				columns[input][row] = parseNumber(bytes, field, end, from);
+				found++;
+			}
+			column++;
+			field = end + 1;
+		}
+
+		if (found != inputNames.length) {
+			String expected = header ? "the header has " : "the system has ";
+			throw new InvalidFormatException("Row has " + column
+					+ " columns but " + expected + numColumns, (int) line, 1);
+		}
+	}
+
+	private double parseNumber(byte[] bytes, int from, int to, int lineStart)
+			throws InvalidFormatException {
+		/**
+		 * Parses a decimal number. Numbers of up to 15 significant digits with
+		 * a small exponent, which covers almost every number written by a
+		 * program, are exact as a long divided or multiplied by a power of
+		 * ten; any other decimal number is left to Double.parseDouble, which
+		 * is not given anything else it would accept, such as 1d, 0x1p3 or
+		 * NaN
+		 */
+
+		int start = from;
+		int end = to;
+		while (start < end && (bytes[start] == ' ' || bytes[start] == '"')) {
+			start++;
+		}
+		while (end > start && (bytes[end - 1] == ' ' || bytes[end - 1] == '"')) {
+			end--;
+		}
+
+		int i = start;
+		boolean negative = false;
+		if (i < end && (bytes[i] == '-' || bytes[i] == '+')) {
+			negative = bytes[i] == '-';
+			i++;
+		}
+
+		long mantissa = 0;
+		int digits = 0;
+		int exponent = 0;
+		boolean seenDigit = false;
+		boolean seenPoint = false;
+		boolean simple = true;
+		for (; i < end; i++) {
+			int c = bytes[i];
+			if (c >= '0' && c <= '9') {
+				seenDigit = true;
+				if (mantissa == 0 && c == '0') {
+					if (seenPoint) {
+						exponent--;
+					}
+				} else if (digits < 15) {
+					mantissa = mantissa * 10 + (c - '0');
+					digits++;
+					if (seenPoint) {
+						exponent--;
+					}
+				} else if (c != '0') {
+					simple = false;
+				} else if (!seenPoint) {
+					exponent++;
+				}
+			} else if (c == '.' && !seenPoint) {
+				seenPoint = true;
+			} else if ((c == 'e' || c == 'E') && seenDigit) {
+				int e = 0;
+				boolean negativeExponent = false;
+				i++;
+				if (i < end && (bytes[i] == '-' || bytes[i] == '+')) {
+					negativeExponent = bytes[i] == '-';
+					i++;
+				}
+				if (i == end) {
+					simple = false;
+				}
+				for (; i < end && e < 1000; i++) {
+					if (bytes[i] < '0' || bytes[i] > '9') {
+						simple = false;
+						break;
+					}
+					e = e * 10 + (bytes[i] - '0');
+				}
+				if (i < end) {
+					simple = false;
+				}
+				exponent += negativeExponent ? -e : e;
+				break;
+			} else {
+				simple = false;
+				break;
+			}
+		}
+
+		if (simple && seenDigit && exponent >= -22 && exponent <= 22) {
+			double value = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent]
+					: mantissa * POWERS_OF_TEN[exponent];
+			return negative ? -value : value;
+		}
+
+		String text = new String(bytes, start, end - start,
+				StandardCharsets.UTF_8);
+		if (!isDecimal(text)) {
+			throw new InvalidFormatException("'" + text
+					+ "' is not a valid number", (int) line, from - lineStart
+					+ 1);
+		}
+		return Double.parseDouble(text);
+	}
+
+	private int nextLine() throws IOException {
+		/**
+		 * Makes sure the whole of the next line is in the input buffer,
+		 * starting at its position, reading more of the file as needed
+		 * 
+		 * @return integer, the length of the line without its line ending,
+		 *         or -1 at the end of the file
+		 */
+
+		int scanned = 0;
+		while (true) {
+			byte[] bytes = inBuffer.array();
+			int from = inBuffer.position();
+			int limit = inBuffer.limit();
+			for (int i = from + scanned; i < limit; i++) {
+				if (bytes[i] == '\n') {
+					line++;
+					return i > from && bytes[i - 1] == '\r' ? i - from - 1 : i
+							- from;
+				}
+			}
+			scanned = limit - from;
+
+			if (ended) {
+				if (scanned == 0) {
+					return -1;
+				}
+				line++;
+				return bytes[limit - 1] == '\r' ? scanned - 1 : scanned;
+			}
+
+			inBuffer.compact();
+			if (!inBuffer.hasRemaining()) {
+				ByteBuffer grown = ByteBuffer.allocate(inBuffer.capacity() * 2);
+				inBuffer.flip();
+				grown.put(inBuffer);
+				inBuffer = grown;
+			}
+			if (in.read(inBuffer) < 0) {
+				ended = true;
+			}
+			inBuffer.flip();
+		}
+	}
+
+	private int nextLineStart(int lineEnd) {
+		/**
+		 * Returns where the line after one ending at the given point starts
+		 */
+		byte[] bytes = inBuffer.array();
+		int limit = inBuffer.limit();
+		int i = lineEnd;
+		if (i < limit && bytes[i] == '\r') {
+			i++;
+		}
+		if (i < limit && bytes[i] == '\n') {
+			i++;
+		}
+		return i;
+	}
+
+	private static int fieldEnd(byte[] bytes, int from, int to) {
+		/**
+		 * Returns the end of the field starting at from, which is the next
+		 * comma outside of double quotes or the end of the line
+		 */
+		boolean quoted = false;
+		for (int i = from; i < to; i++) {
+			if (bytes[i] == '"') {
+				quoted = !quoted;
+			} else if (bytes[i] == ',' && !quoted) {
+				return i;
+			}
+		}
+		return to;
+	}
+
+	/*
+	 * Writing
+	 */
+
+	private void writeChunk(int rows) throws IOException {
+		/**
+		 * Writes each row of a chunk followed by its outputs
+		 */
+
+		int start = 0;
+		for (int r = 0; r < rows; r++) {
+			write(rowBytes, start, rowEnds[r] - start);
+			start = rowEnds[r];
+
+			for (double[] column : outColumns) {
+				writeByte(',');
+				number.setLength(0);
+				appendNumber(column[r]);
+				for (int i = 0; i < number.length(); i++) {
+					writeByte(number.charAt(i));
+				}
+			}
+			writeByte('\n');
+		}
+	}
+
+	private void appendNumber(double value) {
+		/**
+		 * Appends an output to the number buffer, rounded to the precision
+		 * set. Values well away from a tie are rounded on the scaled double,
+		 * which cannot be out by more than the distance to the tie; anything
+		 * else is rounded exactly by BigDecimal
+		 */
+
+		if (precision < 0 || Double.isNaN(value) || Double.isInfinite(value)) {
+			number.append(value);
+			return;
+		}
+
+		double scaled = Math.abs(value) * POWERS_OF_TEN[precision];
+		double floor = Math.floor(scaled);
+		if (scaled >= 1e9 || Math.abs(scaled - floor - 0.5) < 1e-6) {
+			number.append(new BigDecimal(value).setScale(precision,
+					RoundingMode.HALF_UP).toPlainString());
+			return;
+		}
+
+		long digits = scaled - floor < 0.5 ? (long) floor : (long) floor + 1;
+		if (value < 0 && digits != 0) {
+			number.append('-');
+		}
+		long scale = (long) POWERS_OF_TEN[precision];
+		long fraction = digits % scale;
+		number.append(digits / scale);
+		if (precision > 0) {
+			number.append('.');
+			int start = number.length();
+			number.append(fraction);
+			while (number.length() - start < precision) {
+				number.insert(start, '0');
+			}
+		}
+	}
+
+	private void write(byte[] bytes, int from, int length) throws IOException {
+		while (length > 0) {
+			if (!outBuffer.hasRemaining()) {
+				flush();
+			}
+			int n = Math.min(length, outBuffer.remaining());
+			outBuffer.put(bytes, from, n);
+			from += n;
+			length -= n;
+		}
+	}
+
+	private void writeByte(int c) throws IOException {
+		if (!outBuffer.hasRemaining()) {
+			flush();
+		}
+		outBuffer.put((byte) c);
+	}
+
+	private void flush() throws IOException {
+		outBuffer.flip();
+		while (outBuffer.hasRemaining()) {
+			out.write(outBuffer);
+		}
+		outBuffer.clear();
+	}
+
+	/*
+	 * Auxiliary Methods
+	 */
+
+	public static boolean isDecimal(String text) {
+		/**
+		 * Returns whether text is a plain decimal number: an optional sign,
+		 * digits with at most one point among them, and an optional exponent
+		 * of e or E, an optional sign and digits
+		 * 
+		 * @param text
+		 *            String to check, without surrounding spaces
+		 * 
+		 * @return boolean, true if the text is a decimal number
+		 */
+
+		int n = text.length();
+		int i = 0;
+		if (i < n && (text.charAt(i) == '-' || text.charAt(i) == '+')) {
+			i++;
+		}
+		int digits = 0;
+		boolean point = false;
+		for (; i < n; i++) {
+			char c = text.charAt(i);
+			if (c >= '0' && c <= '9') {
+				digits++;
+			} else if (c == '.' && !point) {
+				point = true;
+			} else {
+				break;
+			}
+		}
+		if (digits == 0) {
+			return false;
+		}
+
+		if (i < n && (text.charAt(i) == 'e' || text.charAt(i) == 'E')) {
+			i++;
+			if (i < n && (text.charAt(i) == '-' || text.charAt(i) == '+')) {
+				i++;
+			}
+			int exponentDigits = 0;
+			while (i < n && text.charAt(i) >= '0' && text.charAt(i) <= '9') {
+				exponentDigits++;
+				i++;
+			}
+			if (exponentDigits == 0) {
+				return false;
+			}
+		}
+		return i == n;
+	}
+
+	private static String[] names(ArrayList<Variable> vars) {
+		String[] names = new String[vars.size()];
+		for (int i = 0; i < names.length; i++) {
+			names[i] = vars.get(i).getName();
+		}
+		return names;
+	}
+
+	private static String unquote(String s) {
+		if (s.length() >= 2 && s.charAt(0) == '"'
+				&& s.charAt(s.length() - 1) == '"') {
+			return s.substring(1, s.length() - 1).replace("\"\"", "\"");
+		}
+		return s;
+	}
+
+	private static String quote(String s) {
+		if (s.indexOf(',') < 0 && s.indexOf('"') < 0) {
+			return s;
+		}
+		return '"' + s.replace("\"", "\"\"") + '"';
+	}
+
+	/*
+	 * Summary Sub Class
+	 */
+
+	public static final class Summary {
+
+		/*
+		 * How much was scored, how long it took and how many inputs were
+		 * found in the fuzzification caches
+		 */
+		private final long rows;
+		private final long nanos;
+		private final long cacheHits;
+		private final long cacheMisses;
+
+		Summary(long rows, long nanos, long cacheHits, long cacheMisses) {
+			this.rows = rows;
+			this.nanos = nanos;
+			this.cacheHits = cacheHits;
+			this.cacheMisses = cacheMisses;
+		}
+
+		public long getRows() {
+			return rows;
+		}
+
+		public long getNanos() {
+			return nanos;
+		}
+
+		public double getRowsPerSecond() {
+			return nanos == 0 ? 0 : rows / (nanos / 1e9);
+		}
+
+		public long getCacheHits() {
+			return cacheHits;
+		}
+
+		public long getCacheMisses() {
+			return cacheMisses;
+		}
+
+		@Override
+		public String toString() {
+			String s = String.format(
+					"Scored %d rows in %.1f ms (%.0f rows per second)", rows,
+					nanos / 1e6, getRowsPerSecond());
+			long lookups = cacheHits + cacheMisses;
+			if (lookups > 0) {
+				s += String.format(", %.1f%% of inputs cached",
+						100.0 * cacheHits / lookups);
+			}
+			return s;
+		}
+	}
+}
@@ -0,0 +1,663 @@
+/**
+ * EditJournal Class
+ * Autosaves a model being edited by appending each edit to a journal beside
+ * its file, rather than writing the whole file again, so the cost of an
+ * autosave follows the size of the edit and not the size of the model. The
+ * journal is written on a background thread. Every so many edits it is
+ * compacted: the model is written in full to an autosave fis file and the
+ * journal starts again from it. After a crash, recover rebuilds the model
+ * from the file (or the autosave) and the edits journaled since
+ * 
+ * The journal is a text file. Its first line names the file it applies to,
+ * with that file's CRC-32, and each line after is one edit, prefixed with
+ * its own CRC-32 so that a line left half written by a crash is ignored
+ * 
+ * @author Craig Knott
+ */
+
+package io;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.zip.CRC32;
+
+import data.Model;
+import data.PackedFIS;
+import data.Rule;
+import data.RuleList;
+import data.SubRule;
+import data.Variable;
+
+public class EditJournal {
+
+	/*
+	 * Edits journaled between compactions by default
+	 */
+	public static final int DEFAULT_COMPACT_EDITS = 1000;
+
+	private static final String HEADER = "FISJOURNAL\t1";
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/*
+	 * Tasks for the writer thread, besides journal lines
+	 */
+	private static final Object CLOSE = new Object();
+
+	private final File file;
+	private final File journalFile;
+	private final File autosaveFile;
+	private int compactEdits = DEFAULT_COMPACT_EDITS;
+
+	/*
+	 * Properties last journaled, so that unchanged ones are not journaled
+	 * again
+	 */
+	private String[] properties;
+	private int edits;
+
+	private final LinkedBlockingQueue<Object> queue = new LinkedBlockingQueue<Object>();
+	private final Thread writer;
+	private volatile IOException error;
+
+	private FileOutputStream stream;
+	private Writer out;
+
+	/*
+	 * Constructors
+	 */
+
+	public EditJournal(File file, Model model, boolean saved) {
+		/**
+		 * Constructor, starting a journal for a model. Any journal already
+		 * beside the file is replaced
+		 * 
+		 * @param file
+		 *            File the model is, or will be, saved to
+		 * @param model
+		 *            Model being edited
+		 * @param saved
+		 *            boolean, whether the model is exactly what the file
+		 *            holds. If so the journal starts from the file, otherwise
+		 *            from an autosave of the model
+		 */
+
+		this.file = file.getAbsoluteFile();
+		this.journalFile = journalFor(this.file);
+		this.autosaveFile = autosaveFor(this.file);
+		this.properties = properties(model);
+
+		queue.add(saved ? this.file : snapshot(model));
+
+		writer = new Thread(new Runnable() {
+			public void run() {
+				write();
+			}
+		}, "EditJournal " + this.file.getName());
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/*
+	 * Journaling
+	 */
+
+	public void variableAdded(Variable v, int index, Model model) {
+		/**
+		 * Journals a variable added at an index, which also adds an unused
+		 * entry for it to every rule
+		 */
+		record(model, "VA", side(v.isInput()), Integer.toString(index),
+				FISWriter.variableSection(v));
+	}
+
+	public void variableChanged(Variable v, int index, Model model) {
+		/**
+		 * Journals a variable, or its membership functions, being changed
+		 */
+		record(model, "VS", side(v.isInput()), Integer.toString(index),
+				FISWriter.variableSection(v));
+	}
+
+	public void variableDeleted(boolean input, int index, Model model) {
+		/**
+		 * Journals a variable being deleted, which also removes its entry
+		 * from every rule
+		 */
+		record(model, "VD", side(input), Integer.toString(index));
+	}
+
+	public void ruleAdded(Rule r, int index, Model model) {
+		record(model, "RA", Integer.toString(index), ruleLine(r));
+	}
+
+	public void ruleChanged(Rule r, int index, Model model) {
+		record(model, "RS", Integer.toString(index), ruleLine(r));
+	}
+
+	public void ruleDeleted(int index, Model model) {
+		record(model, "RD", Integer.toString(index));
+	}
+
+	public void propertiesChanged(Model model) {
+		/**
+		 * Journals the name, type and methods of the model, if any has
+		 * changed since they were last journaled
+		 */
+		String[] current = properties(model);
+		if (!Arrays.equals(current, properties)) {
+			properties = current;
+			String[] fields = new String[current.length + 1];
+			fields[0] = "P";
+			System.arraycopy(current, 0, fields, 1, current.length);
+			record(model, fields);
+		}
+	}
+
+	public void close() {
+		/**
+		 * Writes out every edit journaled and stops, leaving the journal in
+		 * place so the edits can be recovered
+		 */
+		queue.add(CLOSE);
+		try {
+			writer.join();
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	public void discard() {
+		/**
+		 * Stops and deletes the journal and autosave, once the model has been
+		 * saved or abandoned
+		 */
+		close();
+		journalFile.delete();
+		autosaveFile.delete();
+	}
+
+	/*
+	 * Data Assignment Methods
+	 */
+
+	public void setCompactEdits(int compactEdits) {
+		/**
+		 * Sets how many edits are journaled before the journal is compacted
+		 */
+		if (compactEdits < 1) {
+			throw new IllegalArgumentException(
+					"The journal must hold at least 1 edit");
+		}
+		this.compactEdits = compactEdits;
+	}
+
+	/*
+	 * Data Retrieval Methods
+	 */
+
+	public File getFile() {
+		return file;
+	}
+
+	public IOException getError() {
+		/**
+		 * Returns why journaling stopped, if it has failed
+		 * 
+		 * @return IOException, or null if journaling is working
+		 */
+		return error;
+	}
+
+	public static File journalFor(File file) {
+		return new File(file.getPath() + ".journal");
+	}
+
+	public static File autosaveFor(File file) {
+		return new File(file.getPath() + ".autosave");
+	}
+
+	public static boolean hasJournal(File file) {
+		/**
+		 * Returns whether a journal of unsaved edits was left beside a file
+		 */
+		return journalFor(file.getAbsoluteFile()).isFile();
+	}
+
+	/*
+	 * Recovery
+	 */
+
+	public static Model recover(File file) throws IOException,
+			InvalidFormatException {
+		/**
+		 * Rebuilds a model from the journal left beside its file
+		 * 
+		 * @param file
+		 *            File the model was being saved to
+		 * 
+		 * @return Model as it was when the last edit was journaled
+		 * 
+		 * @throws IOException
+		 *             if the journal or the file cannot be read
+		 * @throws InvalidFormatException
+		 *             if the journal cannot be applied
+		 */
+		Model model = new Model();
+		recover(file, model);
+		return model;
+	}
+
+	public static void recover(File file, Model model) throws IOException,
+			InvalidFormatException {
+		/**
+		 * Rebuilds a model from the journal left beside its file, into the
+		 * given (empty) Model. If the file the journal applies to is
+		 * unchanged it is read and the journaled edits are replayed on it; if
+		 * it is not, the journal was being compacted, and the autosave already
+		 * holds every edit
+		 * 
+		 * @param file
+		 *            File the model was being saved to
+		 * @param model
+		 *            Model to be filled
+		 * 
+		 * @throws IOException
+		 *             if the journal or the file cannot be read
+		 * @throws InvalidFormatException
+		 *             if the journal cannot be applied
+		 */
+
+		file = file.getAbsoluteFile();
+		File journal = journalFor(file);
+		File autosave = autosaveFor(file);
+
+		BufferedReader reader = new BufferedReader(new InputStreamReader(
+				new FileInputStream(journal), UTF8));
+		try {
+			String[] header = split(reader.readLine());
+			if (header.length != 4
+					|| !(header[0] + "\t" + header[1]).equals(HEADER)) {
+				throw new InvalidFormatException(journal
+						+ " is not an edit journal");
+			}
+
+			File base = new File(file.getParentFile(), header[2]);
+			if (!base.isFile()
+					|| checksum(base) != Long.parseLong(header[3], 16)) {
+				if (!autosave.isFile()) {
+					throw new InvalidFormatException(journal
+							+ " does not match " + base);
+				}
+				FISReader.read(autosave, model);
+				return;
+			}
+
+			if (base.getName().endsWith(".fisb")) {
+				BinaryFIS.read(base).unpack(model);
+			} else {
+				FISReader.read(base, model);
+			}
+			String line;
+			while ((line = reader.readLine()) != null) {
+				int tab = line.indexOf('\t');
+				if (tab < 0 || !checksumMatches(line, tab)) {
+					// the rest was not completely written
+					break;
+				}
+				replay(model, split(line.substring(tab + 1)));
+			}
+		} catch (NumberFormatException nfe) {
+			throw new InvalidFormatException(journal + " is damaged: "
+					+ nfe.getMessage());
+		} catch (IndexOutOfBoundsException ioobe) {
+			throw new InvalidFormatException(journal + " is damaged: "
+					+ ioobe.getMessage());
+		} finally {
+			reader.close();
+		}
+	}
+
+	private static void replay(Model model, String[] fields)
+			throws InvalidFormatException {
+		/**
+		 * Applies one journaled edit to a model, exactly as the editor did
+		 */
+
+		String op = fields[0];
+		RuleList rules = model.getRuleList();
+
+		if (op.equals("P")) {
+			model.setName(fields[1]);
+			model.setType(fields[2]);
+			model.setAndMethod(fields[3]);
+			model.setOrMethod(fields[4]);
+			model.setImpMethod(fields[5]);
+			model.setAggMethod(fields[6]);
+			model.setDefuzzMethod(fields[7]);
+		} else if (op.startsWith("V")) {
+			boolean input = fields[1].equals("I");
+			ArrayList<Variable> vars = input ? model.getVarInList() : model
+					.getVarOutList();
+			int index = Integer.parseInt(fields[2]);
+
+			if (op.equals("VA")) {
+				Variable v = readVariable(fields[3], input);
+				vars.add(index, v);
+				rules.addColumn(input, index, v);
+			} else if (op.equals("VS")) {
+				vars.set(index, readVariable(fields[3], input));
+			} else if (op.equals("VD")) {
+				vars.remove(index);
+				rules.removeColumn(input, index);
+			} else {
+				throw new InvalidFormatException("Unknown edit " + op);
+			}
+		} else if (op.equals("RA")) {
+			rules.add(Integer.parseInt(fields[1]), readRule(fields[2], model));
+		} else if (op.equals("RS")) {
+			rules.set(Integer.parseInt(fields[1]), readRule(fields[2], model));
+		} else if (op.equals("RD")) {
+			rules.remove(Integer.parseInt(fields[1]));
+		} else {
+			throw new InvalidFormatException("Unknown edit " + op);
+		}
+	}
+
+	private static Variable readVariable(String section, boolean input)
+			throws InvalidFormatException {
+		/**
+		 * Reads a variable journaled as a fis section
+		 */
+		Model m = FISReader.read("[System]\n\n" + section);
+		return (input ? m.getVarInList() : m.getVarOutList()).get(0);
+	}
+
+	private static Rule readRule(String line, Model model)
+			throws InvalidFormatException {
+		/**
+		 * Reads a rule journaled in the a b, c (d) : e form, creating its
+		 * SubRules as a PackedFIS does
+		 */
+
+		int comma = line.indexOf(',');
+		int open = line.indexOf('(');
+		int close = line.indexOf(')');
+		int colon = line.indexOf(':');
+		if (comma < 0 || open < comma || close < open || colon < close) {
+			throw new InvalidFormatException("Bad journaled rule '" + line
+					+ "'");
+		}
+
+		ArrayList<SubRule> inputs = readSubRules(line.substring(0, comma),
+				model.getVarInList());
+		ArrayList<SubRule> outputs = readSubRules(line.substring(comma + 1,
+				open), model.getVarOutList());
+		double weight = Double.parseDouble(line.substring(open + 1, close)
+				.trim());
+		int connective = Integer.parseInt(line.substring(colon + 1).trim());
+		return new Rule(inputs, outputs, weight, connective);
+	}
+
+	private static ArrayList<SubRule> readSubRules(String values,
+			ArrayList<Variable> vars) throws InvalidFormatException {
+		String[] tokens = values.trim().isEmpty() ? new String[0] : values
+				.trim().split("\\s+");
+		if (tokens.length != vars.size()) {
+			throw new InvalidFormatException("Journaled rule has "
+					+ tokens.length + " values for " + vars.size()
+					+ " variables");
+		}
+
+		ArrayList<SubRule> subRules = new ArrayList<SubRule>(tokens.length);
+		for (int i = 0; i < tokens.length; i++) {
+			int e = Integer.parseInt(tokens[i]);
+			boolean negated = tokens[i].startsWith("-");
+			int value = Math.abs(e);
+			Variable v = vars.get(i);
+			if (value == 0) {
+				subRules.add(new SubRule("none", v.getName(), 0, negated));
+			} else {
+				subRules.add(new SubRule(v.getMFs().get(value - 1).getName(),
+						v.getName(), value + 1, negated));
+			}
+		}
+		return subRules;
+	}
+
+	/*
+	 * Writer Thread
+	 */
+
+	private void write() {
+		/**
+		 * Writes journal lines and compactions in the order they were made,
+		 * forcing the journal to disk each time the queue empties
+		 */
+
+		try {
+			while (true) {
+				Object task = queue.take();
+				do {
+					if (task == CLOSE) {
+						closeJournal();
+						return;
+					} else if (task instanceof File) {
+						startJournal((File) task);
+						autosaveFile.delete();
+					} else if (task instanceof Model) {
+						closeJournal();
+						FISWriter.write((Model) task, autosaveFile);
+						startJournal(autosaveFile);
+					} else if (out != null) {
+						out.write((String) task);
+					}
+				} while ((task = queue.poll()) != null);
+
+				if (out != null) {
+					out.flush();
+					stream.getFD().sync();
+				}
+			}
+		} catch (InterruptedException ie) {
+			// stopped
+		} catch (IOException io) {
+			// journaling is best effort; the model itself is unaffected
+			error = io;
+			try {
+				closeJournal();
+			} catch (IOException ignored) {
+			}
+			drain();
+		}
+	}
+
+	private void drain() {
+		/**
+		 * Discards tasks after a failure, until closed
+		 */
+		try {
+			while (queue.take() != CLOSE) {
+			}
+		} catch (InterruptedException ie) {
+			// stopped
+		}
+	}
+
+	private void startJournal(File base) throws IOException {
+		/**
+		 * Replaces the journal with one holding only a header naming the file
+		 * it applies to, and opens it for appending
+		 */
+
+		File temporary = AtomicFile.temporaryFor(journalFile);
+		FileOutputStream header = new FileOutputStream(temporary);
+		try {
+			header.write((HEADER + "\t" + escape(base.getName()) + "\t"
+					+ Long.toHexString(checksum(base)) + "\n").getBytes(UTF8));
+			AtomicFile.sync(header);
+		} finally {
+			header.close();
+		}
+		AtomicFile.commit(temporary, journalFile);
+
+		stream = new FileOutputStream(journalFile, true);
+		out = new BufferedWriter(new OutputStreamWriter(stream, UTF8), 1 << 14);
+	}
+
+	private void closeJournal() throws IOException {
+		if (out != null) {
+			out.flush();
+			stream.getFD().sync();
+			out.close();
+			out = null;
+			stream = null;
+		}
+	}
+
+	/*
+	 * Auxiliary Methods
+	 */
+
+	private void record(Model model, String... fields) {
+		/**
+		 * Queues one edit as a journal line, and a compaction once enough
+		 * edits have been journaled since the last
+		 */
+
+		if (error != null) {
+			return;
+		}
+
+		StringBuilder line = new StringBuilder();
+		for (int i = 0; i < fields.length; i++) {
+			if (i > 0) {
+				line.append('\t');
+			}
+			line.append(escape(fields[i]));
+		}
+		CRC32 crc = new CRC32();
+		crc.update(line.toString().getBytes(UTF8));
+		queue.add(Long.toHexString(crc.getValue()) + "\t" + line + "\n");
+
+		if (++edits >= compactEdits) {
+			edits = 0;
+			queue.add(snapshot(model));
+		}
+	}
+
+	private static Model snapshot(Model model) {
+		/**
+		 * Copies a model for the writer thread to save while editing goes on.
+		 * Rules still packed are copied as rows, without creating a Rule for
+		 * each
+		 */
+		return PackedFIS.pack(model).toModel();
+	}
+
+	private static String[] properties(Model model) {
+		return new String[] { model.getName(), model.getType(),
+				model.getAndMethod(), model.getOrMethod(), model.getImpMethod(),
+				model.getAggMethod(), model.getDefuzzMethod() };
+	}
+
+	private static String side(boolean input) {
+		return input ? "I" : "O";
+	}
+
+	private static String ruleLine(Rule r) {
+		StringBuilder sb = r.appendNumberString(new StringBuilder());
+		sb.setLength(sb.length() - 1);
+		return sb.toString();
+	}
+
+	private static boolean checksumMatches(String line, int tab) {
+		CRC32 crc = new CRC32();
+		crc.update(line.substring(tab + 1).getBytes(UTF8));
+		try {
+			return crc.getValue() == Long.parseLong(line.substring(0, tab), 16);
+		} catch (NumberFormatException nfe) {
+			return false;
+		}
+	}
+
+	static long checksum(File file) throws IOException {
+		/**
+		 * Returns the CRC-32 of a file's contents
+		 */
+		CRC32 crc = new CRC32();
+		InputStream in = new FileInputStream(file);
+		try {
+			byte[] buffer = new byte[1 << 16];
+			int n;
+			while ((n = in.read(buffer)) > 0) {
+				crc.update(buffer, 0, n);
+			}
+		} finally {
+			in.close();
+		}
+		return crc.getValue();
+	}
+
+	private static String escape(String s) {
+		/**
+		 * Escapes the characters that separate fields and lines
+		 */
+		if (s == null) {
+			return "";
+		}
+		StringBuilder sb = new StringBuilder(s.length() + 16);
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c == '\\') {
+				sb.append("\\\\");
+			} else if (c == '\t') {
+				sb.append("\\t");
+			} else if (c == '\n') {
+				sb.append("\\n");
+			} else if (c == '\r') {
+				sb.append("\\r");
+			} else {
+				sb.append(c);
+			}
+		}
+		return sb.toString();
+	}
+
+	private static String[] split(String line) {
+		/**
+		 * Splits a line into fields at tabs, undoing escape
+		 */
+		ArrayList<String> fields = new ArrayList<String>();
+		if (line == null) {
+			return new String[0];
+		}
+		StringBuilder field = new StringBuilder();
+		for (int i = 0; i < line.length(); i++) {
+			char c = line.charAt(i);
+			if (c == '\t') {
+				fields.add(field.toString());
+				field.setLength(0);
+			} else if (c == '\\' && i + 1 < line.length()) {
+				char e = line.charAt(++i);
+				field.append(e == 't' ? '\t' : e == 'n' ? '\n' : e == 'r' ? '\r'
+						: e);
+			} else {
+				field.append(c);
+			}
+		}
+		fields.add(field.toString());
+		return fields.toArray(new String[fields.size()]);
+	}
+}
@@ -0,0 +1,634 @@
+/**
+ * FISReader Class
+ * Reads a Fuzzy Inference System from the MATLAB style fis format written by
+ * FISWriter, building a Model without any reference to the GUI. The file is
+ * read in a single pass, checking its format as it goes, so a malformed file
+ * is reported at the line and column where it first goes wrong. Rules are
+ * read straight into the rows of a PackedFIS rather than into Rule objects,
+ * which the Model only creates as each rule is needed
+ * 
+ * @author Craig Knott
+ */
+
+package io;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+
+import data.Constants;
+import data.MembershipFunction;
+import data.Model;
+import data.PackedFIS;
+import data.Variable;
+
+public class FISReader {
+
+	private FISScanner scanner;
+
+	/*
+	 * What has been read so far
+	 */
+	private boolean systemRead;
+	private String name = "";
+	private String type = Constants.TYPE_MAMDANI;
+	private String andMethod;
+	private String orMethod;
+	private String impMethod;
+	private String aggMethod;
+	private String defuzzMethod;
+
+	/*
+	 * Sizes declared in the System section, or -1 if not given
+	 */
+	private int numInputs = -1;
+	private int numOutputs = -1;
+	private int numRules = -1;
+
+	private ArrayList<Variable> inputs = new ArrayList<Variable>();
+	private ArrayList<Variable> outputs = new ArrayList<Variable>();
+
+	/*
+	 * Rules read so far, in the form of the rule arrays of a PackedFIS
+	 */
+	private int ruleCount;
+	private int ruleWidth = -1;
+	private short[] ruleMatrix = new short[0];
+	private double[] ruleWeight = new double[0];
+	private byte[] ruleConnective = new byte[0];
+
+	/*
+	 * Reused while reading membership function parameters and rules
+	 */
+	private double[] params = new double[8];
+	private int[] values = new int[8];
+	private boolean[] negated = new boolean[8];
+
+	private FISReader(Reader reader) throws IOException {
+		this.scanner = new FISScanner(reader);
+	}
+
+	/*
+	 * Reading methods
+	 */
+
+	public static Model read(File file) throws IOException,
+			InvalidFormatException {
+		/**
+		 * Reads a fis file into a new Model
+		 * 
+		 * @param file
+		 *            File to be read
+		 * 
+		 * @return Model holding the system in the file
+		 * 
+		 * @throws IOException
+		 *             if the file could not be read
+		 * @throws InvalidFormatException
+		 *             if the file is not of the correct format
+		 */
+		Model model = new Model();
+		read(file, model);
+		return model;
+	}
+
+	public static void read(File file, Model model) throws IOException,
+			InvalidFormatException {
+		/**
+		 * Reads a fis file into the given Model, adding its variables and
+		 * rules to those already held
+		 * 
+		 * @param file
+		 *            File to be read
+		 * @param model
+		 *            Model to be filled
+		 * 
+		 * @throws IOException
+		 *             if the file could not be read
+		 * @throws InvalidFormatException
+		 *             if the file is not of the correct format
+		 */
+		Reader reader = new FileReader(file);
+		try {
+			read(reader, model);
+		} finally {
+			reader.close();
+		}
+	}
+
+	public static Model read(Reader reader) throws IOException,
+			InvalidFormatException {
+		/**
+		 * Reads a fis file from a Reader into a new Model. The Reader is read
+		 * to the end but not closed
+		 * 
+		 * @param reader
+		 *            Reader holding the file
+		 * 
+		 * @return Model holding the system read
+		 * 
+		 * @throws IOException
+		 *             if the Reader fails
+		 * @throws InvalidFormatException
+		 *             if the file is not of the correct format
+		 */
+		Model model = new Model();
+		read(reader, model);
+		return model;
+	}
+
+	public static void read(Reader reader, Model model) throws IOException,
+			InvalidFormatException {
+		/**
+		 * Reads a fis file from a Reader into the given Model, adding its
+		 * variables and rules to those already held. The Model is only changed
+		 * once the whole file has been read successfully
+		 * 
+		 * @param reader
+		 *            Reader holding the file
+		 * @param model
+		 *            Model to be filled
+		 * 
+		 * @throws IOException
+		 *             if the Reader fails
+		 * @throws InvalidFormatException
+		 *             if the file is not of the correct format
+		 */
+		FISReader fr = new FISReader(reader);
+		fr.readFile();
+		fr.fill(model);
+	}
+
+	public static Model read(String text) throws InvalidFormatException {
+		/**
+		 * Reads the contents of a fis file into a new Model
+		 * 
+		 * @param text
+		 *            String holding the whole file
+		 * 
+		 * @return Model holding the system in the text
+		 * 
+		 * @throws InvalidFormatException
+		 *             if the text is not of the correct format
+		 */
+		Model model = new Model();
+		read(text, model);
+		return model;
+	}
+
+	public static void read(String text, Model model)
+			throws InvalidFormatException {
+		/**
+		 * Reads the contents of a fis file into the given Model, adding its
+		 * variables and rules to those already held
+		 * 
+		 * @param text
+		 *            String holding the whole file
+		 * @param model
+		 *            Model to be filled
+		 * 
+		 * @throws InvalidFormatException
+		 *             if the text is not of the correct format
+		 */
+		try {
+			read(new StringReader(text), model);
+		} catch (IOException io) {
+			throw new IllegalStateException(io);
+		}
+	}
+
+	/*
+	 * Sections
+	 */
+
+	private void readFile() throws IOException, InvalidFormatException {
+		/**
+		 * Reads every section of the file, then checks the sizes declared in
+		 * the System section against what was found
+		 */
+
+		while (scanner.skipBlankLines()) {
+			int line = scanner.getLine();
+			int column = scanner.getColumn();
+
+			scanner.expect('[');
+			String section = scanner.word();
+			scanner.expect(']');
+			scanner.endLine();
+
+			if (!systemRead && !section.equals("System")) {
+				throw new InvalidFormatException(
+						"The file must start with a [System] section", line,
+						column);
+			}
+
+			if (section.equals("System")) {
+				if (systemRead) {
+					throw new InvalidFormatException(
+							"The file has more than one [System] section",
+							line, column);
+				}
+				readSystem();
+				systemRead = true;
+			} else if (section.equals("Input" + (inputs.size() + 1))
+					&& ruleWidth < 0) {
+				inputs.add(readVariable(true, line, column));
+			} else if (section.equals("Output" + (outputs.size() + 1))
+					&& ruleWidth < 0) {
+				outputs.add(readVariable(false, line, column));
+			} else if (section.equals("Rules")) {
+				checkCount(numInputs, inputs.size(), "input variables", line,
+						column);
+				checkCount(numOutputs, outputs.size(), "output variables",
+						line, column);
+				ruleWidth = inputs.size() + outputs.size();
+				readRules();
+			} else if (ruleWidth >= 0) {
+				throw new InvalidFormatException("Unexpected section ["
+						+ section + "], variables must come before [Rules]",
+						line, column);
+			} else {
+				throw new InvalidFormatException("Unexpected section ["
+						+ section + "], expected [Input"
+						+ (inputs.size() + 1) + "], [Output"
+						+ (outputs.size() + 1) + "] or [Rules]", line, column);
+			}
+		}
+
+		int line = scanner.getLine();
+		int column = scanner.getColumn();
+		if (!systemRead) {
+			throw new InvalidFormatException("The file is empty", line, column);
+		}
+		checkCount(numInputs, inputs.size(), "input variables", line, column);
+		checkCount(numOutputs, outputs.size(), "output variables", line,
+				column);
+		checkCount(numRules, ruleCount, "rules", line, column);
+	}
+
+	private void readSystem() throws IOException, InvalidFormatException {
+		/**
+		 * Reads the properties of the System section, up to the first blank
+		 * line
+		 */
+
+		while (!scanner.atLineEnd()) {
+			int line = scanner.getLine();
+			int column = scanner.getColumn();
+			String key = scanner.word();
+			scanner.expect('=');
+
+			switch (key) {
+			case ("Name"):
+				name = scanner.quoted();
+				break;
+			case ("Type"):
+				type = scanner.quoted();
+				break;
+			case ("Version"):
+				scanner.number();
+				break;
+			case ("NumInputs"):
+				numInputs = scanner.integer();
+				break;
+			case ("NumOutputs"):
+				numOutputs = scanner.integer();
+				break;
+			case ("NumRules"):
+				numRules = scanner.integer();
+				break;
+			case ("AndMethod"):
+				andMethod = scanner.quoted();
+				break;
+			case ("OrMethod"):
+				orMethod = scanner.quoted();
+				break;
+			case ("ImpMethod"):
+				impMethod = scanner.quoted();
+				break;
+			case ("AggMethod"):
+				aggMethod = scanner.quoted();
+				break;
+			case ("DefuzzMethod"):
+				defuzzMethod = scanner.quoted();
+				break;
+			default:
+				throw new InvalidFormatException("Unknown system property '"
+						+ key + "'", line, column);
+			}
+			scanner.endLine();
+		}
+	}
+
+	private Variable readVariable(boolean input, int sectionLine,
+			int sectionColumn) throws IOException, InvalidFormatException {
+		/**
+		 * Reads an Input or Output section, up to the first blank line
+		 * 
+		 * @return Variable holding the section
+		 */
+
+		String varName = "";
+		double[] range = null;
+		int numMFs = -1;
+		ArrayList<MembershipFunction> mfs = new ArrayList<MembershipFunction>();
+
+		while (!scanner.atLineEnd()) {
+			int line = scanner.getLine();
+			int column = scanner.getColumn();
+			String key = scanner.word();
+			scanner.expect('=');
+
+			if (key.equals("Name")) {
+				varName = scanner.quoted();
+			} else if (key.equals("Range")) {
+				scanner.expect('[');
+				range = new double[] { scanner.number(), scanner.number() };
+				scanner.expect(']');
+			} else if (key.equals("NumMFs")) {
+				numMFs = scanner.integer();
+			} else if (key.equals("MF" + (mfs.size() + 1))) {
+				mfs.add(readMF(line, column));
+			} else {
+				throw new InvalidFormatException("Unexpected '" + key
+						+ "', expected Name, Range, NumMFs or MF"
+						+ (mfs.size() + 1), line, column);
+			}
+			scanner.endLine();
+		}
+
+		if (range == null) {
+			throw new InvalidFormatException("Variable has no Range",
+					sectionLine, sectionColumn);
+		}
+		checkCount(numMFs, mfs.size(), "membership functions", sectionLine,
+				sectionColumn);
+
+		return new Variable(varName, input, mfs, range[0], range[1]);
+	}
+
+	private MembershipFunction readMF(int line, int column)
+			throws IOException, InvalidFormatException {
+		/**
+		 * Reads a membership function, such as 'Rancid':'gaussmf',[1.0 1.0
+		 * 1.0]
+		 * 
+		 * @return MembershipFunction read
+		 */
+
+		String mfName = scanner.quoted();
+		scanner.expect(':');
+		int typeLine = scanner.getLine();
+		int typeColumn = scanner.getColumn();
+		String mfType = scanner.quoted();
+		scanner.expect(',');
+		scanner.expect('[');
+
+		int n = 0;
+		while (scanner.peek() != ']') {
+			if (n == params.length) {
+				double[] grown = new double[n * 2];
+				System.arraycopy(params, 0, grown, 0, n);
+				params = grown;
+			}
+			params[n++] = scanner.number();
+		}
+		scanner.expect(']');
+
+		int type;
+		switch (mfType) {
+		case ("gaussmf"):
+			type = Constants.MEMBERSHIPFUNCTION_GAUSSIAN;
+			break;
+		case ("gaussbmf"):
+			type = Constants.MEMBERSHIPFUNCTION_GAUSSIAN_B;
+			break;
+		case ("trimf"):
+			type = Constants.MEMBERSHIPFUNCTION_TRIANGULAR;
+			break;
+		case ("trapmf"):
+			type = Constants.MEMBERSHIPFUNCTION_TRAPEZOIDAL;
+			break;
+		case ("constant"):
+			type = Constants.MEMBERSHIPFUNCTION_CONSTANT;
+			break;
+		case ("linear"):
+			type = Constants.MEMBERSHIPFUNCTION_LINEAR;
+			break;
+		case ("gbellmf"):
+			type = Constants.MEMBERSHIPFUNCTION_BELL;
+			break;
+		case ("sigmf"):
+			type = Constants.MEMBERSHIPFUNCTION_SIGMOID;
+			break;
+		case ("dsigmf"):
+			type = Constants.MEMBERSHIPFUNCTION_DIFF_SIGMOID;
+			break;
+		case ("psigmf"):
+			type = Constants.MEMBERSHIPFUNCTION_PROD_SIGMOID;
+			break;
+		case ("pimf"):
+			type = Constants.MEMBERSHIPFUNCTION_PI;
+			break;
+		case ("smf"):
+			type = Constants.MEMBERSHIPFUNCTION_S;
+			break;
+		case ("zmf"):
+			type = Constants.MEMBERSHIPFUNCTION_Z;
+			break;
+		case ("singleton"):
+			type = Constants.MEMBERSHIPFUNCTION_SINGLETON;
+			break;
+		default:
+			throw new InvalidFormatException(
+					"Unsupported membership function type '"
+							+ mfType
+							+ "', expected gaussmf, gaussbmf, trimf, trapmf, gbellmf, "
+							+ "sigmf, dsigmf, psigmf, pimf, smf, zmf, singleton, "
+							+ "constant or linear",
+					typeLine, typeColumn);
+		}
+
+		int expected = MembershipFunction.parametersForType(type);
+		if (expected < 0) {
+			expected = Math.max(n, 1);
+		}
+		if (n != expected) {
+			throw new InvalidFormatException(mfType + " needs " + expected
+					+ " parameters but was given " + n, line, column);
+		}
+
+		double[] mfParams = new double[n];
+		System.arraycopy(params, 0, mfParams, 0, n);
+		return new MembershipFunction(mfName, type, mfParams);
+	}
+
+	private void readRules() throws IOException, InvalidFormatException {
+		/**
+		 * Reads the Rules section, one rule per line, each in the form
+		 * "a b, c (d) : e"
+		 */
+
+		while (scanner.skipBlankLines() && scanner.peek() != '[') {
+			int line = scanner.getLine();
+			int column = scanner.getColumn();
+
+			if (ruleCount == ruleWeight.length) {
+				growRules();
+			}
+			int row = ruleCount * ruleWidth;
+
+			int n = readValues();
+			if (n != inputs.size()) {
+				throw new InvalidFormatException("Rule has " + n
+						+ " inputs but the system has " + inputs.size(), line,
+						column);
+			}
+			packValues(inputs, n, row, line);
+			scanner.expect(',');
+
+			n = readValues();
+			if (n != outputs.size()) {
+				throw new InvalidFormatException("Rule has " + n
+						+ " outputs but the system has " + outputs.size(),
+						line, column);
+			}
+			packValues(outputs, n, row + inputs.size(), line);
+
+			scanner.expect('(');
+			double weight = scanner.number();
+			scanner.expect(')');
+			scanner.expect(':');
+			int connectiveColumn = scanner.getColumn();
+			int connective = scanner.integer();
+			if (connective != Constants.CONNECTIVE_AND
+					&& connective != Constants.CONNECTIVE_OR) {
+				throw new InvalidFormatException("Unknown connective "
+						+ connective + ", expected 1 (and) or 2 (or)", line,
+						connectiveColumn);
+			}
+			scanner.endLine();
+
+			ruleWeight[ruleCount] = weight;
+			ruleConnective[ruleCount] = (byte) connective;
+			ruleCount++;
+		}
+	}
+
+	private int readValues() throws IOException, InvalidFormatException {
+		/**
+		 * Reads the membership function numbers of one side of a rule into
+		 * the values buffer, noting which are negated
+		 * 
+		 * @return integer, how many numbers were read
+		 */
+
+		int n = 0;
+		int c = scanner.peek();
+		while (c == '-' || (c >= '0' && c <= '9')) {
+			if (n == values.length) {
+				int[] grown = new int[n * 2];
+				System.arraycopy(values, 0, grown, 0, n);
+				values = grown;
+				boolean[] grownNegated = new boolean[n * 2];
+				System.arraycopy(negated, 0, grownNegated, 0, n);
+				negated = grownNegated;
+			}
+			negated[n] = c == '-';
+			values[n++] = Math.abs(scanner.integer());
+			c = scanner.peek();
+		}
+		return n;
+	}
+
+	private void packValues(ArrayList<Variable> vars, int n, int offset,
+			int line) throws InvalidFormatException {
+		/**
+		 * Copies one side of a rule from the values buffer into the rule
+		 * matrix, checking each refers to a membership function that exists
+		 */
+
+		for (int i = 0; i < n; i++) {
+			Variable v = vars.get(i);
+			int value = values[i];
+
+			if (value > v.getMFs().size() || value > PackedFIS.RULE_VALUE) {
+				throw new InvalidFormatException("Variable '" + v.getName()
+						+ "' has no membership function " + value, line, 1);
+			}
+			int flag = negated[i] ? PackedFIS.RULE_NEGATED : 0;
+			ruleMatrix[offset + i] = (short) (value | flag);
+		}
+	}
+
+	private void growRules() {
+		/**
+		 * Doubles the room for rules
+		 */
+		int capacity = Math.max(16, ruleWeight.length * 2);
+		double[] weights = new double[capacity];
+		System.arraycopy(ruleWeight, 0, weights, 0, ruleCount);
+		ruleWeight = weights;
+		byte[] connectives = new byte[capacity];
+		System.arraycopy(ruleConnective, 0, connectives, 0, ruleCount);
+		ruleConnective = connectives;
+		short[] matrix = new short[capacity * ruleWidth];
+		System.arraycopy(ruleMatrix, 0, matrix, 0, ruleCount * ruleWidth);
+		ruleMatrix = matrix;
+	}
+
+	/*
+	 * Auxiliary Methods
+	 */
+
+	private static void checkCount(int declared, int found, String what,
+			int line, int column) throws InvalidFormatException {
+		/**
+		 * Checks a size declared in the file against the number found
+		 */
+		if (declared >= 0 && declared != found) {
+			throw new InvalidFormatException("The file declares " + declared
+					+ " " + what + " but has " + found, line, column);
+		}
+	}
+
+	private void fill(Model model) {
+		/**
+		 * Copies everything read into the Model
+		 */
+
+		model.setName(name);
+		model.setType(type);
+		if (andMethod != null) {
+			model.setAndMethod(andMethod);
+		}
+		if (orMethod != null) {
+			model.setOrMethod(orMethod);
+		}
+		if (impMethod != null) {
+			model.setImpMethod(impMethod);
+		}
+		if (aggMethod != null) {
+			model.setAggMethod(aggMethod);
+		}
+		if (defuzzMethod != null) {
+			model.setDefuzzMethod(defuzzMethod);
+		}
+
+		model.getVarInList().addAll(inputs);
+		model.getVarOutList().addAll(outputs);
+
+		PackedFIS packed = PackedFIS.pack(inputs, outputs, ruleCount);
+		packed.setProperties(model);
+		int width = inputs.size() + outputs.size();
+		System.arraycopy(ruleMatrix, 0, packed.getRuleMatrix(), 0, ruleCount
+				* width);
+		System.arraycopy(ruleWeight, 0, packed.getRuleWeight(), 0, ruleCount);
+		System.arraycopy(ruleConnective, 0, packed.getRuleConnective(), 0,
+				ruleCount);
+		model.getRuleList().addPacked(packed);
+	}
+}
@@ -0,0 +1,280 @@
+/**
+ * FISScanner Class
+ * Reads the characters of a fis file one at a time from a Reader, keeping
+ * track of the line and column reached, and splits them into the words,
+ * quoted strings, numbers and punctuation the format is made from. Any
+ * unexpected character is reported with its line and column
+ * 
+ * @author Craig Knott
+ */
+
+package io;
+
+import java.io.IOException;
+import java.io.Reader;
+
+class FISScanner {
+
+	private static final int EOF = -1;
+
+	private Reader reader;
+	private char[] buffer = new char[8192];
+	private int position;
+	private int limit;
+
+	/*
+	 * The character under the cursor, and where it is in the file
+	 */
+	private int current;
+	private int line = 1;
+	private int column = 1;
+
+	private StringBuilder token = new StringBuilder();
+
+	FISScanner(Reader reader) throws IOException {
+		/**
+		 * Constructor, positions the scanner on the first character
+		 * 
+		 * @param reader
+		 *            Reader holding the file
+		 */
+		this.reader = reader;
+		current = read();
+	}
+
+	/*
+	 * Position
+	 */
+
+	int getLine() {
+		return line;
+	}
+
+	int getColumn() {
+		return column;
+	}
+
+	boolean atEnd() {
+		return current == EOF;
+	}
+
+	int peek() throws IOException {
+		/**
+		 * Returns the character under the cursor, after any spaces
+		 * 
+		 * @return integer, the character, or -1 at the end of the file
+		 */
+		skipSpaces();
+		return current;
+	}
+
+	InvalidFormatException error(String message) {
+		/**
+		 * Creates an exception describing a problem at the cursor
+		 * 
+		 * @param message
+		 *            String describing the problem
+		 * 
+		 * @return InvalidFormatException to be thrown
+		 */
+		return new InvalidFormatException(message, line, column);
+	}
+
+	/*
+	 * Lines
+	 */
+
+	boolean skipBlankLines() throws IOException {
+		/**
+		 * Moves past any empty lines
+		 * 
+		 * @return boolean, false if the end of the file was reached
+		 */
+		while (peek() == '\n') {
+			advance();
+		}
+		return current != EOF;
+	}
+
+	boolean atLineEnd() throws IOException {
+		/**
+		 * Returns whether nothing but spaces remain on the current line
+		 */
+		int c = peek();
+		return c == '\n' || c == EOF;
+	}
+
+	void endLine() throws IOException, InvalidFormatException {
+		/**
+		 * Moves onto the next line, which must not have anything but spaces
+		 * left on the current one
+		 */
+		if (!atLineEnd()) {
+			throw error("Unexpected " + describe(current)
+					+ ", expected the end of the line");
+		}
+		advance();
+	}
+
+	/*
+	 * Tokens
+	 */
+
+	void expect(char c) throws IOException, InvalidFormatException {
+		/**
+		 * Moves past the given character, which must be the next one after
+		 * any spaces
+		 * 
+		 * @param c
+		 *            char expected
+		 */
+		if (peek() != c) {
+			throw error("Unexpected " + describe(current) + ", expected '"
+					+ c + "'");
+		}
+		advance();
+	}
+
+	String word() throws IOException, InvalidFormatException {
+		/**
+		 * Reads a run of letters, digits and underscores
+		 * 
+		 * @return String holding the word
+		 */
+		peek();
+		token.setLength(0);
+		while (current == '_' || Character.isLetterOrDigit(current)) {
+			token.append((char) current);
+			advance();
+		}
+		if (token.length() == 0) {
+			throw error("Unexpected " + describe(current)
+					+ ", expected a name");
+		}
+		return token.toString();
+	}
+
+	String quoted() throws IOException, InvalidFormatException {
+		/**
+		 * Reads a string surrounded by single quotes, which cannot run onto
+		 * another line
+		 * 
+		 * @return String between the quotes
+		 */
+		expect('\'');
+		token.setLength(0);
+		while (current != '\'') {
+			if (current == '\n' || current == EOF) {
+				throw error("Unterminated quoted string");
+			}
+			token.append((char) current);
+			advance();
+		}
+		advance();
+		return token.toString();
+	}
+
+	double number() throws IOException, InvalidFormatException {
+		/**
+		 * Reads a decimal number, such as -12, 0.5 or 1.0E-4
+		 * 
+		 * @return double, the value of the number
+		 */
+		peek();
+		int startLine = line;
+		int startColumn = column;
+		token.setLength(0);
+		while ((current >= '0' && current <= '9') || current == '.'
+				|| current == '-' || current == '+' || current == 'e'
+				|| current == 'E') {
+			token.append((char) current);
+			advance();
+		}
+		if (token.length() == 0) {
+			throw error("Unexpected " + describe(current)
+					+ ", expected a number");
+		}
+		try {
+			return Double.parseDouble(token.toString());
+		} catch (NumberFormatException nfe) {
+			throw new InvalidFormatException("'" + token
+					+ "' is not a valid number", startLine, startColumn);
+		}
+	}
+
+	int integer() throws IOException, InvalidFormatException {
+		/**
+		 * Reads a whole number, which may start with a minus sign
+		 * 
+		 * @return integer, the value of the number
+		 */
+		peek();
+		int startLine = line;
+		int startColumn = column;
+		boolean negative = current == '-';
+		if (negative) {
+			advance();
+		}
+		if (current < '0' || current > '9') {
+			throw error("Unexpected " + describe(current)
+					+ ", expected a whole number");
+		}
+		long value = 0;
+		while (current >= '0' && current <= '9') {
+			value = value * 10 + (current - '0');
+			if (value > Integer.MAX_VALUE) {
+				throw new InvalidFormatException("Number is too large",
+						startLine, startColumn);
+			}
+			advance();
+		}
+		return (int) (negative ? -value : value);
+	}
+
+	/*
+	 * Characters
+	 */
+
+	private void skipSpaces() throws IOException {
+		while (current == ' ' || current == '\t' || current == '\r') {
+			advance();
+		}
+	}
+
+	private void advance() throws IOException {
+		/**
+		 * Moves the cursor onto the next character
+		 */
+		if (current == '\n') {
+			line++;
+			column = 1;
+		} else {
+			column++;
+		}
+		current = read();
+	}
+
+	private int read() throws IOException {
+		if (position == limit) {
+			limit = reader.read(buffer, 0, buffer.length);
+			position = 0;
+			if (limit <= 0) {
+				limit = 0;
+				return EOF;
+			}
+		}
+		return buffer[position++];
+	}
+
+	private static String describe(int c) {
+		/**
+		 * Describes a character for an error message
+		 */
+		if (c == EOF) {
+			return "end of file";
+		} else if (c == '\n') {
+			return "end of line";
+		}
+		return "'" + (char) c + "'";
+	}
+}
@@ -0,0 +1,257 @@
+/**
+ * FISWriter Class
+ * Writes a Fuzzy Inference System held in a Model in the MATLAB style fis
+ * format, without any reference to the GUI. Each line is built in a single
+ * reused buffer, numbers included, and passed straight on to the Writer, so
+ * the whole file is never held in memory. Files are replaced atomically
+ * 
+ * @author Craig Knott
+ */
+
+package io;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+
+import data.Constants;
+import data.MembershipFunction;
+import data.Model;
+import data.RuleList;
+import data.Variable;
+
+public class FISWriter {
+
+	private Writer out;
+
+	/*
+	 * The line being built, and the characters it is copied out through
+	 */
+	private StringBuilder line = new StringBuilder(256);
+	private char[] chars = new char[256];
+
+	private FISWriter(Writer out) {
+		this.out = out;
+	}
+
+	/*
+	 * Writing methods
+	 */
+
+	public static void write(Model model, File file) throws IOException {
+		/**
+		 * Writes a model to a fis file. The file is written in full beside
+		 * the target and then renamed over it, so a failed save never leaves
+		 * a half written file
+		 * 
+		 * @param model
+		 *            Model to be written
+		 * @param file
+		 *            File to write to
+		 * 
+		 * @throws IOException
+		 *             if the file could not be written
+		 */
+
+		File temporary = AtomicFile.temporaryFor(file);
+		boolean written = false;
+		FileOutputStream stream = new FileOutputStream(temporary);
+		try {
+			Writer output = new BufferedWriter(new OutputStreamWriter(stream),
+					1 << 16);
+			write(model, output);
+			AtomicFile.sync(stream);
+			written = true;
+		} finally {
+			stream.close();
+			if (!written) {
+				temporary.delete();
+			}
+		}
+		AtomicFile.commit(temporary, file);
+	}
+
+	public static void write(Model model, OutputStream output)
+			throws IOException {
+		/**
+		 * Writes a model in the fis format to a stream, in the platform's
+		 * default encoding as FISReader expects. The stream is flushed but
+		 * left open
+		 * 
+		 * @param model
+		 *            Model to be written
+		 * @param output
+		 *            OutputStream to write to
+		 * 
+		 * @throws IOException
+		 *             if the stream fails
+		 */
+		write(model, new BufferedWriter(new OutputStreamWriter(output), 1 << 16));
+	}
+
+	public static void write(Model model, Writer output) throws IOException {
+		/**
+		 * Writes a model in the fis format to a Writer, which is flushed but
+		 * left open
+		 * 
+		 * @param model
+		 *            Model to be written
+		 * @param output
+		 *            Writer to write to
+		 * 
+		 * @throws IOException
+		 *             if the Writer fails
+		 */
+		FISWriter fw = new FISWriter(output);
+		fw.writeParameters(model);
+		int i = 0;
+		for (Variable v : model.getVarInList()) {
+			fw.writeVariable("Input", ++i, v);
+		}
+		i = 0;
+		for (Variable v : model.getVarOutList()) {
+			fw.writeVariable("Output", ++i, v);
+		}
+		fw.writeRules(model);
+		output.flush();
+	}
+
+	public static String createSaveFile(Model model) {
+		/**
+		 * Returns a String representing an entire fis save structure
+		 * 
+		 * @param model
+		 *            Model to be written
+		 * 
+		 * @return String representing a fis
+		 */
+		StringWriter sw = new StringWriter();
+		try {
+			write(model, sw);
+		} catch (IOException io) {
+			throw new IllegalStateException(io);
+		}
+		return sw.toString();
+	}
+
+	static String variableSection(Variable v) {
+		/**
+		 * Returns a single variable as a fis section, numbered 1, as recorded
+		 * by the edit journal
+		 */
+		StringWriter sw = new StringWriter();
+		try {
+			new FISWriter(sw).writeVariable(v.isInput() ? "Input" : "Output",
+					1, v);
+		} catch (IOException io) {
+			throw new IllegalStateException(io);
+		}
+		return sw.toString();
+	}
+
+	/*
+	 * Sections
+	 */
+
+	private void writeParameters(Model model) throws IOException {
+		/**
+		 * Writes the parameters of the FIS structure, in the format specified
+		 * by a MATLAB fis object
+		 */
+
+		line.append("[System]\n");
+
+		if (model.getName().equals("")) {
+			line.append("Name='unnamed'\n");
+		} else {
+			line.append("Name='").append(model.getName()).append("'\n");
+		}
+		line.append("Type='").append(model.getType()).append("'\n");
+		line.append("Version=").append(Constants.SYSTEM_VERSION).append('\n');
+		line.append("NumInputs=").append(model.getVarInList().size())
+				.append('\n');
+		line.append("NumOutputs=").append(model.getVarOutList().size())
+				.append('\n');
+		line.append("NumRules=").append(model.getRuleList().size())
+				.append('\n');
+		line.append("AndMethod='").append(model.getAndMethod()).append("'\n");
+		line.append("OrMethod='").append(model.getOrMethod()).append("'\n");
+		line.append("ImpMethod='").append(model.getImpMethod()).append("'\n");
+		line.append("AggMethod='").append(model.getAggMethod()).append("'\n");
+		line.append("DefuzzMethod='").append(model.getDefuzzMethod())
+				.append("'\n\n");
+		emit();
+	}
+
+	private void writeVariable(String section, int index, Variable v)
+			throws IOException {
+		/**
+		 * Writes an input or output variable and its membership functions,
+		 * in the same format as a MATLAB fis object
+		 */
+
+		line.append('[').append(section).append(index).append("]\n");
+		line.append("Name='").append(v.getName()).append("'\n");
+		line.append("Range=[").append(v.getRangeMin()).append(' ')
+				.append(v.getRangeMax()).append("]\n");
+		line.append("NumMFs=").append(v.getMFs().size()).append('\n');
+		emit();
+
+		int i = 0;
+		for (MembershipFunction mf : v.getMFs()) {
+			line.append("MF").append(++i);
+			line.append("='").append(mf.getName()).append('\'');
+			line.append(":'").append(mf.intToType(mf.getType())).append("',[");
+
+			for (int j = 0; j < mf.getParametersSize(); j++) {
+				if (j != 0) {
+					line.append(' ');
+				}
+				line.append(mf.getParameter(j));
+			}
+
+			line.append("]\n");
+			emit();
+		}
+
+		line.append('\n');
+		emit();
+	}
+
+	private void writeRules(Model model) throws IOException {
+		/**
+		 * Writes the rules of the fis, one line at a time, in the same format
+		 * as a MATLAB fis object. Rules are only viewed, so writing does not
+		 * keep a Rule for each one still packed
+		 */
+
+		RuleList rules = model.getRuleList();
+		if (rules.size() > 0) {
+			line.append("[Rules]\n");
+			emit();
+
+			for (int r = 0; r < rules.size(); r++) {
+				rules.view(r).appendNumberString(line);
+				emit();
+			}
+		}
+	}
+
+	private void emit() throws IOException {
+		/**
+		 * Passes the line built so far on to the Writer, and empties it
+		 */
+		int n = line.length();
+		if (n > chars.length) {
+			chars = new char[Math.max(n, chars.length * 2)];
+		}
+		line.getChars(0, n, chars, 0);
+		out.write(chars, 0, n);
+		line.setLength(0);
+	}
+}
@@ -0,0 +1,66 @@
+/**
+ * InvalidFormatException Class Used to throw custom exception
+ * 
+ * @author Craig Knott
+ */
+
+package io;
+
+@SuppressWarnings("serial")
+public class InvalidFormatException extends Exception {
+
+	/**
+	 * Custom exception class used to throw an exception when a file being read
+	 * in is of an incorrect format
+	 */
+
+	private final int line;
+	private final int column;
+
+	public InvalidFormatException(String message) {
+		/**
+		 * Construct for the Exception
+		 * 
+		 * @param message
+		 *            cause of the exception
+		 */
+		super(message);
+		this.line = -1;
+		this.column = -1;
+	}
+
+	public InvalidFormatException(String message, int line, int column) {
+		/**
+		 * Constructor for an Exception found at a known place in the file
+		 * 
+		 * @param message
+		 *            cause of the exception
+		 * @param line
+		 *            integer, the line the problem was found on, from 1
+		 * @param column
+		 *            integer, the column the problem was found at, from 1
+		 */
+		super("Line " + line + ", column " + column + ": " + message);
+		this.line = line;
+		this.column = column;
+	}
+
+	public int getLine() {
+		/**
+		 * Returns the line the problem was found on
+		 * 
+		 * @return integer, the line from 1, or -1 if not known
+		 */
+		return line;
+	}
+
+	public int getColumn() {
+		/**
+		 * Returns the column the problem was found at
+		 * 
+		 * @return integer, the column from 1, or -1 if not known
+		 */
+		return column;
+	}
+
+}
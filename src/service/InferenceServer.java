@@ -0,0 +1,791 @@
+/**
+ * InferenceServer Class
+ * A small HTTP service which loads one or more Fuzzy Inference Systems and
+ * evaluates rows of inputs sent to it, so other programs can use a system
+ * without linking against this one. Each system has its own MicroBatcher, so
+ * many small requests arriving together are evaluated as one batch, and its
+ * own LatencyHistogram, so the time taken to answer can be watched while it
+ * runs. Systems are held in a ModelRegistry, so files can be reloaded while
+ * requests are being answered. It uses the HTTP server built into the JDK
+ * and listens on the loopback address unless told otherwise
+ * 
+ * Requests:
+ *   GET  /models                   the systems loaded, with their variables
+ *   POST /models/{name}/evaluate   evaluates a row, [1,2], or rows,
+ *                                  [[1,2],[3,4]], of JSON, or lines of CSV
+ *   GET  /models/{name}/stats      latency percentiles, batch sizes and
+ *                                  reloads
+ *   GET  /stats                    the same for every system
+ * 
+ * @author Craig Knott
+ */
+
+package service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import data.Model;
+import inference.InferenceEngine;
+import io.CsvBatchScorer;
+import io.InvalidFormatException;
+
+public class InferenceServer {
+
+	/*
+	 * Defaults
+	 */
+	public static final int DEFAULT_PORT = 8080;
+	public static final int DEFAULT_THREADS = 64;
+	public static final int MAX_BODY_BYTES = 16 * 1024 * 1024;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final InetSocketAddress address;
+	private final int threads;
+	private final ModelRegistry registry = new ModelRegistry();
+	private HttpServer server;
+	private ExecutorService executor;
+
+	/*
+	 * Constructors
+	 */
+
+	public InferenceServer(int port) {
+		/**
+		 * Constructor, listening on the loopback address with the default
+		 * number of threads
+		 * 
+		 * @param port
+		 *            integer port to listen on, 0 for any free port
+		 */
+		this(new InetSocketAddress(InetAddress.getLoopbackAddress(), port),
+				DEFAULT_THREADS);
+	}
+
+	public InferenceServer(InetSocketAddress address, int threads) {
+		/**
+		 * Constructor
+		 * 
+		 * @param address
+		 *            InetSocketAddress to listen on
+		 * @param threads
+		 *            integer number of requests handled at once. Requests
+		 *            waiting on the same system are batched together, so
+		 *            more threads allow larger batches
+		 */
+		if (threads < 1) {
+			throw new IllegalArgumentException(
+					"The server needs at least 1 thread");
+		}
+		this.address = address;
+		this.threads = threads;
+	}
+
+	/*
+	 * Data Assignment Methods
+	 */
+
+	public void setResolution(int resolution) {
+		/**
+		 * Sets the number of points each output is sampled at for systems
+		 * added from now on
+		 */
+		registry.setResolution(resolution);
+	}
+
+	public void setMaxBatchRows(int maxBatchRows) {
+		/**
+		 * Sets the most rows evaluated in one batch, for systems added from
+		 * now on
+		 */
+		registry.setMaxBatchRows(maxBatchRows);
+	}
+
+	public void setLingerNanos(long lingerNanos) {
+		/**
+		 * Sets how long a batch that is not full waits for more requests, for
+		 * systems added from now on. 0, the default, never waits, which gives
+		 * the lowest latency; a few hundred microseconds gives larger batches
+		 * when requests arrive steadily
+		 */
+		registry.setLingerNanos(lingerNanos);
+	}
+
+	public void addModel(String name, Model model) {
+		/**
+		 * Compiles a system and serves it under a name, replacing any system
+		 * already served under that name
+		 * 
+		 * @param name
+		 *            String the system is served under
+		 * @param model
+		 *            Model to serve
+		 */
+		registry.put(name, model);
+	}
+
+	public void loadModel(String name, File file) throws IOException,
+			InvalidFormatException {
+		/**
+		 * Reads a fis (or fisb) file and serves it under a name. The file is
+		 * reloaded whenever it changes once watchFiles has been called
+		 * 
+		 * @param name
+		 *            String the system is served under
+		 * @param file
+		 *            File to read
+		 * 
+		 * @throws IOException
+		 *             if the file cannot be read
+		 * @throws InvalidFormatException
+		 *             if the file is not a valid system
+		 */
+		registry.load(name, file);
+	}
+
+	public boolean removeModel(String name) {
+		/**
+		 * Stops serving a system
+		 * 
+		 * @return boolean, whether a system was served under that name
+		 */
+		return registry.remove(name);
+	}
+
+	public void watchFiles() throws IOException {
+		/**
+		 * Starts reloading the files of systems loaded with loadModel
+		 * whenever they change
+		 */
+		registry.startWatching();
+	}
+
+	/*
+	 * Starting and Stopping
+	 */
+
+	public synchronized void start() throws IOException {
+		/**
+		 * Starts listening for requests
+		 * 
+		 * @throws IOException
+		 *             if the address cannot be listened on
+		 */
+
+		if (server != null) {
+			throw new IllegalStateException("The server is already running");
+		}
+		server = HttpServer.create(address, 0);
+		server.createContext("/", new HttpHandler() {
+			public void handle(HttpExchange exchange) throws IOException {
+				InferenceServer.this.handle(exchange);
+			}
+		});
+		executor = Executors.newFixedThreadPool(threads);
+		server.setExecutor(executor);
+		server.start();
+	}
+
+	public synchronized void stop() {
+		/**
+		 * Stops listening, waits up to a second for requests being answered
+		 * and stops every system's batcher and watching
+		 */
+
+		if (server != null) {
+			server.stop(1);
+			executor.shutdown();
+			try {
+				executor.awaitTermination(1, TimeUnit.SECONDS);
+			} catch (InterruptedException ie) {
+				Thread.currentThread().interrupt();
+			}
+			server = null;
+		}
+		registry.close();
+	}
+
+	/*
+	 * Data Retrieval Methods
+	 */
+
+	public synchronized int getPort() {
+		/**
+		 * Returns the port being listened on, which is only known once
+		 * started if port 0 was asked for
+		 */
+		return server == null ? address.getPort() : server.getAddress()
+				.getPort();
+	}
+
+	public ModelRegistry getRegistry() {
+		return registry;
+	}
+
+	/*
+	 * Request Handling
+	 */
+
+	private void handle(HttpExchange exchange) throws IOException {
+		/**
+		 * Routes a request to the method answering it
+		 */
+
+		try {
+			String method = exchange.getRequestMethod();
+			String[] path = exchange.getRequestURI().getPath().split("/");
+			// path[0] is the empty string before the leading slash
+
+			if (path.length == 2 && path[1].equals("models")) {
+				expect(method, "GET");
+				respond(exchange, 200, "application/json", models());
+			} else if (path.length == 2 && path[1].equals("stats")) {
+				expect(method, "GET");
+				StringBuilder json = new StringBuilder("{\"models\":[");
+				boolean first = true;
+				for (ModelRegistry.Entry entry : registry.getEntries().values()) {
+					json.append(first ? "" : ",");
+					stats(entry, json);
+					first = false;
+				}
+				respond(exchange, 200, "application/json", json.append("]}")
+						.toString());
+			} else if (path.length == 4 && path[1].equals("models")) {
+				ModelRegistry.Entry entry = registry.get(path[2]);
+				if (entry == null) {
+					throw new HttpError(404, "No system is named '" + path[2]
+							+ "'");
+				}
+				if (path[3].equals("evaluate")) {
+					expect(method, "POST");
+					evaluate(exchange, entry);
+				} else if (path[3].equals("stats")) {
+					expect(method, "GET");
+					StringBuilder json = new StringBuilder();
+					stats(entry, json);
+					respond(exchange, 200, "application/json", json.toString());
+				} else {
+					throw new HttpError(404, "Not found");
+				}
+			} else {
+				throw new HttpError(404, "Not found");
+			}
+		} catch (HttpError he) {
+			if (he.status == 405) {
+				exchange.getResponseHeaders().set("Allow", he.allow);
+			}
+			respond(exchange, he.status, "application/json", "{\"error\":"
+					+ quote(he.getMessage()) + "}");
+		} catch (IllegalArgumentException iae) {
+			respond(exchange, 400, "application/json", "{\"error\":"
+					+ quote(iae.getMessage()) + "}");
+		} catch (RuntimeException re) {
+			respond(exchange, 500, "application/json", "{\"error\":"
+					+ quote(String.valueOf(re.getMessage())) + "}");
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private void evaluate(HttpExchange exchange, ModelRegistry.Entry entry)
+			throws IOException {
+		/**
+		 * Evaluates the rows sent, answering in the format they were sent in
+		 */
+
+		long start = System.nanoTime();
+		String body = new String(readBody(exchange), UTF8);
+		String type = exchange.getRequestHeaders().getFirst("Content-Type");
+		if (type == null || !type.contains("csv") && !type.contains("json")) {
+			// no type, or a client default such as a form, so look at the body
+			type = body.trim().startsWith("[") ? "json" : "csv";
+		}
+		boolean csv = type.contains("csv");
+
+		double[][] outputs;
+		String response;
+		if (csv) {
+			outputs = evaluate(entry, parseCsv(body));
+			response = formatCsv(outputs);
+		} else {
+			JsonRows rows = parseJson(body);
+			outputs = evaluate(entry, rows.rows);
+			response = formatJson(outputs, rows.single);
+		}
+
+		entry.getLatency().record(System.nanoTime() - start);
+		respond(exchange, 200, csv ? "text/csv" : "application/json",
+				response);
+	}
+
+	private static double[][] evaluate(ModelRegistry.Entry entry,
+			double[][] rows) {
+		try {
+			return entry.evaluate(rows);
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			throw new HttpError(503, "The request was interrupted");
+		} catch (IllegalStateException ise) {
+			// the system was removed while the request waited
+			throw new HttpError(503, ise.getMessage());
+		}
+	}
+
+	private String models() {
+		StringBuilder json = new StringBuilder("{\"models\":[");
+		boolean first = true;
+		for (ModelRegistry.Entry entry : registry.getEntries().values()) {
+			ModelRegistry.Version version = entry.getVersion();
+			if (version == null) {
+				continue;
+			}
+			json.append(first ? "" : ",");
+			json.append("{\"name\":").append(quote(entry.getName()));
+			json.append(",\"version\":").append(version.getNumber());
+			json.append(",\"inputs\":");
+			names(version.getInputNames(), json);
+			json.append(",\"outputs\":");
+			names(version.getOutputNames(), json);
+			json.append('}');
+			first = false;
+		}
+		return json.append("]}").toString();
+	}
+
+	private static void stats(ModelRegistry.Entry entry, StringBuilder json) {
+		/**
+		 * Appends the statistics of a system, with times in milliseconds.
+		 * Latencies cover every version, batches only the current version
+		 */
+
+		LatencyHistogram latency = entry.getLatency();
+		LatencyHistogram reloads = entry.getReloadTimes();
+		ModelRegistry.Version version = entry.getVersion();
+		MicroBatcher batcher = version == null ? null : version.getBatcher();
+		long batches = batcher == null ? 0 : batcher.getBatches();
+
+		json.append("{\"name\":").append(quote(entry.getName()));
+		json.append(",\"version\":").append(
+				version == null ? 0 : version.getNumber());
+		json.append(",\"requests\":").append(latency.getCount());
+		json.append(",\"rows\":").append(
+				batcher == null ? 0 : batcher.getRows());
+		json.append(",\"batches\":").append(batches);
+		json.append(",\"meanBatchRequests\":").append(
+				batches == 0 ? 0 : (double) batcher.getRequests() / batches);
+		json.append(",\"meanBatchRows\":").append(
+				batches == 0 ? 0 : (double) batcher.getRows() / batches);
+		json.append(",\"latencyMs\":{\"mean\":").append(
+				latency.getMean() / 1e6);
+		json.append(",\"p50\":").append(latency.getPercentile(50) / 1e6);
+		json.append(",\"p90\":").append(latency.getPercentile(90) / 1e6);
+		json.append(",\"p99\":").append(latency.getPercentile(99) / 1e6);
+		json.append(",\"max\":").append(latency.getMax() / 1e6);
+		json.append("},\"reloads\":{\"count\":").append(reloads.getCount());
+		json.append(",\"failures\":").append(entry.getReloadFailures());
+		json.append(",\"lastMs\":").append(entry.getLastReloadNanos() / 1e6);
+		json.append(",\"meanMs\":").append(reloads.getMean() / 1e6);
+		json.append(",\"maxMs\":").append(reloads.getMax() / 1e6);
+		Exception error = entry.getLastError();
+		if (error != null) {
+			json.append(",\"lastError\":").append(
+					quote(String.valueOf(error.getMessage())));
+		}
+		json.append("}}");
+	}
+
+	/*
+	 * Parsing and Formatting
+	 */
+
+	static JsonRows parseJson(String body) {
+		/**
+		 * Reads a single row, [1,2], or an array of rows, [[1,2],[3,4]], of
+		 * numbers
+		 */
+
+		JsonRows result = new JsonRows();
+		int[] at = { skip(body, 0) };
+		expectChar(body, at, '[');
+		if (skip(body, at[0]) < body.length()
+				&& body.charAt(skip(body, at[0])) == '[') {
+			ArrayList<double[]> rows = new ArrayList<double[]>();
+			do {
+				rows.add(parseJsonRow(body, at));
+			} while (nextSeparator(body, at, ']'));
+			result.rows = rows.toArray(new double[rows.size()][]);
+		} else {
+			at[0]--;
+			result.rows = new double[][] { parseJsonRow(body, at) };
+			result.single = true;
+		}
+		if (skip(body, at[0]) != body.length()) {
+			throw new IllegalArgumentException("Unexpected text after the rows");
+		}
+		return result;
+	}
+
+	private static double[] parseJsonRow(String body, int[] at) {
+		expectChar(body, at, '[');
+		ArrayList<Double> values = new ArrayList<Double>();
+		if (skip(body, at[0]) < body.length()
+				&& body.charAt(skip(body, at[0])) == ']') {
+			at[0] = skip(body, at[0]) + 1;
+		} else {
+			do {
+				int from = skip(body, at[0]);
+				int to = from;
+				while (to < body.length()
+						&& "+-.0123456789eE".indexOf(body.charAt(to)) >= 0) {
+					to++;
+				}
+				if (to == from) {
+					throw new IllegalArgumentException(
+							"Expected a number at character " + from);
+				}
+				values.add(number(body.substring(from, to), "at character "
+						+ from));
+				at[0] = to;
+			} while (nextSeparator(body, at, ']'));
+		}
+
+		double[] row = new double[values.size()];
+		for (int i = 0; i < row.length; i++) {
+			row[i] = values.get(i);
+		}
+		return row;
+	}
+
+	static double[][] parseCsv(String body) {
+		/**
+		 * Reads lines of comma separated numbers, skipping blank lines. A
+		 * field which is not a number is reported at its line and column,
+		 * counting from 1
+		 */
+
+		ArrayList<double[]> rows = new ArrayList<double[]>();
+		String[] lines = body.split("\r?\n");
+		for (int l = 0; l < lines.length; l++) {
+			String line = lines[l];
+			if (line.trim().isEmpty()) {
+				continue;
+			}
+			String[] fields = line.split(",", -1);
+			double[] row = new double[fields.length];
+			int column = 1;
+			for (int i = 0; i < fields.length; i++) {
+				int lead = 0;
+				while (lead < fields[i].length()
+						&& fields[i].charAt(lead) <= ' ') {
+					lead++;
+				}
+				row[i] = number(fields[i].trim(), "at line " + (l + 1)
+						+ ", column " + (column + lead));
+				column += fields[i].length() + 1;
+			}
+			rows.add(row);
+		}
+		return rows.toArray(new double[rows.size()][]);
+	}
+
+	static String formatJson(double[][] outputs, boolean single) {
+		/**
+		 * Writes outputs as JSON, as null where the output is undefined
+		 */
+
+		StringBuilder json = new StringBuilder();
+		if (!single) {
+			json.append('[');
+		}
+		for (int r = 0; r < outputs.length; r++) {
+			json.append(r == 0 ? "[" : ",[");
+			for (int o = 0; o < outputs[r].length; o++) {
+				double v = outputs[r][o];
+				if (o > 0) {
+					json.append(',');
+				}
+				if (Double.isNaN(v) || Double.isInfinite(v)) {
+					json.append("null");
+				} else {
+					json.append(v);
+				}
+			}
+			json.append(']');
+		}
+		if (!single) {
+			json.append(']');
+		}
+		return json.toString();
+	}
+
+	static String formatCsv(double[][] outputs) {
+		StringBuilder csv = new StringBuilder();
+		for (double[] row : outputs) {
+			for (int o = 0; o < row.length; o++) {
+				if (o > 0) {
+					csv.append(',');
+				}
+				csv.append(row[o]);
+			}
+			csv.append('\n');
+		}
+		return csv.toString();
+	}
+
+	/*
+	 * Auxiliary Methods
+	 */
+
+	private static byte[] readBody(HttpExchange exchange) throws IOException {
+		/**
+		 * Reads the body of a request, refusing any longer than
+		 * MAX_BODY_BYTES
+		 */
+
+		String length = exchange.getRequestHeaders().getFirst("Content-Length");
+		try {
+			if (length != null && Long.parseLong(length) > MAX_BODY_BYTES) {
+				throw new HttpError(413, "The body is longer than "
+						+ MAX_BODY_BYTES + " bytes");
+			}
+		} catch (NumberFormatException nfe) {
+			throw new HttpError(400, "Bad Content-Length");
+		}
+
+		InputStream in = exchange.getRequestBody();
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int n;
+		while ((n = in.read(buffer)) > 0) {
+			if (body.size() + n > MAX_BODY_BYTES) {
+				throw new HttpError(413, "The body is longer than "
+						+ MAX_BODY_BYTES + " bytes");
+			}
+			body.write(buffer, 0, n);
+		}
+		return body.toByteArray();
+	}
+
+	private static void respond(HttpExchange exchange, int status,
+			String type, String body) throws IOException {
+		byte[] bytes = body.getBytes(UTF8);
+		exchange.getResponseHeaders().set("Content-Type",
+				type + "; charset=utf-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+		OutputStream out = exchange.getResponseBody();
+		out.write(bytes);
+		out.close();
+	}
+
+	private static void expect(String method, String allowed) {
+		if (!method.equals(allowed)) {
+			HttpError he = new HttpError(405, method
+					+ " is not allowed here, only " + allowed);
+			he.allow = allowed;
+			throw he;
+		}
+	}
+
+	private static double number(String token, String where) {
+		/**
+		 * Reads a plain decimal number, as CsvBatchScorer does, refusing
+		 * anything else Double.parseDouble would take, such as 1d, 0x1p3 or
+		 * NaN
+		 */
+		if (!CsvBatchScorer.isDecimal(token)) {
+			throw new IllegalArgumentException("'" + token
+					+ "' is not a number, " + where);
+		}
+		return Double.parseDouble(token);
+	}
+
+	private static int skip(String s, int i) {
+		while (i < s.length() && Character.isWhitespace(s.charAt(i))) {
+			i++;
+		}
+		return i;
+	}
+
+	private static void expectChar(String s, int[] at, char c) {
+		int i = skip(s, at[0]);
+		if (i >= s.length() || s.charAt(i) != c) {
+			throw new IllegalArgumentException("Expected '" + c
+					+ "' at character " + i);
+		}
+		at[0] = i + 1;
+	}
+
+	private static boolean nextSeparator(String s, int[] at, char close) {
+		/**
+		 * Reads a comma, returning true, or the closing bracket, returning
+		 * false
+		 */
+		int i = skip(s, at[0]);
+		if (i < s.length() && s.charAt(i) == ',') {
+			at[0] = i + 1;
+			return true;
+		}
+		expectChar(s, at, close);
+		return false;
+	}
+
+	private static String quote(String s) {
+		StringBuilder json = new StringBuilder("\"");
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c == '"' || c == '\\') {
+				json.append('\\').append(c);
+			} else if (c < 0x20) {
+				json.append(String.format("\\u%04x", (int) c));
+			} else {
+				json.append(c);
+			}
+		}
+		return json.append('"').toString();
+	}
+
+	private static void names(String[] names, StringBuilder json) {
+		json.append('[');
+		for (int i = 0; i < names.length; i++) {
+			json.append(i == 0 ? "" : ",").append(quote(names[i]));
+		}
+		json.append(']');
+	}
+
+	/*
+	 * System Main
+	 */
+
+	public static void main(String[] args) {
+		/**
+		 * Serves the fis (or fisb) files given until killed. Each is served
+		 * under the name before an '=', as in tipper=tipper.fis, or else under
+		 * its file name without the extension, and is reloaded whenever it
+		 * changes unless --no-watch is given
+		 */
+
+		String usage = "Usage: InferenceServer [--port N] [--host ADDRESS] [--threads N]\n"
+				+ "                       [--resolution N] [--linger-us N] [--no-watch]\n"
+				+ "                       [name=]model.fis ...";
+
+		int port = DEFAULT_PORT;
+		String host = null;
+		int threads = DEFAULT_THREADS;
+		int resolution = InferenceEngine.DEFAULT_RESOLUTION;
+		long lingerMicros = 0;
+		boolean watch = true;
+		ArrayList<String> models = new ArrayList<String>();
+
+		try {
+			for (int i = 0; i < args.length; i++) {
+				String arg = args[i];
+				if (arg.equals("-h") || arg.equals("--help")) {
+					System.out.println(usage);
+					return;
+				} else if (arg.equals("--port")) {
+					port = Integer.parseInt(args[++i]);
+				} else if (arg.equals("--host")) {
+					host = args[++i];
+				} else if (arg.equals("--threads")) {
+					threads = Integer.parseInt(args[++i]);
+				} else if (arg.equals("--resolution")) {
+					resolution = Integer.parseInt(args[++i]);
+				} else if (arg.equals("--linger-us")) {
+					lingerMicros = Long.parseLong(args[++i]);
+				} else if (arg.equals("--no-watch")) {
+					watch = false;
+				} else if (arg.startsWith("-")) {
+					throw new IllegalArgumentException("unknown option " + arg);
+				} else {
+					models.add(arg);
+				}
+			}
+			if (models.isEmpty()) {
+				throw new IllegalArgumentException("no fis file given");
+			}
+		} catch (ArrayIndexOutOfBoundsException aioobe) {
+			System.err.println("InferenceServer: an option needs a value");
+			System.err.println(usage);
+			System.exit(2);
+		} catch (IllegalArgumentException iae) {
+			System.err.println("InferenceServer: " + iae.getMessage());
+			System.err.println(usage);
+			System.exit(2);
+		}
+
+		try {
+			InetSocketAddress address = host == null ? new InetSocketAddress(
+					InetAddress.getLoopbackAddress(), port)
+					: new InetSocketAddress(host, port);
+			InferenceServer server = new InferenceServer(address, threads);
+			server.setResolution(resolution);
+			server.setLingerNanos(lingerMicros * 1000);
+
+			for (String spec : models) {
+				int eq = spec.indexOf('=');
+				File file = new File(eq < 0 ? spec : spec.substring(eq + 1));
+				String name = eq < 0 ? file.getName().replaceFirst(
+						"\\.fisb?$", "") : spec.substring(0, eq);
+				server.loadModel(name, file);
+				System.err.println("Serving " + file + " as '" + name + "'");
+			}
+
+			if (watch) {
+				server.watchFiles();
+			}
+			server.start();
+			System.err.println("Listening on http://"
+					+ address.getHostString() + ":" + server.getPort() + "/");
+		} catch (IOException io) {
+			System.err.println("InferenceServer: " + io.getMessage());
+			System.exit(1);
+		} catch (InvalidFormatException ife) {
+			System.err.println("InferenceServer: " + ife.getMessage());
+			System.exit(1);
+		} catch (IllegalArgumentException iae) {
+			System.err.println("InferenceServer: " + iae.getMessage());
+			System.exit(1);
+		}
+	}
+
+	/*
+	 * JsonRows Sub Class
+	 */
+
+	static final class JsonRows {
+		double[][] rows;
+		boolean single;
+	}
+
+	/*
+	 * HttpError Sub Class
+	 */
+
+	private static final class HttpError extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		final int status;
+		String allow;
+
+		HttpError(int status, String message) {
+			super(message);
+			this.status = status;
+		}
+	}
+}
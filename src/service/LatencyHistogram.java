@@ -0,0 +1,133 @@
+/**
+ * LatencyHistogram Class
+ * Counts latencies in buckets whose width grows with the latency, sixteen to
+ * each power of two, so any percentile can be read back to within about 6%
+ * in a fixed, small amount of memory. Recording is a single atomic increment
+ * and safe from any number of threads
+ * 
+ * @author Craig Knott
+ */
+
+package service;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class LatencyHistogram {
+
+	/*
+	 * Each power of two is split into 2^SUB_BITS buckets. Values below
+	 * 2^SUB_BITS have a bucket each
+	 */
+	private static final int SUB_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BITS;
+	private static final int BUCKETS = (64 - SUB_BITS + 1) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final AtomicLong total = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+
+	/*
+	 * Recording
+	 */
+
+	public void record(long nanos) {
+		/**
+		 * Records a latency
+		 * 
+		 * @param nanos
+		 *            long latency in nanoseconds, negative values being
+		 *            counted as 0
+		 */
+
+		long v = Math.max(0, nanos);
+		counts.incrementAndGet(index(v));
+		total.addAndGet(v);
+
+		long m;
+		while (v > (m = max.get()) && !max.compareAndSet(m, v)) {
+		}
+	}
+
+	/*
+	 * Data Retrieval Methods
+	 */
+
+	public long getCount() {
+		long count = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			count += counts.get(i);
+		}
+		return count;
+	}
+
+	public long getMax() {
+		return max.get();
+	}
+
+	public double getMean() {
+		long count = getCount();
+		return count == 0 ? 0 : (double) total.get() / count;
+	}
+
+	public long getPercentile(double percentile) {
+		/**
+		 * Returns a percentile of the latencies recorded, as the top of the
+		 * bucket it falls in
+		 * 
+		 * @param percentile
+		 *            double between 0 and 100
+		 * 
+		 * @return long latency in nanoseconds, or 0 if nothing was recorded
+		 */
+
+		long[] snapshot = new long[BUCKETS];
+		long count = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			snapshot[i] = counts.get(i);
+			count += snapshot[i];
+		}
+		if (count == 0) {
+			return 0;
+		}
+
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += snapshot[i];
+			if (seen >= rank) {
+				return Math.min(upperBound(i), max.get());
+			}
+		}
+		return max.get();
+	}
+
+	/*
+	 * Buckets
+	 */
+
+	static int index(long v) {
+		/**
+		 * Returns the bucket a value falls in
+		 */
+		if (v < SUB_BUCKETS) {
+			return (int) v;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(v);
+		int sub = (int) (v >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+	}
+
+	static long upperBound(int index) {
+		/**
+		 * Returns the largest value that falls in a bucket
+		 */
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+		int exponent = index / SUB_BUCKETS + SUB_BITS - 1;
+		int sub = index % SUB_BUCKETS;
+		long bound = ((long) SUB_BUCKETS + sub + 1) << (exponent - SUB_BITS);
+		return bound <= 0 ? Long.MAX_VALUE : bound - 1;
+	}
+}
@@ -0,0 +1,359 @@
+/**
+ * MicroBatcher Class
+ * Coalesces small evaluation requests, arriving from many threads, into
+ * batches for a BatchEvaluator. A single worker thread takes the oldest
+ * request and then every other request already waiting, up to a maximum
+ * number of rows, and evaluates them together, so under load many requests
+ * share one pass of the column-wise evaluator while a lone request is never
+ * made to wait for company. Optionally the worker lingers for more requests
+ * before evaluating a batch that is not full
+ * 
+ * @author Craig Knott
+ */
+
+package service;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import inference.BatchEvaluator;
+import inference.CompiledFIS;
+
+public class MicroBatcher {
+
+	/*
+	 * Most rows coalesced into a single batch by default
+	 */
+	public static final int DEFAULT_MAX_BATCH_ROWS = 4096;
+
+	private final CompiledFIS fis;
+	private final BatchEvaluator batch;
+	private final BatchEvaluator.Workspace workspace;
+	private final int maxBatchRows;
+	private final long lingerNanos;
+
+	/*
+	 * Put on the queue to wake the worker when the batcher is retired
+	 */
+	private static final Request STOP = new Request(new double[0][], 0);
+
+	private final LinkedBlockingQueue<Request> queue = new LinkedBlockingQueue<Request>();
+	private final Thread worker;
+	private volatile boolean running = true;
+	private volatile boolean shutDown;
+
+	/*
+	 * Columns reused by the worker, grown to the largest batch seen
+	 */
+	private double[][] columns;
+	private double[][] outColumns;
+	private int capacity;
+
+	/*
+	 * A request taken off the queue that would have made a batch too large,
+	 * held over to start the next
+	 */
+	private Request carried;
+
+	private final AtomicLong batches = new AtomicLong();
+	private final AtomicLong requests = new AtomicLong();
+	private final AtomicLong rows = new AtomicLong();
+
+	/*
+	 * Constructors
+	 */
+
+	public MicroBatcher(CompiledFIS fis, String name) {
+		/**
+		 * Constructor, with the default batch size and no lingering
+		 * 
+		 * @param fis
+		 *            CompiledFIS to evaluate
+		 * @param name
+		 *            String used to name the worker thread
+		 */
+		this(fis, name, DEFAULT_MAX_BATCH_ROWS, 0);
+	}
+
+	public MicroBatcher(CompiledFIS fis, String name, int maxBatchRows,
+			long lingerNanos) {
+		/**
+		 * Constructor, starting the worker thread
+		 * 
+		 * @param fis
+		 *            CompiledFIS to evaluate
+		 * @param name
+		 *            String used to name the worker thread
+		 * @param maxBatchRows
+		 *            integer, the most rows coalesced into one batch. A
+		 *            single request with more rows is still evaluated, alone
+		 * @param lingerNanos
+		 *            long, how long to wait for more requests before
+		 *            evaluating a batch that is not full, 0 not to wait
+		 */
+
+		if (maxBatchRows < 1) {
+			throw new IllegalArgumentException(
+					"A batch must hold at least 1 row");
+		}
+
+		this.fis = fis;
+		this.batch = new BatchEvaluator(fis);
+		this.workspace = batch.newWorkspace();
+		this.maxBatchRows = maxBatchRows;
+		this.lingerNanos = Math.max(0, lingerNanos);
+		grow(Math.min(maxBatchRows, BatchEvaluator.DEFAULT_BLOCK_SIZE));
+
+		worker = new Thread(new Runnable() {
+			public void run() {
+				work();
+			}
+		}, "MicroBatcher " + name);
+		worker.setDaemon(true);
+		worker.start();
+	}
+
+	/*
+	 * Evaluation
+	 */
+
+	public double[][] evaluate(double[][] inputRows)
+			throws InterruptedException {
+		/**
+		 * Evaluates rows of inputs, waiting for the batch they are put in to
+		 * be evaluated
+		 * 
+		 * @param inputRows
+		 *            array of rows, each holding a value for every input
+		 *            variable
+		 * 
+		 * @return array of rows, each holding the value of every output
+		 *         variable
+		 * 
+		 * @throws InterruptedException
+		 *             if the calling thread is interrupted while waiting
+		 */
+
+		for (double[] row : inputRows) {
+			if (row.length != fis.getNumInputs()) {
+				throw new IllegalArgumentException("Expected "
+						+ fis.getNumInputs() + " inputs in every row but was given "
+						+ row.length);
+			}
+		}
+
+		Request request = new Request(inputRows, fis.getNumOutputs());
+		if (inputRows.length == 0) {
+			return request.outputs;
+		}
+		queue.add(request);
+		if (!running && queue.remove(request)) {
+			throw new IllegalStateException("This batcher has been shut down");
+		}
+		request.done.await();
+
+		if (request.error != null) {
+			throw request.error;
+		}
+		return request.outputs;
+	}
+
+	public void shutdown() {
+		/**
+		 * Stops the worker. A batch already being evaluated is finished, and
+		 * every request still waiting fails with an IllegalStateException
+		 */
+		shutDown = true;
+		running = false;
+		worker.interrupt();
+	}
+
+	public void retire() {
+		/**
+		 * Stops accepting requests but evaluates every request already
+		 * queued before the worker stops, so that callers which reached this
+		 * batcher just before it was replaced are still answered. A request
+		 * made after it has been retired fails with an IllegalStateException
+		 */
+		running = false;
+		queue.add(STOP);
+	}
+
+	public boolean isRunning() {
+		return running;
+	}
+
+	/*
+	 * Data Retrieval Methods
+	 */
+
+	public CompiledFIS getCompiledFIS() {
+		return fis;
+	}
+
+	public long getBatches() {
+		return batches.get();
+	}
+
+	public long getRequests() {
+		return requests.get();
+	}
+
+	public long getRows() {
+		return rows.get();
+	}
+
+	/*
+	 * Worker
+	 */
+
+	private void work() {
+		/**
+		 * Takes requests off the queue and evaluates them in batches until
+		 * shut down, or until retired and the queue is empty. The batch being
+		 * evaluated cannot be interrupted, so shutting down is checked again
+		 * before each batch
+		 */
+
+		ArrayList<Request> pending = new ArrayList<Request>();
+		try {
+			while (true) {
+				// once retired, evaluate whatever is left without blocking
+				Request next = carried;
+				if (next == null) {
+					next = running ? queue.take() : queue.poll();
+				}
+				carried = null;
+				if (next == null) {
+					break;
+				}
+				if (next == STOP) {
+					continue;
+				}
+				pending.add(next);
+				int n = next.rows.length;
+
+				long deadline = System.nanoTime() + lingerNanos;
+				while (n < maxBatchRows) {
+					next = queue.poll();
+					if (next == null && lingerNanos > 0 && running) {
+						long wait = deadline - System.nanoTime();
+						if (wait > 0) {
+							next = queue.poll(wait, TimeUnit.NANOSECONDS);
+						}
+					}
+					if (next == STOP) {
+						continue;
+					}
+					if (next == null) {
+						break;
+					}
+					if (n + next.rows.length > maxBatchRows) {
+						carried = next;
+						break;
+					}
+					pending.add(next);
+					n += next.rows.length;
+				}
+
+				if (shutDown) {
+					break;
+				}
+				evaluateBatch(pending, n);
+				pending.clear();
+			}
+		} catch (InterruptedException ie) {
+			// shut down
+		} finally {
+			for (Request r : pending) {
+				fail(r);
+			}
+			if (carried != null) {
+				fail(carried);
+			}
+			Request r;
+			while ((r = queue.poll()) != null) {
+				fail(r);
+			}
+		}
+	}
+
+	private void evaluateBatch(ArrayList<Request> pending, int n) {
+		/**
+		 * Copies the rows of every request into the columns, evaluates them
+		 * together and copies each request's outputs back
+		 */
+
+		try {
+			grow(n);
+			int nIn = fis.getNumInputs();
+			int nOut = fis.getNumOutputs();
+
+			int row = 0;
+			for (Request r : pending) {
+				for (double[] inputs : r.rows) {
+					for (int i = 0; i < nIn; i++) {
+						columns[i][row] = inputs[i];
+					}
+					row++;
+				}
+			}
+
+			batch.evaluate(columns, outColumns, 0, n, workspace);
+
+			row = 0;
+			for (Request r : pending) {
+				for (double[] outputs : r.outputs) {
+					for (int o = 0; o < nOut; o++) {
+						outputs[o] = outColumns[o][row];
+					}
+					row++;
+				}
+			}
+		} catch (RuntimeException re) {
+			for (Request r : pending) {
+				r.error = re;
+			}
+		}
+
+		batches.incrementAndGet();
+		requests.addAndGet(pending.size());
+		rows.addAndGet(n);
+		for (Request r : pending) {
+			r.done.countDown();
+		}
+	}
+
+	private void grow(int n) {
+		if (n > capacity) {
+			capacity = Math.max(n, capacity * 2);
+			columns = new double[fis.getNumInputs()][capacity];
+			outColumns = new double[fis.getNumOutputs()][capacity];
+		}
+	}
+
+	private static void fail(Request r) {
+		r.error = new IllegalStateException("This batcher has been shut down");
+		r.done.countDown();
+	}
+
+	/*
+	 * Request Sub Class
+	 */
+
+	private static final class Request {
+
+		final double[][] rows;
+		final double[][] outputs;
+		final CountDownLatch done = new CountDownLatch(1);
+		volatile RuntimeException error;
+
+		Request(double[][] rows, int numOutputs) {
+			this.rows = rows;
+			this.outputs = new double[rows.length][numOutputs];
+		}
+	}
+}
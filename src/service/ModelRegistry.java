@@ -0,0 +1,536 @@
+/**
+ * ModelRegistry Class
+ * Holds the Fuzzy Inference Systems served by name, and can reload them from
+ * their files whenever the files change. Each name refers to its current
+ * version through an AtomicReference: a new version is read and compiled
+ * away from the evaluation path and then swapped in, in a single step, so
+ * evaluations never wait on a lock. Requests already queued on the old
+ * version are answered by it, every request after the swap is answered by
+ * the new one, and a file that cannot be read leaves the old version in
+ * place
+ * 
+ * @author Craig Knott
+ */
+
+package service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import data.Model;
+import data.Variable;
+import inference.CompiledFIS;
+import inference.InferenceEngine;
+import io.BinaryFIS;
+import io.FISReader;
+import io.InvalidFormatException;
+
+public class ModelRegistry {
+
+	/*
+	 * How long a file must go without changing before it is reloaded, so a
+	 * file written in several steps is read once it is complete
+	 */
+	public static final long DEFAULT_QUIET_MILLIS = 200;
+
+	private int resolution = InferenceEngine.DEFAULT_RESOLUTION;
+	private int maxBatchRows = MicroBatcher.DEFAULT_MAX_BATCH_ROWS;
+	private long lingerNanos;
+	private long quietMillis = DEFAULT_QUIET_MILLIS;
+
+	private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+	private WatchService watcher;
+	private final ConcurrentHashMap<Path, WatchKey> watchedDirectories = new ConcurrentHashMap<Path, WatchKey>();
+
+	/*
+	 * Data Assignment Methods
+	 */
+
+	public void setResolution(int resolution) {
+		/**
+		 * Sets the number of points each output is sampled at for versions
+		 * compiled from now on
+		 */
+		if (resolution < 2) {
+			throw new IllegalArgumentException(
+					"The resolution must be at least 2");
+		}
+		this.resolution = resolution;
+	}
+
+	public void setMaxBatchRows(int maxBatchRows) {
+		/**
+		 * Sets the most rows evaluated in one batch, for versions compiled
+		 * from now on
+		 */
+		if (maxBatchRows < 1) {
+			throw new IllegalArgumentException(
+					"A batch must hold at least 1 row");
+		}
+		this.maxBatchRows = maxBatchRows;
+	}
+
+	public void setLingerNanos(long lingerNanos) {
+		/**
+		 * Sets how long a batch that is not full waits for more requests, for
+		 * versions compiled from now on
+		 */
+		this.lingerNanos = Math.max(0, lingerNanos);
+	}
+
+	public void setQuietMillis(long quietMillis) {
+		/**
+		 * Sets how long a watched file must go without changing before it is
+		 * reloaded
+		 */
+		this.quietMillis = Math.max(0, quietMillis);
+	}
+
+	public void put(String name, Model model) {
+		/**
+		 * Compiles a system and makes it the current version of a name
+		 * 
+		 * @param name
+		 *            String the system is known by
+		 * @param model
+		 *            Model to compile
+		 */
+
+		long start = System.nanoTime();
+		entry(name).swap(compile(name, model), System.nanoTime() - start);
+	}
+
+	public void load(String name, File file) throws IOException,
+			InvalidFormatException {
+		/**
+		 * Reads and compiles a fis (or fisb) file and makes it the current
+		 * version of a name. The file is remembered, and reloaded whenever it
+		 * changes once watching has been started. If it cannot be read, the
+		 * name keeps serving, and watching, whatever it did before
+		 * 
+		 * @param name
+		 *            String the system is known by
+		 * @param file
+		 *            File to read
+		 * 
+		 * @throws IOException
+		 *             if the file cannot be read
+		 * @throws InvalidFormatException
+		 *             if the file is not a valid system
+		 */
+
+		File absolute = file.getAbsoluteFile();
+		Entry entry = entry(name);
+		try {
+			entry.reload(absolute);
+		} finally {
+			if (entry.version.get() == null) {
+				// nothing could be loaded, so there is nothing to serve
+				entries.remove(name, entry);
+			}
+		}
+		watch(absolute);
+	}
+
+	public boolean remove(String name) {
+		/**
+		 * Stops serving a name. Requests already queued are still answered
+		 * 
+		 * @return boolean, whether anything was known by that name
+		 */
+		Entry entry = entries.remove(name);
+		if (entry == null) {
+			return false;
+		}
+		Version old = entry.version.getAndSet(null);
+		if (old != null) {
+			old.batcher.retire();
+		}
+		return true;
+	}
+
+	/*
+	 * Data Retrieval Methods
+	 */
+
+	public Entry get(String name) {
+		/**
+		 * Returns what is known by a name
+		 * 
+		 * @return Entry, or null if nothing is known by that name
+		 */
+		return entries.get(name);
+	}
+
+	public Map<String, Entry> getEntries() {
+		/**
+		 * Returns everything known, sorted by name
+		 */
+		return new TreeMap<String, Entry>(entries);
+	}
+
+	/*
+	 * Watching
+	 */
+
+	public synchronized void startWatching() throws IOException {
+		/**
+		 * Starts a thread which reloads every loaded file, in the background,
+		 * whenever it is changed or replaced
+		 * 
+		 * @throws IOException
+		 *             if the file system cannot be watched
+		 */
+
+		if (watcher != null) {
+			return;
+		}
+		watcher = FileSystems.getDefault().newWatchService();
+		for (Entry entry : entries.values()) {
+			File file = entry.file;
+			if (file != null) {
+				watch(file);
+			}
+		}
+
+		Thread watchThread = new Thread(new Runnable() {
+			public void run() {
+				watchFiles();
+			}
+		}, "ModelRegistry watcher");
+		watchThread.setDaemon(true);
+		watchThread.start();
+	}
+
+	public synchronized void close() {
+		/**
+		 * Stops watching and stops the batcher of every version
+		 */
+
+		if (watcher != null) {
+			try {
+				watcher.close();
+			} catch (IOException io) {
+				// nothing more can be done with it
+			}
+			watcher = null;
+			watchedDirectories.clear();
+		}
+		for (Entry entry : entries.values()) {
+			Version old = entry.version.getAndSet(null);
+			if (old != null) {
+				old.batcher.shutdown();
+			}
+		}
+		entries.clear();
+	}
+
+	private synchronized void watch(File file) throws IOException {
+		/**
+		 * Watches the directory holding a file. Directories are watched
+		 * rather than files so that a file replaced by renaming another over
+		 * it, as AtomicFile does, is still seen
+		 */
+		if (watcher == null) {
+			return;
+		}
+		Path directory = file.getParentFile().toPath();
+		if (!watchedDirectories.containsKey(directory)) {
+			watchedDirectories.put(directory, directory.register(watcher,
+					StandardWatchEventKinds.ENTRY_CREATE,
+					StandardWatchEventKinds.ENTRY_MODIFY));
+		}
+	}
+
+	private void watchFiles() {
+		/**
+		 * Collects the files changed until none has changed for the quiet
+		 * period, then reloads the entries reading them
+		 */
+
+		WatchService watcher = this.watcher;
+		HashSet<File> changed = new HashSet<File>();
+		try {
+			while (true) {
+				WatchKey key = changed.isEmpty() ? watcher.take() : watcher
+						.poll(quietMillis, TimeUnit.MILLISECONDS);
+
+				if (key == null) {
+					for (Entry entry : entries.values()) {
+						File file = entry.file;
+						if (file != null && changed.contains(file)) {
+							try {
+								entry.reload(file);
+							} catch (IOException io) {
+								// recorded, the current version stays
+							} catch (InvalidFormatException ife) {
+								// recorded, the current version stays
+							}
+						}
+					}
+					changed.clear();
+					continue;
+				}
+
+				Path directory = (Path) key.watchable();
+				for (WatchEvent<?> event : key.pollEvents()) {
+					if (event.context() instanceof Path) {
+						changed.add(directory.resolve((Path) event.context())
+								.toFile().getAbsoluteFile());
+					}
+				}
+				key.reset();
+			}
+		} catch (InterruptedException ie) {
+			// stopped
+		} catch (ClosedWatchServiceException cwse) {
+			// stopped
+		}
+	}
+
+	/*
+	 * Auxiliary Methods
+	 */
+
+	private Entry entry(String name) {
+		/**
+		 * Returns the entry for a name, creating it if there is none
+		 */
+
+		if (name.isEmpty() || name.indexOf('/') >= 0) {
+			throw new IllegalArgumentException("'" + name
+					+ "' cannot be used as the name of a system");
+		}
+
+		Entry entry = entries.get(name);
+		if (entry == null) {
+			Entry created = new Entry(name);
+			entry = entries.putIfAbsent(name, created);
+			return entry == null ? created : entry;
+		}
+		return entry;
+	}
+
+	private Version compile(String name, Model model) {
+		CompiledFIS fis = CompiledFIS.compile(model, resolution);
+		return new Version(names(model.getVarInList()),
+				names(model.getVarOutList()), new MicroBatcher(fis, name,
+						maxBatchRows, lingerNanos));
+	}
+
+	private static String[] names(ArrayList<Variable> variables) {
+		String[] names = new String[variables.size()];
+		for (int i = 0; i < names.length; i++) {
+			names[i] = variables.get(i).getName();
+		}
+		return names;
+	}
+
+	/*
+	 * Entry Sub Class
+	 */
+
+	public class Entry {
+
+		private final String name;
+		private volatile File file;
+		private final AtomicReference<Version> version = new AtomicReference<Version>();
+		private final AtomicInteger versions = new AtomicInteger();
+
+		/*
+		 * Latencies of evaluations, kept across versions
+		 */
+		private final LatencyHistogram latency = new LatencyHistogram();
+
+		/*
+		 * Reload metrics
+		 */
+		private final LatencyHistogram reloadTimes = new LatencyHistogram();
+		private final AtomicLong reloadFailures = new AtomicLong();
+		private volatile long lastReloadNanos;
+		private volatile Exception lastError;
+
+		private Entry(String name) {
+			this.name = name;
+		}
+
+		public double[][] evaluate(double[][] rows) throws InterruptedException {
+			/**
+			 * Evaluates rows of inputs with the current version. A request
+			 * which reaches a version just as it is replaced is passed on to
+			 * the version replacing it
+			 * 
+			 * @throws IllegalStateException
+			 *             if the name has been removed
+			 */
+
+			while (true) {
+				Version v = version.get();
+				if (v == null) {
+					throw new IllegalStateException("'" + name
+							+ "' is no longer being served");
+				}
+				try {
+					return v.batcher.evaluate(rows);
+				} catch (IllegalStateException ise) {
+					if (version.get() == v) {
+						throw ise;
+					}
+				}
+			}
+		}
+
+		private void reload(File from) throws IOException,
+				InvalidFormatException {
+			/**
+			 * Reads and compiles a file, away from the evaluation path, and
+			 * swaps the result in, after which the file is the one reloaded
+			 * when it changes. A failure is recorded, and thrown, and leaves
+			 * the current version and file in place
+			 */
+
+			long start = System.nanoTime();
+			try {
+				Model model = from.getName().endsWith(".fisb") ? BinaryFIS
+						.readModel(from) : FISReader.read(from);
+				Version next = compile(name, model);
+				file = from;
+				swap(next, System.nanoTime() - start);
+			} catch (IOException io) {
+				fail(io);
+				throw io;
+			} catch (InvalidFormatException ife) {
+				fail(ife);
+				throw ife;
+			} catch (IllegalArgumentException iae) {
+				InvalidFormatException ife = new InvalidFormatException(
+						iae.getMessage());
+				fail(ife);
+				throw ife;
+			}
+		}
+
+		private void swap(Version next, long nanos) {
+			next.number = versions.incrementAndGet();
+			Version old = version.getAndSet(next);
+			if (old != null) {
+				old.batcher.retire();
+			}
+			lastReloadNanos = nanos;
+			reloadTimes.record(nanos);
+			lastError = null;
+		}
+
+		private void fail(Exception e) {
+			reloadFailures.incrementAndGet();
+			lastError = e;
+		}
+
+		/*
+		 * Data Retrieval Methods
+		 */
+
+		public String getName() {
+			return name;
+		}
+
+		public File getFile() {
+			return file;
+		}
+
+		public Version getVersion() {
+			return version.get();
+		}
+
+		public LatencyHistogram getLatency() {
+			return latency;
+		}
+
+		public LatencyHistogram getReloadTimes() {
+			/**
+			 * Returns how long each version took to read and compile
+			 */
+			return reloadTimes;
+		}
+
+		public long getReloadFailures() {
+			return reloadFailures.get();
+		}
+
+		public long getLastReloadNanos() {
+			return lastReloadNanos;
+		}
+
+		public Exception getLastError() {
+			/**
+			 * Returns why the last reload failed
+			 * 
+			 * @return Exception, or null if the last reload succeeded
+			 */
+			return lastError;
+		}
+	}
+
+	/*
+	 * Version Sub Class
+	 */
+
+	public static class Version {
+
+		private final String[] inputs;
+		private final String[] outputs;
+		private final MicroBatcher batcher;
+		private volatile int number;
+		private final long loadedAt = System.currentTimeMillis();
+
+		private Version(String[] inputs, String[] outputs, MicroBatcher batcher) {
+			this.inputs = inputs;
+			this.outputs = outputs;
+			this.batcher = batcher;
+		}
+
+		public String[] getInputNames() {
+			return inputs.clone();
+		}
+
+		public String[] getOutputNames() {
+			return outputs.clone();
+		}
+
+		public MicroBatcher getBatcher() {
+			return batcher;
+		}
+
+		public int getNumber() {
+			/**
+			 * Returns which version of its name this is, counting from 1
+			 */
+			return number;
+		}
+
+		public long getLoadedAt() {
+			/**
+			 * Returns when this version was compiled, in milliseconds since
+			 * the epoch
+			 */
+			return loadedAt;
+		}
+	}
+}
@@ -0,0 +1,92 @@
+/**
+ * MembershipFunctionTest Class
+ * Checks membership functions at points worked out by hand, that a run of
+ * values gives exactly what the values would one at a time, and that the
+ * constants a function is evaluated from follow its parameters
+ *
+ * @author Craig Knott
+ */
+
+package data;
+
+import junit.framework.TestCase;
+
+public class MembershipFunctionTest extends TestCase {
+
+	/*
+	 * A function of every type with a degree of membership, by type number
+	 */
+	private static final double[][] PARAMS = { { 1.5, 5, 1 },
+			{ 1.5, 4, 0.5, 6, 0.9 }, { 1, 5, 9, 1 }, { 1, 3, 7, 9, 0.75 },
+			null, null, { 2, 2.5, 5, 1 }, { 2, 5, 1 }, { 2, 3, 2, 7, 1 },
+			{ 2, 3, -2, 7, 0.8 }, { 1, 4, 6, 9, 1 }, { 2, 8, 1 },
+			{ 2, 8, 1 }, { 5.25, 0.5 } };
+
+	public void testKnownPoints() {
+		assertEquals(1, mf(0).degree(5), 0);
+		assertEquals(Math.exp(-0.5), mf(0).degree(6.5), 1e-15);
+		assertEquals(0.9, mf(1).degree(5), 0);
+		assertEquals(0, mf(2).degree(1), 0);
+		assertEquals(0.5, mf(2).degree(3), 0);
+		assertEquals(1, mf(2).degree(5), 0);
+		assertEquals(0.75, mf(3).degree(5), 0);
+		assertEquals(0.375, mf(3).degree(8), 0);
+		assertEquals(0.5, mf(6).degree(3), 1e-15);
+		assertEquals(0.5, mf(7).degree(5), 0);
+		assertEquals(1, mf(10).degree(5), 0);
+		assertEquals(0.5, mf(10).degree(2.5), 1e-15);
+		assertEquals(0, mf(11).degree(2), 0);
+		assertEquals(1, mf(11).degree(8), 0);
+		assertEquals(1, mf(12).degree(2), 0);
+		assertEquals(0, mf(12).degree(8), 0);
+		assertEquals(0.5, mf(13).degree(5.25), 0);
+		assertEquals(0, mf(13).degree(5.2), 0);
+	}
+
+	public void testRunsMatchSingleValues() {
+		double[] xs = new double[2001];
+		for (int j = 0; j < xs.length; j++) {
+			xs[j] = -1 + j * 0.006;
+		}
+		double[] out = new double[xs.length];
+		for (int t = 0; t < PARAMS.length; t++) {
+			if (PARAMS[t] == null) {
+				continue;
+			}
+			MembershipFunction mf = mf(t);
+			mf.degrees(xs, out, 0, xs.length);
+			for (int j = 0; j < xs.length; j++) {
+				assertEquals("type " + t + " at " + xs[j], mf.degree(xs[j]),
+						out[j], 0);
+			}
+		}
+	}
+
+	public void testParametersChanged() {
+		MembershipFunction mf = mf(Constants.MEMBERSHIPFUNCTION_TRAPEZOIDAL);
+		mf.trapezoidalCreator(new double[] { 0, 2, 4, 6, 1 });
+		assertEquals(0.5, mf.degree(1), 0);
+		assertEquals(1, mf.degree(3), 0);
+		assertEquals(0.5, mf.degree(5), 0);
+	}
+
+	public void testNoDegree() {
+		MembershipFunction[] outputs = {
+				new MembershipFunction("c", Constants.MEMBERSHIPFUNCTION_CONSTANT,
+						new double[] { 3 }),
+				new MembershipFunction("l", Constants.MEMBERSHIPFUNCTION_LINEAR,
+						new double[] { 1, 2 }) };
+		for (int i = 0; i < outputs.length; i++) {
+			try {
+				outputs[i].degree(0);
+				fail(outputs[i].getName() + " gave a degree of membership");
+			} catch (UnsupportedOperationException expected) {
+			}
+		}
+	}
+
+	private static MembershipFunction mf(int type) {
+		return new MembershipFunction("f", type, PARAMS[type]);
+	}
+
+}
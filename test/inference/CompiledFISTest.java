@@ -0,0 +1,67 @@
+/**
+ * CompiledFISTest Class
+ * Checks that operators a slot cannot use are rejected when a system is
+ * compiled, rather than evaluated as some other operator
+ *
+ * @author Craig Knott
+ */
+
+package inference;
+
+import io.FISReader;
+import io.InvalidFormatException;
+import junit.framework.TestCase;
+import data.Model;
+
+public class CompiledFISTest extends TestCase {
+
+	private static final String SYSTEM = "[System]\n" + "Type='mamdani'\n"
+			+ "NumInputs=1\n" + "NumOutputs=1\n" + "NumRules=1\n" + "\n"
+			+ "[Input1]\n" + "Name='x'\n" + "Range=[0 10]\n" + "NumMFs=1\n"
+			+ "MF1='low':'trimf',[0 0 10 1]\n" + "\n" + "[Output1]\n"
+			+ "Name='z'\n" + "Range=[0 10]\n" + "NumMFs=1\n"
+			+ "MF1='low':'trimf',[0 0 10 1]\n" + "\n" + "[Rules]\n"
+			+ "1, 1 (1) : 1\n";
+
+	public void testSupportedOperators() throws InvalidFormatException {
+		String[][] slots = { { "and", "min" }, { "and", "prod" },
+				{ "or", "max" }, { "or", "probor" }, { "imp", "min" },
+				{ "imp", "prod" }, { "agg", "max" }, { "agg", "sum" },
+				{ "agg", "probor" } };
+		for (int s = 0; s < slots.length; s++) {
+			Model model = FISReader.read(SYSTEM);
+			set(model, slots[s][0], slots[s][1]);
+			CompiledFIS.compile(model);
+		}
+	}
+
+	public void testUnsupportedOperators() throws InvalidFormatException {
+		String[][] slots = { { "and", "max" }, { "and", "sum" },
+				{ "or", "min" }, { "or", "sum" }, { "imp", "max" },
+				{ "imp", "probor" }, { "agg", "min" }, { "agg", "prod" } };
+		for (int s = 0; s < slots.length; s++) {
+			Model model = FISReader.read(SYSTEM);
+			set(model, slots[s][0], slots[s][1]);
+			try {
+				CompiledFIS.compile(model);
+				fail(slots[s][0] + " method " + slots[s][1] + " was accepted");
+			} catch (IllegalArgumentException expected) {
+				assertTrue(expected.getMessage(), expected.getMessage()
+						.contains("'" + slots[s][1] + "'"));
+			}
+		}
+	}
+
+	private static void set(Model model, String slot, String method) {
+		if (slot.equals("and")) {
+			model.setAndMethod(method);
+		} else if (slot.equals("or")) {
+			model.setOrMethod(method);
+		} else if (slot.equals("imp")) {
+			model.setImpMethod(method);
+		} else {
+			model.setAggMethod(method);
+		}
+	}
+
+}
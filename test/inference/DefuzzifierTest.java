@@ -0,0 +1,161 @@
+/**
+ * DefuzzifierTest Class
+ * Checks the exact, piecewise linear defuzzification against the same system
+ * sampled finely, for every method and every operator it applies to, and the
+ * heights of the piecewise linear sets it works on
+ *
+ * @author Craig Knott
+ */
+
+package inference;
+
+import io.FISReader;
+import io.InvalidFormatException;
+import junit.framework.TestCase;
+import data.Model;
+
+public class DefuzzifierTest extends TestCase {
+
+	/*
+	 * The consequents are flat topped, or peak alone, and none is summed with
+	 * its own complement, so that no two separate maxima tie exactly; where
+	 * they do the methods taking the maximum are discontinuous, and a sampled
+	 * curve cannot be expected to agree
+	 */
+	private static final String SYSTEM = "[System]\n" + "Name='tipper'\n"
+			+ "Type='mamdani'\n" + "NumInputs=2\n" + "NumOutputs=1\n"
+			+ "NumRules=4\n" + "\n" + "[Input1]\n" + "Name='service'\n"
+			+ "Range=[0 10]\n" + "NumMFs=3\n"
+			+ "MF1='poor':'gaussmf',[1.5 0 1]\n"
+			+ "MF2='good':'gaussmf',[1.5 5 1]\n"
+			+ "MF3='excellent':'gaussmf',[1.5 10 1]\n" + "\n" + "[Input2]\n"
+			+ "Name='food'\n" + "Range=[0 10]\n" + "NumMFs=2\n"
+			+ "MF1='rancid':'trapmf',[-1 0 1 3 1]\n"
+			+ "MF2='delicious':'trapmf',[7 9 10 11 1]\n" + "\n"
+			+ "[Output1]\n" + "Name='tip'\n" + "Range=[0 30]\n"
+			+ "NumMFs=4\n" + "MF1='cheap':'trapmf',[0 2 6 10 1]\n"
+			+ "MF2='average':'trimf',[8 15 20 1]\n"
+			+ "MF3='generous':'trapmf',[18 24 27 30 1]\n"
+			+ "MF4='lavish':'trimf',[26 30 34 1]\n" + "\n"
+			+ "[Rules]\n" + "1 1, 1 (1) : 2\n" + "2 0, 2 (1) : 1\n"
+			+ "3 2, 3 (1) : 2\n" + "0 -1, -4 (0.5) : 1\n";
+
+	private static final String[] METHODS = { "centroid", "bisector", "mom",
+			"som", "lom" };
+
+	/*
+	 * Points the sampled system is evaluated at. The exact system is
+	 * compiled with few, so that falling back to sampling would show
+	 */
+	private static final int FINE = 100001;
+	private static final int COARSE = 101;
+
+	public void testMinMax() throws InvalidFormatException {
+		compareAll("min", "max");
+	}
+
+	public void testMinSum() throws InvalidFormatException {
+		compareAll("min", "sum");
+	}
+
+	public void testProdMax() throws InvalidFormatException {
+		compareAll("prod", "max");
+	}
+
+	public void testProdSum() throws InvalidFormatException {
+		compareAll("prod", "sum");
+	}
+
+	public void testSampledCurve() {
+		/**
+		 * Checks each method on a curve worked out by hand, sampled at 0 to
+		 * 8: up to 1 over [0, 2], flat to 4, then down to 0.5 at 6 and flat
+		 * to 8. Its area is 5.75 and its moment 23.75
+		 */
+
+		double[] curve = { 0, 0.5, 1, 1, 1, 0.75, 0.5, 0.5, 0.5 };
+		assertEquals(23.75 / 5.75,
+				Defuzzifier.defuzzify("centroid", curve, 0, 8), 1e-12);
+		assertEquals(4, Defuzzifier.defuzzify("bisector", curve, 0, 8), 0);
+		assertEquals(3, Defuzzifier.defuzzify("mom", curve, 0, 8), 0);
+		assertEquals(2, Defuzzifier.defuzzify("som", curve, 0, 8), 0);
+		assertEquals(4, Defuzzifier.defuzzify("lom", curve, 0, 8), 0);
+
+		// an empty curve gives the middle of the range
+		assertEquals(5, Defuzzifier.defuzzify("mom", new double[11], 0, 10), 0);
+	}
+
+	public void testValue() {
+		/**
+		 * A set rising straight up to 0.5 at 2, to 1 at 4, flat to 6, then
+		 * straight down to 0.25 until 8. On a vertical edge the height is
+		 * that of its first vertex, including at the very first vertex
+		 */
+
+		PiecewiseLinear p = new PiecewiseLinear();
+		p.add(2, 0.5);
+		p.add(4, 1);
+		p.add(6, 1);
+		p.add(6, 0.25);
+		p.add(8, 0.25);
+
+		double[] xs = { 1, 2, 3, 4, 5, 6, 7, 8, 9 };
+		double[] ys = { 0, 0.5, 0.75, 1, 1, 1, 0.25, 0.25, 0 };
+		for (int i = 0; i < xs.length; i++) {
+			assertEquals("at " + xs[i], ys[i], p.value(xs[i]), 0);
+		}
+
+		// sets which start above 0, at the ends of their range
+		p.complement(2, 4, 6, 8, 1, 0, 10);
+		assertEquals(1, p.value(0), 0);
+		assertEquals(0.5, p.value(3), 0);
+		assertEquals(1, p.value(10), 0);
+		assertEquals(0, p.value(-1e-9), 0);
+
+		p.trapezoid(0, 2, 4, 6, 1);
+		p.restrict(1, 5);
+		assertEquals(0.5, p.value(1), 0);
+		assertEquals(0.5, p.value(5), 0);
+	}
+
+	private static void compareAll(String imp, String agg)
+			throws InvalidFormatException {
+		for (int m = 0; m < METHODS.length; m++) {
+			compare(imp, agg, METHODS[m]);
+		}
+	}
+
+	private static void compare(String imp, String agg, String defuzz)
+			throws InvalidFormatException {
+		/**
+		 * Evaluates a grid of inputs both ways. The two may differ by the
+		 * spacing of the samples, twice over for the methods that find an
+		 * edge of a plateau
+		 */
+
+		Model model = FISReader.read(SYSTEM);
+		model.setImpMethod(imp);
+		model.setAggMethod(agg);
+		model.setDefuzzMethod(defuzz);
+
+		CompiledFIS exact = CompiledFIS.compile(model, COARSE, true);
+		CompiledFIS sampled = CompiledFIS.compile(model, FINE, false);
+		CompiledFIS.Workspace exactWs = exact.newWorkspace();
+		CompiledFIS.Workspace sampledWs = sampled.newWorkspace();
+
+		double tolerance = 2 * 30.0 / (FINE - 1);
+		double[] inputs = new double[2];
+		double[] expected = new double[1];
+		double[] actual = new double[1];
+		for (inputs[0] = 0.05; inputs[0] <= 10; inputs[0] += 0.37) {
+			for (inputs[1] = 0.05; inputs[1] <= 10; inputs[1] += 0.41) {
+				sampled.evaluate(inputs, expected, sampledWs);
+				exact.evaluate(inputs, actual, exactWs);
+				assertEquals(imp + "/" + agg + "/" + defuzz + " at "
+						+ inputs[0] + ", " + inputs[1], expected[0],
+						actual[0], tolerance);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,114 @@
+/**
+ * FuzzificationCacheTest Class
+ * Checks the cache against a plain model of the CLOCK algorithm, so that an
+ * entry lost from its probe run when another is evicted shows up as a miss
+ * the model does not make
+ *
+ * @author Craig Knott
+ */
+
+package inference;
+
+import java.util.Random;
+
+import io.FISReader;
+import io.InvalidFormatException;
+import junit.framework.TestCase;
+
+public class FuzzificationCacheTest extends TestCase {
+
+	private static final String SYSTEM = "[System]\n" + "Type='mamdani'\n"
+			+ "NumInputs=1\n" + "NumOutputs=1\n" + "NumRules=1\n" + "\n"
+			+ "[Input1]\n" + "Name='x'\n" + "Range=[0 10]\n" + "NumMFs=3\n"
+			+ "MF1='low':'gaussmf',[2 0 1]\n"
+			+ "MF2='middle':'trimf',[2 5 8 1]\n"
+			+ "MF3='high':'smf',[5 10 1]\n" + "\n" + "[Output1]\n"
+			+ "Name='z'\n" + "Range=[0 10]\n" + "NumMFs=1\n"
+			+ "MF1='low':'trimf',[0 0 10 1]\n" + "\n" + "[Rules]\n"
+			+ "1, 1 (1) : 1\n";
+
+	public void testAgainstModel() throws InvalidFormatException {
+		CompiledFIS fis = CompiledFIS.compile(FISReader.read(SYSTEM));
+		Random random = new Random(7);
+		for (int capacity = 1; capacity <= 24; capacity++) {
+			check(fis, capacity, random);
+		}
+	}
+
+	public void testClear() throws InvalidFormatException {
+		CompiledFIS fis = CompiledFIS.compile(FISReader.read(SYSTEM));
+		FuzzificationCache cache = new FuzzificationCache(fis, 0, 4);
+		double[] out = new double[3];
+		cache.fuzzify(1, out, 0, 1);
+		cache.fuzzify(1, out, 0, 1);
+		cache.clear();
+		assertEquals(0, cache.getSize());
+		cache.fuzzify(1, out, 0, 1);
+		assertEquals(1, cache.getHits());
+		assertEquals(2, cache.getMisses());
+		assertEquals(1.0 / 3, cache.getHitRate(), 1e-15);
+	}
+
+	private static void check(CompiledFIS fis, int capacity, Random random) {
+		/**
+		 * Looks up values drawn from a few times more than the cache holds,
+		 * some far more often than others, and after each checks the degrees
+		 * given and that the cache has hit, missed and evicted just as the
+		 * model has
+		 */
+
+		FuzzificationCache cache = new FuzzificationCache(fis, 0, capacity);
+		double[] values = new double[capacity * 3];
+		for (int v = 0; v < values.length; v++) {
+			values[v] = random.nextDouble() * 10;
+		}
+
+		double[] held = new double[capacity];
+		boolean[] referenced = new boolean[capacity];
+		int size = 0;
+		int hand = 0;
+		long hits = 0;
+		long evictions = 0;
+
+		double[] out = new double[7];
+		for (int step = 0; step < 4000; step++) {
+			int v = random.nextInt(4) == 0 ? random.nextInt(values.length)
+					: random.nextInt(Math.max(1, capacity / 2 + 1));
+			double x = values[v];
+			cache.fuzzify(x, out, 1, 2);
+			for (int k = 0; k < 3; k++) {
+				assertEquals(fis.degree(k, x), out[1 + 2 * k], 0);
+			}
+
+			int e = 0;
+			while (e < size && held[e] != x) {
+				e++;
+			}
+			if (e < size) {
+				hits++;
+				referenced[e] = true;
+			} else {
+				if (size < capacity) {
+					e = size++;
+				} else {
+					while (referenced[hand]) {
+						referenced[hand] = false;
+						hand = (hand + 1) % capacity;
+					}
+					e = hand;
+					hand = (hand + 1) % capacity;
+					evictions++;
+				}
+				held[e] = x;
+				referenced[e] = false;
+			}
+
+			String at = "capacity " + capacity + ", step " + step;
+			assertEquals(at, hits, cache.getHits());
+			assertEquals(at, step + 1 - hits, cache.getMisses());
+			assertEquals(at, evictions, cache.getEvictions());
+			assertEquals(at, size, cache.getSize());
+		}
+	}
+
+}
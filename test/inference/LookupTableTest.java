@@ -0,0 +1,143 @@
+/**
+ * LookupTableTest Class
+ * Checks that a table gives the system's outputs at its grid points,
+ * interpolates between them, and clamps inputs outside the range of their
+ * variables
+ *
+ * @author Craig Knott
+ */
+
+package inference;
+
+import io.FISReader;
+import io.InvalidFormatException;
+import junit.framework.TestCase;
+
+public class LookupTableTest extends TestCase {
+
+	/*
+	 * A system whose output is the plane z = 2x - 3y + 1 over the whole of
+	 * its inputs, which multilinear interpolation reproduces exactly
+	 */
+	private static final String PLANE = "[System]\n" + "Type='sugeno'\n"
+			+ "NumInputs=2\n" + "NumOutputs=1\n" + "NumRules=1\n"
+			+ "DefuzzMethod='wtaver'\n" + "\n"
+			+ "[Input1]\n" + "Name='x'\n" + "Range=[0 10]\n" + "NumMFs=1\n"
+			+ "MF1='any':'trapmf',[-1 0 10 11 1]\n" + "\n" + "[Input2]\n"
+			+ "Name='y'\n" + "Range=[-2 2]\n" + "NumMFs=1\n"
+			+ "MF1='any':'trapmf',[-3 -2 2 3 1]\n" + "\n" + "[Output1]\n"
+			+ "Name='z'\n" + "Range=[-100 100]\n" + "NumMFs=1\n"
+			+ "MF1='plane':'linear',[2 -3 1]\n" + "\n" + "[Rules]\n"
+			+ "1 1, 1 (1) : 1\n";
+
+	private static final String CURVED = "[System]\n" + "Type='mamdani'\n"
+			+ "NumInputs=2\n" + "NumOutputs=2\n" + "NumRules=3\n" + "\n"
+			+ "[Input1]\n" + "Name='x'\n" + "Range=[0 10]\n" + "NumMFs=2\n"
+			+ "MF1='low':'gaussmf',[3 0 1]\n"
+			+ "MF2='high':'gaussmf',[3 10 1]\n" + "\n" + "[Input2]\n"
+			+ "Name='y'\n" + "Range=[0 10]\n" + "NumMFs=1\n"
+			+ "MF1='middle':'trimf',[0 5 10 1]\n" + "\n" + "[Output1]\n"
+			+ "Name='z'\n" + "Range=[0 10]\n" + "NumMFs=2\n"
+			+ "MF1='low':'trimf',[0 0 10 1]\n"
+			+ "MF2='high':'trimf',[0 10 10 1]\n" + "\n" + "[Output2]\n"
+			+ "Name='w'\n" + "Range=[0 1]\n" + "NumMFs=1\n"
+			+ "MF1='some':'trimf',[0 0.5 1 1]\n" + "\n" + "[Rules]\n"
+			+ "1 0, 1 1 (1) : 1\n" + "2 1, 2 0 (1) : 1\n"
+			+ "0 -1, 0 1 (0.5) : 1\n";
+
+	public void testPlane() throws InvalidFormatException {
+		LookupTable table = LookupTable.build(
+				CompiledFIS.compile(FISReader.read(PLANE)), new int[] { 5, 9 });
+		double[] xs = { 0, 0.3, 2.5, 4.99, 7, 10 };
+		double[] ys = { -2, -1.7, 0, 0.2, 1.5, 2 };
+		for (double x : xs) {
+			for (double y : ys) {
+				assertEquals(x + ", " + y, 2 * x - 3 * y + 1,
+						table.evaluate(new double[] { x, y })[0], 1e-12);
+			}
+		}
+	}
+
+	public void testGridAndCells() throws InvalidFormatException {
+		/**
+		 * At grid points the table holds the system's outputs, and at the
+		 * middle of a cell it gives the mean of the cell's corners
+		 */
+
+		CompiledFIS fis = CompiledFIS.compile(FISReader.read(CURVED));
+		LookupTable table = LookupTable.build(fis, 5);
+		for (int a = 0; a < 4; a++) {
+			for (int b = 0; b < 4; b++) {
+				double[] mean = new double[2];
+				for (int c = 0; c < 4; c++) {
+					double[] corner = exact(fis, (a + c / 2) * 2.5,
+							(b + c % 2) * 2.5);
+					assertArrayEquals(corner, table.evaluate(new double[] {
+							(a + c / 2) * 2.5, (b + c % 2) * 2.5 }), 0);
+					mean[0] += corner[0] / 4;
+					mean[1] += corner[1] / 4;
+				}
+				assertArrayEquals(mean, table.evaluate(new double[] {
+						a * 2.5 + 1.25, b * 2.5 + 1.25 }), 1e-12);
+			}
+		}
+	}
+
+	public void testClamped() throws InvalidFormatException {
+		/**
+		 * Inputs beyond either end of their range, and NaN, are answered as
+		 * the nearest end, NaN as the lower
+		 */
+
+		CompiledFIS fis = CompiledFIS.compile(FISReader.read(CURVED));
+		LookupTable table = LookupTable.build(fis, 5);
+		assertArrayEquals(exact(fis, 0, 10), table.evaluate(new double[] {
+				-3, 25 }), 0);
+		assertArrayEquals(exact(fis, 10, 0), table.evaluate(new double[] {
+				Double.POSITIVE_INFINITY, -1e300 }), 0);
+		assertArrayEquals(exact(fis, 0, 5), table.evaluate(new double[] {
+				Double.NaN, 5 }), 0);
+		assertArrayEquals(table.evaluate(new double[] { 10, 3.3 }),
+				table.evaluate(new double[] { 10.5, 3.3 }), 0);
+	}
+
+	public void testErrors() throws InvalidFormatException {
+		CompiledFIS fis = CompiledFIS.compile(FISReader.read(CURVED));
+		try {
+			LookupTable.build(fis, new int[] { 5, 1 });
+			fail("A grid of 1 point was accepted");
+		} catch (IllegalArgumentException expected) {
+		}
+		try {
+			LookupTable.build(fis, new int[] { 5 });
+			fail("Too few grid sizes were accepted");
+		} catch (IllegalArgumentException expected) {
+		}
+		try {
+			LookupTable.build(fis).evaluate(new double[] { 1 });
+			fail("Too few inputs were accepted");
+		} catch (IllegalArgumentException expected) {
+		}
+
+		LookupTable table = LookupTable.build(fis, 65);
+		LookupTable.ErrorReport report = table.measureError(2000, 3);
+		assertEquals(2000, report.getSamples());
+		assertTrue(report.toString(), report.getMaxError() < 0.05);
+		assertTrue(report.getMeanError(0) <= report.getMaxError(0));
+	}
+
+	private static double[] exact(CompiledFIS fis, double x, double y) {
+		double[] out = new double[fis.getNumOutputs()];
+		fis.evaluate(new double[] { x, y }, out, fis.newWorkspace());
+		return out;
+	}
+
+	private static void assertArrayEquals(double[] expected, double[] actual,
+			double delta) {
+		assertEquals(expected.length, actual.length);
+		for (int i = 0; i < expected.length; i++) {
+			assertEquals(expected[i], actual[i], delta);
+		}
+	}
+
+}
@@ -0,0 +1,154 @@
+/**
+ * ParallelEvaluatorTest Class
+ * Checks that a batch split between workers gives the same outputs as one
+ * evaluated whole, and that an interrupted evaluation hands out no more work
+ * but waits for the workers already running before it returns
+ *
+ * @author Craig Knott
+ */
+
+package inference;
+
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.FISReader;
+import io.InvalidFormatException;
+import junit.framework.TestCase;
+
+public class ParallelEvaluatorTest extends TestCase {
+
+	private static final String SYSTEM = "[System]\n" + "Type='mamdani'\n"
+			+ "NumInputs=2\n" + "NumOutputs=1\n" + "NumRules=2\n" + "\n"
+			+ "[Input1]\n" + "Name='x'\n" + "Range=[0 10]\n" + "NumMFs=2\n"
+			+ "MF1='low':'gaussmf',[3 0 1]\n"
+			+ "MF2='high':'gaussmf',[3 10 1]\n" + "\n" + "[Input2]\n"
+			+ "Name='y'\n" + "Range=[0 10]\n" + "NumMFs=1\n"
+			+ "MF1='middle':'trimf',[0 5 10 1]\n" + "\n" + "[Output1]\n"
+			+ "Name='z'\n" + "Range=[0 10]\n" + "NumMFs=2\n"
+			+ "MF1='low':'trimf',[0 0 10 1]\n"
+			+ "MF2='high':'trimf',[0 10 10 1]\n" + "\n" + "[Rules]\n"
+			+ "1 1, 1 (1) : 1\n" + "2 0, 2 (1) : 1\n";
+
+	public void testMatchesBatch() throws InvalidFormatException,
+			InterruptedException {
+		CompiledFIS fis = CompiledFIS.compile(FISReader.read(SYSTEM));
+		int rows = 10000;
+		double[][] columns = new double[2][rows];
+		for (int r = 0; r < rows; r++) {
+			columns[0][r] = r % 101 / 10.0;
+			columns[1][r] = r % 37 / 3.6;
+		}
+		double[][] expected = new double[1][rows];
+		new BatchEvaluator(fis).evaluate(columns, expected);
+
+		ParallelEvaluator parallel = new ParallelEvaluator(fis, 4);
+		try {
+			parallel.setChunkSize(700);
+			assertEquals(1024, parallel.getChunkSize());
+			double[][] out = new double[1][rows];
+			parallel.evaluate(columns, out, rows - 3);
+			for (int r = 0; r < rows; r++) {
+				assertEquals(r < rows - 3 ? expected[0][r] : 0, out[0][r], 0);
+			}
+		} finally {
+			parallel.shutdown();
+		}
+	}
+
+	public void testInterrupted() throws Exception {
+		/**
+		 * Interrupts the caller while the only thread of the executor is part
+		 * way through a piece of work. The caller must stay until that piece
+		 * is finished, the worker must take no more pieces, and the worker
+		 * queued behind it must never run
+		 */
+
+		ExecutorService executor = Executors.newFixedThreadPool(1);
+		try {
+			final AtomicInteger next = new AtomicInteger();
+			final CountDownLatch started = new CountDownLatch(1);
+			final CountDownLatch release = new CountDownLatch(1);
+			final AtomicInteger pieces = new AtomicInteger();
+			final AtomicBoolean queuedRan = new AtomicBoolean();
+
+			final ArrayList<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+			tasks.add(new Callable<Void>() {
+				public Void call() throws InterruptedException {
+					while (next.getAndIncrement() < 100) {
+						started.countDown();
+						release.await();
+						pieces.incrementAndGet();
+					}
+					return null;
+				}
+			});
+			tasks.add(new Callable<Void>() {
+				public Void call() {
+					queuedRan.set(true);
+					return null;
+				}
+			});
+
+			final AtomicReference<Throwable> thrown = new AtomicReference<Throwable>();
+			final AtomicInteger piecesOnReturn = new AtomicInteger(-1);
+			final ExecutorService pool = executor;
+			Thread caller = new Thread(new Runnable() {
+				public void run() {
+					try {
+						ParallelEvaluator.runWorkers(pool, tasks, next, 100);
+					} catch (Throwable t) {
+						thrown.set(t);
+					}
+					piecesOnReturn.set(pieces.get());
+				}
+			});
+			caller.start();
+
+			started.await();
+			caller.interrupt();
+			caller.join(200);
+			assertTrue("Returned while a worker was still running",
+					caller.isAlive());
+
+			release.countDown();
+			caller.join(10000);
+			assertFalse(caller.isAlive());
+			assertTrue(String.valueOf(thrown.get()),
+					thrown.get() instanceof InterruptedException);
+			assertEquals(1, piecesOnReturn.get());
+			assertEquals(1, pieces.get());
+			assertFalse(queuedRan.get());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	public void testWorkerFailure() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			ArrayList<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+			tasks.add(new Callable<Void>() {
+				public Void call() {
+					throw new IllegalStateException("broken worker");
+				}
+			});
+			try {
+				ParallelEvaluator.runWorkers(executor, tasks,
+						new AtomicInteger(), 1);
+				fail("A worker's failure was lost");
+			} catch (IllegalStateException expected) {
+				assertEquals("broken worker", expected.getMessage());
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+}
@@ -0,0 +1,60 @@
+/**
+ * SugenoTest Class
+ * Checks Sugeno systems against results worked out by hand
+ *
+ * @author Craig Knott
+ */
+
+package inference;
+
+import io.FISReader;
+import io.InvalidFormatException;
+import junit.framework.TestCase;
+import data.Model;
+
+public class SugenoTest extends TestCase {
+
+	private static final String SUGENO = "[System]\n" + "Type='sugeno'\n"
+			+ "NumInputs=2\n" + "NumOutputs=1\n" + "NumRules=2\n"
+			+ "AndMethod='prod'\n" + "DefuzzMethod='wtaver'\n" + "\n"
+			+ "[Input1]\n" + "Name='x'\n" + "Range=[0 10]\n" + "NumMFs=2\n"
+			+ "MF1='low':'trimf',[0 0 10 1]\n"
+			+ "MF2='high':'trimf',[0 10 10 1]\n" + "\n" + "[Input2]\n"
+			+ "Name='y'\n" + "Range=[0 10]\n" + "NumMFs=1\n"
+			+ "MF1='any':'trapmf',[-1 0 10 11 1]\n" + "\n" + "[Output1]\n"
+			+ "Name='z'\n" + "Range=[0 100]\n" + "NumMFs=2\n"
+			+ "MF1='flat':'constant',[5]\n"
+			+ "MF2='slope':'linear',[2 3 1]\n" + "\n" + "[Rules]\n"
+			+ "1 1, 1 (1) : 1\n" + "2 1, 2 (0.5) : 1\n";
+
+	/*
+	 * At x = 4, y = 6 the rules fire at 0.6 and 0.4 * 0.5, giving 5 and
+	 * 2 * 4 + 3 * 6 + 1 = 27
+	 */
+	private static final double[] INPUTS = { 4, 6 };
+
+	public void testWeightedAverage() throws InvalidFormatException {
+		assertEquals((0.6 * 5 + 0.2 * 27) / 0.8, evaluate("wtaver"), 1e-12);
+	}
+
+	public void testWeightedSum() throws InvalidFormatException {
+		assertEquals(0.6 * 5 + 0.2 * 27, evaluate("wtsum"), 1e-12);
+	}
+
+	public void testEngineAgrees() throws InvalidFormatException {
+		Model model = FISReader.read(SUGENO);
+		assertEquals(evaluate("wtaver"),
+				new InferenceEngine(model).evaluate(INPUTS)[0], 0);
+	}
+
+	private static double evaluate(String defuzz)
+			throws InvalidFormatException {
+		Model model = FISReader.read(SUGENO);
+		model.setDefuzzMethod(defuzz);
+		CompiledFIS fis = CompiledFIS.compile(model);
+		double[] out = new double[1];
+		fis.evaluate(INPUTS, out, fis.newWorkspace());
+		return out[0];
+	}
+
+}
@@ -0,0 +1,139 @@
+/**
+ * AtomicFileTest Class
+ * Checks that files are replaced through a temporary file beside them, and
+ * that no temporary file is left behind
+ *
+ * @author Craig Knott
+ */
+
+package io;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Set;
+
+import junit.framework.TestCase;
+import data.Model;
+
+public class AtomicFileTest extends TestCase {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private File dir;
+
+	protected void setUp() throws IOException {
+		dir = Files.createTempDirectory("atomic").toFile();
+	}
+
+	protected void tearDown() {
+		File[] files = dir.listFiles();
+		for (int i = 0; i < files.length; i++) {
+			files[i].delete();
+		}
+		dir.delete();
+	}
+
+	public void testReplace() throws IOException {
+		File target = new File(dir, "a");
+		replace(target, "first");
+		assertEquals("first", read(target));
+		replace(target, "second");
+		assertEquals("second", read(target));
+		assertEquals(1, dir.list().length);
+	}
+
+	public void testTemporaryBeside() throws IOException {
+		File target = new File(dir, "x.fis");
+		File temporary = AtomicFile.temporaryFor(target);
+		assertEquals(dir.getCanonicalFile(), temporary.getParentFile()
+				.getCanonicalFile());
+		assertFalse(temporary.equals(target));
+		assertTrue(temporary.getName().startsWith(".x.fis."));
+		temporary.delete();
+	}
+
+	public void testWriteModel() throws IOException, InvalidFormatException {
+		/**
+		 * Saves over an existing file, which must then hold the new model and
+		 * nothing else
+		 */
+
+		File target = new File(dir, "m.fis");
+		replace(target, "not a fis file at all, and longer than the model "
+				+ "so that any of it left over would show");
+
+		Model model = new Model();
+		model.setName("saved");
+		FISWriter.write(model, target);
+		assertEquals("saved", FISReader.read(target).getName());
+
+		File binary = new File(dir, "m.fisb");
+		BinaryFIS.write(model, binary);
+		assertEquals("saved", BinaryFIS.readModel(binary).getName());
+		assertEquals(2, dir.list().length);
+	}
+
+	public void testPermissionsKept() throws IOException {
+		/**
+		 * A file readable by others stays so once replaced, and a new file
+		 * gets the same permissions as any other created in the directory
+		 */
+
+		if (!posix()) {
+			return;
+		}
+		File target = new File(dir, "shared.fis");
+		replace(target, "first");
+		File plain = new File(dir, "plain");
+		assertTrue(plain.createNewFile());
+		assertEquals(permissions(plain), permissions(target));
+
+		Set<PosixFilePermission> shared = PosixFilePermissions
+				.fromString("rw-r--r--");
+		Files.setPosixFilePermissions(target.toPath(), shared);
+		replace(target, "second");
+		assertEquals(shared, permissions(target));
+
+		Model model = new Model();
+		FISWriter.write(model, target);
+		assertEquals(shared, permissions(target));
+		File binary = new File(dir, "shared.fisb");
+		BinaryFIS.write(model, binary);
+		Files.setPosixFilePermissions(binary.toPath(), shared);
+		BinaryFIS.write(model, binary);
+		assertEquals(shared, permissions(binary));
+	}
+
+	private static boolean posix() {
+		return FileSystems.getDefault().supportedFileAttributeViews()
+				.contains("posix");
+	}
+
+	private static Set<PosixFilePermission> permissions(File file)
+			throws IOException {
+		return Files.getPosixFilePermissions(file.toPath());
+	}
+
+	private static void replace(File target, String text) throws IOException {
+		File temporary = AtomicFile.temporaryFor(target);
+		FileOutputStream out = new FileOutputStream(temporary);
+		try {
+			out.write(text.getBytes(UTF8));
+			AtomicFile.sync(out);
+		} finally {
+			out.close();
+		}
+		AtomicFile.commit(temporary, target);
+	}
+
+	private static String read(File file) throws IOException {
+		return new String(Files.readAllBytes(file.toPath()), UTF8);
+	}
+
+}
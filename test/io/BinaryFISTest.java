@@ -0,0 +1,93 @@
+/**
+ * BinaryFISTest Class
+ * Checks that every type of membership function survives being written to a
+ * binary file and read back, and that a binary file cut short anywhere is
+ * rejected
+ *
+ * @author Craig Knott
+ */
+
+package io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+
+import junit.framework.TestCase;
+import data.Model;
+
+public class BinaryFISTest extends TestCase {
+
+	private File dir;
+
+	protected void setUp() throws IOException {
+		dir = Files.createTempDirectory("fisb").toFile();
+	}
+
+	protected void tearDown() {
+		File[] files = dir.listFiles();
+		for (int i = 0; i < files.length; i++) {
+			files[i].delete();
+		}
+		dir.delete();
+	}
+
+	public void testMamdani() throws IOException, InvalidFormatException {
+		check(FISRoundTripTest.mamdani());
+	}
+
+	public void testSugeno() throws IOException, InvalidFormatException {
+		check(FISRoundTripTest.sugeno());
+	}
+
+	public void testTruncated() throws IOException, InvalidFormatException {
+		/**
+		 * Cuts a binary file short at every length, and checks each is
+		 * rejected rather than read as a smaller system
+		 */
+
+		File file = new File(dir, "system.fisb");
+		BinaryFIS.write(FISReader.read(FISRoundTripTest.mamdani()), file);
+		byte[] bytes = Files.readAllBytes(file.toPath());
+		BinaryFIS.read(ByteBuffer.wrap(bytes));
+
+		for (int n = 0; n < bytes.length; n++) {
+			try {
+				BinaryFIS.read(ByteBuffer.wrap(bytes, 0, n));
+				fail("A binary fis cut to " + n + " of " + bytes.length
+						+ " bytes was read");
+			} catch (InvalidFormatException expected) {
+			}
+		}
+
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.setLength(bytes.length / 2);
+		} finally {
+			raf.close();
+		}
+		try {
+			BinaryFIS.read(file);
+			fail("A truncated binary fis file was read");
+		} catch (InvalidFormatException expected) {
+			assertEquals("This binary fis file is truncated",
+					expected.getMessage());
+		}
+	}
+
+	private void check(String text) throws IOException,
+			InvalidFormatException {
+		Model model = FISReader.read(text);
+		File file = new File(dir, "system.fisb");
+		BinaryFIS.write(model, file);
+
+		Model again = new Model();
+		BinaryFIS.read(file).unpack(again);
+		FISRoundTripTest.checkFunctions(again);
+		assertEquals(FISRoundTripTest.write(model),
+				FISRoundTripTest.write(again));
+	}
+
+}
@@ -0,0 +1,229 @@
+/**
+ * CsvBatchScorerTest Class
+ * Scores files with a system whose output is its input, so that every number
+ * the scorer parses is written back out and can be checked against
+ * Double.parseDouble, and every output rounded can be checked against
+ * BigDecimal
+ *
+ * @author Craig Knott
+ */
+
+package io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class CsvBatchScorerTest extends TestCase {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/*
+	 * A system whose output z is exactly its input x, by a single rule that
+	 * always fires fully and a weighted sum
+	 */
+	private static final String IDENTITY = "[System]\n" + "Type='sugeno'\n"
+			+ "NumInputs=1\n" + "NumOutputs=1\n" + "NumRules=1\n"
+			+ "DefuzzMethod='wtsum'\n" + "\n" + "[Input1]\n" + "Name='x'\n"
+			+ "Range=[0 10]\n" + "NumMFs=1\n"
+			+ "MF1='any':'trapmf',[-1e308 -1e307 1e307 1e308 1]\n" + "\n"
+			+ "[Output1]\n" + "Name='z'\n" + "Range=[0 10]\n" + "NumMFs=1\n"
+			+ "MF1='same':'linear',[1 0]\n" + "\n" + "[Rules]\n"
+			+ "1, 1 (1) : 1\n";
+
+	public void testNumbers() throws IOException, InvalidFormatException {
+		/**
+		 * Parses numbers which the fast path should take, numbers it must
+		 * leave to Double.parseDouble, and a few thousand made at random,
+		 * each of which must come out as Double.parseDouble reads it
+		 */
+
+		ArrayList<String> numbers = new ArrayList<String>();
+		String[] fixed = { "0", "1", "-1", "+2.25", "0.1", "00012.5000",
+				".5", "5.", "-.75", "1e3", "1E+3", "1.5e-7", "2.5E22",
+				"2.5e23", "1e-22", "1e-23", "1e-300", "4.9e-324",
+				"123456789012345", "1234567890123456789",
+				"0.000000000000000000000000012345",
+				"9007199254740993", "3.141592653589793238462643" };
+		for (String s : fixed) {
+			numbers.add(s);
+		}
+		Random random = new Random(11);
+		for (int n = 0; n < 5000; n++) {
+			numbers.add(randomNumber(random));
+		}
+
+		StringBuilder csv = new StringBuilder("x\n");
+		for (String s : numbers) {
+			csv.append(s).append('\n');
+		}
+		String[] lines = score(new CsvBatchScorer(FISReader.read(IDENTITY)),
+				csv.toString()).split("\n");
+
+		assertEquals("x,z", lines[0]);
+		assertEquals(numbers.size() + 1, lines.length);
+		for (int n = 0; n < numbers.size(); n++) {
+			String text = numbers.get(n);
+			// adding the rule's constant turns -0.0 into 0.0
+			assertEquals(text + "," + (Double.parseDouble(text) + 0.0),
+					lines[n + 1]);
+		}
+	}
+
+	public void testColumns() throws IOException, InvalidFormatException {
+		/**
+		 * Finds the input by name among other columns, copying them through,
+		 * quoted commas included, and reads padded and quoted numbers
+		 */
+
+		String csv = "id,\"a, note\",x\r\n" + "1,\"b, c\", 2.5 \r\n" + "\n"
+				+ "2,d,\"-3\"\r\n";
+		assertEquals("id,\"a, note\",x,z\n" + "1,\"b, c\", 2.5 ,2.5\n"
+				+ "2,d,\"-3\",-3.0\n", score(
+				new CsvBatchScorer(FISReader.read(IDENTITY)), csv));
+
+		CsvBatchScorer scorer = new CsvBatchScorer(FISReader.read(IDENTITY));
+		scorer.setHeader(false);
+		assertEquals("4,4.0\n", score(scorer, "4"));
+	}
+
+	public void testBadNumbers() throws IOException, InvalidFormatException {
+		/**
+		 * A field which is not a number is reported at its line and the
+		 * column it starts at
+		 */
+
+		String[] bad = { "abc", "1.2.3", "--1", "1e", "1 2", "+", ".", "-.",
+				"e5", "1e+", "1d", "1F", "0x1p3", "NaN", "-Infinity",
+				"Infinity", "1_000" };
+		for (String b : bad) {
+			checkBad("x\n1\n" + b + "\n", 3, 1);
+			checkBad("id,x\n1,1\n2,2\n7," + b + "\n", 4, 3);
+		}
+	}
+
+	public void testRounding() throws IOException, InvalidFormatException {
+		/**
+		 * Rounds exact ties, values a hair either side of a tie, values too
+		 * large for the fast path and random values to every precision up to
+		 * 8, each as BigDecimal rounds half up
+		 */
+
+		ArrayList<String> values = new ArrayList<String>();
+		String[] fixed = { "0.5", "1.5", "2.5", "-2.5", "0.125", "-0.125",
+				"2.675", "1.005", "0.045", "-0.0004", "0.9999999",
+				"1234567890.5", "-98765432109.125", "4503599627370495.5",
+				"1e-9", "7" };
+		for (String s : fixed) {
+			values.add(s);
+		}
+		Random random = new Random(5);
+		for (int n = 0; n < 2000; n++) {
+			int p = random.nextInt(9);
+			double tie = (random.nextInt(200000) - 100000 + 0.5)
+					/ Math.pow(10, p);
+			values.add(Double.toString(tie));
+			values.add(Double.toString(Math.nextUp(tie)));
+			values.add(Double.toString(Math.nextAfter(tie,
+					Double.NEGATIVE_INFINITY)));
+			values.add(Double.toString((random.nextDouble() - 0.5)
+					* Math.pow(10, random.nextInt(12))));
+		}
+
+		StringBuilder csv = new StringBuilder("x\n");
+		for (String s : values) {
+			csv.append(s).append('\n');
+		}
+		for (int precision = 0; precision <= 8; precision++) {
+			CsvBatchScorer scorer = new CsvBatchScorer(FISReader.read(IDENTITY));
+			scorer.setPrecision(precision);
+			String[] lines = score(scorer, csv.toString()).split("\n");
+			for (int n = 0; n < values.size(); n++) {
+				String text = values.get(n);
+				assertEquals(precision + ": " + text, text
+						+ ","
+						+ new BigDecimal(Double.parseDouble(text)).setScale(
+								precision, RoundingMode.HALF_UP)
+								.toPlainString(), lines[n + 1]);
+			}
+		}
+
+		CsvBatchScorer scorer = new CsvBatchScorer(FISReader.read(IDENTITY));
+		try {
+			scorer.setPrecision(CsvBatchScorer.MAX_PRECISION + 1);
+			fail("A precision beyond the most was accepted");
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+
+	public void testDecimal() {
+		String[] good = { "0", "-1", "+2.", ".5", "1e3", "1.5E-7", "2e+22",
+				"0012345678901234567890" };
+		for (String g : good) {
+			assertTrue(g, CsvBatchScorer.isDecimal(g));
+		}
+		String[] bad = { "", "-", ".", "e1", "1e", "1e-", "1.2.3", "1d",
+				"0x10", "NaN", "Infinity", " 1", "1 " };
+		for (String b : bad) {
+			assertFalse(b, CsvBatchScorer.isDecimal(b));
+		}
+	}
+
+	/*
+	 * Auxiliary Methods
+	 */
+
+	private static void checkBad(String csv, int line, int column)
+			throws IOException, InvalidFormatException {
+		CsvBatchScorer scorer = new CsvBatchScorer(FISReader.read(IDENTITY));
+		try {
+			score(scorer, csv);
+			fail("'" + csv + "' was scored");
+		} catch (InvalidFormatException expected) {
+			assertEquals(csv, line, expected.getLine());
+			assertEquals(csv, column, expected.getColumn());
+		}
+	}
+
+	private static String randomNumber(Random random) {
+		/**
+		 * Makes a number of 1 to 20 digits, with or without a sign, a point
+		 * and an exponent
+		 */
+
+		StringBuilder sb = new StringBuilder();
+		int sign = random.nextInt(3);
+		sb.append(sign == 0 ? "-" : sign == 1 ? "+" : "");
+		int digits = 1 + random.nextInt(20);
+		int point = random.nextInt(digits + 2) - 1;
+		for (int d = 0; d < digits; d++) {
+			if (d == point) {
+				sb.append('.');
+			}
+			sb.append((char) ('0' + random.nextInt(10)));
+		}
+		if (random.nextBoolean()) {
+			sb.append(random.nextBoolean() ? 'e' : 'E');
+			int e = random.nextInt(61) - 30;
+			sb.append(e >= 0 && random.nextBoolean() ? "+" : "").append(e);
+		}
+		return sb.toString();
+	}
+
+	private static String score(CsvBatchScorer scorer, String csv) throws IOException,
+			InvalidFormatException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		scorer.score(Channels.newChannel(new ByteArrayInputStream(csv
+				.getBytes(UTF8))), Channels.newChannel(out));
+		return new String(out.toByteArray(), UTF8);
+	}
+
+}
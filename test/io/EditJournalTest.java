@@ -0,0 +1,231 @@
+/**
+ * EditJournalTest Class
+ * Checks that a model is recovered from its journal as it was at the last
+ * edit completely written, whether the journal was closed, compacted or left
+ * with its last line torn or damaged
+ *
+ * @author Craig Knott
+ */
+
+package io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+
+import junit.framework.TestCase;
+import data.MembershipFunction;
+import data.Model;
+import data.Variable;
+
+public class EditJournalTest extends TestCase {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final String SYSTEM = "[System]\n" + "Name='tipper'\n"
+			+ "Type='mamdani'\n" + "NumInputs=1\n" + "NumOutputs=1\n"
+			+ "NumRules=3\n" + "\n" + "[Input1]\n" + "Name='service'\n"
+			+ "Range=[0 10]\n" + "NumMFs=3\n"
+			+ "MF1='poor':'gaussmf',[1.5 0 1]\n"
+			+ "MF2='good':'gaussmf',[1.5 5 1]\n"
+			+ "MF3='excellent':'gaussmf',[1.5 10 1]\n" + "\n"
+			+ "[Output1]\n" + "Name='tip'\n" + "Range=[0 30]\n"
+			+ "NumMFs=3\n" + "MF1='cheap':'trimf',[0 5 10 1]\n"
+			+ "MF2='average':'trimf',[10 15 20 1]\n"
+			+ "MF3='generous':'trimf',[20 25 30 1]\n" + "\n" + "[Rules]\n"
+			+ "1, 1 (1) : 1\n" + "2, 2 (1) : 1\n" + "3, 3 (1) : 1\n";
+
+	private File dir;
+	private File file;
+	private Model model;
+	private EditJournal journal;
+
+	protected void setUp() throws IOException, InvalidFormatException {
+		dir = Files.createTempDirectory("journal").toFile();
+		file = new File(dir, "tipper.fis");
+		model = FISReader.read(SYSTEM);
+		FISWriter.write(model, file);
+		journal = new EditJournal(file, model, true);
+	}
+
+	protected void tearDown() {
+		journal.close();
+		File[] files = dir.listFiles();
+		for (int i = 0; i < files.length; i++) {
+			files[i].delete();
+		}
+		dir.delete();
+	}
+
+	public void testReplay() throws IOException, InvalidFormatException {
+		String expected = editAll();
+		journal.close();
+		assertNull(journal.getError());
+		assertTrue(EditJournal.hasJournal(file));
+		assertEquals(expected, write(EditJournal.recover(file)));
+	}
+
+	public void testTornLine() throws IOException, InvalidFormatException {
+		/**
+		 * Cuts the last line of the journal off part way, as a crash while
+		 * it was being written would, and checks only that edit is lost. A
+		 * line missing only its new line is whole, and still replayed
+		 */
+
+		String beforeLast = edit(2);
+		edit(3);
+		journal.close();
+
+		File journalFile = EditJournal.journalFor(file);
+		byte[] bytes = Files.readAllBytes(journalFile.toPath());
+		int last = lastLine(bytes);
+		truncate(journalFile, bytes.length - 1);
+		assertEquals(write(model), write(EditJournal.recover(file)));
+		for (int cut = bytes.length - 2; cut > last; cut -= 3) {
+			truncate(journalFile, cut);
+			assertEquals(beforeLast, write(EditJournal.recover(file)));
+		}
+		truncate(journalFile, last);
+		assertEquals(beforeLast, write(EditJournal.recover(file)));
+	}
+
+	public void testDamagedLine() throws IOException, InvalidFormatException {
+		/**
+		 * Changes one character of the last edit, which its checksum must
+		 * then reject, along with anything after it
+		 */
+
+		String beforeLast = edit(2);
+		edit(3);
+		journal.close();
+
+		File journalFile = EditJournal.journalFor(file);
+		byte[] bytes = Files.readAllBytes(journalFile.toPath());
+		int at = bytes.length - 2;
+		bytes[at] = (byte) (bytes[at] == '1' ? '2' : '1');
+		Files.write(journalFile.toPath(), bytes);
+		assertEquals(beforeLast, write(EditJournal.recover(file)));
+
+		Files.write(journalFile.toPath(), (new String(bytes, UTF8)
+				+ "00000000\tRD\t0\n").getBytes(UTF8));
+		assertEquals(beforeLast, write(EditJournal.recover(file)));
+	}
+
+	public void testCompacted() throws IOException, InvalidFormatException {
+		/**
+		 * Compacts after every edit, so recovery starts from the autosave.
+		 * The file itself is then changed, which must not matter
+		 */
+
+		journal.setCompactEdits(1);
+		String expected = editAll();
+		journal.close();
+		assertTrue(EditJournal.autosaveFor(file).isFile());
+
+		Model other = new Model();
+		other.setName("changed since");
+		FISWriter.write(other, file);
+		assertEquals(expected, write(EditJournal.recover(file)));
+	}
+
+	public void testChangedFile() throws IOException, InvalidFormatException {
+		/**
+		 * A journal whose file has changed, with no autosave to fall back
+		 * on, cannot be applied
+		 */
+
+		edit(1);
+		journal.close();
+		Model other = new Model();
+		other.setName("changed since");
+		FISWriter.write(other, file);
+		try {
+			EditJournal.recover(file);
+			fail("A journal was applied to a file it was not made for");
+		} catch (InvalidFormatException expected) {
+		}
+	}
+
+	public void testDiscard() {
+		edit(1);
+		journal.discard();
+		assertFalse(EditJournal.hasJournal(file));
+		assertFalse(EditJournal.autosaveFor(file).isFile());
+		assertTrue(file.isFile());
+	}
+
+	/*
+	 * Auxiliary Methods
+	 */
+
+	private String editAll() {
+		String text = null;
+		for (int e = 1; e <= 3; e++) {
+			text = edit(e);
+		}
+		return text;
+	}
+
+	private String edit(int e) {
+		/**
+		 * Makes and journals one of three edits, each of a different kind
+		 *
+		 * @return String, the model as written after the edit
+		 */
+
+		switch (e) {
+		case 1:
+			model.setName("edited");
+			model.setDefuzzMethod("mom");
+			journal.propertiesChanged(model);
+			break;
+		case 2:
+			Variable v = model.getVarOutList().get(0);
+			v.getMFs().set(1,
+					new MembershipFunction("fair", 2, new double[] { 8, 14,
+							21, 1 }));
+			journal.variableChanged(v, 0, model);
+			break;
+		default:
+			model.getRuleList().remove(1);
+			journal.ruleDeleted(1, model);
+			break;
+		}
+		return write(model);
+	}
+
+	private static int lastLine(byte[] bytes) {
+		/**
+		 * Returns where the last line starts, after the new line ending the
+		 * one before
+		 */
+		int i = bytes.length - 2;
+		while (bytes[i] != '\n') {
+			i--;
+		}
+		return i + 1;
+	}
+
+	private static void truncate(File file, long length) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.setLength(length);
+		} finally {
+			raf.close();
+		}
+	}
+
+	private static String write(Model model) {
+		StringWriter out = new StringWriter();
+		try {
+			FISWriter.write(model, out);
+		} catch (IOException io) {
+			throw new IllegalStateException(io);
+		}
+		return out.toString();
+	}
+
+}
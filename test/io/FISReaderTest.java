@@ -0,0 +1,97 @@
+/**
+ * FISReaderTest Class
+ * Checks that a fis file which cannot be read is reported at the line and
+ * column of the problem
+ *
+ * @author Craig Knott
+ */
+
+package io;
+
+import junit.framework.TestCase;
+
+public class FISReaderTest extends TestCase {
+
+	private static final String SYSTEM = "[System]\n" // 1
+			+ "Name='tipper'\n" // 2
+			+ "Type='mamdani'\n" // 3
+			+ "NumInputs=1\n" // 4
+			+ "NumOutputs=1\n" // 5
+			+ "NumRules=2\n" // 6
+			+ "AggMethod='max'\n" // 7
+			+ "\n" // 8
+			+ "[Input1]\n" // 9
+			+ "Name='service'\n" // 10
+			+ "Range=[0 10]\n" // 11
+			+ "NumMFs=2\n" // 12
+			+ "MF1='poor':'gaussmf',[1.5 0 1]\n" // 13
+			+ "MF2='good':'trapmf',[3 5 7 9 1]\n" // 14
+			+ "\n" // 15
+			+ "[Output1]\n" // 16
+			+ "Name='tip'\n" // 17
+			+ "Range=[0 30]\n" // 18
+			+ "NumMFs=2\n" // 19
+			+ "MF1='cheap':'trimf',[0 5 10 1]\n" // 20
+			+ "MF2='average':'trimf',[10 15 20 1]\n" // 21
+			+ "\n" // 22
+			+ "[Rules]\n" // 23
+			+ "1, 1 (1) : 1\n" // 24
+			+ "2, 2 (1) : 1\n"; // 25
+
+	public void testValid() throws InvalidFormatException {
+		assertEquals(2, FISReader.read(SYSTEM).getRuleList().size());
+	}
+
+	public void testBadNumber() {
+		fails("Range=[0 10]", "Range=[0 x10]", 11, 10);
+	}
+
+	public void testUnknownProperty() {
+		fails("AggMethod", "Agg", 7, 1);
+	}
+
+	public void testUnknownType() {
+		fails("'trimf',[10", "'nomf',[10", 21, 15);
+	}
+
+	public void testMissingParameters() {
+		fails("[3 5 7 9 1]", "[3 5 7]", 14, 1);
+	}
+
+	public void testBadConnective() {
+		fails("2, 2 (1) : 1", "2, 2 (1) : 3", 25, 11);
+	}
+
+	public void testMissingRule() {
+		fails("2, 2 (1) : 1\n", "", 25, 1);
+	}
+
+	public void testEmpty() {
+		try {
+			FISReader.read("");
+			fail("An empty file was read");
+		} catch (InvalidFormatException expected) {
+			assertEquals(1, expected.getLine());
+		}
+	}
+
+	private static void fails(String from, String to, int line, int column) {
+		/**
+		 * Reads the system with one piece of it changed, and checks it is
+		 * rejected at the given place
+		 */
+
+		String text = SYSTEM.replace(from, to);
+		assertFalse(from, text.equals(SYSTEM));
+		try {
+			FISReader.read(text);
+			fail("'" + to + "' was read");
+		} catch (InvalidFormatException expected) {
+			assertEquals(expected.getMessage(), line, expected.getLine());
+			assertEquals(expected.getMessage(), column, expected.getColumn());
+			assertTrue(expected.getMessage().startsWith(
+					"Line " + line + ", column " + column + ": "));
+		}
+	}
+
+}
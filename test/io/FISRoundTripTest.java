@@ -0,0 +1,145 @@
+/**
+ * FISRoundTripTest Class
+ * Checks that every type of membership function survives being written and
+ * read back as text
+ *
+ * @author Craig Knott
+ */
+
+package io;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import junit.framework.TestCase;
+import data.MembershipFunction;
+import data.Model;
+import data.Variable;
+
+public class FISRoundTripTest extends TestCase {
+
+	/*
+	 * A function of every fuzzy set type, as its name in the file and its
+	 * parameters, the last of which is its height
+	 */
+	private static final String[] TYPES = { "gaussmf", "gaussbmf", "trimf",
+			"trapmf", "gbellmf", "sigmf", "dsigmf", "psigmf", "pimf", "smf",
+			"zmf", "singleton" };
+	private static final double[][] PARAMS = { { 1.5, 5, 1 },
+			{ 1.5, 4, 0.5, 6, 0.9 }, { 1, 5, 9, 1 }, { 1, 3, 7, 9, 0.75 },
+			{ 2, 2.5, 5, 1 }, { 2, 5, 1 }, { 2, 3, 2, 7, 1 },
+			{ 2, 3, -2, 7, 0.8 }, { 1, 4, 6, 9, 1 }, { 2, 8, 1 },
+			{ 2, 8, 1 }, { 5.25, 0.5 } };
+
+	public void testMamdaniText() throws InvalidFormatException {
+		checkText(mamdani());
+	}
+
+	public void testSugenoText() throws InvalidFormatException {
+		checkText(sugeno());
+	}
+
+	/*
+	 * Auxiliary Methods, also used to check binary files
+	 */
+
+	private static void checkText(String text) throws InvalidFormatException {
+		/**
+		 * Reads a system, checks its functions hold what the file gave, then
+		 * writes and reads it again and checks nothing changed
+		 */
+
+		Model model = FISReader.read(text);
+		checkFunctions(model);
+
+		String written = write(model);
+		Model again = FISReader.read(written);
+		checkFunctions(again);
+		assertEquals(written, write(again));
+	}
+
+	static void checkFunctions(Model model) {
+		if (model.isSugeno()) {
+			Variable out = model.getVarOutList().get(0);
+			check(out.getMfAtIndex(0), "constant", new double[] { 12.5 });
+			check(out.getMfAtIndex(1), "linear", new double[] { 0.5, -2, 3 });
+			return;
+		}
+		for (int v = 0; v < 2; v++) {
+			Variable var = v == 0 ? model.getVarInList().get(0) : model
+					.getVarOutList().get(0);
+			assertEquals(TYPES.length, var.getMFs().size());
+			for (int m = 0; m < TYPES.length; m++) {
+				check(var.getMfAtIndex(m), TYPES[m], PARAMS[m]);
+			}
+		}
+	}
+
+	private static void check(MembershipFunction mf, String type,
+			double[] params) {
+		assertEquals(type, mf.intToType(mf.getType()));
+		assertEquals(type, params.length, mf.getParametersSize());
+		for (int p = 0; p < params.length; p++) {
+			assertEquals(type, params[p], mf.getParameter(p), 0);
+		}
+	}
+
+	static String write(Model model) {
+		StringWriter out = new StringWriter();
+		try {
+			FISWriter.write(model, out);
+		} catch (IOException io) {
+			throw new IllegalStateException(io);
+		}
+		return out.toString();
+	}
+
+	static String mamdani() {
+		/**
+		 * Builds a Mamdani system with a function of every fuzzy set type on
+		 * its input and its output, and a rule using each
+		 */
+
+		StringBuilder sb = new StringBuilder();
+		sb.append("[System]\nName='every type'\nType='mamdani'\n");
+		sb.append("NumInputs=1\nNumOutputs=1\nNumRules=" + TYPES.length
+				+ "\n\n");
+		functions(sb, "[Input1]\nName='in'\n");
+		functions(sb, "[Output1]\nName='out'\n");
+		sb.append("[Rules]\n");
+		for (int m = 1; m <= TYPES.length; m++) {
+			sb.append(m).append(", ").append(m % 2 == 0 ? -m : m)
+					.append(" (1) : 1\n");
+		}
+		return sb.toString();
+	}
+
+	private static void functions(StringBuilder sb, String header) {
+		sb.append(header).append("Range=[0 10]\nNumMFs=").append(TYPES.length)
+				.append('\n');
+		for (int m = 0; m < TYPES.length; m++) {
+			sb.append("MF").append(m + 1).append("='f").append(m + 1)
+					.append("':'").append(TYPES[m]).append("',[");
+			for (int p = 0; p < PARAMS[m].length; p++) {
+				sb.append(p > 0 ? " " : "").append(PARAMS[m][p]);
+			}
+			sb.append("]\n");
+		}
+		sb.append('\n');
+	}
+
+	static String sugeno() {
+		return "[System]\n" + "Name='sugeno'\n" + "Type='sugeno'\n"
+				+ "NumInputs=2\n" + "NumOutputs=1\n" + "NumRules=2\n"
+				+ "DefuzzMethod='wtaver'\n" + "\n" + "[Input1]\n"
+				+ "Name='a'\n" + "Range=[0 1]\n" + "NumMFs=1\n"
+				+ "MF1='f':'trimf',[0 0.5 1 1]\n" + "\n" + "[Input2]\n"
+				+ "Name='b'\n" + "Range=[-1 1]\n" + "NumMFs=1\n"
+				+ "MF1='g':'gaussmf',[0.3 0 1]\n" + "\n" + "[Output1]\n"
+				+ "Name='z'\n" + "Range=[0 20]\n" + "NumMFs=2\n"
+				+ "MF1='c':'constant',[12.5]\n"
+				+ "MF2='l':'linear',[0.5 -2 3]\n" + "\n" + "[Rules]\n"
+				+ "1 -1, 1 (0.25) : 1\n" + "0 1, 2 (1) : 2\n";
+	}
+
+}
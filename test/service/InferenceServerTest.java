@@ -0,0 +1,334 @@
+/**
+ * InferenceServerTest Class
+ * Starts a server on the loopback address and checks its answers against a
+ * BatchEvaluator, the errors it sends back, and that requests arriving
+ * together are evaluated in shared batches
+ *
+ * @author Craig Knott
+ */
+
+package service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.concurrent.CountDownLatch;
+
+import junit.framework.TestCase;
+import data.Model;
+import inference.BatchEvaluator;
+import inference.CompiledFIS;
+import inference.InferenceEngine;
+import io.FISReader;
+import io.InvalidFormatException;
+
+public class InferenceServerTest extends TestCase {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final String TIPPER = "[System]\n" + "Name='tipper'\n"
+			+ "Type='mamdani'\n" + "NumInputs=2\n" + "NumOutputs=1\n"
+			+ "NumRules=3\n" + "\n" + "[Input1]\n" + "Name='service'\n"
+			+ "Range=[0 10]\n" + "NumMFs=3\n"
+			+ "MF1='poor':'gaussmf',[1.5 0 1]\n"
+			+ "MF2='good':'gaussmf',[1.5 5 1]\n"
+			+ "MF3='excellent':'gaussmf',[1.5 10 1]\n" + "\n" + "[Input2]\n"
+			+ "Name='food'\n" + "Range=[0 10]\n" + "NumMFs=2\n"
+			+ "MF1='rancid':'trapmf',[0 0 1 3 1]\n"
+			+ "MF2='delicious':'trapmf',[7 9 10 10 1]\n" + "\n"
+			+ "[Output1]\n" + "Name='tip'\n" + "Range=[0 30]\n"
+			+ "NumMFs=3\n" + "MF1='cheap':'trimf',[0 5 10 1]\n"
+			+ "MF2='average':'trimf',[10 15 20 1]\n"
+			+ "MF3='generous':'trimf',[20 25 30 1]\n" + "\n" + "[Rules]\n"
+			+ "1 1, 1 (1) : 2\n" + "2 0, 2 (1) : 1\n" + "3 2, 3 (1) : 2\n";
+
+	private static final double[][] ROWS = { { 3, 7 }, { 0, 0 },
+			{ 10, 10 }, { 5.5, 2.25 }, { 8, 1 } };
+
+	private Model model;
+	private InferenceServer server;
+
+	protected void setUp() throws IOException, InvalidFormatException {
+		model = FISReader.read(TIPPER);
+		server = new InferenceServer(0);
+		server.addModel("tipper", model);
+		server.start();
+	}
+
+	protected void tearDown() {
+		server.stop();
+	}
+
+	public void testJsonRow() throws IOException {
+		Reply reply = post("/models/tipper/evaluate", null, "[3, 7]");
+		assertEquals(200, reply.status);
+		assertEquals("[" + expected(new double[][] { ROWS[0] })[0][0] + "]",
+				reply.body);
+	}
+
+	public void testJsonRows() throws IOException {
+		StringBuilder body = new StringBuilder("[");
+		for (int r = 0; r < ROWS.length; r++) {
+			body.append(r == 0 ? "[" : ",[").append(ROWS[r][0]).append(',')
+					.append(ROWS[r][1]).append(']');
+		}
+		Reply reply = post("/models/tipper/evaluate", "application/json",
+				body.append(']').toString());
+		assertEquals(200, reply.status);
+
+		double[][] expected = expected(ROWS);
+		StringBuilder json = new StringBuilder("[");
+		for (int r = 0; r < ROWS.length; r++) {
+			json.append(r == 0 ? "[" : ",[").append(expected[r][0]).append(']');
+		}
+		assertEquals(json.append(']').toString(), reply.body);
+	}
+
+	public void testCsvRows() throws IOException {
+		StringBuilder body = new StringBuilder();
+		for (int r = 0; r < ROWS.length; r++) {
+			body.append(ROWS[r][0]).append(", ").append(ROWS[r][1])
+					.append(r % 2 == 0 ? "\r\n" : "\n\n");
+		}
+		Reply reply = post("/models/tipper/evaluate", "text/csv",
+				body.toString());
+		assertEquals(200, reply.status);
+
+		double[][] expected = expected(ROWS);
+		StringBuilder csv = new StringBuilder();
+		for (int r = 0; r < ROWS.length; r++) {
+			csv.append(expected[r][0]).append('\n');
+		}
+		assertEquals(csv.toString(), reply.body);
+
+		// without a type naming either, anything not starting with '[' is CSV
+		reply = post("/models/tipper/evaluate", null, "3,7\n");
+		assertEquals(expected[0][0] + "\n", reply.body);
+	}
+
+	public void testBadRequests() throws IOException {
+		String[] bodies = { "[3, 7", "[3]", "[[3, 7], [1]]", "[3, x]",
+				"[3, 7] 8" };
+		for (int b = 0; b < bodies.length; b++) {
+			Reply reply = post("/models/tipper/evaluate", "application/json",
+					bodies[b]);
+			assertEquals(bodies[b], 400, reply.status);
+			assertTrue(reply.body, reply.body.startsWith("{\"error\":"));
+		}
+		assertEquals(400,
+				post("/models/tipper/evaluate", "text/csv", "3,seven\n").status);
+	}
+
+	public void testStrictNumbers() throws IOException {
+		/**
+		 * Refuses numbers that only Java would read, giving where they are
+		 */
+
+		String[] bad = { "1d", "0x1p3", "NaN", "Infinity", "-Infinity", "1e" };
+		for (String b : bad) {
+			Reply reply = post("/models/tipper/evaluate", "text/csv",
+					"3,7\n\n1,  " + b + "\n");
+			assertEquals(b, 400, reply.status);
+			assertTrue(reply.body, reply.body.contains("at line 3, column 5"));
+		}
+		try {
+			InferenceServer.parseCsv("1,2\r\n3, 1d\r\n");
+			fail("1d was read");
+		} catch (IllegalArgumentException expected) {
+			assertTrue(expected.getMessage(), expected.getMessage().endsWith(
+					"at line 2, column 4"));
+		}
+		try {
+			InferenceServer.parseJson("[1, 1e]");
+			fail("1e was read");
+		} catch (IllegalArgumentException expected) {
+			assertTrue(expected.getMessage(), expected.getMessage().endsWith(
+					"at character 4"));
+		}
+	}
+
+	public void testNotFound() throws IOException {
+		assertEquals(404, post("/models/nobody/evaluate", null, "[1, 2]").status);
+		assertEquals(404, get("/models/tipper/nothing").status);
+		assertEquals(404, get("/elsewhere").status);
+		assertEquals(200, get("/models/tipper/stats").status);
+	}
+
+	public void testMethodNotAllowed() throws IOException {
+		Reply reply = get("/models/tipper/evaluate");
+		assertEquals(405, reply.status);
+		assertEquals("POST", reply.allow);
+
+		reply = post("/models", null, "[]");
+		assertEquals(405, reply.status);
+		assertEquals("GET", reply.allow);
+	}
+
+	public void testTooLarge() throws IOException {
+		/**
+		 * Claims a body one byte too long, which must be refused before any
+		 * of it is read
+		 */
+
+		Socket socket = new Socket(InetAddress.getLoopbackAddress(),
+				server.getPort());
+		try {
+			socket.setSoTimeout(10000);
+			OutputStream out = socket.getOutputStream();
+			out.write(("POST /models/tipper/evaluate HTTP/1.1\r\n"
+					+ "Host: localhost\r\n" + "Content-Type: text/csv\r\n"
+					+ "Content-Length: " + (InferenceServer.MAX_BODY_BYTES + 1)
+					+ "\r\n\r\n").getBytes(UTF8));
+			out.flush();
+
+			InputStream in = socket.getInputStream();
+			StringBuilder status = new StringBuilder();
+			int c;
+			while ((c = in.read()) >= 0 && c != '\r') {
+				status.append((char) c);
+			}
+			assertTrue(status.toString(), status.toString().startsWith(
+					"HTTP/1.1 413"));
+		} finally {
+			socket.close();
+		}
+	}
+
+	public void testCoalescing() throws Exception {
+		/**
+		 * Sends a row from each of many clients at once to a system whose
+		 * batches linger, so they must be answered in fewer batches than
+		 * requests, and each with its own row's outputs
+		 */
+
+		final int clients = 16;
+		server.setLingerNanos(50000000L);
+		server.addModel("lingering", model);
+
+		final CountDownLatch start = new CountDownLatch(1);
+		final Reply[] replies = new Reply[clients];
+		Thread[] threads = new Thread[clients];
+		for (int t = 0; t < clients; t++) {
+			final int client = t;
+			threads[t] = new Thread(new Runnable() {
+				public void run() {
+					try {
+						start.await();
+						replies[client] = post("/models/lingering/evaluate",
+								null, "[" + client % 11 + ", " + client / 2
+										+ "]");
+					} catch (Exception e) {
+						// left null, and failed below
+					}
+				}
+			});
+			threads[t].start();
+		}
+		start.countDown();
+		for (int t = 0; t < clients; t++) {
+			threads[t].join();
+		}
+
+		for (int t = 0; t < clients; t++) {
+			assertNotNull(replies[t]);
+			assertEquals(200, replies[t].status);
+			double[] row = { t % 11, t / 2 };
+			assertEquals("[" + expected(new double[][] { row })[0][0] + "]",
+					replies[t].body);
+		}
+
+		MicroBatcher batcher = server.getRegistry().get("lingering")
+				.getVersion().getBatcher();
+		assertEquals(clients, batcher.getRequests());
+		assertTrue(batcher.getBatches() + " batches",
+				batcher.getBatches() < clients);
+	}
+
+	/*
+	 * Auxiliary Methods
+	 */
+
+	private double[][] expected(double[][] rows) {
+		/**
+		 * Evaluates rows with a BatchEvaluator over the system compiled as
+		 * the server compiles it
+		 */
+
+		CompiledFIS fis = CompiledFIS.compile(model,
+				InferenceEngine.DEFAULT_RESOLUTION);
+		double[][] columns = new double[fis.getNumInputs()][rows.length];
+		for (int r = 0; r < rows.length; r++) {
+			for (int i = 0; i < columns.length; i++) {
+				columns[i][r] = rows[r][i];
+			}
+		}
+		double[][] outColumns = new double[fis.getNumOutputs()][rows.length];
+		new BatchEvaluator(fis).evaluate(columns, outColumns);
+
+		double[][] outputs = new double[rows.length][outColumns.length];
+		for (int r = 0; r < rows.length; r++) {
+			for (int o = 0; o < outColumns.length; o++) {
+				outputs[r][o] = outColumns[o][r];
+			}
+		}
+		return outputs;
+	}
+
+	private Reply get(String path) throws IOException {
+		return send("GET", path, null, null);
+	}
+
+	private Reply post(String path, String type, String body)
+			throws IOException {
+		return send("POST", path, type, body);
+	}
+
+	private Reply send(String method, String path, String type, String body)
+			throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL("http",
+				InetAddress.getLoopbackAddress().getHostAddress(),
+				server.getPort(), path).openConnection();
+		connection.setRequestMethod(method);
+		if (type != null) {
+			connection.setRequestProperty("Content-Type", type);
+		}
+		if (body != null) {
+			connection.setDoOutput(true);
+			OutputStream out = connection.getOutputStream();
+			out.write(body.getBytes(UTF8));
+			out.close();
+		}
+
+		Reply reply = new Reply();
+		reply.status = connection.getResponseCode();
+		reply.allow = connection.getHeaderField("Allow");
+		InputStream in = reply.status < 400 ? connection.getInputStream()
+				: connection.getErrorStream();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int n;
+		while ((n = in.read(buffer)) > 0) {
+			bytes.write(buffer, 0, n);
+		}
+		in.close();
+		reply.body = new String(bytes.toByteArray(), UTF8);
+		return reply;
+	}
+
+	/*
+	 * Reply Sub Class
+	 */
+
+	private static final class Reply {
+		int status;
+		String allow;
+		String body;
+	}
+
+}
@@ -0,0 +1,143 @@
+/**
+ * MicroBatcherTest Class
+ * Checks that a retired batcher answers every request already queued, and
+ * that one shut down fails them instead, even while it is part way through
+ * a batch
+ *
+ * @author Craig Knott
+ */
+
+package service;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import junit.framework.TestCase;
+import data.Model;
+import inference.CompiledFIS;
+import io.FISReader;
+import io.InvalidFormatException;
+
+public class MicroBatcherTest extends TestCase {
+
+	private static final String SYSTEM = "[System]\n" + "Type='mamdani'\n"
+			+ "NumInputs=1\n" + "NumOutputs=1\n" + "NumRules=2\n" + "\n"
+			+ "[Input1]\n" + "Name='x'\n" + "Range=[0 10]\n" + "NumMFs=2\n"
+			+ "MF1='low':'trimf',[0 0 10 1]\n"
+			+ "MF2='high':'trimf',[0 10 10 1]\n" + "\n" + "[Output1]\n"
+			+ "Name='z'\n" + "Range=[0 10]\n" + "NumMFs=2\n"
+			+ "MF1='low':'gaussmf',[2 0 1]\n"
+			+ "MF2='high':'gaussmf',[2 10 1]\n" + "\n" + "[Rules]\n"
+			+ "1, 1 (1) : 1\n" + "2, 2 (1) : 1\n";
+
+	public void testEvaluate() throws Exception {
+		CompiledFIS fis = compile(101);
+		MicroBatcher batcher = new MicroBatcher(fis, "test");
+		try {
+			double[][] rows = { { 1 }, { 5 }, { 9 } };
+			double[][] outputs = batcher.evaluate(rows);
+			for (int r = 0; r < rows.length; r++) {
+				double[] out = new double[1];
+				fis.evaluate(rows[r], out, fis.newWorkspace());
+				assertEquals(out[0], outputs[r][0], 0);
+			}
+			assertEquals(0, batcher.evaluate(new double[0][]).length);
+			try {
+				batcher.evaluate(new double[][] { { 1, 2 } });
+				fail("A row with too many inputs was evaluated");
+			} catch (IllegalArgumentException expected) {
+			}
+		} finally {
+			batcher.shutdown();
+		}
+	}
+
+	public void testRetire() throws Exception {
+		/**
+		 * Requests queued behind a slow one are still answered once the
+		 * batcher is retired, and requests made afterwards are refused
+		 */
+
+		MicroBatcher batcher = new MicroBatcher(compile(100001), "test", 1, 0);
+		Waiter slow = new Waiter(batcher, 1000);
+		Thread.sleep(50);
+		Waiter[] queued = { new Waiter(batcher, 1), new Waiter(batcher, 1) };
+		Thread.sleep(50);
+		batcher.retire();
+
+		slow.join();
+		assertNull(slow.error.get());
+		for (Waiter w : queued) {
+			w.join();
+			assertNull(w.error.get());
+		}
+		assertEquals(3, batcher.getBatches());
+		try {
+			batcher.evaluate(new double[][] { { 1 } });
+			fail("A retired batcher accepted a request");
+		} catch (IllegalStateException expected) {
+		}
+	}
+
+	public void testShutdownDuringBatch() throws Exception {
+		/**
+		 * Shuts down while a slow batch is being evaluated. That batch is
+		 * finished, but the requests queued behind it must fail rather than
+		 * be evaluated
+		 */
+
+		MicroBatcher batcher = new MicroBatcher(compile(100001), "test", 1, 0);
+		Waiter slow = new Waiter(batcher, 1000);
+		Thread.sleep(50);
+		Waiter[] queued = { new Waiter(batcher, 1), new Waiter(batcher, 1) };
+		Thread.sleep(50);
+		batcher.shutdown();
+
+		slow.join();
+		assertNull(slow.error.get());
+		for (Waiter w : queued) {
+			w.join();
+			assertTrue(w.error.get() instanceof IllegalStateException);
+		}
+		assertEquals(1, batcher.getBatches());
+	}
+
+	private static CompiledFIS compile(int resolution)
+			throws InvalidFormatException {
+		/**
+		 * Compiles the system, sampling its outputs so a row takes longer to
+		 * evaluate the higher the resolution
+		 */
+		Model model = FISReader.read(SYSTEM);
+		return CompiledFIS.compile(model, resolution, false);
+	}
+
+	/*
+	 * Waiter Sub Class
+	 */
+
+	private static final class Waiter extends Thread {
+
+		private final MicroBatcher batcher;
+		private final int rows;
+		final AtomicReference<Exception> error = new AtomicReference<Exception>();
+
+		Waiter(MicroBatcher batcher, int rows) {
+			this.batcher = batcher;
+			this.rows = rows;
+			start();
+		}
+
+		public void run() {
+			double[][] inputs = new double[rows][1];
+			for (int r = 0; r < rows; r++) {
+				inputs[r][0] = r % 11;
+			}
+			try {
+				batcher.evaluate(inputs);
+			} catch (Exception e) {
+				error.set(e);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,267 @@
+/**
+ * ModelRegistryTest Class
+ * Checks that versions are swapped without failing the requests caught
+ * between them, that a file which cannot be read leaves the version before
+ * it serving, and that a file written in several steps is reloaded once
+ *
+ * @author Craig Knott
+ */
+
+package service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicReference;
+
+import junit.framework.TestCase;
+import data.Model;
+import io.FISReader;
+import io.FISWriter;
+import io.InvalidFormatException;
+
+public class ModelRegistryTest extends TestCase {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private File dir;
+	private ModelRegistry registry;
+
+	protected void setUp() throws IOException {
+		dir = Files.createTempDirectory("registry").toFile();
+		registry = new ModelRegistry();
+	}
+
+	protected void tearDown() {
+		registry.close();
+		File[] files = dir.listFiles();
+		for (int i = 0; i < files.length; i++) {
+			files[i].delete();
+		}
+		dir.delete();
+	}
+
+	public void testQueuedAnsweredByOldVersion() throws Exception {
+		/**
+		 * Requests queued behind a slow one when a new version is swapped in
+		 * are answered by the version they were queued on, and requests made
+		 * afterwards by the new one
+		 */
+
+		registry.setResolution(100001);
+		registry.setMaxBatchRows(1);
+		registry.put("m", system(2));
+		ModelRegistry.Entry entry = registry.get("m");
+		double old = evaluate(entry);
+
+		Waiter slow = new Waiter(entry, 1000);
+		Thread.sleep(50);
+		Waiter queued = new Waiter(entry, 1);
+		Thread.sleep(50);
+		registry.put("m", system(8));
+		assertEquals(2, entry.getVersion().getNumber());
+
+		slow.join();
+		queued.join();
+		assertNull(slow.error.get());
+		assertNull(queued.error.get());
+		assertEquals(old, queued.outputs[0][0], 0);
+		double next = evaluate(entry);
+		assertTrue(old + " " + next, Math.abs(next - old) > 1);
+	}
+
+	public void testSwapUnderLoad() throws Exception {
+		/**
+		 * Swaps versions over and over while other threads evaluate. A
+		 * request reaching a version as it is retired must be passed on to
+		 * the next, so none may fail, and each is answered by one version or
+		 * the other
+		 */
+
+		registry.put("m", system(2));
+		final ModelRegistry.Entry entry = registry.get("m");
+		final double first = evaluate(entry);
+		registry.put("m", system(8));
+		final double second = evaluate(entry);
+
+		final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+		Thread[] threads = new Thread[8];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread(new Runnable() {
+				public void run() {
+					try {
+						for (int i = 0; i < 500; i++) {
+							double value = evaluate(entry);
+							if (value != first && value != second) {
+								throw new AssertionError("Answered " + value);
+							}
+						}
+					} catch (Throwable e) {
+						error.compareAndSet(null, e);
+					}
+				}
+			});
+			threads[t].start();
+		}
+		for (int s = 0; s < 50; s++) {
+			registry.put("m", system(s % 2 == 0 ? 2 : 8));
+			Thread.sleep(1);
+		}
+		for (int t = 0; t < threads.length; t++) {
+			threads[t].join();
+		}
+		assertNull(String.valueOf(error.get()), error.get());
+		assertEquals(52, entry.getVersion().getNumber());
+	}
+
+	public void testFailedLoadKeepsVersion() throws Exception {
+		/**
+		 * Loading a broken file, whether the file already served or another,
+		 * leaves the name served by its current version, from its current
+		 * file, with its histograms, and records why
+		 */
+
+		File good = new File(dir, "good.fis");
+		FISWriter.write(system(2), good);
+		registry.load("m", good);
+		ModelRegistry.Entry entry = registry.get("m");
+		double before = evaluate(entry);
+		LatencyHistogram reloads = entry.getReloadTimes();
+
+		File broken = new File(dir, "broken.fis");
+		Files.write(broken.toPath(), "[System]\nNumInputs=".getBytes(UTF8));
+		try {
+			registry.load("m", broken);
+			fail("A broken file was loaded");
+		} catch (InvalidFormatException expected) {
+		}
+		assertSame(entry, registry.get("m"));
+		assertSame(reloads, entry.getReloadTimes());
+		assertEquals(good.getAbsoluteFile(), entry.getFile());
+		assertEquals(1, entry.getVersion().getNumber());
+		assertEquals(1, entry.getReloadFailures());
+		assertNotNull(entry.getLastError());
+		assertEquals(before, evaluate(entry), 0);
+
+		Files.write(good.toPath(), "[System]\nNumInputs=".getBytes(UTF8));
+		try {
+			registry.load("m", good);
+			fail("A broken file was loaded");
+		} catch (InvalidFormatException expected) {
+		}
+		assertEquals(1, entry.getVersion().getNumber());
+		assertEquals(2, entry.getReloadFailures());
+		assertEquals(before, evaluate(entry), 0);
+
+		FISWriter.write(system(8), broken);
+		registry.load("m", broken);
+		assertSame(entry, registry.get("m"));
+		assertEquals(broken.getAbsoluteFile(), entry.getFile());
+		assertEquals(2, entry.getVersion().getNumber());
+		assertNull(entry.getLastError());
+		assertEquals(2, reloads.getCount());
+
+		try {
+			registry.load("other", new File(dir, "missing.fis"));
+			fail("A missing file was loaded");
+		} catch (IOException expected) {
+		}
+		assertNull(registry.get("other"));
+	}
+
+	public void testWatchDebounced() throws Exception {
+		/**
+		 * Writes a file in several steps, each sooner after the last than the
+		 * quiet period, the first leaving it broken. Only the finished file
+		 * may be read, and only once
+		 */
+
+		File file = new File(dir, "watched.fis");
+		FISWriter.write(system(2), file);
+		registry.setQuietMillis(300);
+		registry.load("m", file);
+		ModelRegistry.Entry entry = registry.get("m");
+		registry.startWatching();
+
+		String text = write(system(8));
+		Files.write(file.toPath(), text.substring(0, text.length() / 2)
+				.getBytes(UTF8));
+		Thread.sleep(50);
+		Files.write(file.toPath(), text.getBytes(UTF8));
+		Thread.sleep(50);
+		Files.write(file.toPath(), text.getBytes(UTF8));
+
+		long deadline = System.currentTimeMillis() + 10000;
+		while (entry.getVersion().getNumber() < 2
+				&& System.currentTimeMillis() < deadline) {
+			Thread.sleep(20);
+		}
+		Thread.sleep(600);
+		assertEquals(2, entry.getVersion().getNumber());
+		assertEquals(0, entry.getReloadFailures());
+	}
+
+	/*
+	 * Auxiliary Methods
+	 */
+
+	private static double evaluate(ModelRegistry.Entry entry)
+			throws InterruptedException {
+		return entry.evaluate(new double[][] { { 5 } })[0][0];
+	}
+
+	private static Model system(double centre) throws InvalidFormatException {
+		/**
+		 * Builds a system whose output is centred on a value, so which
+		 * version answered can be told from its outputs
+		 */
+		return FISReader.read("[System]\n" + "Type='mamdani'\n"
+				+ "NumInputs=1\n" + "NumOutputs=1\n" + "NumRules=2\n" + "\n"
+				+ "[Input1]\n" + "Name='x'\n" + "Range=[0 10]\n"
+				+ "NumMFs=2\n" + "MF1='low':'trimf',[0 0 10 1]\n"
+				+ "MF2='high':'trimf',[0 10 10 1]\n" + "\n" + "[Output1]\n"
+				+ "Name='z'\n" + "Range=[0 10]\n" + "NumMFs=2\n"
+				+ "MF1='near':'gaussmf',[1 " + centre + " 1]\n"
+				+ "MF2='wide':'gaussmf',[3 " + centre + " 1]\n" + "\n"
+				+ "[Rules]\n" + "1, 1 (1) : 1\n" + "2, 2 (1) : 1\n");
+	}
+
+	private static String write(Model model) throws IOException {
+		StringWriter out = new StringWriter();
+		FISWriter.write(model, out);
+		return out.toString();
+	}
+
+	/*
+	 * Waiter Sub Class
+	 */
+
+	private static final class Waiter extends Thread {
+
+		private final ModelRegistry.Entry entry;
+		private final int rows;
+		volatile double[][] outputs;
+		final AtomicReference<Exception> error = new AtomicReference<Exception>();
+
+		Waiter(ModelRegistry.Entry entry, int rows) {
+			this.entry = entry;
+			this.rows = rows;
+			start();
+		}
+
+		public void run() {
+			double[][] inputs = new double[rows][];
+			for (int r = 0; r < rows; r++) {
+				inputs[r] = new double[] { 5 };
+			}
+			try {
+				outputs = entry.evaluate(inputs);
+			} catch (Exception e) {
+				error.set(e);
+			}
+		}
+	}
+
+}